@@ -0,0 +1,116 @@
+package com.chargebacks.processor.reader;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Label-based mapper (as it was before column indexes were resolved up front) against the
+// current ChargebackRowMapper over the same in-memory result set. Run with -prof gc to compare
+// allocation per row alongside throughput.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChargebackRowMapperBenchmark {
+
+    private static final int ROWS = 4096;
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "JPY"};
+    private static final String[] REASONS = {"Product not received", "Duplicate charge",
+        "Unauthorized transaction", "Item not as described"};
+
+    private ResultSet resultSet;
+    private RowMapper<Chargeback> labelMapper;
+    private RowMapper<Chargeback> indexMapper;
+    private int rowNum;
+
+    @Setup
+    public void setUp() throws SQLException {
+        DriverLikeResultSet rs = new DriverLikeResultSet();
+        rs.addColumn("disputed_dt", Types.DATE, 10, 0);
+        rs.addColumn("disputed_amt", Types.DECIMAL, 19, 2);
+        rs.addColumn("disputed_curr", Types.VARCHAR, 3, 0);
+        rs.addColumn("merchandise_ref", Types.VARCHAR, 255, 0);
+        rs.addColumn("reason_for_dispute", Types.VARCHAR, 255, 0);
+        rs.addColumn("created_time", Types.TIMESTAMP, 26, 0);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        for (int i = 0; i < ROWS; i++) {
+            rs.addRow(start.toLocalDate().plusDays(i % 28), BigDecimal.valueOf(1_000 + i * 37L, 2).toPlainString(),
+                    CURRENCIES[i % CURRENCIES.length], "REF-" + i, REASONS[i % REASONS.length], start.plusSeconds(i));
+        }
+        rs.setAutoClose(false);
+        resultSet = rs;
+        labelMapper = new LabelBasedRowMapper();
+        indexMapper = new ChargebackRowMapper();
+    }
+
+    @Benchmark
+    public Chargeback labelBased() throws SQLException {
+        advance();
+        return labelMapper.mapRow(resultSet, rowNum);
+    }
+
+    @Benchmark
+    public Chargeback indexBased() throws SQLException {
+        advance();
+        return indexMapper.mapRow(resultSet, rowNum);
+    }
+
+    private void advance() throws SQLException {
+        if (!resultSet.next()) {
+            resultSet.beforeFirst();
+            resultSet.next();
+            rowNum = 0;
+        }
+        rowNum++;
+    }
+
+    // Hands out a fresh String per getString() and parses DECIMALs from text, the way a driver
+    // decodes column bytes on every call
+    static class DriverLikeResultSet extends SimpleResultSet {
+
+        @Override
+        public String getString(int columnIndex) throws SQLException {
+            String value = super.getString(columnIndex);
+            return value == null ? null : new String(value);
+        }
+
+        @Override
+        public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+            return type.cast(super.getObject(columnIndex));
+        }
+    }
+
+    static class LabelBasedRowMapper implements RowMapper<Chargeback> {
+        @Override
+        public Chargeback mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Chargeback chargeback = new Chargeback();
+            chargeback.setDisputedDt(rs.getObject("disputed_dt", LocalDate.class));
+            chargeback.setDisputedAmt(rs.getBigDecimal("disputed_amt"));
+            chargeback.setDisputedCurr(rs.getString("disputed_curr"));
+            chargeback.setMerchandiseRef(rs.getString("merchandise_ref"));
+            chargeback.setReasonForDispute(rs.getString("reason_for_dispute"));
+            chargeback.setCreatedTime(rs.getObject("created_time", LocalDateTime.class));
+            return chargeback;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.chargebacks.processor.rollup;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.writer.ChargebackLineEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One row rolled up per operation: RollupTable against the HashMap of boxed keys and BigDecimal
+// totals it replaces, with encoding the same row as a CSV line for scale, since that is the work
+// every exported row already pays for. Rows are minor-unit rows, as ChargebackRowMapper produces.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RollupTableBenchmark {
+
+    private static final int ROWS = 4096;
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "JPY"};
+    private static final String[] REASONS = {"Product not received", "Duplicate charge",
+        "Unauthorized transaction", "Item not as described"};
+
+    private record GroupKey(LocalDate date, String currency, String reason) {
+    }
+
+    private static final class Group {
+        long count;
+        BigDecimal total = BigDecimal.ZERO;
+        BigDecimal min;
+        BigDecimal max;
+    }
+
+    private Chargeback[] rows;
+    private RollupTable table;
+    private Map<GroupKey, Group> boxed;
+    private ChargebackLineEncoder encoder;
+    private StringBuilder buffer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rows = new Chargeback[ROWS];
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Chargeback(start.toLocalDate().plusDays(i % 28), null, CURRENCIES[i % CURRENCIES.length],
+                    "REF-" + i, REASONS[(i / 4) % REASONS.length], start.plusSeconds(i));
+            rows[i].setDisputedAmtMinor(1_000 + i * 37L);
+        }
+        table = new RollupTable();
+        boxed = new HashMap<>();
+        encoder = new ChargebackLineEncoder();
+        buffer = new StringBuilder(1 << 16);
+    }
+
+    @Benchmark
+    public int rollupTable() {
+        table.add(rows[advance()]);
+        return table.size();
+    }
+
+    @Benchmark
+    public int boxedHashMap() {
+        Chargeback row = rows[advance()];
+        Group group = boxed.computeIfAbsent(
+                new GroupKey(row.getDisputedDt(), row.getDisputedCurr(), row.getReasonForDispute()), key -> new Group());
+        BigDecimal amount = BigDecimal.valueOf(row.getDisputedAmtMinor(), Chargeback.AMOUNT_SCALE);
+        group.count++;
+        group.total = group.total.add(amount);
+        group.min = group.min == null || amount.compareTo(group.min) < 0 ? amount : group.min;
+        group.max = group.max == null || amount.compareTo(group.max) > 0 ? amount : group.max;
+        return boxed.size();
+    }
+
+    @Benchmark
+    public int encodeLine() {
+        if (buffer.length() > 60_000) {
+            buffer.setLength(0);
+        }
+        encoder.encode(rows[advance()], buffer);
+        buffer.append('\n');
+        return buffer.length();
+    }
+
+    private int advance() {
+        int row = next;
+        next = (next + 1) & (ROWS - 1);
+        return row;
+    }
+}
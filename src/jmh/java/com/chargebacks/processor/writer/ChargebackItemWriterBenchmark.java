@@ -0,0 +1,93 @@
+package com.chargebacks.processor.writer;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Full ChargebackItemWriter chunk writes to a temporary file: encode, write, and the update()
+// the step makes at every commit (which flushes plain output). Scores are rows per second and
+// -prof gc allocation is per row. The file is recreated each iteration so it stays a few hundred
+// MB at most.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChargebackItemWriterBenchmark {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "JPY"};
+    private static final String[] REASONS = {"Product not received", "Duplicate charge",
+        "Unauthorized transaction", "Item not as described"};
+
+    @Param({"NONE", "GZIP"})
+    public Compression compression;
+
+    private Chunk<Chargeback> chunk;
+    private ExecutionContext executionContext;
+    private Path directory;
+    private ChargebackItemWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUpChunk() throws IOException {
+        chunk = new Chunk<>();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            Chargeback chargeback = new Chargeback(start.toLocalDate().plusDays(i % 28), null,
+                    CURRENCIES[i % CURRENCIES.length], "REF-" + i, REASONS[i % REASONS.length], start.plusSeconds(i));
+            chargeback.setDisputedAmtMinor(1_000 + i * 37L);
+            chunk.add(chargeback);
+        }
+        directory = Files.createTempDirectory("chargeback-writer-benchmark");
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws Exception {
+        writer = new ChargebackItemWriter();
+        writer.setCompression(compression, 0);
+        writer.setOutputFile(directory.resolve("chargebacks.csv" + compression.getExtension()).toString());
+        writer.configureWriter();
+        writer.afterPropertiesSet();
+        executionContext = new ExecutionContext();
+        writer.open(executionContext);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public void writeChunk() throws Exception {
+        writer.write(chunk);
+        writer.update(executionContext);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws IOException {
+        writer.close();
+        Files.deleteIfExists(directory.resolve("chargebacks.csv" + compression.getExtension()));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,117 @@
+package com.chargebacks.processor.writer;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+// One CSV line per operation: the FieldExtractor + DelimitedLineAggregator the writer used to
+// be configured with, against ChargebackLineEncoder building a String per line (aggregate()) and
+// appending to a reused buffer the way ChargebackItemWriter.doWrite() does. Run with -prof gc to
+// compare allocation per line alongside throughput.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineAggregationBenchmark {
+
+    private static final int ROWS = 4096;
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "JPY"};
+    private static final String[] REASONS = {"Product not received", "Duplicate charge",
+        "Unauthorized transaction", "Item not as described"};
+
+    private Chargeback[] decimalRows;
+    private Chargeback[] minorUnitRows;
+    private DelimitedLineAggregator<Chargeback> delimitedAggregator;
+    private ChargebackLineEncoder encoder;
+    private StringBuilder buffer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        decimalRows = new Chargeback[ROWS];
+        minorUnitRows = new Chargeback[ROWS];
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        for (int i = 0; i < ROWS; i++) {
+            long minor = 1_000 + i * 37L;
+            decimalRows[i] = new Chargeback(start.toLocalDate().plusDays(i % 28), BigDecimal.valueOf(minor, 2),
+                    CURRENCIES[i % CURRENCIES.length], "REF-" + i, REASONS[i % REASONS.length], start.plusSeconds(i));
+            // What ChargebackRowMapper produces for a DECIMAL(19, 2) column
+            minorUnitRows[i] = new Chargeback(start.toLocalDate().plusDays(i % 28), null,
+                    CURRENCIES[i % CURRENCIES.length], "REF-" + i, REASONS[i % REASONS.length], start.plusSeconds(i));
+            minorUnitRows[i].setDisputedAmtMinor(minor);
+        }
+        delimitedAggregator = newDelimitedAggregator();
+        encoder = new ChargebackLineEncoder();
+        buffer = new StringBuilder(1 << 16);
+    }
+
+    private static DelimitedLineAggregator<Chargeback> newDelimitedAggregator() {
+        DelimitedLineAggregator<Chargeback> aggregator = new DelimitedLineAggregator<>();
+        aggregator.setDelimiter(",");
+        aggregator.setFieldExtractor(item -> {
+            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+            DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+            return new Object[]{
+                item.getDisputedDt() != null ? item.getDisputedDt().format(dateFormatter) : "",
+                item.getDisputedAmt() != null ? item.getDisputedAmt().toString() : "",
+                item.getDisputedCurr() != null ? item.getDisputedCurr() : "",
+                item.getMerchandiseRef() != null ? item.getMerchandiseRef() : "",
+                item.getReasonForDispute() != null ? item.getReasonForDispute() : "",
+                item.getCreatedTime() != null ? item.getCreatedTime().format(dateTimeFormatter) : ""
+            };
+        });
+        return aggregator;
+    }
+
+    @Benchmark
+    public String delimitedLineAggregator() {
+        return delimitedAggregator.aggregate(decimalRows[advance()]);
+    }
+
+    @Benchmark
+    public String encoderAggregate() {
+        return encoder.aggregate(decimalRows[advance()]);
+    }
+
+    @Benchmark
+    public int encoderIntoBuffer() {
+        return encodeIntoBuffer(decimalRows[advance()]);
+    }
+
+    @Benchmark
+    public int encoderIntoBufferMinorUnits() {
+        return encodeIntoBuffer(minorUnitRows[advance()]);
+    }
+
+    private int encodeIntoBuffer(Chargeback chargeback) {
+        // Emptied about once per chunk's worth of lines, like the writer's chunk buffer
+        if (buffer.length() > 60_000) {
+            buffer.setLength(0);
+        }
+        encoder.encode(chargeback, buffer);
+        buffer.append('\n');
+        return buffer.length();
+    }
+
+    private int advance() {
+        int row = next;
+        next = (next + 1) & (ROWS - 1);
+        return row;
+    }
+}
@@ -0,0 +1,36 @@
+package com.chargebacks.processor.cache;
+
+import com.chargebacks.processor.writer.AtomicFiles;
+import org.springframework.batch.core.repository.dao.DefaultExecutionContextSerializer;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// What the export cache and the segment store know about a stored file (its fingerprint and the
+// summary of its rows) is kept next to it as a serialized execution context, the same form
+// Spring Batch keeps step state in
+final class EntryFiles {
+
+    private static final DefaultExecutionContextSerializer SERIALIZER = new DefaultExecutionContextSerializer();
+
+    private EntryFiles() {
+    }
+
+    static ExecutionContext read(Path entryFile) throws IOException {
+        try (InputStream in = Files.newInputStream(entryFile)) {
+            return new ExecutionContext(SERIALIZER.deserialize(in));
+        }
+    }
+
+    static void write(Path entryFile, ExecutionContext context) throws IOException {
+        AtomicFiles.replace(entryFile, temp -> {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                SERIALIZER.serialize(context.toMap(), out);
+            }
+        });
+    }
+}
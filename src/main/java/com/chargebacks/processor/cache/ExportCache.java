@@ -0,0 +1,283 @@
+package com.chargebacks.processor.cache;
+
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.summary.ExportSummary;
+import com.chargebacks.processor.writer.AtomicFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+// Keeps the files of finished exports of past ranges, so exporting the same range again with the
+// same output options hands back the earlier file instead of scanning the table again. An entry
+// is keyed by the range and every option that changes the file's contents; options that only
+// change how the export runs (workers, reader mode, pipelining...) share entries. An entry is only
+// served while the range's fingerprint, its row count and latest created_time, is what it was
+// when the file was written, so rows added to or removed from the range since are exported fresh.
+//
+// Entries are served by hard-linking them to the output file name, or copied where the file
+// system can't link. Because the output file and the entry can then be the same file on disk,
+// an export that runs must detach() its output file first, or writing it would change the entry
+// too.
+//
+// Once the entries add up to more than chargeback.cache.max-bytes, the least recently served ones
+// are evicted. An entry's bytes are shared with the output file it was last linked to, so deleting
+// only the entry would free nothing; eviction deletes that output file as well, as long as it is
+// still the same file on disk as the entry. Outputs that were copied rather than linked, rewritten
+// since, or written by exports that bypassed the cache are never deleted, and aren't counted either.
+// The cache is off unless chargeback.cache.enabled is set, as serving it costs two fingerprint
+// queries per export and it misses rows corrected in place.
+@Component
+public class ExportCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportCache.class);
+
+    private static final String DATA_SUFFIX = ".data";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String DUPLICATE_ROWS = "duplicateRows";
+    private static final String OUTPUT_FILE = "outputFile";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${chargeback.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chargeback.cache.directory:${chargeback.output.directory:./output}/cache}")
+    private String cacheDirectory;
+
+    @Value("${chargeback.cache.max-bytes:10737418240}")
+    private long maxBytes;
+
+    // What a cached export hands back in place of running the job
+    public record Entry(ExportSummary summary, long duplicateRows) {
+    }
+
+    // Only finished ranges with a single output file are cached. A range that ends in the future
+    // is still being written to, incremental exports move a watermark, and rolling and rollup
+    // exports write files next to the output.
+    public boolean accepts(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options) {
+        return enabled && options.isCache() && endTimestamp.isBefore(LocalDateTime.now()) && !options.isIncremental()
+                && !options.isRolling() && !options.isRollup();
+    }
+
+    public Fingerprint fingerprint(LocalDateTime startTimestamp, LocalDateTime endTimestamp) {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*), MAX(created_time) FROM Chargebacks WHERE created_time >= ? AND created_time <= ?",
+                (rs, rowNum) -> {
+                    Timestamp maxCreatedTime = rs.getTimestamp(2);
+                    return new Fingerprint(rs.getLong(1),
+                            maxCreatedTime != null ? maxCreatedTime.toLocalDateTime() : null);
+                },
+                startTimestamp, endTimestamp);
+    }
+
+    // Puts the cached file at outputFile and returns what the export it came from produced, or
+    // null when there is no entry for the export or the range has changed since
+    public synchronized Entry serve(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options,
+                                    Fingerprint fingerprint, String outputFile) {
+        String key = key(startTimestamp, endTimestamp, options);
+        Path data = directory().resolve(key + DATA_SUFFIX);
+        Path entryFile = directory().resolve(key + ENTRY_SUFFIX);
+        if (!Files.exists(data) || !Files.exists(entryFile)) {
+            return null;
+        }
+        try {
+            ExecutionContext context = EntryFiles.read(entryFile);
+            if (!fingerprint.equals(Fingerprint.loadFrom(context))) {
+                log.info("Range {} to {} changed since it was cached, exporting it again", startTimestamp,
+                        endTimestamp);
+                delete(key);
+                return null;
+            }
+            place(data, Paths.get(outputFile));
+            String linkedOutput = Paths.get(outputFile).toAbsolutePath().toString();
+            if (!linkedOutput.equals(context.getString(OUTPUT_FILE, ""))) {
+                context.putString(OUTPUT_FILE, linkedOutput);
+                EntryFiles.write(entryFile, context);
+            }
+            Files.setLastModifiedTime(entryFile, FileTime.from(Instant.now()));
+            log.info("Served {} from the export cache", outputFile);
+            return new Entry(ExportSummary.loadFrom(context), context.getLong(DUPLICATE_ROWS, 0L));
+        } catch (IOException | RuntimeException e) {
+            // A damaged entry is only a miss
+            log.warn("Could not serve {} from the export cache: {}", outputFile, e.toString());
+            delete(key);
+            return null;
+        }
+    }
+
+    // Unlinks outputFile if it is a cache entry served by hard link, so the export about to write it
+    // doesn't write into the entry. A file that isn't linked is left alone, as a restarted export
+    // may resume it.
+    public void detach(String outputFile) throws IOException {
+        Path path = Paths.get(outputFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            if (((Number) Files.getAttribute(path, "unix:nlink")).intValue() > 1) {
+                Files.delete(path);
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // Without link counts there are no hard links either, so entries were copied
+        }
+    }
+
+    // Keeps a just-written export, then evicts the least recently used entries over the size limit
+    public synchronized void store(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options,
+                                   Fingerprint fingerprint, String outputFile, ExportSummary summary,
+                                   long duplicateRows) {
+        String key = key(startTimestamp, endTimestamp, options);
+        try {
+            Files.createDirectories(directory());
+            place(Paths.get(outputFile), directory().resolve(key + DATA_SUFFIX));
+            ExecutionContext context = new ExecutionContext();
+            summary.saveTo(context);
+            fingerprint.saveTo(context);
+            context.putLong(DUPLICATE_ROWS, duplicateRows);
+            context.putString(OUTPUT_FILE, Paths.get(outputFile).toAbsolutePath().toString());
+            EntryFiles.write(directory().resolve(key + ENTRY_SUFFIX), context);
+            evict();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not add {} to the export cache: {}", outputFile, e.toString());
+            delete(key);
+        }
+    }
+
+    private Path directory() {
+        return Paths.get(cacheDirectory).toAbsolutePath();
+    }
+
+    // Links source to target, or copies it where hard links aren't possible
+    private static void place(Path source, Path target) throws IOException {
+        AtomicFiles.replace(target, temp -> {
+            Files.delete(temp);
+            try {
+                Files.createLink(temp, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+        });
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long totalBytes = 0;
+        try (Stream<Path> files = Files.list(directory())) {
+            for (Path entryFile : files.filter(file -> file.toString().endsWith(ENTRY_SUFFIX)).toList()) {
+                entries.add(entryFile);
+                totalBytes += size(dataFile(entryFile));
+            }
+        }
+        entries.sort(Comparator.comparing(ExportCache::lastUsed));
+        for (Path entryFile : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            long bytes = size(dataFile(entryFile));
+            String name = entryFile.getFileName().toString();
+            deleteLinkedOutput(entryFile);
+            delete(name.substring(0, name.length() - ENTRY_SUFFIX.length()));
+            totalBytes -= bytes;
+            log.debug("Evicted {} bytes from the export cache", bytes);
+        }
+    }
+
+    // Deletes the output file an entry was last linked to, if it still is that entry
+    private static void deleteLinkedOutput(Path entryFile) {
+        try {
+            String outputFile = EntryFiles.read(entryFile).getString(OUTPUT_FILE, "");
+            Path output = Paths.get(outputFile);
+            if (!outputFile.isEmpty() && Files.exists(output) && Files.isSameFile(output, dataFile(entryFile))) {
+                Files.delete(output);
+                log.info("Deleted {} with its evicted export cache entry", output);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not delete the output of evicted export cache entry {}: {}", entryFile, e.toString());
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(directory().resolve(key + ENTRY_SUFFIX));
+            Files.deleteIfExists(directory().resolve(key + DATA_SUFFIX));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete export cache entry " + key, e);
+        }
+    }
+
+    private static Path dataFile(Path entryFile) {
+        String name = entryFile.getFileName().toString();
+        return entryFile.resolveSibling(name.substring(0, name.length() - ENTRY_SUFFIX.length()) + DATA_SUFFIX);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastUsed(Path entryFile) {
+        try {
+            return Files.getLastModifiedTime(entryFile);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    // The range with seconds always written out, and the options that shape the file in a fixed
+    // form, so equal exports get equal keys however they were asked for
+    static String key(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options) {
+        String description = String.join("|",
+                startTimestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                endTimestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                options.getFormat().name(),
+                options.getCompression().name(),
+                ChargebackColumn.join(options.getColumns()),
+                String.join(",", new TreeSet<>(options.getCurrencies())),
+                amount(options.getMinAmount()),
+                amount(options.getMaxAmount()),
+                options.getReasonPattern() != null ? options.getReasonPattern() : "",
+                options.getDuplicates().name());
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String amount(BigDecimal amount) {
+        return amount != null ? amount.stripTrailingZeros().toPlainString() : "";
+    }
+}
@@ -0,0 +1,25 @@
+package com.chargebacks.processor.cache;
+
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.LocalDateTime;
+
+// Row count and latest created_time of a range, whatever an export's filters. Both come from
+// idx_created_time without reading the rows, so comparing them is a cheap way to tell whether a
+// range has gained or lost rows since a file of it was written.
+public record Fingerprint(long rows, LocalDateTime maxCreatedTime) {
+
+    private static final String ROWS = "fingerprint.rows";
+    private static final String MAX_CREATED_TIME = "fingerprint.maxCreatedTime";
+
+    public void saveTo(ExecutionContext executionContext) {
+        executionContext.putLong(ROWS, rows);
+        executionContext.putString(MAX_CREATED_TIME, maxCreatedTime != null ? maxCreatedTime.toString() : "");
+    }
+
+    public static Fingerprint loadFrom(ExecutionContext executionContext) {
+        String maxCreatedTime = executionContext.getString(MAX_CREATED_TIME);
+        return new Fingerprint(executionContext.getLong(ROWS),
+                maxCreatedTime.isEmpty() ? null : LocalDateTime.parse(maxCreatedTime));
+    }
+}
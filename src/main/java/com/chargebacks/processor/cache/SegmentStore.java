@@ -0,0 +1,284 @@
+package com.chargebacks.processor.cache;
+
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.summary.ExportSummary;
+import com.chargebacks.processor.writer.Compression;
+import com.chargebacks.processor.writer.OutputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Keeps the rows of past days as one header-less CSV segment per day, so an export of a range
+// spanning whole days that were exported before only reads the partial days at either end from
+// the database and copies the whole days in from their segments. A segment is written once and
+// never changed; when a day's fingerprint no longer matches the one stored with its segment, a
+// fresh segment replaces it.
+//
+// Each segment file has a name of its own, <day>.<version>.csv, and the day's entry names the one
+// it describes. A new segment is moved into place under a new name before the entry pointing at
+// it is written, so a reader always finds a segment and an entry that belong together; the old
+// segment is deleted after, and an export already reading it keeps its open file.
+//
+// Segments hold every column of every row, so only exports that write exactly that use them:
+// plain CSV with no column choice, filter, duplicate check, rollup or part files. A range that is
+// exactly one whole day gains nothing from a segment and is exported directly. Once the segments
+// add up to more than chargeback.segments.max-bytes, the least recently used days are evicted.
+// Segments are off unless chargeback.segments.enabled is set, since they keep a second copy of
+// every day exported and, like the cache, miss rows corrected in place.
+@Component
+public class SegmentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentStore.class);
+
+    private static final String SEGMENT_SUFFIX = ".csv";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String WORK_SUFFIX = ".tmp";
+    private static final String SEGMENT_FILE = "segmentFile";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${chargeback.segments.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chargeback.segments.directory:${chargeback.output.directory:./output}/segments}")
+    private String segmentDirectory;
+
+    @Value("${chargeback.segments.max-bytes:10737418240}")
+    private long maxBytes;
+
+    // A stored day: its header-less rows, open for reading, and the summary of them
+    public record Segment(FileChannel channel, ExportSummary summary) implements AutoCloseable {
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public boolean accepts(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options) {
+        if (!enabled || !options.isCache() || options.isIncremental() || options.isRolling() || options.isRollup()
+                || options.getFormat() != OutputFormat.CSV || options.getCompression() != Compression.NONE
+                || !options.getColumns().equals(ChargebackColumn.ALL) || !options.getFilter().isEmpty()
+                || options.getDuplicates() != ExportOptions.DuplicateMode.OFF) {
+            return false;
+        }
+        List<LocalDate> days = wholeDays(startTimestamp, endTimestamp);
+        return !days.isEmpty() && !(days.size() == 1 && startTimestamp.equals(days.get(0).atStartOfDay())
+                && !endTimestamp.isAfter(dayEnd(days.get(0))));
+    }
+
+    // The days that lie entirely inside the range and ended before now, in order
+    public List<LocalDate> wholeDays(LocalDateTime startTimestamp, LocalDateTime endTimestamp) {
+        LocalDate firstDay = startTimestamp.equals(startTimestamp.toLocalDate().atStartOfDay())
+                ? startTimestamp.toLocalDate() : startTimestamp.toLocalDate().plusDays(1);
+        LocalDateTime now = LocalDateTime.now();
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = firstDay; !dayEnd(day).isAfter(endTimestamp) && dayEnd(day).isBefore(now);
+             day = day.plusDays(1)) {
+            days.add(day);
+        }
+        return days;
+    }
+
+    // The last second of a day, as ranges are inclusive of their end
+    public static LocalDateTime dayEnd(LocalDate day) {
+        return day.plusDays(1).atStartOfDay().minusSeconds(1);
+    }
+
+    // The fingerprint of every day from firstDay to lastDay in one pass over idx_created_time;
+    // days without rows get an empty one
+    public Map<LocalDate, Fingerprint> fingerprints(LocalDate firstDay, LocalDate lastDay) {
+        Map<LocalDate, Fingerprint> fingerprints = new HashMap<>();
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            fingerprints.put(day, new Fingerprint(0, null));
+        }
+        new JdbcTemplate(dataSource).query(
+                "SELECT CAST(created_time AS DATE), COUNT(*), MAX(created_time) FROM Chargebacks " +
+                "WHERE created_time >= ? AND created_time <= ? GROUP BY CAST(created_time AS DATE)",
+                rs -> {
+                    fingerprints.put(rs.getDate(1).toLocalDate(),
+                            new Fingerprint(rs.getLong(2), rs.getTimestamp(3).toLocalDateTime()));
+                },
+                firstDay.atStartOfDay(), dayEnd(lastDay));
+        return fingerprints;
+    }
+
+    // The day's segment, opened for reading, or null when there is none or the day has changed
+    // since it was written. The caller closes it.
+    public Segment find(LocalDate day, Fingerprint fingerprint) {
+        Path entryFile = directory().resolve(day + ENTRY_SUFFIX);
+        if (!Files.exists(entryFile)) {
+            return null;
+        }
+        try {
+            ExecutionContext context = EntryFiles.read(entryFile);
+            if (!fingerprint.equals(Fingerprint.loadFrom(context))) {
+                log.info("{} changed since its segment was written, reading it again", day);
+                return null;
+            }
+            FileChannel channel = FileChannel.open(directory().resolve(context.getString(SEGMENT_FILE)),
+                    StandardOpenOption.READ);
+            Files.setLastModifiedTime(entryFile, FileTime.from(Instant.now()));
+            return new Segment(channel, ExportSummary.loadFrom(context));
+        } catch (NoSuchFileException e) {
+            // Replaced or evicted since the entry was read
+            return null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read the segment of {}: {}", day, e.toString());
+            return null;
+        }
+    }
+
+    // Makes workFile, the header-less rows of the whole day, the day's segment, then evicts the
+    // least recently used days over the size limit. The file is moved, not copied, so it must be a
+    // work file of this store; it is left where it was if the day can't be stored.
+    public synchronized void store(LocalDate day, Fingerprint fingerprint, Path workFile, ExportSummary summary) {
+        Path entryFile = directory().resolve(day + ENTRY_SUFFIX);
+        try {
+            Path previous = segmentFile(entryFile);
+            Path segment = Files.createTempFile(directory(), day + ".", SEGMENT_SUFFIX);
+            try {
+                Files.move(workFile, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                ExecutionContext context = new ExecutionContext();
+                summary.saveTo(context);
+                fingerprint.saveTo(context);
+                context.putString(SEGMENT_FILE, segment.getFileName().toString());
+                EntryFiles.write(entryFile, context);
+            } catch (IOException | RuntimeException e) {
+                if (!Files.exists(workFile)) {
+                    Files.move(segment, workFile);
+                }
+                Files.deleteIfExists(segment);
+                throw e;
+            }
+            if (previous != null) {
+                Files.deleteIfExists(previous);
+            }
+            evict();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not keep the segment of {}: {}", day, e.toString());
+        }
+    }
+
+    // A file for a piece of an assembled export, inside the store so that a whole day's piece can
+    // be moved into its segment
+    public Path newWorkFile(String prefix) throws IOException {
+        Files.createDirectories(directory());
+        return Files.createTempFile(directory(), prefix + ".", WORK_SUFFIX);
+    }
+
+    // Copies all of in to the end of out with transferTo, which lets the kernel move the bytes
+    // between the files without passing them through the JVM
+    public static void append(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    public static void append(Path file, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            append(in, out);
+        }
+    }
+
+    private Path directory() {
+        return Paths.get(segmentDirectory).toAbsolutePath();
+    }
+
+    // Deletes the least recently used days over the size limit, and segments no entry names any
+    // more, left behind by a store() that failed or a process that died in one
+    private void evict() throws IOException {
+        Map<Path, Path> segments = new HashMap<>();
+        long totalBytes = 0;
+        try (Stream<Path> files = Files.list(directory())) {
+            for (Path entryFile : files.filter(file -> file.toString().endsWith(ENTRY_SUFFIX)).toList()) {
+                Path segment = segmentFile(entryFile);
+                if (segment == null) {
+                    Files.deleteIfExists(entryFile);
+                    continue;
+                }
+                segments.put(entryFile, segment);
+                totalBytes += size(segment);
+            }
+        }
+        Set<Path> named = new HashSet<>(segments.values());
+        try (Stream<Path> files = Files.list(directory())) {
+            for (Path orphan : files.filter(file -> file.toString().endsWith(SEGMENT_SUFFIX)
+                    && !named.contains(file)).toList()) {
+                Files.deleteIfExists(orphan);
+            }
+        }
+        List<Path> entries = new ArrayList<>(segments.keySet());
+        entries.sort(Comparator.comparing(SegmentStore::lastUsed));
+        for (Path entryFile : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            Path segment = segments.get(entryFile);
+            long bytes = size(segment);
+            Files.deleteIfExists(entryFile);
+            Files.deleteIfExists(segment);
+            totalBytes -= bytes;
+            log.debug("Evicted {} bytes of day segments", bytes);
+        }
+    }
+
+    // The segment an entry names, or null when there is no entry or it can't be read
+    private static Path segmentFile(Path entryFile) {
+        if (!Files.exists(entryFile)) {
+            return null;
+        }
+        try {
+            String segmentFile = EntryFiles.read(entryFile).getString(SEGMENT_FILE, "");
+            return segmentFile.isEmpty() ? null : entryFile.resolveSibling(segmentFile);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastUsed(Path entryFile) {
+        try {
+            return Files.getLastModifiedTime(entryFile);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.chargebacks.processor.chunk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+// Completion policy that tunes the chunk size while the step runs, instead of a fixed
+// .chunk(100). It starts at minChunkSize and, once a size has run for a few chunks and at least
+// 50 ms, compares rows per second with the best size so far:
+//  - the size doubles while that keeps improving throughput by more than 5% and commits (the
+//    time from the end of write() to the end of the chunk: stream updates, JobRepository writes
+//    and the commit itself) still cost a noticeable share of each chunk;
+//  - once a larger size stops paying off it goes back to the best size and stays there;
+//  - whenever a chunk takes longer than maxChunkMillis the size halves and stops growing,
+//    keeping transactions and the items held per chunk bounded.
+// The size it settled on is logged and kept in the step execution context under CHUNK_SIZE.
+// Holds per-step state: one instance per step execution (step scope), registered as both the
+// step's completion policy and its listener.
+public class AdaptiveChunkSizePolicy extends CompletionPolicySupport
+        implements ChunkListener, ItemWriteListener<Object>, StepExecutionListener {
+
+    public static final String CHUNK_SIZE = "adaptiveChunk.size";
+    public static final long DEFAULT_MAX_CHUNK_MILLIS = 2_000;
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveChunkSizePolicy.class);
+
+    // A size is judged on at least this many chunks and this much time, so a GC pause or a
+    // single slow round trip does not decide it
+    private static final int CHUNKS_PER_SAMPLE = 3;
+    private static final long MIN_SAMPLE_NANOS = 50_000_000;
+    private static final double MIN_IMPROVEMENT = 1.05;
+    private static final double MIN_COMMIT_SHARE = 0.02;
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long maxChunkNanos;
+
+    private int chunkSize;
+    private int bestChunkSize;
+    private double bestRowsPerSecond;
+    private boolean settled;
+
+    private long chunkStart;
+    private long writeEnd;
+    private long readCountAtChunkStart;
+
+    private int sampleChunks;
+    private long sampleRows;
+    private long sampleNanos;
+    private long sampleCommitNanos;
+
+    public AdaptiveChunkSizePolicy(int minChunkSize, int maxChunkSize) {
+        this(minChunkSize, maxChunkSize, DEFAULT_MAX_CHUNK_MILLIS);
+    }
+
+    public AdaptiveChunkSizePolicy(int minChunkSize, int maxChunkSize, long maxChunkMillis) {
+        if (minChunkSize < 1 || maxChunkSize < minChunkSize) {
+            throw new IllegalArgumentException("Chunk size bounds must satisfy 1 <= min <= max, got "
+                    + minChunkSize + ".." + maxChunkSize);
+        }
+        if (maxChunkMillis < 1) {
+            throw new IllegalArgumentException("maxChunkMillis must be at least 1");
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.maxChunkNanos = maxChunkMillis * 1_000_000;
+        this.chunkSize = minChunkSize;
+        this.bestChunkSize = minChunkSize;
+        this.settled = minChunkSize == maxChunkSize;
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        return context.getStartedCount() >= chunkSize;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        chunkStart = System.nanoTime();
+        writeEnd = 0;
+        readCountAtChunkStart = context.getStepContext().getStepExecution().getReadCount();
+    }
+
+    @Override
+    public void afterWrite(Chunk<?> items) {
+        writeEnd = System.nanoTime();
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        long now = System.nanoTime();
+        long rows = context.getStepContext().getStepExecution().getReadCount() - readCountAtChunkStart;
+        // Chunks cut short by the end of the input say little about the size
+        if (writeEnd == 0 || rows < chunkSize) {
+            return;
+        }
+        recordChunk(rows, now - chunkStart, now - writeEnd);
+    }
+
+    // Package-private so the tuning can be driven with synthetic timings
+    void recordChunk(long rows, long chunkNanos, long commitNanos) {
+        if (chunkNanos > maxChunkNanos && chunkSize > minChunkSize) {
+            chunkSize = Math.max(minChunkSize, chunkSize / 2);
+            bestChunkSize = chunkSize;
+            settled = true;
+            resetSample();
+            return;
+        }
+
+        sampleChunks++;
+        sampleRows += rows;
+        sampleNanos += chunkNanos;
+        sampleCommitNanos += commitNanos;
+        if (settled || sampleChunks < CHUNKS_PER_SAMPLE || sampleNanos < MIN_SAMPLE_NANOS) {
+            return;
+        }
+
+        double rowsPerSecond = sampleRows * 1_000_000_000.0 / sampleNanos;
+        double commitShare = (double) sampleCommitNanos / sampleNanos;
+        if (rowsPerSecond > bestRowsPerSecond * MIN_IMPROVEMENT) {
+            bestRowsPerSecond = rowsPerSecond;
+            bestChunkSize = chunkSize;
+            if (chunkSize < maxChunkSize && commitShare >= MIN_COMMIT_SHARE) {
+                chunkSize = (int) Math.min(maxChunkSize, chunkSize * 2L);
+            } else {
+                settled = true;
+            }
+        } else {
+            chunkSize = bestChunkSize;
+            settled = true;
+        }
+        resetSample();
+    }
+
+    private void resetSample() {
+        sampleChunks = 0;
+        sampleRows = 0;
+        sampleNanos = 0;
+        sampleCommitNanos = 0;
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        stepExecution.getExecutionContext().putInt(CHUNK_SIZE, chunkSize);
+        if (bestRowsPerSecond == 0) {
+            logger.info("Step {} used a chunk size of {} (too few full chunks to tune)",
+                    stepExecution.getStepName(), chunkSize);
+        } else {
+            logger.info("Step {} settled on a chunk size of {} (bounds {}..{}, best {} rows/s)",
+                    stepExecution.getStepName(), chunkSize, minChunkSize, maxChunkSize, Math.round(bestRowsPerSecond));
+        }
+        return null;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
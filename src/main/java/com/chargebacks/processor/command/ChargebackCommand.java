@@ -1,16 +1,32 @@
 package com.chargebacks.processor.command;
 
+import com.chargebacks.processor.job.BackfillRunner;
 import com.chargebacks.processor.job.ChargebackJobLauncher;
-import org.springframework.batch.item.util.FileUtils;
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.job.ExportRange;
+import com.chargebacks.processor.job.ExportResult;
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.reader.FetchStrategy;
+import com.chargebacks.processor.server.ExportServer;
+import com.chargebacks.processor.summary.ExportSummary;
+import com.chargebacks.processor.writer.Compression;
+import com.chargebacks.processor.writer.OutputFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import picocli.CommandLine;
 
-import java.nio.file.Files;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 @Component
@@ -24,6 +40,12 @@ public class ChargebackCommand implements Callable<Integer> {
     @Autowired
     private ChargebackJobLauncher jobLauncher;
 
+    @Autowired
+    private BackfillRunner backfillRunner;
+
+    @Autowired
+    private ExportServer exportServer;
+
     @CommandLine.Option(
         names = {"--startTimestamp"},
         description = "Beginning of the date range (format: yyyy-MM-ddTHH:mm:ss). Defaults to start of today (00:00:00).",
@@ -38,8 +60,257 @@ public class ChargebackCommand implements Callable<Integer> {
     )
     private String endTimestamp;
 
+    @CommandLine.Option(
+        names = {"--workers"},
+        description = "Number of time slices exported in parallel. Values above 1 enable the partitioned export. Defaults to 1.",
+        defaultValue = "1"
+    )
+    private int workers = 1;
+
+    @CommandLine.Option(
+        names = {"--sliceMinutes"},
+        description = "Length of each time slice in minutes for the partitioned export. Defaults to 0 (one slice per worker).",
+        defaultValue = "0"
+    )
+    private long sliceMinutes;
+
+    @CommandLine.Option(
+        names = {"--readerMode"},
+        description = "How rows are read: CURSOR (one streaming query) or KEYSET (bounded pages seeking on created_time). Defaults to CURSOR.",
+        defaultValue = "CURSOR"
+    )
+    private ExportOptions.ReaderMode readerMode = ExportOptions.ReaderMode.CURSOR;
+
+    @CommandLine.Option(
+        names = {"--pageSize"},
+        description = "Rows per page for the KEYSET reader. Defaults to 1000.",
+        defaultValue = "1000"
+    )
+    private int pageSize = 1000;
+
+    @CommandLine.Option(
+        names = {"--fetchStrategy"},
+        description = "How the CURSOR reader fetches rows: BUFFERED (driver default), STREAMING (row by row) or CURSOR_FETCH (server-side cursor, needs useCursorFetch=true). Defaults to BUFFERED.",
+        defaultValue = "BUFFERED"
+    )
+    private FetchStrategy fetchStrategy = FetchStrategy.BUFFERED;
+
+    @CommandLine.Option(
+        names = {"--fetchSize"},
+        description = "Rows per round trip for CURSOR_FETCH. Defaults to 1000.",
+        defaultValue = "1000"
+    )
+    private int fetchSize = 1000;
+
+    @CommandLine.Option(
+        names = {"--format"},
+        description = "Output format: CSV or PARQUET (typed columns with per-row-group statistics; single worker only). Defaults to CSV.",
+        defaultValue = "CSV"
+    )
+    private OutputFormat format = OutputFormat.CSV;
+
+    @CommandLine.Option(
+        names = {"--compress"},
+        description = "Output compression: NONE or GZIP (written as .csv.gz, compressed in parallel blocks). Defaults to NONE.",
+        defaultValue = "NONE"
+    )
+    private Compression compression = Compression.NONE;
+
+    @CommandLine.Option(
+        names = {"--compressThreads"},
+        description = "Threads compressing GZIP output, shared between workers. Defaults to 0 (one per available processor).",
+        defaultValue = "0"
+    )
+    private int compressionThreads;
+
+    @CommandLine.Option(
+        names = {"--maxFileRows"},
+        description = "Start a new numbered part file after this many rows and write a manifest listing the parts. Defaults to 0 (no limit).",
+        defaultValue = "0"
+    )
+    private long maxFileRows;
+
+    @CommandLine.Option(
+        names = {"--maxFileSize"},
+        description = "Start a new numbered part file once a part holds this much uncompressed CSV, e.g. 512M or 2G. Defaults to 0 (no limit).",
+        defaultValue = "0"
+    )
+    private String maxFileSize = "0";
+
+    @CommandLine.Option(
+        names = {"--pipelined"},
+        description = "Overlap reading, encoding and writing: a reader thread, a pool of encoder threads and an in-order writer joined by bounded queues. Single CSV file and one worker only."
+    )
+    private boolean pipelined;
+
+    @CommandLine.Option(
+        names = {"--encoderThreads"},
+        description = "Encoder threads for --pipelined. Defaults to 0 (one per available processor).",
+        defaultValue = "0"
+    )
+    private int encoderThreads;
+
+    @CommandLine.Option(
+        names = {"--minChunkSize"},
+        description = "Smallest and starting chunk size; the size grows while larger chunks raise throughput. Defaults to 100.",
+        defaultValue = "100"
+    )
+    private int minChunkSize = ExportOptions.DEFAULT_MIN_CHUNK_SIZE;
+
+    @CommandLine.Option(
+        names = {"--maxChunkSize"},
+        description = "Largest chunk size the export may grow to. Set equal to --minChunkSize for a fixed size. Defaults to 10000.",
+        defaultValue = "10000"
+    )
+    private int maxChunkSize = ExportOptions.DEFAULT_MAX_CHUNK_SIZE;
+
+    @CommandLine.Option(
+        names = {"--incremental"},
+        description = "Export only rows added since the last incremental run, tracked by a watermark file in the output directory. "
+                + "--startTimestamp is only used before the first run; --endTimestamp defaults to now."
+    )
+    private boolean incremental;
+
+    @CommandLine.Option(
+        names = {"--range"},
+        description = "A range to export, as start/end (e.g. 2024-01-01T00:00:00/2024-01-01T23:59:59). Repeat or separate with commas "
+                + "to export several ranges in one run instead of --startTimestamp/--endTimestamp.",
+        split = ","
+    )
+    private List<String> ranges = new ArrayList<>();
+
+    @CommandLine.Option(
+        names = {"--backfillFrom"},
+        description = "First day (yyyy-MM-dd) of a backfill exported as one file per --per period, up to and including --backfillTo."
+    )
+    private LocalDate backfillFrom;
+
+    @CommandLine.Option(
+        names = {"--backfillTo"},
+        description = "Last day (yyyy-MM-dd) of the backfill. Defaults to --backfillFrom."
+    )
+    private LocalDate backfillTo;
+
+    @CommandLine.Option(
+        names = {"--per"},
+        description = "Length of each backfill export: DAY or HOUR. Defaults to DAY.",
+        defaultValue = "DAY"
+    )
+    private ExportRange.Interval per = ExportRange.Interval.DAY;
+
+    @CommandLine.Option(
+        names = {"--parallelism"},
+        description = "Ranges exported at the same time by --range or --backfillFrom. Defaults to 4.",
+        defaultValue = "4"
+    )
+    private int parallelism = 4;
+
+    @CommandLine.Option(
+        names = {"--rollup"},
+        description = "Also write per-day, per-currency and per-reason totals to a _rollup.csv file next to the export."
+    )
+    private boolean rollup;
+
+    @CommandLine.Option(
+        names = {"--duplicates"},
+        description = "Check for rows repeating the merchandise_ref, disputed_amt, disputed_curr and disputed_dt of an earlier row: OFF, FLAG (count and log them) or DROP (leave them out; not with --workers above 1 or --pipelined). Defaults to OFF.",
+        defaultValue = "OFF"
+    )
+    private ExportOptions.DuplicateMode duplicates = ExportOptions.DuplicateMode.OFF;
+
+    @CommandLine.Option(
+        names = {"--duplicateMemory"},
+        description = "Memory for the duplicate check's Bloom filter, e.g. 64M or 1G. Defaults to 64M.",
+        defaultValue = "64M"
+    )
+    private String duplicateMemory = "64M";
+
+    @CommandLine.Option(
+        names = {"--columns"},
+        description = "Comma-separated columns to export, in order, e.g. created_time,disputed_amt,disputed_curr. Columns left out are not read from the database. Defaults to all six."
+    )
+    private String columns;
+
+    @CommandLine.Option(
+        names = {"--currency"},
+        description = "Only export rows in these currencies. Repeat or separate with commas.",
+        split = ","
+    )
+    private List<String> currencies = new ArrayList<>();
+
+    @CommandLine.Option(
+        names = {"--minAmount"},
+        description = "Only export rows with disputed_amt at least this amount."
+    )
+    private BigDecimal minAmount;
+
+    @CommandLine.Option(
+        names = {"--maxAmount"},
+        description = "Only export rows with disputed_amt at most this amount."
+    )
+    private BigDecimal maxAmount;
+
+    @CommandLine.Option(
+        names = {"--reason"},
+        description = "Only export rows whose reason_for_dispute matches this SQL LIKE pattern, e.g. %fraud%."
+    )
+    private String reason;
+
+    @CommandLine.Option(
+        names = {"--no-cache"},
+        description = "Always read the whole range from the database, bypassing the export cache and the day segments."
+    )
+    private boolean noCache;
+
+    @CommandLine.Option(
+        names = {"--serve"},
+        description = "Run as a server instead of exporting once: GET /export?start=...&end=... streams CSV back, taking the same columns, currency, minAmount, maxAmount and reason as the options here."
+    )
+    private boolean serve;
+
+    @CommandLine.Option(
+        names = {"--bind"},
+        description = "Address the --serve server listens on. Defaults to 127.0.0.1; the server does not authenticate requests, so only bind to other interfaces behind something that does.",
+        defaultValue = ExportServer.DEFAULT_BIND_ADDRESS
+    )
+    private String bind = ExportServer.DEFAULT_BIND_ADDRESS;
+
+    @CommandLine.Option(
+        names = {"--port"},
+        description = "Port the --serve server listens on. Defaults to 8080.",
+        defaultValue = "8080"
+    )
+    private int port = ExportServer.DEFAULT_PORT;
+
+    @CommandLine.Option(
+        names = {"--maxConcurrentExports"},
+        description = "Exports the --serve server streams at once; further requests get a 503. Defaults to 4.",
+        defaultValue = "4"
+    )
+    private int maxConcurrentExports = ExportServer.DEFAULT_MAX_CONCURRENT_EXPORTS;
+
+    @CommandLine.Option(
+        names = {"--preview"},
+        description = "Print the header and this many rows from the start and the end of a CSV export. Defaults to 0 (no preview).",
+        defaultValue = "0"
+    )
+    private int preview;
+
+    @CommandLine.Option(
+        names = {"--topReasons"},
+        description = "Number of most frequent dispute reasons in the summary. Defaults to 5.",
+        defaultValue = "5"
+    )
+    private int topReasons = 5;
+
     @Override
     public Integer call() throws Exception {
+        if (serve) {
+            return serve();
+        }
+        if (!ranges.isEmpty() || backfillFrom != null) {
+            return backfill();
+        }
         try {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
             LocalDateTime start;
@@ -52,7 +323,10 @@ public class ChargebackCommand implements Callable<Integer> {
                 start = LocalDateTime.parse(startTimestamp, formatter);
             }
 
-            if (endTimestamp == null || endTimestamp.isEmpty()) {
+            if ((endTimestamp == null || endTimestamp.isEmpty()) && incremental) {
+                // Later rows are picked up by the next run rather than waiting for the day to end
+                end = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+            } else if (endTimestamp == null || endTimestamp.isEmpty()) {
                 end = LocalDate.now().atTime(23, 59, 59);
             } else {
                 end = LocalDateTime.parse(endTimestamp, formatter);
@@ -62,17 +336,32 @@ public class ChargebackCommand implements Callable<Integer> {
             System.out.println("Start timestamp: " + start);
             System.out.println("End timestamp: " + end);
 
-            String outputFile = jobLauncher.launchJob(start, end);
+            ExportOptions options = exportOptions();
+            if (options.isPartitioned()) {
+                System.out.println("Workers: " + workers);
+            }
+
+            ExportResult result = jobLauncher.export(start, end, options);
             
-            System.out.println("Job completed successfully!");
-            System.out.println("Output file: " + outputFile);
-
-            try {
-                // see file contents
-                Files.readAllLines(Paths.get(outputFile)).forEach(System.out::println);
-            } catch(Exception e) {
-                // temp fix
-                e.printStackTrace();
+            System.out.println(result.cached() ? "Range unchanged since it was last exported, served from the export cache"
+                    : "Job completed successfully!");
+            System.out.println("Output file: " + result.outputFile());
+            if (result.rollupFile() != null) {
+                System.out.println("Rollup file: " + result.rollupFile());
+            }
+            if (options.getDuplicates() != ExportOptions.DuplicateMode.OFF) {
+                System.out.println("Duplicate rows " + (options.getDuplicates() == ExportOptions.DuplicateMode.DROP
+                        ? "dropped: " : "flagged: ") + result.duplicateRows());
+            }
+            printSummary(result.summary());
+
+            if (preview > 0) {
+                // The export has already succeeded, so a preview that can't be read isn't a failure
+                try {
+                    printPreview(result, options);
+                } catch (IOException e) {
+                    System.err.println("Could not preview " + result.outputFile() + ": " + e.getMessage());
+                }
             }
             return 0;
         } catch (Exception e) {
@@ -81,5 +370,153 @@ public class ChargebackCommand implements Callable<Integer> {
             return 1;
         }
     }
-}
 
+    private ExportOptions exportOptions() {
+        ExportOptions options = new ExportOptions();
+        options.setWorkers(workers);
+        options.setSliceMinutes(sliceMinutes);
+        options.setReaderMode(readerMode);
+        options.setPageSize(pageSize);
+        options.setFetchStrategy(fetchStrategy);
+        options.setFetchSize(fetchSize);
+        options.setCompression(compression);
+        options.setCompressionThreads(compressionThreads);
+        options.setFormat(format);
+        options.setIncremental(incremental);
+        options.setMaxFileRows(maxFileRows);
+        options.setMaxFileBytes(parseSize(maxFileSize));
+        options.setPipelined(pipelined);
+        options.setEncoderThreads(encoderThreads);
+        options.setMinChunkSize(minChunkSize);
+        options.setMaxChunkSize(maxChunkSize);
+        options.setRollup(rollup);
+        options.setDuplicates(duplicates);
+        options.setDuplicateMemory(parseSize(duplicateMemory));
+        if (columns != null) {
+            options.setColumns(ChargebackColumn.parse(columns));
+        }
+        options.setCurrencies(currencies.stream().map(String::trim).filter(currency -> !currency.isEmpty()).toList());
+        options.setMinAmount(minAmount);
+        options.setMaxAmount(maxAmount);
+        options.setReasonPattern(reason);
+        options.setCache(!noCache);
+        return options;
+    }
+
+    // Runs until the process is told to stop; the context closing on shutdown stops the server
+    private int serve() {
+        try {
+            InetSocketAddress address = exportServer.start(bind, port, maxConcurrentExports, fetchSize);
+            System.out.println("Serving exports on " + address.getHostString() + ":" + address.getPort() + ", "
+                    + maxConcurrentExports + " at a time");
+            exportServer.awaitStop();
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Error running export server: " + e.getMessage());
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    private int backfill() {
+        try {
+            if ((startTimestamp != null && !startTimestamp.isEmpty()) || (endTimestamp != null && !endTimestamp.isEmpty())) {
+                throw new IllegalArgumentException("--range and --backfillFrom replace --startTimestamp/--endTimestamp");
+            }
+            if (!ranges.isEmpty() && backfillFrom != null) {
+                throw new IllegalArgumentException("Use either --range or --backfillFrom, not both");
+            }
+            List<ExportRange> exportRanges = new ArrayList<>();
+            if (backfillFrom != null) {
+                exportRanges.addAll(ExportRange.split(backfillFrom, backfillTo != null ? backfillTo : backfillFrom, per));
+            }
+            for (String range : ranges) {
+                exportRanges.add(ExportRange.parse(range));
+            }
+
+            System.out.println("Starting backfill of " + exportRanges.size() + " ranges, " + parallelism + " at a time...");
+            long begin = System.nanoTime();
+            List<BackfillRunner.Result> results = backfillRunner.run(exportRanges, exportOptions(), parallelism);
+            long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+
+            int failed = 0;
+            for (BackfillRunner.Result result : results) {
+                if (result.succeeded()) {
+                    System.out.printf("OK      %s to %s  %7d ms  %s%n", result.range().start(), result.range().end(),
+                            result.elapsedMillis(), result.outputFile());
+                } else {
+                    failed++;
+                    System.out.printf("FAILED  %s to %s  %7d ms  %s%n", result.range().start(), result.range().end(),
+                            result.elapsedMillis(), result.error().getMessage());
+                }
+            }
+            System.out.printf("Backfill finished in %.1f s: %d succeeded, %d failed%n",
+                    elapsedMillis / 1000.0, results.size() - failed, failed);
+            return failed == 0 ? 0 : 1;
+        } catch (Exception e) {
+            System.err.println("Error executing backfill: " + e.getMessage());
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    // Plain bytes, or a number with a K, M or G suffix (powers of 1024)
+    static long parseSize(String size) {
+        String value = size.trim().toUpperCase();
+        long multiplier = 1;
+        if (value.endsWith("K") || value.endsWith("M") || value.endsWith("G")) {
+            multiplier = switch (value.charAt(value.length() - 1)) {
+                case 'K' -> 1024L;
+                case 'M' -> 1024L * 1024;
+                default -> 1024L * 1024 * 1024;
+            };
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Math.multiplyExact(Long.parseLong(value), multiplier);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid file size: " + size);
+        }
+    }
+
+    private void printSummary(ExportSummary summary) {
+        System.out.println("Rows exported: " + summary.getRows());
+        if (summary.getRows() == 0) {
+            return;
+        }
+        System.out.println("Created time: " + summary.getMinCreatedTime() + " to " + summary.getMaxCreatedTime());
+        System.out.printf("%-8s %12s %22s%n", "Currency", "Rows", "Total");
+        Map<String, Long> currencyRows = summary.getCurrencyRows();
+        for (Map.Entry<String, BigDecimal> total : summary.getCurrencyTotals().entrySet()) {
+            System.out.printf("%-8s %12d %22s%n", total.getKey(), currencyRows.get(total.getKey()),
+                    total.getValue().toPlainString());
+        }
+        if (topReasons > 0) {
+            System.out.println("Top reasons:");
+            for (Map.Entry<String, Long> reason : summary.getTopReasons(topReasons)) {
+                System.out.printf("%12d  %s%n", reason.getValue(), reason.getKey());
+            }
+            if (summary.getOtherReasonRows() > 0) {
+                System.out.printf("%12d  (rows beyond the first %d distinct reasons)%n",
+                        summary.getOtherReasonRows(), ExportSummary.MAX_REASONS);
+            }
+        }
+    }
+
+    // Streams only the lines printed, however large the export; rows are counted by the summary
+    private void printPreview(ExportResult result, ExportOptions options) throws IOException {
+        if (options.getFormat() != OutputFormat.CSV || options.isRolling()) {
+            System.out.println("Preview is only available for a single CSV file");
+            return;
+        }
+        Path outputFile = Paths.get(result.outputFile());
+        long rows = result.summary().getRows();
+        if (rows <= 2L * preview) {
+            OutputPreview.head(outputFile, (int) rows + 1).forEach(System.out::println);
+            return;
+        }
+        OutputPreview.head(outputFile, preview + 1).forEach(System.out::println);
+        System.out.println("... " + (rows - 2L * preview) + " more rows ...");
+        OutputPreview.tail(outputFile, preview).forEach(System.out::println);
+    }
+}
@@ -0,0 +1,152 @@
+package com.chargebacks.processor.command;
+
+import com.chargebacks.processor.writer.Compression;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+// The first and last records of a CSV export, read without holding more than those records in
+// memory. A record is a line, or several when a quoted field holds a line break (RFC 4180, as
+// ChargebackLineEncoder writes them), so line breaks only end a record outside quotes. The tail of
+// a plain file is read backwards from its end; a gzip file can only be read from the start, so its
+// tail is kept in a ring of the last records while the file streams past.
+final class OutputPreview {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private OutputPreview() {
+    }
+
+    static List<String> head(Path file, int records) throws IOException {
+        List<String> head = new ArrayList<>(records);
+        try (BufferedReader reader = open(file)) {
+            String record;
+            while (head.size() < records && (record = readRecord(reader)) != null) {
+                head.add(record);
+            }
+        }
+        return head;
+    }
+
+    static List<String> tail(Path file, int records) throws IOException {
+        if (records <= 0) {
+            return List.of();
+        }
+        if (file.toString().endsWith(Compression.GZIP.getExtension())) {
+            Deque<String> tail = new ArrayDeque<>(records);
+            try (BufferedReader reader = open(file)) {
+                String record;
+                while ((record = readRecord(reader)) != null) {
+                    if (tail.size() == records) {
+                        tail.removeFirst();
+                    }
+                    tail.addLast(record);
+                }
+            }
+            return new ArrayList<>(tail);
+        }
+        return tailOfPlainFile(file, records);
+    }
+
+    // Joins lines while the record read so far has an open quote. Escaped quotes ("") come in
+    // pairs, so an odd count of quotes always means a field is still open.
+    private static String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        StringBuilder record = new StringBuilder(line);
+        int quotes = quotes(line);
+        while (quotes % 2 != 0 && (line = reader.readLine()) != null) {
+            record.append('\n').append(line);
+            quotes += quotes(line);
+        }
+        return record.toString();
+    }
+
+    private static int quotes(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    // Reads whole blocks backwards until the wanted records all start after a record break, so the
+    // first (possibly partial) record can be dropped. Decoding waits until then, so a character
+    // split across blocks is never decoded in halves.
+    private static List<String> tailOfPlainFile(Path file, int records) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = channel.size();
+            byte[] bytes = new byte[0];
+            List<String> tail = List.of();
+            while (position > 0 && tail.size() < records) {
+                int length = (int) Math.min(BLOCK_SIZE, position);
+                position -= length;
+                ByteBuffer block = ByteBuffer.allocate(length);
+                while (block.hasRemaining()) {
+                    if (channel.read(block, position + block.position()) < 0) {
+                        throw new EOFException("File " + file + " shrank while it was read");
+                    }
+                }
+                byte[] joined = Arrays.copyOf(block.array(), length + bytes.length);
+                System.arraycopy(bytes, 0, joined, length, bytes.length);
+                bytes = joined;
+                tail = lastRecords(bytes, records, position == 0);
+            }
+            return tail;
+        }
+    }
+
+    // The last records of the end of a file. The file ends outside quotes, so a line break is a
+    // record break exactly when an even number of quotes follows it. The first record in bytes is
+    // only complete when bytes starts at the beginning of the file.
+    private static List<String> lastRecords(byte[] bytes, int records, boolean fromStart) {
+        // The file's final line break ends the last record rather than starting another
+        int recordEnd = bytes.length > 0 && bytes[bytes.length - 1] == '\n' ? bytes.length - 1 : bytes.length;
+        List<String> tail = new ArrayList<>();
+        int quotes = 0;
+        for (int i = recordEnd - 1; i >= 0 && tail.size() < records; i--) {
+            if (bytes[i] == '"') {
+                quotes++;
+            } else if (bytes[i] == '\n' && quotes % 2 == 0) {
+                tail.add(0, decode(bytes, i + 1, recordEnd));
+                recordEnd = i;
+            }
+        }
+        if (fromStart && tail.size() < records && recordEnd > 0) {
+            tail.add(0, decode(bytes, 0, recordEnd));
+        }
+        return tail;
+    }
+
+    private static String decode(byte[] bytes, int from, int to) {
+        int end = to > from && bytes[to - 1] == '\r' ? to - 1 : to;
+        return new String(bytes, from, end - from, StandardCharsets.UTF_8);
+    }
+
+    private static BufferedReader open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.toString().endsWith(Compression.GZIP.getExtension())) {
+            in = new GZIPInputStream(in);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+}
@@ -1,19 +1,61 @@
 package com.chargebacks.processor.config;
 
+import com.chargebacks.processor.chunk.AdaptiveChunkSizePolicy;
+import com.chargebacks.processor.duplicate.DuplicateDetector;
+import com.chargebacks.processor.duplicate.DuplicateFilter;
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.job.Watermark;
+import com.chargebacks.processor.metrics.ExportMetricsRecorder;
+import com.chargebacks.processor.metrics.ExportMetricsStepListener;
 import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.partition.PartFileMergeTasklet;
+import com.chargebacks.processor.pipeline.PipelinedExportTasklet;
+import com.chargebacks.processor.partition.TimeRangePartitioner;
 import com.chargebacks.processor.processor.ChargebackItemProcessor;
+import com.chargebacks.processor.reader.ChargebackFilter;
 import com.chargebacks.processor.reader.ChargebackItemReader;
+import com.chargebacks.processor.reader.ChargebackKeysetItemReader;
+import com.chargebacks.processor.reader.FetchStrategy;
+import com.chargebacks.processor.rollup.RollupRecorder;
+import com.chargebacks.processor.rollup.RollupStepListener;
+import com.chargebacks.processor.summary.ExportSummaryListener;
 import com.chargebacks.processor.writer.ChargebackItemWriter;
+import com.chargebacks.processor.writer.Compression;
+import com.chargebacks.processor.writer.OutputFormat;
+import com.chargebacks.processor.writer.RollingChargebackItemWriter;
+import com.chargebacks.processor.writer.parquet.ChargebackParquetItemWriter;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
 @Configuration
 public class BatchConfig {
 
@@ -24,29 +66,395 @@ public class BatchConfig {
     private PlatformTransactionManager transactionManager;
 
     @Autowired
-    private ChargebackItemReader chargebackItemReader;
+    private DataSource dataSource;
 
     @Autowired
     private ChargebackItemProcessor chargebackItemProcessor;
 
     @Autowired
-    private ChargebackItemWriter chargebackItemWriter;
+    private ExportMetricsRecorder exportMetricsRecorder;
+
+    @Autowired
+    private RollupRecorder rollupRecorder;
+
+    @Autowired
+    private DuplicateDetector duplicateDetector;
+
+    @Value("${chargeback.metadata.store:database}")
+    private String metadataStore;
+
+    private final PlatformTransactionManager resourcelessTransactionManager = new ResourcelessTransactionManager();
 
     @Bean
     public Job chargebackExportJob() {
         return new JobBuilder("chargebackExportJob", jobRepository)
+                .listener(exportMetricsRecorder)
+                .listener(rollupRecorder)
+                .listener(duplicateDetector)
                 .start(chargebackExportStep())
                 .build();
     }
 
     @Bean
     public Step chargebackExportStep() {
+        AdaptiveChunkSizePolicy chunkSizePolicy = chargebackChunkSizePolicy(null, null);
+        ExportMetricsStepListener metricsListener = chargebackExportMetricsListener();
+        ExportSummaryListener summaryListener = chargebackExportSummaryListener(null);
+        RollupStepListener rollupListener = chargebackRollupListener(null);
         return new StepBuilder("chargebackExportStep", jobRepository)
-                .<Chargeback, Chargeback>chunk(100, transactionManager)
-                .reader(chargebackItemReader)
-                .processor(chargebackItemProcessor)
-                .writer(chargebackItemWriter)
+                .<Chargeback, Chargeback>chunk(chunkSizePolicy, stepTransactionManager())
+                .reader(chargebackExportReader(null, null, null, null, null, null, null, null))
+                .processor(chargebackExportProcessor(null, null))
+                .writer(chargebackExportWriter(null, null, null, null, null, null, null, null))
+                .listener((StepExecutionListener) chunkSizePolicy)
+                .listener((ChunkListener) chunkSizePolicy)
+                .listener((ItemWriteListener<Object>) chunkSizePolicy)
+                .listener((StepExecutionListener) metricsListener)
+                .listener((ChunkListener) metricsListener)
+                .listener((ItemReadListener<Chargeback>) metricsListener)
+                .listener((ItemProcessListener<Chargeback, Chargeback>) metricsListener)
+                .listener((ItemWriteListener<Chargeback>) metricsListener)
+                .listener((ItemWriteListener<Chargeback>) summaryListener)
+                .listener((StepExecutionListener) summaryListener)
+                .listener((StepExecutionListener) rollupListener)
+                .listener((ItemWriteListener<Chargeback>) rollupListener)
+                .stream(summaryListener)
                 .build();
     }
-}
 
+    @Bean
+    public Job chargebackPipelinedExportJob() {
+        return new JobBuilder("chargebackPipelinedExportJob", jobRepository)
+                .listener(exportMetricsRecorder)
+                .listener(rollupRecorder)
+                .listener(duplicateDetector)
+                .start(chargebackPipelinedExportStep())
+                .build();
+    }
+
+    @Bean
+    public Step chargebackPipelinedExportStep() {
+        return new StepBuilder("chargebackPipelinedExportStep", jobRepository)
+                .tasklet(chargebackPipelinedExportTasklet(null, null, null, null, null, null, null, null, null, null,
+                        null, null, null, null), stepTransactionManager())
+                // The tasklet runs the whole export at once, so only the step totals are recorded
+                .listener((StepExecutionListener) chargebackExportMetricsListener())
+                .listener((StepExecutionListener) chargebackRollupListener(null))
+                .build();
+    }
+
+    @Bean
+    public Job chargebackPartitionedExportJob() {
+        return new JobBuilder("chargebackPartitionedExportJob", jobRepository)
+                .listener(exportMetricsRecorder)
+                .listener(rollupRecorder)
+                .listener(duplicateDetector)
+                .start(chargebackPartitionedExportStep())
+                .next(chargebackPartFileMergeStep())
+                .build();
+    }
+
+    @Bean
+    public Step chargebackPartitionedExportStep() {
+        return new StepBuilder("chargebackPartitionedExportStep", jobRepository)
+                .partitioner("chargebackExportWorkerStep", chargebackTimeRangePartitioner(null, null, null, null))
+                .step(chargebackExportWorkerStep())
+                .taskExecutor(chargebackPartitionTaskExecutor(null))
+                .build();
+    }
+
+    @Bean
+    public Step chargebackExportWorkerStep() {
+        AdaptiveChunkSizePolicy chunkSizePolicy = chargebackChunkSizePolicy(null, null);
+        ExportMetricsStepListener metricsListener = chargebackExportMetricsListener();
+        ExportSummaryListener summaryListener = chargebackExportSummaryListener(null);
+        RollupStepListener rollupListener = chargebackRollupListener(null);
+        return new StepBuilder("chargebackExportWorkerStep", jobRepository)
+                .<Chargeback, Chargeback>chunk(chunkSizePolicy, stepTransactionManager())
+                .reader(chargebackSliceReader(null, null, null, null, null, null, null, null))
+                .processor(chargebackExportProcessor(null, null))
+                .writer(chargebackSliceWriter(null, null, null, null, null, null))
+                .listener((StepExecutionListener) chunkSizePolicy)
+                .listener((ChunkListener) chunkSizePolicy)
+                .listener((ItemWriteListener<Object>) chunkSizePolicy)
+                .listener((StepExecutionListener) metricsListener)
+                .listener((ChunkListener) metricsListener)
+                .listener((ItemReadListener<Chargeback>) metricsListener)
+                .listener((ItemProcessListener<Chargeback, Chargeback>) metricsListener)
+                .listener((ItemWriteListener<Chargeback>) metricsListener)
+                .listener((ItemWriteListener<Chargeback>) summaryListener)
+                .listener((StepExecutionListener) summaryListener)
+                .listener((StepExecutionListener) rollupListener)
+                .listener((ItemWriteListener<Chargeback>) rollupListener)
+                .stream(summaryListener)
+                .build();
+    }
+
+    @Bean
+    public Step chargebackPartFileMergeStep() {
+        return new StepBuilder("chargebackPartFileMergeStep", jobRepository)
+                .tasklet(chargebackPartFileMergeTasklet(null, null, null, null, null, null, null),
+                        stepTransactionManager())
+                .build();
+    }
+
+    // The steps only read from the export database. Once the metadata is kept elsewhere (see
+    // MetadataStoreConfig) there is nothing for a chunk transaction to commit there, and the
+    // resourceless manager still gives the writers their commit-time flush.
+    private PlatformTransactionManager stepTransactionManager() {
+        return "database".equalsIgnoreCase(metadataStore) ? transactionManager : resourcelessTransactionManager;
+    }
+
+    // One per step execution, so each partition worker tunes its own chunk size
+    @Bean
+    @StepScope
+    public AdaptiveChunkSizePolicy chargebackChunkSizePolicy(
+            @Value("#{jobParameters['" + ExportOptions.MIN_CHUNK_SIZE + "']}") Long minChunkSize,
+            @Value("#{jobParameters['" + ExportOptions.MAX_CHUNK_SIZE + "']}") Long maxChunkSize) {
+        return new AdaptiveChunkSizePolicy(minChunkSize.intValue(), maxChunkSize.intValue());
+    }
+
+    @Bean
+    @StepScope
+    public ExportMetricsStepListener chargebackExportMetricsListener() {
+        return new ExportMetricsStepListener(exportMetricsRecorder);
+    }
+
+    @Bean(destroyMethod = "")
+    @StepScope
+    public ExportSummaryListener chargebackExportSummaryListener(
+            @Value("#{stepExecution.jobParameters}") JobParameters jobParameters) {
+        return new ExportSummaryListener(ExportOptions.isRestartable(jobParameters));
+    }
+
+    @Bean
+    @StepScope
+    public RollupStepListener chargebackRollupListener(
+            @Value("#{jobParameters['" + ExportOptions.ROLLUP + "']}") String rollup) {
+        return new RollupStepListener(rollupRecorder, Boolean.parseBoolean(rollup));
+    }
+
+    // The step opens and closes these streams itself, so no inferred destroy method
+    @Bean(destroyMethod = "")
+    @StepScope
+    public ItemStreamReader<Chargeback> chargebackExportReader(
+            @Value("#{jobParameters['startTimestamp']}") String startTimestamp,
+            @Value("#{jobParameters['endTimestamp']}") String endTimestamp,
+            @Value("#{jobParameters['" + ExportOptions.INCREMENTAL + "']}") String incremental,
+            @Value("#{jobParameters['" + ExportOptions.READER_MODE + "']}") String readerMode,
+            @Value("#{jobParameters['" + ExportOptions.PAGE_SIZE + "']}") Long pageSize,
+            @Value("#{jobParameters['" + ExportOptions.FETCH_STRATEGY + "']}") String fetchStrategy,
+            @Value("#{jobParameters['" + ExportOptions.FETCH_SIZE + "']}") Long fetchSize,
+            @Value("#{stepExecution.jobParameters}") JobParameters jobParameters) {
+        return exportReader(startTimestamp, endTimestamp, incremental, readerMode, pageSize, fetchStrategy, fetchSize,
+                jobParameters);
+    }
+
+    // A reader of its own for each job, so exports of different ranges can run at the same time.
+    // Incremental exports always read by keyset, resuming just past the watermark passed in as job
+    // parameters; the reader saves where it stopped in the step's execution context, which is where
+    // ChargebackJobLauncher picks the next watermark up from.
+    private ItemStreamReader<Chargeback> exportReader(String startTimestamp, String endTimestamp, String incremental,
+                                                      String readerMode, Long pageSize, String fetchStrategy,
+                                                      Long fetchSize, JobParameters jobParameters) {
+        if (Boolean.parseBoolean(incremental)) {
+            ChargebackKeysetItemReader reader = (ChargebackKeysetItemReader) newReader(
+                    LocalDateTime.parse(startTimestamp), LocalDateTime.parse(endTimestamp), true,
+                    ExportOptions.ReaderMode.KEYSET.name(), pageSize, fetchStrategy, fetchSize, jobParameters);
+            Watermark watermark = Watermark.from(jobParameters);
+            if (watermark != null) {
+                reader.setStartPosition(watermark.createdTime(), watermark.tieCount());
+            }
+            return reader;
+        }
+        return newReader(LocalDateTime.parse(startTimestamp), LocalDateTime.parse(endTimestamp), true,
+                readerMode, pageSize, fetchStrategy, fetchSize, jobParameters);
+    }
+
+    // Filters and column choices go into the reader's query, so rows and columns the export
+    // leaves out never leave the database
+    private ItemStreamReader<Chargeback> newReader(LocalDateTime start, LocalDateTime end, boolean endInclusive,
+                                                   String readerMode, Long pageSize, String fetchStrategy,
+                                                   Long fetchSize, JobParameters jobParameters) {
+        Set<ChargebackColumn> columns = ExportOptions.readColumns(jobParameters);
+        ChargebackFilter filter = ExportOptions.filter(jobParameters);
+        if (ExportOptions.ReaderMode.KEYSET.name().equals(readerMode)) {
+            ChargebackKeysetItemReader reader = new ChargebackKeysetItemReader(dataSource);
+            reader.setTimestampRange(start, end, endInclusive);
+            reader.setPageSize(pageSize.intValue());
+            reader.setColumns(columns);
+            reader.setFilter(filter);
+            return reader;
+        }
+        ChargebackItemReader reader = new ChargebackItemReader(dataSource);
+        reader.setTimestampRange(start, end, endInclusive);
+        reader.setFetchStrategy(FetchStrategy.valueOf(fetchStrategy), fetchSize.intValue());
+        reader.setColumns(columns);
+        reader.setFilter(filter);
+        return reader;
+    }
+
+    @Bean
+    @StepScope
+    public ItemProcessor<Chargeback, Chargeback> chargebackExportProcessor(
+            @Value("#{jobParameters['" + ExportOptions.DUPLICATES + "']}") String duplicates,
+            @Value("#{stepExecution.jobExecutionId}") Long jobExecutionId) {
+        return exportProcessor(duplicates, jobExecutionId);
+    }
+
+    // Partition workers and pipelined encoders all check rows against the one index the
+    // DuplicateDetector built for the job, so a duplicate is found whichever slice or batch it is in
+    private ItemProcessor<Chargeback, Chargeback> exportProcessor(String duplicates, Long jobExecutionId) {
+        if (duplicates == null || ExportOptions.DuplicateMode.OFF.name().equals(duplicates)) {
+            return chargebackItemProcessor;
+        }
+        return new DuplicateFilter(chargebackItemProcessor, duplicateDetector.index(jobExecutionId),
+                ExportOptions.DuplicateMode.DROP.name().equals(duplicates));
+    }
+
+    @Bean
+    @StepScope
+    public PipelinedExportTasklet chargebackPipelinedExportTasklet(
+            @Value("#{jobParameters['startTimestamp']}") String startTimestamp,
+            @Value("#{jobParameters['endTimestamp']}") String endTimestamp,
+            @Value("#{jobParameters['" + ExportOptions.INCREMENTAL + "']}") String incremental,
+            @Value("#{jobParameters['" + ExportOptions.READER_MODE + "']}") String readerMode,
+            @Value("#{jobParameters['" + ExportOptions.PAGE_SIZE + "']}") Long pageSize,
+            @Value("#{jobParameters['" + ExportOptions.FETCH_STRATEGY + "']}") String fetchStrategy,
+            @Value("#{jobParameters['" + ExportOptions.FETCH_SIZE + "']}") Long fetchSize,
+            @Value("#{jobParameters['outputFile']}") String outputFile,
+            @Value("#{jobParameters['" + ExportOptions.COMPRESSION + "']}") String compression,
+            @Value("#{jobParameters['" + ExportOptions.COMPRESSION_THREADS + "']}") Long compressionThreads,
+            @Value("#{jobParameters['" + ExportOptions.ENCODER_THREADS + "']}") Long encoderThreads,
+            @Value("#{jobParameters['" + ExportOptions.DUPLICATES + "']}") String duplicates,
+            @Value("#{stepExecution.jobExecutionId}") Long jobExecutionId,
+            @Value("#{stepExecution.jobParameters}") JobParameters jobParameters) {
+        // The whole export is one transaction, so the file is written through rather than held
+        // back until commit
+        ChargebackItemWriter writer = new ChargebackItemWriter();
+        writer.setCompression(Compression.valueOf(compression), compressionThreads.intValue());
+        writer.setOutputFile(outputFile);
+        writer.setColumns(ExportOptions.columns(jobParameters));
+        writer.configureWriter(ExportOptions.header(jobParameters));
+        writer.setTransactional(false);
+        int threads = encoderThreads > 0 ? encoderThreads.intValue() : Runtime.getRuntime().availableProcessors();
+        // The reader runs on its own thread, outside step scope, so it is a plain reader rather than
+        // the step-scoped proxy
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(
+                exportReader(startTimestamp, endTimestamp, incremental, readerMode, pageSize, fetchStrategy, fetchSize,
+                        jobParameters),
+                exportProcessor(duplicates, jobExecutionId), writer, threads);
+        tasklet.setWriteListener(chargebackRollupListener(null));
+        return tasklet;
+    }
+
+    @Bean(destroyMethod = "")
+    @StepScope
+    public ItemStreamWriter<Chargeback> chargebackExportWriter(
+            @Value("#{jobParameters['" + ExportOptions.FORMAT + "']}") String format,
+            @Value("#{jobParameters['outputFile']}") String outputFile,
+            @Value("#{jobParameters['" + ExportOptions.COMPRESSION + "']}") String compression,
+            @Value("#{jobParameters['" + ExportOptions.COMPRESSION_THREADS + "']}") Long compressionThreads,
+            @Value("#{jobParameters['" + ExportOptions.MAX_FILE_ROWS + "']}") Long maxFileRows,
+            @Value("#{jobParameters['" + ExportOptions.MAX_FILE_BYTES + "']}") Long maxFileBytes,
+            @Value("#{stepExecution.jobParameters}") JobParameters jobParameters,
+            @Value("#{stepExecution}") StepExecution stepExecution) {
+        List<ChargebackColumn> columns = ExportOptions.columns(jobParameters);
+        if (OutputFormat.PARQUET.name().equals(format)) {
+            ChargebackParquetItemWriter writer = new ChargebackParquetItemWriter(outputFile);
+            writer.setCompression(Compression.valueOf(compression));
+            writer.setColumns(columns);
+            return writer;
+        }
+        if (maxFileRows > 0 || maxFileBytes > 0) {
+            int threads = compressionThreads > 0 ? compressionThreads.intValue()
+                    : Runtime.getRuntime().availableProcessors();
+            RollingChargebackItemWriter writer = new RollingChargebackItemWriter(outputFile, maxFileRows,
+                    maxFileBytes, Compression.valueOf(compression), threads);
+            writer.setColumns(columns);
+            writer.setStepExecution(stepExecution);
+            writer.setOutputBytesListener(bytes ->
+                    exportMetricsRecorder.recordOutputBytes(stepExecution.getJobExecutionId(), bytes));
+            return writer;
+        }
+        ChargebackItemWriter writer = new ChargebackItemWriter();
+        writer.setCompression(Compression.valueOf(compression), compressionThreads.intValue());
+        writer.setOutputFile(outputFile);
+        writer.setColumns(columns);
+        writer.configureWriter(ExportOptions.header(jobParameters));
+        return writer;
+    }
+
+    @Bean
+    @StepScope
+    public TimeRangePartitioner chargebackTimeRangePartitioner(
+            @Value("#{jobParameters['startTimestamp']}") String startTimestamp,
+            @Value("#{jobParameters['endTimestamp']}") String endTimestamp,
+            @Value("#{jobParameters['" + ExportOptions.WORKERS + "']}") Long workers,
+            @Value("#{jobParameters['" + ExportOptions.SLICE_MINUTES + "']}") Long sliceMinutes) {
+        return new TimeRangePartitioner(LocalDateTime.parse(startTimestamp), LocalDateTime.parse(endTimestamp),
+                workers.intValue(), sliceMinutes);
+    }
+
+    @Bean
+    @StepScope
+    public TaskExecutor chargebackPartitionTaskExecutor(
+            @Value("#{jobParameters['" + ExportOptions.WORKERS + "']}") Long workers) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("chargeback-worker-");
+        taskExecutor.setConcurrencyLimit(workers.intValue());
+        return taskExecutor;
+    }
+
+    @Bean(destroyMethod = "")
+    @StepScope
+    public ItemStreamReader<Chargeback> chargebackSliceReader(
+            @Value("#{stepExecutionContext['" + TimeRangePartitioner.SLICE_START + "']}") String sliceStart,
+            @Value("#{stepExecutionContext['" + TimeRangePartitioner.SLICE_END + "']}") String sliceEnd,
+            @Value("#{stepExecutionContext['" + TimeRangePartitioner.LAST_SLICE + "']}") Boolean lastSlice,
+            @Value("#{jobParameters['" + ExportOptions.READER_MODE + "']}") String readerMode,
+            @Value("#{jobParameters['" + ExportOptions.PAGE_SIZE + "']}") Long pageSize,
+            @Value("#{jobParameters['" + ExportOptions.FETCH_STRATEGY + "']}") String fetchStrategy,
+            @Value("#{jobParameters['" + ExportOptions.FETCH_SIZE + "']}") Long fetchSize,
+            @Value("#{stepExecution.jobParameters}") JobParameters jobParameters) {
+        return newReader(LocalDateTime.parse(sliceStart), LocalDateTime.parse(sliceEnd), lastSlice,
+                readerMode, pageSize, fetchStrategy, fetchSize, jobParameters);
+    }
+
+    @Bean(destroyMethod = "")
+    @StepScope
+    public ItemStreamWriter<Chargeback> chargebackSliceWriter(
+            @Value("#{jobParameters['outputFile']}") String outputFile,
+            @Value("#{stepExecutionContext['" + TimeRangePartitioner.SLICE_INDEX + "']}") Integer sliceIndex,
+            @Value("#{jobParameters['" + ExportOptions.WORKERS + "']}") Long workers,
+            @Value("#{jobParameters['" + ExportOptions.COMPRESSION + "']}") String compression,
+            @Value("#{jobParameters['" + ExportOptions.COMPRESSION_THREADS + "']}") Long compressionThreads,
+            @Value("#{stepExecution.jobParameters}") JobParameters jobParameters) {
+        ChargebackItemWriter writer = new ChargebackItemWriter();
+        // Workers compress concurrently, so the thread budget is shared between them
+        int threads = compressionThreads > 0 ? compressionThreads.intValue()
+                : Runtime.getRuntime().availableProcessors();
+        writer.setCompression(Compression.valueOf(compression), Math.max(1, threads / workers.intValue()));
+        writer.setOutputFile(TimeRangePartitioner.partFileName(outputFile, sliceIndex));
+        writer.setColumns(ExportOptions.columns(jobParameters));
+        writer.configureWriter(false);
+        return writer;
+    }
+
+    @Bean
+    @StepScope
+    public Tasklet chargebackPartFileMergeTasklet(
+            @Value("#{jobParameters['outputFile']}") String outputFile,
+            @Value("#{jobParameters['startTimestamp']}") String startTimestamp,
+            @Value("#{jobParameters['endTimestamp']}") String endTimestamp,
+            @Value("#{jobParameters['" + ExportOptions.WORKERS + "']}") Long workers,
+            @Value("#{jobParameters['" + ExportOptions.SLICE_MINUTES + "']}") Long sliceMinutes,
+            @Value("#{jobParameters['" + ExportOptions.COMPRESSION + "']}") String compression,
+            @Value("#{stepExecution.jobParameters}") JobParameters jobParameters) {
+        TimeRangePartitioner partitioner = new TimeRangePartitioner(LocalDateTime.parse(startTimestamp),
+                LocalDateTime.parse(endTimestamp), workers.intValue(), sliceMinutes);
+        PartFileMergeTasklet tasklet = new PartFileMergeTasklet(outputFile, partitioner.sliceCount(),
+                Compression.valueOf(compression), ExportOptions.columns(jobParameters));
+        tasklet.setIncludeHeader(ExportOptions.header(jobParameters));
+        return tasklet;
+    }
+}
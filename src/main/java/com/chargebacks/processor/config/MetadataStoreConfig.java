@@ -0,0 +1,91 @@
+package com.chargebacks.processor.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.batch.core.configuration.support.DefaultBatchConfiguration;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+// Keeps Spring Batch's job and step metadata in an embedded H2 database instead of BATCH_* tables
+// in the database being exported from, so chunk commits don't add writes and round trips there.
+// "memory" loses the metadata when the process exits, so a failed export starts over; "file" keeps
+// it in the output directory, so the next run on the same machine can still restart it. Replaces
+// Spring Boot's batch auto-configuration, which would create the tables in the export datasource.
+@Configuration
+@ConditionalOnExpression("!'${chargeback.metadata.store:database}'.equalsIgnoreCase('database')")
+public class MetadataStoreConfig extends DefaultBatchConfiguration implements DisposableBean {
+
+    @Value("${chargeback.metadata.store}")
+    private String store;
+
+    @Value("${chargeback.metadata.path:${chargeback.output.directory:./output}/batch-metadata}")
+    private String path;
+
+    private HikariDataSource metadataDataSource;
+    private PlatformTransactionManager metadataTransactionManager;
+
+    @Override
+    protected synchronized DataSource getDataSource() {
+        if (metadataDataSource == null) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("batch-metadata");
+            // Kept open until destroy() rather than closed with the last connection
+            dataSource.setJdbcUrl(isFile()
+                    ? "jdbc:h2:file:" + Paths.get(path).toAbsolutePath() + ";DB_CLOSE_DELAY=-1"
+                    : "jdbc:h2:mem:batch-metadata-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            createSchemaIfMissing(dataSource);
+            metadataDataSource = dataSource;
+        }
+        return metadataDataSource;
+    }
+
+    @Override
+    protected synchronized PlatformTransactionManager getTransactionManager() {
+        if (metadataTransactionManager == null) {
+            metadataTransactionManager = new JdbcTransactionManager(getDataSource());
+        }
+        return metadataTransactionManager;
+    }
+
+    private boolean isFile() {
+        if ("file".equalsIgnoreCase(store)) {
+            return true;
+        }
+        if ("memory".equalsIgnoreCase(store)) {
+            return false;
+        }
+        throw new IllegalArgumentException("chargeback.metadata.store must be database, memory or file, not " + store);
+    }
+
+    private static void createSchemaIfMissing(DataSource dataSource) {
+        Integer tables = new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'BATCH_JOB_INSTANCE'", Integer.class);
+        if (tables == null || tables == 0) {
+            new ResourceDatabasePopulator(new ClassPathResource("org/springframework/batch/core/schema-h2.sql"))
+                    .execute(dataSource);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (metadataDataSource != null) {
+            try {
+                new JdbcTemplate(metadataDataSource).execute("SHUTDOWN");
+            } finally {
+                metadataDataSource.close();
+                metadataDataSource = null;
+            }
+        }
+    }
+}
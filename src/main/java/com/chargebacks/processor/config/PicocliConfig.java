@@ -2,6 +2,7 @@ package com.chargebacks.processor.config;
 
 import com.chargebacks.processor.command.ChargebackCommand;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import picocli.CommandLine;
@@ -10,9 +11,12 @@ import picocli.CommandLine;
 public class PicocliConfig {
 
     @Bean
+    @ConditionalOnProperty(name = "chargeback.cli.enabled", havingValue = "true", matchIfMissing = true)
     public CommandLineRunner commandLineRunner(ChargebackCommand chargebackCommand) {
         return args -> {
-            int exitCode = new CommandLine(chargebackCommand).execute(args);
+            int exitCode = new CommandLine(chargebackCommand)
+                    .setCaseInsensitiveEnumValuesAllowed(true)
+                    .execute(args);
             System.exit(exitCode);
         };
     }
@@ -0,0 +1,47 @@
+package com.chargebacks.processor.duplicate;
+
+// A Bloom filter over 64-bit hashes in a bit array allocated once at its full size. Each hash
+// sets numHashes bits picked by double hashing from its two halves, so adding a value never
+// allocates. A value that was added always tests as present; one that wasn't may too, with a
+// probability that grows as the array fills. Not thread safe.
+class BloomFilter {
+
+    private final long[] bits;
+    private final long bitMask;
+    private final int numHashes;
+
+    // Rounds the budget down to a power of two bits and picks the number of hashes that gives the
+    // fewest false positives once expectedValues have been added
+    BloomFilter(long memoryBytes, long expectedValues) {
+        long bitCount = Long.highestOneBit(Math.max(64, Math.min(memoryBytes, (long) Integer.MAX_VALUE * 8) * 8));
+        bits = new long[(int) (bitCount >>> 6)];
+        bitMask = bitCount - 1;
+        long perValue = bitCount / Math.max(1, expectedValues);
+        numHashes = (int) Math.max(1, Math.min(16, Math.round(perValue * Math.log(2))));
+    }
+
+    // Adds the hash and returns whether it may have been added before: false means certainly not
+    boolean put(long hash) {
+        long h1 = hash;
+        long h2 = (hash >>> 32 | hash << 32) | 1;
+        boolean present = true;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) {
+                present = false;
+                bits[word] |= mask;
+            }
+        }
+        return present;
+    }
+
+    long bitCount() {
+        return bitMask + 1;
+    }
+
+    int numHashes() {
+        return numHashes;
+    }
+}
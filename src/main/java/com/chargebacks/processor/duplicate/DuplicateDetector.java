@@ -0,0 +1,118 @@
+package com.chargebacks.processor.duplicate;
+
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.reader.ChargebackFilter;
+import com.chargebacks.processor.reader.ChargebackItemReader;
+import com.chargebacks.processor.reader.FetchStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Builds the DuplicateIndex of each export job that checks for duplicates before its steps run,
+// by streaming the job's whole range through a DuplicateIndex.Builder, and hands it to the steps'
+// DuplicateFilters. The pass streams rows off the database rather than buffering them, so it
+// needs no more memory than the Bloom filter and the suspect keys. Once the job ends, the number
+// of duplicate rows found is left in the job execution's context under DUPLICATE_ROWS.
+@Component
+public class DuplicateDetector implements JobExecutionListener {
+
+    public static final String DUPLICATE_ROWS = "duplicates.rows";
+
+    private static final Logger logger = LoggerFactory.getLogger(DuplicateDetector.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final Map<Long, DuplicateIndex> running = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        JobParameters parameters = jobExecution.getJobParameters();
+        if (duplicateMode(parameters) == ExportOptions.DuplicateMode.OFF) {
+            return;
+        }
+        LocalDateTime start = LocalDateTime.parse(parameters.getString("startTimestamp"));
+        LocalDateTime end = LocalDateTime.parse(parameters.getString("endTimestamp"));
+        try {
+            running.put(jobExecution.getId(), scan(start, end, ExportOptions.filter(parameters),
+                    parameters.getLong(ExportOptions.DUPLICATE_MEMORY),
+                    parameters.getLong(ExportOptions.FETCH_SIZE).intValue()));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to scan " + start + " to " + end + " for duplicates", e);
+        }
+    }
+
+    // Only the rows the export's filter lets through, and only their key columns, are read
+    private DuplicateIndex scan(LocalDateTime start, LocalDateTime end, ChargebackFilter filter, long memoryBytes,
+                                int fetchSize) throws Exception {
+        long startNanos = System.nanoTime();
+        List<Object> arguments = new ArrayList<>(List.of(start, end));
+        arguments.addAll(filter.arguments());
+        Long expectedRows = new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM Chargebacks WHERE created_time >= ? AND created_time <= ?" + filter.sql(),
+                Long.class, arguments.toArray());
+        DuplicateIndex.Builder builder = new DuplicateIndex.Builder(memoryBytes, expectedRows != null ? expectedRows : 0);
+
+        ChargebackItemReader reader = new ChargebackItemReader(dataSource);
+        reader.setName("ChargebackDuplicateScan");
+        reader.setSaveState(false);
+        reader.setTimestampRange(start, end);
+        reader.setColumns(ExportOptions.DUPLICATE_KEY_COLUMNS);
+        reader.setFilter(filter);
+        reader.setFetchStrategy(FetchStrategy.STREAMING, fetchSize);
+        reader.afterPropertiesSet();
+        reader.open(new ExecutionContext());
+        try {
+            Chargeback item;
+            while ((item = reader.read()) != null) {
+                builder.add(item);
+            }
+        } finally {
+            reader.close();
+        }
+
+        DuplicateIndex index = builder.build();
+        logger.info("Scanned {} rows for duplicates in {} ms with a {}-bit filter: {} suspect keys",
+                builder.getRows(), (System.nanoTime() - startNanos) / 1_000_000, builder.getFilterBits(),
+                index.getSuspectKeys());
+        return index;
+    }
+
+    // Null when the job doesn't check for duplicates
+    public DuplicateIndex index(Long jobExecutionId) {
+        return running.get(jobExecutionId);
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        DuplicateIndex index = running.remove(jobExecution.getId());
+        if (index == null) {
+            return;
+        }
+        jobExecution.getExecutionContext().putLong(DUPLICATE_ROWS, index.getDuplicateRows());
+        if (index.getDuplicateRows() > 0) {
+            logger.warn("{} duplicate rows {}", index.getDuplicateRows(),
+                    duplicateMode(jobExecution.getJobParameters()) == ExportOptions.DuplicateMode.DROP
+                            ? "left out of the export" : "found in the export");
+        }
+    }
+
+    private static ExportOptions.DuplicateMode duplicateMode(JobParameters parameters) {
+        String mode = parameters.getString(ExportOptions.DUPLICATES);
+        return mode != null ? ExportOptions.DuplicateMode.valueOf(mode) : ExportOptions.DuplicateMode.OFF;
+    }
+}
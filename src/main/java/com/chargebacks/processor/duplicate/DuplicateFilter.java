@@ -0,0 +1,40 @@
+package com.chargebacks.processor.duplicate;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemProcessor;
+
+// Runs after the export's processor and checks each row against the job's DuplicateIndex. With
+// drop set, a duplicate is filtered out and Spring Batch counts it as filtered; otherwise it is
+// written as usual and only flagged, by a log line for each of the first few and the count the
+// index keeps. Safe to call from several threads, as the pipelined export's encoders do.
+public class DuplicateFilter implements ItemProcessor<Chargeback, Chargeback> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DuplicateFilter.class);
+
+    private static final int LOGGED_DUPLICATES = 10;
+
+    private final ItemProcessor<Chargeback, Chargeback> delegate;
+    private final DuplicateIndex index;
+    private final boolean drop;
+
+    public DuplicateFilter(ItemProcessor<Chargeback, Chargeback> delegate, DuplicateIndex index, boolean drop) {
+        this.delegate = delegate;
+        this.index = index;
+        this.drop = drop;
+    }
+
+    @Override
+    public Chargeback process(Chargeback chargeback) throws Exception {
+        Chargeback item = delegate.process(chargeback);
+        if (item == null || !index.isDuplicate(item)) {
+            return item;
+        }
+        if (index.getDuplicateRows() <= LOGGED_DUPLICATES) {
+            logger.info("Duplicate of {} {} {} on {} created {}", item.getMerchandiseRef(), item.getDisputedAmt(),
+                    item.getDisputedCurr(), item.getDisputedDt(), item.getCreatedTime());
+        }
+        return drop ? null : item;
+    }
+}
@@ -0,0 +1,109 @@
+package com.chargebacks.processor.duplicate;
+
+import com.chargebacks.processor.model.Chargeback;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tells, as an export's rows go by, whether a row repeats the DuplicateKey of one that came
+// before it, without holding every key the export has seen.
+//
+// A Builder first passes over the rows with a Bloom filter of a fixed size. A key that was
+// certainly not in the filter when it was added occurs once so far; any other key is a suspect
+// and is kept exactly. Every key that occurs more than once is a suspect, plus the few the filter
+// mistook, so the exact set stays small however many rows there are. During the export, a row
+// whose key isn't a suspect is unique; for a suspect the first row checked with the key is unique
+// and every later one is a duplicate, so a key the filter mistook is never reported. Thread safe
+// once built, as pipelined encoders and partition workers share one index; a Builder is not. With
+// several threads checking rows, "first" is whichever copy wins the race, not the earliest row, so
+// the count is exact but the copy that is unique varies between runs. ExportOptions therefore only
+// allows dropping duplicates in single-threaded exports.
+public class DuplicateIndex {
+
+    private final Set<DuplicateKey> suspects;
+    private final long[] suspectHashes;
+    private final Set<DuplicateKey> seen = ConcurrentHashMap.newKeySet();
+    private final AtomicLong duplicateRows = new AtomicLong();
+
+    private DuplicateIndex(Set<DuplicateKey> suspects, long[] suspectHashes) {
+        this.suspects = suspects;
+        this.suspectHashes = suspectHashes;
+    }
+
+    public boolean isDuplicate(Chargeback item) {
+        if (!containsHash(DuplicateKey.hash(item))) {
+            return false;
+        }
+        DuplicateKey key = DuplicateKey.of(item);
+        if (!suspects.contains(key) || seen.add(key)) {
+            return false;
+        }
+        duplicateRows.incrementAndGet();
+        return true;
+    }
+
+    public long getDuplicateRows() {
+        return duplicateRows.get();
+    }
+
+    public int getSuspectKeys() {
+        return suspects.size();
+    }
+
+    // Open addressing over the suspects' hashes, at most half full, with 0 as the empty slot. Rows
+    // that aren't suspects are turned away here without building their key.
+    private boolean containsHash(long hash) {
+        long stored = hash != 0 ? hash : 1;
+        int mask = suspectHashes.length - 1;
+        for (int slot = (int) stored & mask; suspectHashes[slot] != 0; slot = (slot + 1) & mask) {
+            if (suspectHashes[slot] == stored) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Builder {
+
+        private final BloomFilter filter;
+        private final Set<DuplicateKey> suspects = new HashSet<>();
+        private long rows;
+
+        // memoryBytes is the Bloom filter's size; expectedRows only tunes it
+        public Builder(long memoryBytes, long expectedRows) {
+            filter = new BloomFilter(memoryBytes, expectedRows);
+        }
+
+        public void add(Chargeback item) {
+            rows++;
+            if (filter.put(DuplicateKey.hash(item))) {
+                suspects.add(DuplicateKey.of(item));
+            }
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getFilterBits() {
+            return filter.bitCount();
+        }
+
+        public DuplicateIndex build() {
+            long[] hashes = new long[Integer.highestOneBit(Math.max(1, suspects.size()) * 2) * 2];
+            int mask = hashes.length - 1;
+            for (DuplicateKey key : suspects) {
+                long hash = key.hash();
+                long stored = hash != 0 ? hash : 1;
+                int slot = (int) stored & mask;
+                while (hashes[slot] != 0 && hashes[slot] != stored) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = stored;
+            }
+            return new DuplicateIndex(suspects, hashes);
+        }
+    }
+}
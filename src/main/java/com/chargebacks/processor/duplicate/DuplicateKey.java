@@ -0,0 +1,72 @@
+package com.chargebacks.processor.duplicate;
+
+import com.chargebacks.processor.model.Chargeback;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// The columns that make two chargebacks the same charge. The amount is compared by value, so 1.5
+// and 1.50 match whether the row carries minor units or a BigDecimal.
+record DuplicateKey(String merchandiseRef, BigDecimal disputedAmt, String disputedCurr, LocalDate disputedDt) {
+
+    private static final long NULL_HASH = 0x5DEECE66DL;
+
+    static DuplicateKey of(Chargeback item) {
+        BigDecimal amount = item.getDisputedAmt();
+        return new DuplicateKey(item.getMerchandiseRef(), amount != null ? amount.stripTrailingZeros() : null,
+                item.getDisputedCurr(), item.getDisputedDt());
+    }
+
+    // A 64-bit hash of the same columns that allocates nothing for the usual minor-unit row. Equal
+    // keys always hash alike; a different key hashing alike is only a false alarm for the caller
+    // to rule out.
+    static long hash(Chargeback item) {
+        long amountHash = item.hasMinorAmount() ? item.getDisputedAmtMinor() : amountHash(item.getDisputedAmt());
+        return hash(item.getMerchandiseRef(), amountHash, item.getDisputedCurr(), item.getDisputedDt());
+    }
+
+    long hash() {
+        return hash(merchandiseRef, amountHash(disputedAmt), disputedCurr, disputedDt);
+    }
+
+    private static long hash(String merchandiseRef, long amountHash, String disputedCurr, LocalDate disputedDt) {
+        long h = hash(merchandiseRef);
+        h = h * 31 + hash(disputedCurr);
+        h = h * 31 + (disputedDt != null ? disputedDt.toEpochDay() : NULL_HASH);
+        h = h * 31 + amountHash;
+        return mix(h);
+    }
+
+    private static long amountHash(BigDecimal amount) {
+        if (amount == null) {
+            return NULL_HASH;
+        }
+        try {
+            // Hashes as the minor-unit row with the same value would
+            return amount.setScale(Chargeback.AMOUNT_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return amount.stripTrailingZeros().hashCode();
+        }
+    }
+
+    private static long hash(String value) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        long h = 1125899906842597L;
+        for (int i = 0; i < value.length(); i++) {
+            h = h * 31 + value.charAt(i);
+        }
+        return h;
+    }
+
+    // The finalizer of MurmurHash3's 64-bit hash, so every input bit reaches every output bit
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,83 @@
+package com.chargebacks.processor.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Exports many ranges from one process, a bounded number at a time, so a backfill pays for
+// Spring Boot startup, the metadata schema check and a warm connection pool once instead of once
+// per range. A failed range doesn't stop the others; rerunning the backfill restarts it.
+@Component
+public class BackfillRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillRunner.class);
+
+    public record Result(ExportRange range, String outputFile, long elapsedMillis, Exception error) {
+
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    // Results come back in the order of the ranges, whatever order they finish in
+    public List<Result> run(List<ExportRange> ranges, ExportOptions options, int parallelism)
+            throws InterruptedException {
+        options.validate();
+        if (options.isIncremental()) {
+            throw new IllegalArgumentException("Incremental exports can't be backfilled");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (new HashSet<>(ranges).size() != ranges.size()) {
+            // Both would write the same output file
+            throw new IllegalArgumentException("Backfill ranges must not repeat");
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, ranges.size())),
+                runnable -> new Thread(runnable, "chargeback-backfill-" + threadCount.incrementAndGet()));
+        try {
+            List<Callable<Result>> exports = new ArrayList<>(ranges.size());
+            for (ExportRange range : ranges) {
+                exports.add(() -> export(range, options));
+            }
+            List<Result> results = new ArrayList<>(ranges.size());
+            for (Future<Result> future : executor.invokeAll(exports)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Backfill export failed unexpectedly", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result export(ExportRange range, ExportOptions options) {
+        long begin = System.nanoTime();
+        try {
+            String outputFile = jobLauncher.launchJob(range.start(), range.end(), options);
+            return new Result(range, outputFile, (System.nanoTime() - begin) / 1_000_000, null);
+        } catch (Exception e) {
+            log.error("Backfill export of {} to {} failed", range.start(), range.end(), e);
+            return new Result(range, null, (System.nanoTime() - begin) / 1_000_000, e);
+        }
+    }
+}
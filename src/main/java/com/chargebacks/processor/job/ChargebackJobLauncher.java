@@ -1,54 +1,488 @@
 package com.chargebacks.processor.job;
 
-import com.chargebacks.processor.reader.ChargebackItemReader;
+import com.chargebacks.processor.cache.ExportCache;
+import com.chargebacks.processor.cache.Fingerprint;
+import com.chargebacks.processor.cache.SegmentStore;
+import com.chargebacks.processor.duplicate.DuplicateDetector;
+import com.chargebacks.processor.metrics.ExportMetricsRecorder;
+import com.chargebacks.processor.reader.ChargebackKeysetItemReader;
+import com.chargebacks.processor.rollup.RollupRecorder;
+import com.chargebacks.processor.summary.ExportSummary;
 import com.chargebacks.processor.writer.ChargebackItemWriter;
+import com.chargebacks.processor.writer.OutputFormat;
+import com.chargebacks.processor.writer.RollingChargebackItemWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.DefaultJobKeyGenerator;
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobKeyGenerator;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class ChargebackJobLauncher {
 
+    // Identifies the job instance together with the range and the output-shaping options
+    public static final String RUN_ID = "run.id";
+
+    private static final String LATEST_RUN_ID = "latest.run.id";
+
+    private static final Logger log = LoggerFactory.getLogger(ChargebackJobLauncher.class);
+
+    private final JobKeyGenerator jobKeyGenerator = new DefaultJobKeyGenerator();
+
+    // Job instances this process is running right now, keyed by job name and job key
+    private final Set<String> launchedInstances = ConcurrentHashMap.newKeySet();
+
     @Autowired
     private JobLauncher jobLauncher;
 
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
     @Autowired
     @Qualifier("chargebackExportJob")
     private Job chargebackExportJob;
 
     @Autowired
-    private ChargebackItemReader chargebackItemReader;
+    @Qualifier("chargebackPartitionedExportJob")
+    private Job chargebackPartitionedExportJob;
 
     @Autowired
-    private ChargebackItemWriter chargebackItemWriter;
+    @Qualifier("chargebackPipelinedExportJob")
+    private Job chargebackPipelinedExportJob;
+
+    @Autowired
+    private WatermarkStore watermarkStore;
+
+    @Autowired
+    private ExportCache exportCache;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private ExportMetricsRecorder exportMetricsRecorder;
+
+    @Value("${chargeback.output.directory:" + ChargebackItemWriter.DEFAULT_OUTPUT_DIRECTORY + "}")
+    private String outputDirectory;
+
+    @Value("${chargeback.restart.stale-after:PT30M}")
+    private Duration staleAfter;
 
     public String launchJob(LocalDateTime startTimestamp, LocalDateTime endTimestamp) throws Exception {
-        // Configure reader with timestamp range
-        chargebackItemReader.setTimestampRange(startTimestamp, endTimestamp);
-        chargebackItemReader.afterPropertiesSet();
+        return launchJob(startTimestamp, endTimestamp, new ExportOptions());
+    }
+
+    public String launchJob(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options) throws Exception {
+        return export(startTimestamp, endTimestamp, options).outputFile();
+    }
+
+    public ExportResult export(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options)
+            throws Exception {
+        options.validate();
+        if (!exportCache.accepts(startTimestamp, endTimestamp, options)) {
+            return launch(startTimestamp, endTimestamp, options);
+        }
+
+        // A past range that hasn't changed since it was exported with the same output options is
+        // handed back from the cache without running a job
+        String outputFileName = resolveOutputFileName(startTimestamp, endTimestamp, options);
+        Fingerprint fingerprint = exportCache.fingerprint(startTimestamp, endTimestamp);
+        ExportCache.Entry entry = exportCache.serve(startTimestamp, endTimestamp, options, fingerprint, outputFileName);
+        if (entry != null) {
+            return new ExportResult(outputFileName, entry.summary(), null, entry.duplicateRows(), true);
+        }
+        ExportResult result = launch(startTimestamp, endTimestamp, options);
+        // Rows that arrived while the job ran may or may not be in the file, so it is only kept if none did
+        if (fingerprint.equals(exportCache.fingerprint(startTimestamp, endTimestamp))) {
+            exportCache.store(startTimestamp, endTimestamp, options, fingerprint, result.outputFile(),
+                    result.summary(), result.duplicateRows());
+        }
+        return result;
+    }
+
+    private ExportResult launch(LocalDateTime startTimestamp, LocalDateTime endTimestamp, ExportOptions options)
+            throws Exception {
+        if (options.isIncremental()) {
+            return launchIncrementalJob(startTimestamp, endTimestamp, options);
+        }
+
+        if (segmentStore.accepts(startTimestamp, endTimestamp, options)) {
+            return launchSegmentedJob(startTimestamp, endTimestamp, options);
+        }
+
+        if (options.isPartitioned()) {
+            return launchPartitionedJob(startTimestamp, endTimestamp, options);
+        }
+
+        // The job builds its own reader and writer from the job parameters
+        String outputFileName = resolveOutputFileName(startTimestamp, endTimestamp, options);
+        JobExecution execution = runSequentialJob(startTimestamp, endTimestamp, outputFileName, options, null);
+
+        return result(reportedFileName(outputFileName, options), outputFileName, execution, options);
+    }
+
+    // Exports only what was added since the last successful incremental run: the keyset reader
+    // resumes just past the saved watermark, and the watermark only moves once the job has
+    // completed, so a failed run is simply repeated by the next one. The watermark goes into the
+    // job as parameters and the new one comes back in the step's execution context, so the job
+    // shares no reader with other exports. Incremental exports still run one at a time, since two
+    // at once would start from the same watermark and export the same rows.
+    private synchronized ExportResult launchIncrementalJob(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                                     ExportOptions options) throws Exception {
+        Watermark watermark = watermarkStore.load();
+        LocalDateTime from = watermark != null ? watermark.createdTime() : startTimestamp;
+        if (endTimestamp.isBefore(from)) {
+            throw new IllegalArgumentException("End timestamp " + endTimestamp + " is before the watermark " + from);
+        }
+
+        String outputFileName = resolveOutputFileName(from, endTimestamp, options);
+        JobExecution execution = runSequentialJob(from, endTimestamp, outputFileName, options, watermark);
+
+        Watermark next = savedWatermark(execution);
+        watermarkStore.save(next != null ? next : new Watermark(from, 0));
+
+        return result(reportedFileName(outputFileName, options), outputFileName, execution, options);
+    }
+
+    // Assembles the export from the day segments of the whole past days in the range, so only the
+    // partial days at either end are read from the database. A day without a segment, or whose rows
+    // changed since its segment was written, is exported on its own and its piece later becomes its
+    // segment. The pieces are exported without a header and copied into the output with transferTo
+    // behind a single one, the same way the partitioned export merges its part files. The jobs share
+    // one metrics group, so the metrics file describes the whole export rather than its last piece.
+    private ExportResult launchSegmentedJob(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                            ExportOptions options) throws Exception {
+        List<LocalDate> days = segmentStore.wholeDays(startTimestamp, endTimestamp);
+        LocalDate firstDay = days.get(0);
+        LocalDate lastDay = days.get(days.size() - 1);
+        Map<LocalDate, Fingerprint> fingerprints = segmentStore.fingerprints(firstDay, lastDay);
+
+        String outputFileName = resolveOutputFileName(startTimestamp, endTimestamp, options);
+        exportCache.detach(outputFileName);
+        String group = exportMetricsRecorder.startGroup();
+        ExportSummary summary = new ExportSummary();
+        Map<LocalDate, Piece> built = new LinkedHashMap<>();
+        List<Path> workFiles = new ArrayList<>();
+        boolean succeeded = false;
+        try {
+            try (FileChannel out = FileChannel.open(Paths.get(outputFileName), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.wrap(
+                        (ChargebackItemWriter.HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
 
-        // Configure writer with output filename
-        chargebackItemWriter.setOutputFileName(startTimestamp, endTimestamp);
-        chargebackItemWriter.configureWriter();
-        chargebackItemWriter.afterPropertiesSet();
+                if (startTimestamp.isBefore(firstDay.atStartOfDay())) {
+                    Path file = segmentStore.newWorkFile("head");
+                    workFiles.add(file);
+                    summary.merge(runPiece(startTimestamp, firstDay.atStartOfDay().minusSeconds(1), file, options,
+                            group));
+                    SegmentStore.append(file, out);
+                }
 
-        // Create job parameters
-        JobParameters jobParameters = new JobParametersBuilder()
+                for (LocalDate day : days) {
+                    try (SegmentStore.Segment segment = segmentStore.find(day, fingerprints.get(day))) {
+                        if (segment != null) {
+                            SegmentStore.append(segment.channel(), out);
+                            summary.merge(segment.summary());
+                            continue;
+                        }
+                    }
+                    Path file = segmentStore.newWorkFile(day.toString());
+                    workFiles.add(file);
+                    Piece piece = new Piece(file,
+                            runPiece(day.atStartOfDay(), SegmentStore.dayEnd(day), file, options, group));
+                    SegmentStore.append(file, out);
+                    summary.merge(piece.summary());
+                    built.put(day, piece);
+                }
+
+                if (endTimestamp.isAfter(SegmentStore.dayEnd(lastDay))) {
+                    Path file = segmentStore.newWorkFile("tail");
+                    workFiles.add(file);
+                    summary.merge(runPiece(lastDay.plusDays(1).atStartOfDay(), endTimestamp, file, options, group));
+                    SegmentStore.append(file, out);
+                }
+            }
+
+            // Rows that arrived while a day was exported may or may not be in its piece, so a piece
+            // only becomes the day's segment if the day's fingerprint is still the one it started with
+            if (!built.isEmpty()) {
+                List<LocalDate> builtDays = new ArrayList<>(built.keySet());
+                Map<LocalDate, Fingerprint> after = segmentStore.fingerprints(builtDays.get(0),
+                        builtDays.get(builtDays.size() - 1));
+                built.forEach((day, piece) -> {
+                    if (fingerprints.get(day).equals(after.get(day))) {
+                        segmentStore.store(day, fingerprints.get(day), piece.file(), piece.summary());
+                    }
+                });
+            }
+            log.info("Assembled {} from {} day segments, {} of them built by this export", outputFileName,
+                    days.size(), built.size());
+            succeeded = true;
+        } finally {
+            exportMetricsRecorder.finishGroup(group, summary.getRows(), outputFileName, succeeded);
+            for (Path workFile : workFiles) {
+                Files.deleteIfExists(workFile);
+            }
+        }
+        return new ExportResult(outputFileName, summary);
+    }
+
+    // A day exported by launchSegmentedJob, waiting to become its segment
+    private record Piece(Path file, ExportSummary summary) {
+    }
+
+    // Exports a range into outputFile without a header, as part of the metrics group, and returns
+    // the summary of its rows
+    private ExportSummary runPiece(LocalDateTime startTimestamp, LocalDateTime endTimestamp, Path outputFile,
+                                   ExportOptions options, String group) throws Exception {
+        JobParametersBuilder jobParameters = jobParameters(startTimestamp, endTimestamp, outputFile.toString(), options)
+                .addString(ExportOptions.HEADER, "false")
+                .addString(ExportMetricsRecorder.GROUP, group, false);
+        JobExecution execution = options.isPartitioned()
+                ? run(chargebackPartitionedExportJob, jobParameters, options)
+                : runSequentialJob(jobParameters, options);
+        return summarize(execution);
+    }
+
+    // Where the keyset reader stopped, or null if it never read a row and had no watermark to start from
+    private static Watermark savedWatermark(JobExecution execution) {
+        for (StepExecution stepExecution : execution.getStepExecutions()) {
+            ExecutionContext context = stepExecution.getExecutionContext();
+            LocalDateTime lastCreatedTime = ChargebackKeysetItemReader.savedCreatedTime(context);
+            if (lastCreatedTime != null) {
+                return new Watermark(lastCreatedTime, ChargebackKeysetItemReader.savedTieCount(context));
+            }
+        }
+        return null;
+    }
+
+    private String resolveOutputFileName(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                         ExportOptions options) {
+        return ChargebackItemWriter.resolveOutputFileName(outputDirectory, startTimestamp, endTimestamp,
+                options.getFormat(), options.getCompression());
+    }
+
+    // Rolling output is reported by its manifest, which lists the part files
+    private static String reportedFileName(String outputFileName, ExportOptions options) {
+        return options.isRolling()
+                ? RollingChargebackItemWriter.manifestFileName(outputFileName, options.getCompression())
+                : outputFileName;
+    }
+
+    private ExportResult result(String reportedFileName, String outputFileName, JobExecution execution,
+                                ExportOptions options) {
+        return new ExportResult(reportedFileName, summarize(execution),
+                options.isRollup() ? RollupRecorder.rollupFileName(outputFileName) : null,
+                execution.getExecutionContext().getLong(DuplicateDetector.DUPLICATE_ROWS, 0L));
+    }
+
+    private JobParametersBuilder jobParameters(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                               String outputFileName, ExportOptions options) {
+        return options.addTo(new JobParametersBuilder())
                 .addString("startTimestamp", startTimestamp.toString())
                 .addString("endTimestamp", endTimestamp.toString())
-                .addLong("timestamp", System.currentTimeMillis())
+                .addString("outputFile", outputFileName);
+    }
+
+    private JobExecution runSequentialJob(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                          String outputFileName, ExportOptions options, Watermark watermark)
+            throws Exception {
+        JobParametersBuilder jobParameters = jobParameters(startTimestamp, endTimestamp, outputFileName, options);
+        if (watermark != null) {
+            watermark.addTo(jobParameters);
+        }
+
+        return runSequentialJob(jobParameters, options);
+    }
+
+    private JobExecution runSequentialJob(JobParametersBuilder jobParameters, ExportOptions options)
+            throws Exception {
+        return run(options.isPipelined() ? chargebackPipelinedExportJob : chargebackExportJob, jobParameters, options);
+    }
+
+    private ExportResult launchPartitionedJob(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                        ExportOptions options) throws Exception {
+        // Each slice gets its own step-scoped reader and writer
+        String outputFileName = ChargebackItemWriter.resolveOutputFileName(outputDirectory, startTimestamp,
+                endTimestamp, OutputFormat.CSV, options.getCompression());
+
+        JobExecution execution = runPartitionedJob(startTimestamp, endTimestamp, outputFileName, options);
+        return result(outputFileName, outputFileName, execution, options);
+    }
+
+    private JobExecution runPartitionedJob(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                           String outputFileName, ExportOptions options) throws Exception {
+        return run(chargebackPartitionedExportJob,
+                jobParameters(startTimestamp, endTimestamp, outputFileName, options), options);
+    }
+
+    private JobExecution run(Job job, JobParametersBuilder jobParameters, ExportOptions options) throws Exception {
+        JobParameters parameters = resolveRun(job, jobParameters, options);
+        String instance = job.getName() + ":" + jobKeyGenerator.generateKey(parameters);
+        if (!launchedInstances.add(instance)) {
+            throw new IllegalStateException(job.getName() + " is already running for " + parameters);
+        }
+        JobExecution execution;
+        try {
+            // The output file may be a cache entry served by hard link, which writing it would change too
+            exportCache.detach(parameters.getString("outputFile"));
+            execution = jobLauncher.run(job, parameters);
+        } finally {
+            launchedInstances.remove(instance);
+        }
+        if (execution.getStatus() != BatchStatus.COMPLETED) {
+            throw new IllegalStateException(job.getName() + " finished with status " + execution.getStatus()
+                    + (options.isRestartable() ? "; run the same export again to resume from the last commit" : ""));
+        }
+        return execution;
+    }
+
+    // Merges the summaries the export steps saved in their execution contexts. A restarted
+    // partitioned export skips the slices an earlier execution finished, so each step's latest
+    // execution is taken from all of the job instance's executions, not only the last one.
+    private ExportSummary summarize(JobExecution execution) {
+        Map<String, StepExecution> latest = new HashMap<>();
+        for (JobExecution jobExecution : jobExplorer.getJobExecutions(execution.getJobInstance())) {
+            for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+                latest.merge(stepExecution.getStepName(), stepExecution,
+                        (first, second) -> first.getId() > second.getId() ? first : second);
+            }
+        }
+        ExportSummary summary = new ExportSummary();
+        for (StepExecution stepExecution : latest.values()) {
+            if (ExportSummary.isSavedIn(stepExecution.getExecutionContext())) {
+                summary.merge(ExportSummary.loadFrom(stepExecution.getExecutionContext()));
+            }
+        }
+        return summary;
+    }
+
+    // Every range keeps the same job instance until it completes, so rerunning an export that
+    // failed restarts that instance: Spring Batch hands the step the execution context saved with
+    // the last commit, the reader resumes after the last committed row and the writer truncates
+    // the file back to the last committed byte. Completed instances, and instances whose output
+    // can't be resumed, are left behind by moving on to the next run.id.
+    //
+    // The range's latest run.id is kept in the execution context of its first instance (run.id 1),
+    // so finding it takes the same few lookups however often the range has been exported.
+    private JobParameters resolveRun(Job job, JobParametersBuilder jobParameters, ExportOptions options) {
+        JobInstance firstInstance = jobExplorer.getJobInstance(job.getName(), withRunId(jobParameters, 1));
+        JobExecution first = firstInstance != null ? jobExplorer.getLastJobExecution(firstInstance) : null;
+        if (first == null) {
+            return withRunId(jobParameters, 1);
+        }
+        long latestRunId = first.getExecutionContext().getLong(LATEST_RUN_ID, 1L);
+        JobParameters latest = withRunId(jobParameters, latestRunId);
+        JobExecution lastExecution = latestRunId == 1 ? first
+                : jobRepository.getLastJobExecution(job.getName(), latest);
+        if (lastExecution == null) {
+            return latest;
+        }
+        if (options.isRestartable()) {
+            if (lastExecution.isRunning()
+                    && !launchedInstances.contains(job.getName() + ":" + jobKeyGenerator.generateKey(latest))) {
+                takeOver(lastExecution);
+            }
+            if (lastExecution.getStatus() == BatchStatus.FAILED || lastExecution.getStatus() == BatchStatus.STOPPED) {
+                log.info("Restarting {} execution {} of {} from its last commit",
+                        lastExecution.getStatus(), lastExecution.getId(), job.getName());
+                return latest;
+            }
+        }
+
+        // A process that lost the race to record its run.id leaves the pointer behind, so skip any
+        // instance that already exists
+        long runId = latestRunId + 1;
+        while (jobExplorer.getJobInstance(job.getName(), withRunId(jobParameters, runId)) != null) {
+            runId++;
+        }
+        first.getExecutionContext().putLong(LATEST_RUN_ID, runId);
+        jobRepository.updateExecutionContext(first);
+        return withRunId(jobParameters, runId);
+    }
+
+    private static JobParameters withRunId(JobParametersBuilder jobParameters, long runId) {
+        return new JobParametersBuilder(jobParameters.toJobParameters())
+                .addLong(RUN_ID, runId)
                 .toJobParameters();
+    }
 
-        // Launch the job
-        jobLauncher.run(chargebackExportJob, jobParameters);
+    // An execution still marked as running by another process is only taken to be abandoned once
+    // neither it nor its steps have been updated for chargeback.restart.stale-after. The metadata
+    // store can be shared between hosts, so a younger one may be a live export elsewhere, and
+    // restarting it would have both write the same file.
+    private void takeOver(JobExecution execution) {
+        LocalDateTime lastUpdated = execution.getLastUpdated();
+        for (StepExecution stepExecution : execution.getStepExecutions()) {
+            if (stepExecution.getLastUpdated() != null
+                    && (lastUpdated == null || stepExecution.getLastUpdated().isAfter(lastUpdated))) {
+                lastUpdated = stepExecution.getLastUpdated();
+            }
+        }
+        if (lastUpdated != null && lastUpdated.isAfter(LocalDateTime.now().minus(staleAfter))) {
+            throw new IllegalStateException("Execution " + execution.getId() + " of this export is still running in "
+                    + "another process (last updated " + lastUpdated + "); wait for it to finish, or if that "
+                    + "process is gone, run the export again once chargeback.restart.stale-after (" + staleAfter
+                    + ") has passed since that update");
+        }
+        log.warn("Execution {} has not been updated since {}, taking it to belong to a process that died",
+                execution.getId(), lastUpdated);
+        markFailed(execution);
+    }
 
-        return chargebackItemWriter.getOutputFileName();
+    private void markFailed(JobExecution execution) {
+        LocalDateTime now = LocalDateTime.now();
+        ExitStatus exitStatus = ExitStatus.FAILED.addExitDescription("Process ended while the export was running");
+        for (StepExecution stepExecution : execution.getStepExecutions()) {
+            if (stepExecution.getStatus().isRunning()) {
+                stepExecution.setStatus(BatchStatus.FAILED);
+                stepExecution.setExitStatus(exitStatus);
+                stepExecution.setEndTime(now);
+                jobRepository.update(stepExecution);
+            }
+        }
+        execution.setStatus(BatchStatus.FAILED);
+        execution.setExitStatus(exitStatus);
+        execution.setEndTime(now);
+        jobRepository.update(execution);
     }
 }
-
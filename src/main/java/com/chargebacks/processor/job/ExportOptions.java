@@ -0,0 +1,506 @@
+package com.chargebacks.processor.job;
+
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.reader.ChargebackFilter;
+import com.chargebacks.processor.reader.ChargebackItemReader;
+import com.chargebacks.processor.reader.ChargebackKeysetItemReader;
+import com.chargebacks.processor.reader.FetchStrategy;
+import com.chargebacks.processor.writer.Compression;
+import com.chargebacks.processor.writer.OutputFormat;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ExportOptions {
+
+    public static final String WORKERS = "workers";
+    public static final String SLICE_MINUTES = "sliceMinutes";
+    public static final String READER_MODE = "readerMode";
+    public static final String PAGE_SIZE = "pageSize";
+    public static final String FETCH_STRATEGY = "fetchStrategy";
+    public static final String FETCH_SIZE = "fetchSize";
+    public static final String COMPRESSION = "compress";
+    public static final String COMPRESSION_THREADS = "compressThreads";
+    public static final String FORMAT = "format";
+    public static final String INCREMENTAL = "incremental";
+    public static final String MAX_FILE_ROWS = "maxFileRows";
+    public static final String MAX_FILE_BYTES = "maxFileBytes";
+    public static final String PIPELINED = "pipelined";
+    public static final String ENCODER_THREADS = "encoderThreads";
+    public static final String MIN_CHUNK_SIZE = "minChunkSize";
+    public static final String MAX_CHUNK_SIZE = "maxChunkSize";
+    public static final String ROLLUP = "rollup";
+    public static final String DUPLICATES = "duplicates";
+    public static final String DUPLICATE_MEMORY = "duplicateMemory";
+    public static final String COLUMNS = "columns";
+    public static final String CURRENCIES = "currencies";
+    public static final String MIN_AMOUNT = "minAmount";
+    public static final String MAX_AMOUNT = "maxAmount";
+    public static final String REASON = "reason";
+    // Not an option: "false" for the pieces an assembled export copies in behind its own header
+    public static final String HEADER = "header";
+
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 100;
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 10_000;
+    public static final long DEFAULT_DUPLICATE_MEMORY = 64L * 1024 * 1024;
+
+    // Read even when they aren't written, as the rollup and the duplicate check key on them
+    public static final Set<ChargebackColumn> ROLLUP_COLUMNS = Set.copyOf(EnumSet.of(ChargebackColumn.DISPUTED_DT,
+            ChargebackColumn.DISPUTED_AMT, ChargebackColumn.DISPUTED_CURR, ChargebackColumn.REASON_FOR_DISPUTE));
+    public static final Set<ChargebackColumn> DUPLICATE_KEY_COLUMNS = Set.copyOf(EnumSet.of(ChargebackColumn.MERCHANDISE_REF,
+            ChargebackColumn.DISPUTED_AMT, ChargebackColumn.DISPUTED_CURR, ChargebackColumn.DISPUTED_DT));
+
+    public enum ReaderMode {
+        CURSOR,
+        KEYSET
+    }
+
+    // What happens to a row that repeats the merchandise_ref, disputed_amt, disputed_curr and
+    // disputed_dt of an earlier row in the same export
+    public enum DuplicateMode {
+        OFF,
+        FLAG,
+        DROP
+    }
+
+    private int workers = 1;
+    private long sliceMinutes;
+    private ReaderMode readerMode = ReaderMode.CURSOR;
+    private int pageSize = ChargebackKeysetItemReader.DEFAULT_PAGE_SIZE;
+    private FetchStrategy fetchStrategy = FetchStrategy.BUFFERED;
+    private int fetchSize = ChargebackItemReader.DEFAULT_FETCH_SIZE;
+    private Compression compression = Compression.NONE;
+    private int compressionThreads;
+    private OutputFormat format = OutputFormat.CSV;
+    private boolean incremental;
+    private long maxFileRows;
+    private long maxFileBytes;
+    private boolean pipelined;
+    private int encoderThreads;
+    private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+    private int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+    private boolean rollup;
+    private DuplicateMode duplicates = DuplicateMode.OFF;
+    private long duplicateMemory = DEFAULT_DUPLICATE_MEMORY;
+    private List<ChargebackColumn> columns = ChargebackColumn.ALL;
+    private List<String> currencies = List.of();
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private String reasonPattern;
+    // Not a job parameter: it decides whether a job runs at all
+    private boolean cache = true;
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public long getSliceMinutes() {
+        return sliceMinutes;
+    }
+
+    public void setSliceMinutes(long sliceMinutes) {
+        this.sliceMinutes = sliceMinutes;
+    }
+
+    public ReaderMode getReaderMode() {
+        return readerMode;
+    }
+
+    public void setReaderMode(ReaderMode readerMode) {
+        this.readerMode = readerMode;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public FetchStrategy getFetchStrategy() {
+        return fetchStrategy;
+    }
+
+    public void setFetchStrategy(FetchStrategy fetchStrategy) {
+        this.fetchStrategy = fetchStrategy;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    // 0 uses one compression thread per available processor
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    public OutputFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(OutputFormat format) {
+        this.format = format;
+    }
+
+    public boolean isPartitioned() {
+        return workers > 1;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public long getMaxFileRows() {
+        return maxFileRows;
+    }
+
+    public void setMaxFileRows(long maxFileRows) {
+        this.maxFileRows = maxFileRows;
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public void setMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public boolean isRolling() {
+        return maxFileRows > 0 || maxFileBytes > 0;
+    }
+
+    // isRolling() of the options a job was launched with, from the parameters addTo() added
+    public static boolean isRolling(JobParameters parameters) {
+        return parameters.getLong(MAX_FILE_ROWS, 0L) > 0 || parameters.getLong(MAX_FILE_BYTES, 0L) > 0;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public int getEncoderThreads() {
+        return encoderThreads;
+    }
+
+    public void setEncoderThreads(int encoderThreads) {
+        this.encoderThreads = encoderThreads;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public void setMinChunkSize(int minChunkSize) {
+        this.minChunkSize = minChunkSize;
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    public void setMaxChunkSize(int maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    public boolean isRollup() {
+        return rollup;
+    }
+
+    public void setRollup(boolean rollup) {
+        this.rollup = rollup;
+    }
+
+    public DuplicateMode getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(DuplicateMode duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public long getDuplicateMemory() {
+        return duplicateMemory;
+    }
+
+    // Bytes for the Bloom filter of the duplicate check's first pass
+    public void setDuplicateMemory(long duplicateMemory) {
+        this.duplicateMemory = duplicateMemory;
+    }
+
+    public List<ChargebackColumn> getColumns() {
+        return columns;
+    }
+
+    // The columns written, in this order
+    public void setColumns(List<ChargebackColumn> columns) {
+        this.columns = columns;
+    }
+
+    public List<String> getCurrencies() {
+        return currencies;
+    }
+
+    // Empty exports every currency
+    public void setCurrencies(List<String> currencies) {
+        this.currencies = currencies;
+    }
+
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(BigDecimal minAmount) {
+        this.minAmount = minAmount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public void setMaxAmount(BigDecimal maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+
+    public String getReasonPattern() {
+        return reasonPattern;
+    }
+
+    // A SQL LIKE pattern matched against reason_for_dispute
+    public void setReasonPattern(String reasonPattern) {
+        this.reasonPattern = reasonPattern;
+    }
+
+    public boolean isCache() {
+        return cache;
+    }
+
+    // false always reads the whole range from the database, past the export cache and the day segments
+    public void setCache(boolean cache) {
+        this.cache = cache;
+    }
+
+    // The columns the readers fetch: the ones written and the ones the rollup and duplicate check need
+    public Set<ChargebackColumn> getReadColumns() {
+        return readColumns(columns, rollup, duplicates);
+    }
+
+    public ChargebackFilter getFilter() {
+        return new ChargebackFilter(currencies, minAmount, maxAmount, reasonPattern);
+    }
+
+    // A failed run can be picked up from its last commit only when the output file can be cut back
+    // to the offset saved with that commit, which rules out a gzip or Parquet stream and the
+    // pipelined export's single transaction. A rollup and the rows seen by the duplicate check are
+    // held in memory, so they would miss the rows written before the failure.
+    public boolean isRestartable() {
+        return format == OutputFormat.CSV && compression == Compression.NONE && !pipelined && !rollup
+                && duplicates == DuplicateMode.OFF;
+    }
+
+    // isRestartable() of the options a job was launched with, from the parameters addTo() added
+    public static boolean isRestartable(JobParameters parameters) {
+        return OutputFormat.CSV.name().equals(parameters.getString(FORMAT, OutputFormat.CSV.name()))
+                && Compression.NONE.name().equals(parameters.getString(COMPRESSION, Compression.NONE.name()))
+                && !Boolean.parseBoolean(parameters.getString(PIPELINED))
+                && !Boolean.parseBoolean(parameters.getString(ROLLUP))
+                && DuplicateMode.OFF.name().equals(parameters.getString(DUPLICATES, DuplicateMode.OFF.name()));
+    }
+
+    // Incremental exports resume from a created_time/tie-count position, which only the keyset reader can seek to
+    public ReaderMode getEffectiveReaderMode() {
+        return incremental ? ReaderMode.KEYSET : readerMode;
+    }
+
+    public void validate() {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1");
+        }
+        if (sliceMinutes < 0) {
+            throw new IllegalArgumentException("sliceMinutes must not be negative");
+        }
+        if (readerMode == null) {
+            throw new IllegalArgumentException("readerMode must be set");
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        if (fetchStrategy == null) {
+            throw new IllegalArgumentException("fetchStrategy must be set");
+        }
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be at least 1");
+        }
+        if (compression == null) {
+            throw new IllegalArgumentException("compression must be set");
+        }
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("compressionThreads must not be negative");
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("format must be set");
+        }
+        // Part files are spliced byte for byte, which only works for formats without a footer
+        if (format == OutputFormat.PARQUET && isPartitioned()) {
+            throw new IllegalArgumentException("PARQUET output does not support workers > 1");
+        }
+        if (incremental && isPartitioned()) {
+            throw new IllegalArgumentException("Incremental exports do not support workers > 1");
+        }
+        if (maxFileRows < 0 || maxFileBytes < 0) {
+            throw new IllegalArgumentException("maxFileRows and maxFileBytes must not be negative");
+        }
+        if (isRolling() && (format != OutputFormat.CSV || isPartitioned())) {
+            throw new IllegalArgumentException("Rolling part files are only supported for CSV output with workers = 1");
+        }
+        if (minChunkSize < 1 || maxChunkSize < minChunkSize) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 1 <= minChunkSize <= maxChunkSize");
+        }
+        if (encoderThreads < 0) {
+            throw new IllegalArgumentException("encoderThreads must not be negative");
+        }
+        if (pipelined && (format != OutputFormat.CSV || isRolling() || isPartitioned())) {
+            throw new IllegalArgumentException("Pipelined exports only write a single CSV file with workers = 1");
+        }
+        if (duplicates == null) {
+            throw new IllegalArgumentException("duplicates must be set");
+        }
+        // Workers and pipelined encoders check rows concurrently, so which copy of a key is checked
+        // first, and kept, would change from run to run
+        if (duplicates == DuplicateMode.DROP && (isPartitioned() || pipelined)) {
+            throw new IllegalArgumentException("Duplicates DROP is only supported with workers = 1 and no pipelining");
+        }
+        if (duplicateMemory < 1024) {
+            throw new IllegalArgumentException("duplicateMemory must be at least 1K");
+        }
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("columns must name at least one column");
+        }
+        if (new HashSet<>(columns).size() != columns.size()) {
+            throw new IllegalArgumentException("columns must not repeat a column: " + ChargebackColumn.join(columns));
+        }
+        if (currencies == null || currencies.stream().anyMatch(currency -> currency == null || currency.isBlank()
+                || currency.contains(","))) {
+            throw new IllegalArgumentException("currencies must be currency codes");
+        }
+        if (minAmount != null && maxAmount != null && minAmount.compareTo(maxAmount) > 0) {
+            throw new IllegalArgumentException("minAmount must not be greater than maxAmount");
+        }
+        if (reasonPattern != null && reasonPattern.isEmpty()) {
+            throw new IllegalArgumentException("reason pattern must not be empty");
+        }
+        // The watermark's tie count only counts the rows a filter let through, so it would point
+        // somewhere else for the next run with a different filter
+        if (incremental && !getFilter().isEmpty()) {
+            throw new IllegalArgumentException("Incremental exports do not support filters");
+        }
+    }
+
+    // Options that change the output identify the job instance; tuning options don't, so a failed
+    // export can be restarted with a different page size or thread count
+    public JobParametersBuilder addTo(JobParametersBuilder builder) {
+        return builder
+                .addLong(WORKERS, (long) workers)
+                .addLong(SLICE_MINUTES, sliceMinutes)
+                .addString(READER_MODE, getEffectiveReaderMode().name())
+                .addLong(PAGE_SIZE, (long) pageSize, false)
+                .addString(FETCH_STRATEGY, fetchStrategy.name(), false)
+                .addLong(FETCH_SIZE, (long) fetchSize, false)
+                .addString(COMPRESSION, compression.name())
+                .addLong(COMPRESSION_THREADS, (long) compressionThreads, false)
+                .addString(FORMAT, format.name())
+                .addString(INCREMENTAL, Boolean.toString(incremental))
+                .addLong(MAX_FILE_ROWS, maxFileRows)
+                .addLong(MAX_FILE_BYTES, maxFileBytes)
+                .addString(PIPELINED, Boolean.toString(pipelined))
+                .addLong(ENCODER_THREADS, (long) encoderThreads, false)
+                .addLong(MIN_CHUNK_SIZE, (long) minChunkSize, false)
+                .addLong(MAX_CHUNK_SIZE, (long) maxChunkSize, false)
+                .addString(ROLLUP, Boolean.toString(rollup))
+                .addString(DUPLICATES, duplicates.name())
+                .addLong(DUPLICATE_MEMORY, duplicateMemory, false)
+                .addString(COLUMNS, ChargebackColumn.join(columns))
+                .addString(CURRENCIES, String.join(",", currencies))
+                .addString(MIN_AMOUNT, minAmount != null ? minAmount.toPlainString() : "")
+                .addString(MAX_AMOUNT, maxAmount != null ? maxAmount.toPlainString() : "")
+                .addString(REASON, reasonPattern != null ? reasonPattern : "");
+    }
+
+    // The columns a job writes, from the parameters addTo() added
+    public static List<ChargebackColumn> columns(JobParameters parameters) {
+        String columns = parameters.getString(COLUMNS);
+        return columns == null || columns.isEmpty() ? ChargebackColumn.ALL : ChargebackColumn.parse(columns);
+    }
+
+    // Whether a job's CSV output starts with a header
+    public static boolean header(JobParameters parameters) {
+        return !"false".equals(parameters.getString(HEADER));
+    }
+
+    // The columns a job's readers fetch, see getReadColumns()
+    public static Set<ChargebackColumn> readColumns(JobParameters parameters) {
+        String duplicates = parameters.getString(DUPLICATES);
+        return readColumns(columns(parameters), Boolean.parseBoolean(parameters.getString(ROLLUP)),
+                duplicates != null ? DuplicateMode.valueOf(duplicates) : DuplicateMode.OFF);
+    }
+
+    private static Set<ChargebackColumn> readColumns(List<ChargebackColumn> columns, boolean rollup,
+                                                     DuplicateMode duplicates) {
+        Set<ChargebackColumn> read = EnumSet.noneOf(ChargebackColumn.class);
+        read.addAll(columns);
+        if (rollup) {
+            read.addAll(ROLLUP_COLUMNS);
+        }
+        if (duplicates != DuplicateMode.OFF) {
+            read.addAll(DUPLICATE_KEY_COLUMNS);
+        }
+        return read;
+    }
+
+    public static ChargebackFilter filter(JobParameters parameters) {
+        String currencies = parameters.getString(CURRENCIES, "");
+        String minAmount = parameters.getString(MIN_AMOUNT, "");
+        String maxAmount = parameters.getString(MAX_AMOUNT, "");
+        String reason = parameters.getString(REASON, "");
+        return new ChargebackFilter(
+                currencies.isEmpty() ? List.of() : Arrays.asList(currencies.split(",")),
+                minAmount.isEmpty() ? null : new BigDecimal(minAmount),
+                maxAmount.isEmpty() ? null : new BigDecimal(maxAmount),
+                reason.isEmpty() ? null : reason);
+    }
+}
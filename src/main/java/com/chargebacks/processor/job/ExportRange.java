@@ -0,0 +1,52 @@
+package com.chargebacks.processor.job;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// One export's created_time window, both ends inclusive like --startTimestamp/--endTimestamp
+public record ExportRange(LocalDateTime start, LocalDateTime end) {
+
+    public enum Interval {
+        HOUR(ChronoUnit.HOURS),
+        DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Interval(ChronoUnit unit) {
+            this.unit = unit;
+        }
+    }
+
+    public ExportRange {
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("Range end " + end + " is before its start " + start);
+        }
+    }
+
+    // "start/end" in ISO local date-time form, e.g. 2024-01-01T00:00:00/2024-01-01T23:59:59
+    public static ExportRange parse(String range) {
+        int separator = range.indexOf('/');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Range must be written as start/end: " + range);
+        }
+        return new ExportRange(LocalDateTime.parse(range.substring(0, separator).trim()),
+                LocalDateTime.parse(range.substring(separator + 1).trim()));
+    }
+
+    // Whole days (or hours) from the start of the first day to the end of the last, each ending one
+    // second before the next begins, the same way a day defaults to 00:00:00-23:59:59
+    public static List<ExportRange> split(LocalDate from, LocalDate to, Interval interval) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Backfill end " + to + " is before its start " + from);
+        }
+        List<ExportRange> ranges = new ArrayList<>();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        for (LocalDateTime start = from.atStartOfDay(); start.isBefore(end); start = start.plus(1, interval.unit)) {
+            ranges.add(new ExportRange(start, start.plus(1, interval.unit).minusSeconds(1)));
+        }
+        return ranges;
+    }
+}
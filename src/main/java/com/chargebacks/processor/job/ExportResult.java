@@ -0,0 +1,19 @@
+package com.chargebacks.processor.job;
+
+import com.chargebacks.processor.summary.ExportSummary;
+
+// The file an export was written to (the manifest, for rolling output), a summary of its rows,
+// the rollup file written next to it when one was asked for, how many rows the duplicate check
+// found (flagged or left out, depending on the mode), and whether the file came from the export
+// cache rather than a job
+public record ExportResult(String outputFile, ExportSummary summary, String rollupFile, long duplicateRows,
+                           boolean cached) {
+
+    public ExportResult(String outputFile, ExportSummary summary) {
+        this(outputFile, summary, null, 0, false);
+    }
+
+    public ExportResult(String outputFile, ExportSummary summary, String rollupFile, long duplicateRows) {
+        this(outputFile, summary, rollupFile, duplicateRows, false);
+    }
+}
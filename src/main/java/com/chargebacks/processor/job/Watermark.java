@@ -0,0 +1,29 @@
+package com.chargebacks.processor.job;
+
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+
+import java.time.LocalDateTime;
+
+// Position of the last row an incremental export returned: its created_time, and how many rows
+// with that same created_time were returned (Chargebacks has no key to break ties with)
+public record Watermark(LocalDateTime createdTime, int tieCount) {
+
+    // Job parameters an incremental export resumes from; absent on the first run
+    public static final String CREATED_TIME = "watermark.created_time";
+    public static final String TIE_COUNT = "watermark.tie_count";
+
+    public JobParametersBuilder addTo(JobParametersBuilder jobParameters) {
+        return jobParameters
+                .addString(CREATED_TIME, createdTime.toString())
+                .addLong(TIE_COUNT, (long) tieCount);
+    }
+
+    public static Watermark from(JobParameters jobParameters) {
+        String createdTime = jobParameters.getString(CREATED_TIME);
+        if (createdTime == null) {
+            return null;
+        }
+        return new Watermark(LocalDateTime.parse(createdTime), jobParameters.getLong(TIE_COUNT).intValue());
+    }
+}
@@ -0,0 +1,63 @@
+package com.chargebacks.processor.job;
+
+import com.chargebacks.processor.writer.AtomicFiles;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Properties;
+
+// Keeps the incremental export watermark in a small properties file next to the exports, so it
+// survives between runs regardless of where (or whether) Spring Batch metadata is kept
+@Component
+public class WatermarkStore {
+
+    private static final String CREATED_TIME = "created_time";
+    private static final String TIE_COUNT = "tie_count";
+
+    @Value("${chargeback.incremental.watermark-file:${chargeback.output.directory:./output}/chargebacks.watermark}")
+    private String watermarkFile;
+
+    public Watermark load() {
+        Path path = Paths.get(watermarkFile);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read watermark file " + watermarkFile, e);
+        }
+        String createdTime = properties.getProperty(CREATED_TIME);
+        String tieCount = properties.getProperty(TIE_COUNT);
+        if (createdTime == null || tieCount == null) {
+            throw new IllegalStateException("Watermark file " + watermarkFile + " is missing "
+                    + CREATED_TIME + " or " + TIE_COUNT);
+        }
+        return new Watermark(LocalDateTime.parse(createdTime), Integer.parseInt(tieCount));
+    }
+
+    public void save(Watermark watermark) {
+        Properties properties = new Properties();
+        properties.setProperty(CREATED_TIME, watermark.createdTime().toString());
+        properties.setProperty(TIE_COUNT, Integer.toString(watermark.tieCount()));
+        try {
+            AtomicFiles.replaceText(Paths.get(watermarkFile),
+                    writer -> properties.store(writer, "Last row exported by an incremental chargeback export"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write watermark file " + watermarkFile, e);
+        }
+    }
+
+    public String getWatermarkFile() {
+        return watermarkFile;
+    }
+}
@@ -0,0 +1,159 @@
+package com.chargebacks.processor.metrics;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Timings and counts for one export run, rendered in the Prometheus text exposition format.
+// Every value describes the last run, so counts are gauges rather than ever-growing counters.
+public class ExportMetrics {
+
+    private static final double[] ROW_BUCKETS = {0.000001, 0.00001, 0.0001, 0.001, 0.01, 0.1, 1};
+    private static final double[] CHUNK_BUCKETS = {0.001, 0.01, 0.1, 1, 10, 60, 600};
+
+    public enum Phase {
+        // Opening the reader and writer: for the cursor reader, running the query
+        QUERY(CHUNK_BUCKETS),
+        // Fetching and mapping one row
+        READ(ROW_BUCKETS),
+        // ChargebackItemProcessor on one row
+        PROCESS(ROW_BUCKETS),
+        // Encoding a chunk into lines and handing it to the writer
+        WRITE(CHUNK_BUCKETS),
+        // From the end of write() to the end of the chunk: the file flush, JobRepository
+        // updates and the commit
+        COMMIT(CHUNK_BUCKETS);
+
+        private final double[] bucketSeconds;
+
+        Phase(double[] bucketSeconds) {
+            this.bucketSeconds = bucketSeconds;
+        }
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final String PREFIX = "chargeback_export_";
+
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private long rowsRead;
+    private long rowsWritten;
+    private long rowsFiltered;
+    private long commits;
+    private long durationNanos;
+    private long outputBytes;
+    private boolean succeeded;
+    private long finishedEpochSeconds;
+
+    public ExportMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram(phase.bucketSeconds));
+        }
+    }
+
+    public void recordPhase(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    public void addCounts(long read, long written, long filtered, long commits) {
+        this.rowsRead += read;
+        this.rowsWritten += written;
+        this.rowsFiltered += filtered;
+        this.commits += commits;
+    }
+
+    // Partition workers finish concurrently, so merging into the job's totals is synchronized
+    public synchronized void merge(ExportMetrics other) {
+        for (Phase phase : Phase.values()) {
+            phases.get(phase).merge(other.phases.get(phase));
+        }
+        addCounts(other.rowsRead, other.rowsWritten, other.rowsFiltered, other.commits);
+    }
+
+    // An export assembled from day segments writes rows that no job read
+    public synchronized void setRowsWritten(long rowsWritten) {
+        this.rowsWritten = rowsWritten;
+    }
+
+    public synchronized void finish(long durationNanos, long outputBytes, boolean succeeded, long finishedEpochSeconds) {
+        this.durationNanos = durationNanos;
+        this.outputBytes = outputBytes;
+        this.succeeded = succeeded;
+        this.finishedEpochSeconds = finishedEpochSeconds;
+    }
+
+    public LatencyHistogram getPhase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public long getRowsFiltered() {
+        return rowsFiltered;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    public synchronized void writePrometheus(Appendable out) throws IOException {
+        gauge(out, "success", "1 if the last export completed, 0 if it failed", succeeded ? 1 : 0);
+        gauge(out, "last_run_timestamp_seconds", "Unix time the last export finished", finishedEpochSeconds);
+        gauge(out, "duration_seconds", "Wall-clock duration of the last export", seconds(durationNanos));
+        gauge(out, "rows_read", "Rows read from the database", rowsRead);
+        gauge(out, "rows_written", "Rows written to the output", rowsWritten);
+        gauge(out, "rows_filtered", "Rows dropped by the processor", rowsFiltered);
+        gauge(out, "commits", "Chunks committed", commits);
+        gauge(out, "rows_per_second", "Rows written per second of wall-clock time",
+                durationNanos > 0 ? rowsWritten / seconds(durationNanos) : 0);
+        gauge(out, "output_bytes", "Size of the output on disk, after any compression", outputBytes);
+
+        String name = PREFIX + "phase_duration_seconds";
+        out.append("# HELP ").append(name)
+                .append(" Time spent per phase: per row for read and process, per chunk for write and commit,"
+                        + " per step for query\n");
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = phases.get(phase);
+            double[] buckets = histogram.getBucketSeconds();
+            String labels = "phase=\"" + phase.label() + "\"";
+            for (int i = 0; i <= buckets.length; i++) {
+                String le = i < buckets.length ? BigDecimal.valueOf(buckets[i]).stripTrailingZeros().toPlainString()
+                        : "+Inf";
+                out.append(name).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+                        .append(Long.toString(histogram.getCumulativeCount(i))).append('\n');
+            }
+            out.append(name).append("_sum{").append(labels).append("} ")
+                    .append(Double.toString(seconds(histogram.getSumNanos()))).append('\n');
+            out.append(name).append("_count{").append(labels).append("} ")
+                    .append(Long.toString(histogram.getCount())).append('\n');
+        }
+    }
+
+    private static void gauge(Appendable out, String name, String help, long value) throws IOException {
+        gaugeHeader(out, name, help).append(Long.toString(value)).append('\n');
+    }
+
+    private static void gauge(Appendable out, String name, String help, double value) throws IOException {
+        gaugeHeader(out, name, help).append(Double.toString(value)).append('\n');
+    }
+
+    private static Appendable gaugeHeader(Appendable out, String name, String help) throws IOException {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+        return out.append(PREFIX).append(name).append(' ');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000d;
+    }
+}
@@ -0,0 +1,144 @@
+package com.chargebacks.processor.metrics;
+
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.writer.AtomicFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Collects the step metrics of each running export job and, when the job ends, writes them as a
+// Prometheus text file (by default next to the output) for a textfile collector or sidecar to
+// scrape. The file is replaced atomically (see AtomicFiles). An empty chargeback.metrics.file turns
+// the file off.
+//
+// An export assembled from several jobs starts a group and passes it to each job as GROUP. Grouped
+// jobs add their step metrics to the group instead of writing the file, and finishGroup() writes
+// the totals once the whole export is done.
+@Component
+public class ExportMetricsRecorder implements JobExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportMetricsRecorder.class);
+
+    public static final String GROUP = "metrics.group";
+
+    @Value("${chargeback.metrics.file:${chargeback.output.directory:./output}/chargebacks_export.prom}")
+    private String metricsFile;
+
+    private final Map<Long, Run> running = new ConcurrentHashMap<>();
+    private final Map<String, Run> groups = new ConcurrentHashMap<>();
+
+    // partBytes: what a rolling export's writer reported for the parts it wrote
+    private record Run(ExportMetrics metrics, long startNanos, AtomicLong partBytes) {
+
+        Run() {
+            this(new ExportMetrics(), System.nanoTime(), new AtomicLong());
+        }
+    }
+
+    public String startGroup() {
+        String group = UUID.randomUUID().toString();
+        groups.put(group, new Run());
+        return group;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        Run group = group(jobExecution.getJobParameters());
+        running.put(jobExecution.getId(), group != null ? group : new Run());
+    }
+
+    public void record(Long jobExecutionId, ExportMetrics stepMetrics) {
+        Run run = running.get(jobExecutionId);
+        if (run != null) {
+            run.metrics().merge(stepMetrics);
+        }
+    }
+
+    // A rolling export has no single output file, so its writer reports the size of its parts
+    public void recordOutputBytes(Long jobExecutionId, long bytes) {
+        Run run = running.get(jobExecutionId);
+        if (run != null) {
+            run.partBytes().addAndGet(bytes);
+        }
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        Run run = running.remove(jobExecution.getId());
+        JobParameters parameters = jobExecution.getJobParameters();
+        if (run == null || group(parameters) != null) {
+            return;
+        }
+        long outputBytes = ExportOptions.isRolling(parameters) ? run.partBytes().get()
+                : fileBytes(parameters.getString("outputFile"));
+        write(run, outputBytes, jobExecution.getStatus() == BatchStatus.COMPLETED);
+    }
+
+    // Writes the metrics of a grouped export: what its jobs read, and the rows and bytes of the
+    // file they were assembled into
+    public void finishGroup(String group, long rowsWritten, String outputFile, boolean succeeded) {
+        Run run = groups.remove(group);
+        if (run == null) {
+            return;
+        }
+        run.metrics().setRowsWritten(rowsWritten);
+        write(run, fileBytes(outputFile), succeeded);
+    }
+
+    private Run group(JobParameters parameters) {
+        String group = parameters.getString(GROUP);
+        return group != null ? groups.get(group) : null;
+    }
+
+    private void write(Run run, long outputBytes, boolean succeeded) {
+        if (metricsFile == null || metricsFile.isEmpty()) {
+            return;
+        }
+        ExportMetrics metrics = run.metrics();
+        metrics.finish(System.nanoTime() - run.startNanos(), outputBytes, succeeded,
+                System.currentTimeMillis() / 1000);
+        // Metrics are a by-product: failing to write them must not fail the export
+        try {
+            write(metrics);
+        } catch (IOException e) {
+            logger.warn("Failed to write export metrics to {}", metricsFile, e);
+        }
+    }
+
+    private void write(ExportMetrics metrics) throws IOException {
+        Path path = Paths.get(metricsFile).toAbsolutePath();
+        AtomicFiles.replaceText(path, metrics::writePrometheus);
+        logger.info("Export metrics written to {}", path);
+    }
+
+    private static long fileBytes(String outputFile) {
+        if (outputFile == null) {
+            return 0;
+        }
+        try {
+            Path output = Paths.get(outputFile);
+            return Files.exists(output) ? Files.size(output) : 0;
+        } catch (IOException e) {
+            logger.warn("Failed to size export output {}", outputFile, e);
+            return 0;
+        }
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+}
@@ -0,0 +1,100 @@
+package com.chargebacks.processor.metrics;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+
+// Times each phase of one export step and hands the totals to ExportMetricsRecorder when the
+// step ends. A step runs its chunks on one thread, so the timings are plain fields: one instance
+// per step execution (step scope). Row counts come from the StepExecution itself, which also
+// covers steps that only register this as a StepExecutionListener.
+public class ExportMetricsStepListener implements StepExecutionListener, ChunkListener,
+        ItemReadListener<Chargeback>, ItemProcessListener<Chargeback, Chargeback>, ItemWriteListener<Chargeback> {
+
+    private final ExportMetricsRecorder recorder;
+    private ExportMetrics metrics = new ExportMetrics();
+
+    private long stepStart;
+    private boolean queryRecorded;
+    private long readStart;
+    private long processStart;
+    private long writeStart;
+    private long writeEnd;
+
+    public ExportMetricsStepListener(ExportMetricsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        metrics = new ExportMetrics();
+        queryRecorded = false;
+        writeEnd = 0;
+        // The step opens its reader and writer right after this
+        stepStart = System.nanoTime();
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        if (!queryRecorded) {
+            metrics.recordPhase(ExportMetrics.Phase.QUERY, System.nanoTime() - stepStart);
+            queryRecorded = true;
+        }
+        writeEnd = 0;
+    }
+
+    @Override
+    public void beforeRead() {
+        readStart = System.nanoTime();
+    }
+
+    // Not called for the read that finds no more rows
+    @Override
+    public void afterRead(Chargeback item) {
+        metrics.recordPhase(ExportMetrics.Phase.READ, System.nanoTime() - readStart);
+    }
+
+    @Override
+    public void beforeProcess(Chargeback item) {
+        processStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterProcess(Chargeback item, Chargeback result) {
+        metrics.recordPhase(ExportMetrics.Phase.PROCESS, System.nanoTime() - processStart);
+    }
+
+    @Override
+    public void beforeWrite(Chunk<? extends Chargeback> items) {
+        writeStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterWrite(Chunk<? extends Chargeback> items) {
+        writeEnd = System.nanoTime();
+        metrics.recordPhase(ExportMetrics.Phase.WRITE, writeEnd - writeStart);
+    }
+
+    // Runs after the chunk's transaction has committed
+    @Override
+    public void afterChunk(ChunkContext context) {
+        if (writeEnd != 0) {
+            metrics.recordPhase(ExportMetrics.Phase.COMMIT, System.nanoTime() - writeEnd);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        metrics.addCounts(stepExecution.getReadCount(), stepExecution.getWriteCount(),
+                stepExecution.getFilterCount(), stepExecution.getCommitCount());
+        recorder.record(stepExecution.getJobExecutionId(), metrics);
+        return null;
+    }
+}
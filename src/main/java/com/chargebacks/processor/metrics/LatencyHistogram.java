@@ -0,0 +1,75 @@
+package com.chargebacks.processor.metrics;
+
+import java.util.Arrays;
+
+// Cumulative-bucket latency histogram in the Prometheus layout. Not thread-safe: each step
+// records into its own and the totals are merged once the step ends.
+public class LatencyHistogram {
+
+    private final double[] bucketSeconds;
+    private final long[] bucketNanos;
+    // counts[i] holds observations <= bucketSeconds[i] but above the previous bound; the last
+    // slot holds everything beyond the highest bound
+    private final long[] counts;
+    private long count;
+    private long sumNanos;
+
+    public LatencyHistogram(double... bucketSeconds) {
+        if (bucketSeconds.length == 0) {
+            throw new IllegalArgumentException("At least one bucket is required");
+        }
+        for (int i = 1; i < bucketSeconds.length; i++) {
+            if (bucketSeconds[i] <= bucketSeconds[i - 1]) {
+                throw new IllegalArgumentException("Buckets must be in increasing order");
+            }
+        }
+        this.bucketSeconds = bucketSeconds.clone();
+        this.bucketNanos = new long[bucketSeconds.length];
+        for (int i = 0; i < bucketSeconds.length; i++) {
+            bucketNanos[i] = Math.round(bucketSeconds[i] * 1_000_000_000d);
+        }
+        this.counts = new long[bucketSeconds.length + 1];
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < bucketNanos.length && nanos > bucketNanos[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        count++;
+        sumNanos += nanos;
+    }
+
+    public void merge(LatencyHistogram other) {
+        if (!Arrays.equals(bucketSeconds, other.bucketSeconds)) {
+            throw new IllegalArgumentException("Cannot merge histograms with different buckets");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sumNanos += other.sumNanos;
+    }
+
+    public double[] getBucketSeconds() {
+        return bucketSeconds.clone();
+    }
+
+    // Observations at or below bucketSeconds[bucket]; bucketSeconds.length gives the total
+    public long getCumulativeCount(int bucket) {
+        long cumulative = 0;
+        for (int i = 0; i <= bucket; i++) {
+            cumulative += counts[i];
+        }
+        return cumulative;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSumNanos() {
+        return sumNanos;
+    }
+}
@@ -5,8 +5,14 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public class Chargeback {
+
+    // disputed_amt is DECIMAL(19, 2); amounts that fit are carried as a long of minor units
+    public static final int AMOUNT_SCALE = 2;
+
     private LocalDate disputedDt;
     private BigDecimal disputedAmt;
+    private long disputedAmtMinor;
+    private boolean minorAmount;
     private String disputedCurr;
     private String merchandiseRef;
     private String reasonForDispute;
@@ -34,11 +40,32 @@ public class Chargeback {
     }
 
     public BigDecimal getDisputedAmt() {
+        if (disputedAmt == null && minorAmount) {
+            disputedAmt = BigDecimal.valueOf(disputedAmtMinor, AMOUNT_SCALE);
+        }
         return disputedAmt;
     }
 
     public void setDisputedAmt(BigDecimal disputedAmt) {
         this.disputedAmt = disputedAmt;
+        this.minorAmount = false;
+    }
+
+    public boolean hasMinorAmount() {
+        return minorAmount;
+    }
+
+    public long getDisputedAmtMinor() {
+        if (!minorAmount) {
+            throw new IllegalStateException("Amount is not held as minor units");
+        }
+        return disputedAmtMinor;
+    }
+
+    public void setDisputedAmtMinor(long disputedAmtMinor) {
+        this.disputedAmtMinor = disputedAmtMinor;
+        this.minorAmount = true;
+        this.disputedAmt = null;
     }
 
     public String getDisputedCurr() {
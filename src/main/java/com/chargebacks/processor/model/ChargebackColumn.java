@@ -0,0 +1,55 @@
+package com.chargebacks.processor.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+// The columns of the Chargebacks table, in the order a full export writes them
+public enum ChargebackColumn {
+    DISPUTED_DT("disputed_dt"),
+    DISPUTED_AMT("disputed_amt"),
+    DISPUTED_CURR("disputed_curr"),
+    MERCHANDISE_REF("merchandise_ref"),
+    REASON_FOR_DISPUTE("reason_for_dispute"),
+    CREATED_TIME("created_time");
+
+    public static final List<ChargebackColumn> ALL = List.of(values());
+
+    private final String columnName;
+
+    ChargebackColumn(String columnName) {
+        this.columnName = columnName;
+    }
+
+    public String columnName() {
+        return columnName;
+    }
+
+    public static ChargebackColumn of(String columnName) {
+        String name = columnName.trim().toLowerCase(Locale.ROOT);
+        for (ChargebackColumn column : values()) {
+            if (column.columnName.equals(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column '" + columnName.trim() + "', expected one of "
+                + join(ALL));
+    }
+
+    // Parses a comma-separated list of column names, keeping the order given
+    public static List<ChargebackColumn> parse(String columnNames) {
+        List<ChargebackColumn> columns = new ArrayList<>();
+        for (String name : columnNames.split(",")) {
+            if (!name.isBlank()) {
+                columns.add(of(name));
+            }
+        }
+        return columns;
+    }
+
+    // The comma-separated column names, which is also the CSV header for these columns
+    public static String join(List<ChargebackColumn> columns) {
+        return columns.stream().map(ChargebackColumn::columnName).collect(Collectors.joining(","));
+    }
+}
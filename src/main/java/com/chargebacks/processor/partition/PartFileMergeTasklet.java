@@ -0,0 +1,102 @@
+package com.chargebacks.processor.partition;
+
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.writer.Compression;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Concatenates the per-slice part files, in slice order, behind a single header. Slices cover
+// consecutive time windows and each is ordered by created_time, so the result is ordered too.
+// Compressed parts are sequences of gzip members, so a gzipped header followed by the parts
+// byte for byte is still one valid .gz file.
+public class PartFileMergeTasklet implements Tasklet {
+
+    private final String outputFileName;
+    private final int sliceCount;
+    private final Compression compression;
+    private final List<ChargebackColumn> columns;
+    private boolean includeHeader = true;
+
+    public PartFileMergeTasklet(String outputFileName, int sliceCount) {
+        this(outputFileName, sliceCount, Compression.NONE);
+    }
+
+    public PartFileMergeTasklet(String outputFileName, int sliceCount, Compression compression) {
+        this(outputFileName, sliceCount, compression, ChargebackColumn.ALL);
+    }
+
+    // columns are the ones the part files were written with, which the header names
+    public PartFileMergeTasklet(String outputFileName, int sliceCount, Compression compression,
+                                List<ChargebackColumn> columns) {
+        this.outputFileName = outputFileName;
+        this.sliceCount = sliceCount;
+        this.compression = compression;
+        this.columns = List.copyOf(columns);
+    }
+
+    // Off when the merged file is itself a piece of a larger export that has its own header
+    public void setIncludeHeader(boolean includeHeader) {
+        this.includeHeader = includeHeader;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        merge();
+        return RepeatStatus.FINISHED;
+    }
+
+    public void merge() throws IOException {
+        Path output = Paths.get(outputFileName);
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header());
+            while (includeHeader && headerBuffer.hasRemaining()) {
+                out.write(headerBuffer);
+            }
+
+            for (int i = 0; i < sliceCount; i++) {
+                Path part = Paths.get(TimeRangePartitioner.partFileName(outputFileName, i));
+                if (!Files.exists(part)) {
+                    throw new IllegalStateException("Missing part file: " + part);
+                }
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < sliceCount; i++) {
+            Files.deleteIfExists(Paths.get(TimeRangePartitioner.partFileName(outputFileName, i)));
+        }
+    }
+
+    private byte[] header() throws IOException {
+        byte[] header = (ChargebackColumn.join(columns) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        if (compression == Compression.NONE) {
+            return header;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(header);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package com.chargebacks.processor.partition;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Splits a [start, end] window into consecutive time slices. Every slice but the last is
+// half-open so that a row sitting exactly on a boundary is exported exactly once.
+public class TimeRangePartitioner implements Partitioner {
+
+    public static final String SLICE_INDEX = "sliceIndex";
+    public static final String SLICE_START = "sliceStart";
+    public static final String SLICE_END = "sliceEnd";
+    public static final String LAST_SLICE = "lastSlice";
+
+    private final LocalDateTime startTimestamp;
+    private final LocalDateTime endTimestamp;
+    private final int workers;
+    private final long sliceMinutes;
+
+    public TimeRangePartitioner(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                int workers, long sliceMinutes) {
+        if (endTimestamp.isBefore(startTimestamp)) {
+            throw new IllegalArgumentException("End timestamp must not be before start timestamp");
+        }
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.workers = Math.max(1, workers);
+        this.sliceMinutes = sliceMinutes;
+    }
+
+    public int sliceCount() {
+        long rangeSeconds = Duration.between(startTimestamp, endTimestamp).getSeconds();
+        if (rangeSeconds == 0) {
+            return 1;
+        }
+        if (sliceMinutes > 0) {
+            long sliceSeconds = sliceMinutes * 60;
+            return (int) Math.min(Integer.MAX_VALUE, (rangeSeconds + sliceSeconds - 1) / sliceSeconds);
+        }
+        return (int) Math.min(workers, rangeSeconds);
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        // gridSize is ignored: slicing is driven by the job parameters so that the merge
+        // step can recompute the same slice count
+        int slices = sliceCount();
+        long rangeSeconds = Duration.between(startTimestamp, endTimestamp).getSeconds();
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+
+        LocalDateTime sliceStart = startTimestamp;
+        for (int i = 0; i < slices; i++) {
+            boolean last = i == slices - 1;
+            LocalDateTime sliceEnd;
+            if (last) {
+                sliceEnd = endTimestamp;
+            } else if (sliceMinutes > 0) {
+                sliceEnd = sliceStart.plusMinutes(sliceMinutes);
+            } else {
+                sliceEnd = startTimestamp.plusSeconds(rangeSeconds * (i + 1) / slices);
+            }
+
+            ExecutionContext context = new ExecutionContext();
+            context.putInt(SLICE_INDEX, i);
+            context.putString(SLICE_START, sliceStart.toString());
+            context.putString(SLICE_END, sliceEnd.toString());
+            context.put(LAST_SLICE, last);
+            partitions.put(partitionName(i), context);
+
+            sliceStart = sliceEnd;
+        }
+        return partitions;
+    }
+
+    public static String partitionName(int sliceIndex) {
+        return String.format("slice%05d", sliceIndex);
+    }
+
+    public static String partFileName(String outputFileName, int sliceIndex) {
+        return String.format("%s.part%05d", outputFileName, sliceIndex);
+    }
+}
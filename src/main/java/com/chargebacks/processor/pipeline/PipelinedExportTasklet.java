@@ -0,0 +1,205 @@
+package com.chargebacks.processor.pipeline;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.summary.ExportSummary;
+import com.chargebacks.processor.writer.ChargebackItemWriter;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs an export as three overlapping stages instead of the chunk loop's read, process, write in
+// turn: a reader thread pulls batches of rows, a pool processes and encodes each batch to CSV,
+// and the step's own thread writes the encoded batches in read order.
+//
+// The reader hands each batch's encoding future to the writer through a bounded queue, so the
+// writer takes them in order and a slow writer or encoder pool blocks the reader rather than
+// letting rows pile up in memory. A failure in any stage is rethrown on the step thread, in
+// order: rows read before a read error are still written. The stages do not line up with
+// commits, so the export runs in one transaction and is not restartable from the middle.
+//
+// Each encoded batch also carries an ExportSummary of its rows, which the writer merges and saves
+// in the step execution context once everything is written. An optional write listener is told
+// about each batch's processed rows on the step's thread, after they are written, as a chunk
+// step's listeners are.
+public class PipelinedExportTasklet implements Tasklet {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    // Marks the end of the input in the queue
+    private static final Future<EncodedBatch> END = CompletableFuture.completedFuture(null);
+
+    private final ItemStreamReader<Chargeback> reader;
+    private final ItemProcessor<Chargeback, Chargeback> processor;
+    private final ChargebackItemWriter writer;
+    private final int encoderThreads;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    private ItemWriteListener<Chargeback> writeListener;
+
+    private volatile boolean cancelled;
+
+    public PipelinedExportTasklet(ItemStreamReader<Chargeback> reader, ItemProcessor<Chargeback, Chargeback> processor,
+                                  ChargebackItemWriter writer, int encoderThreads) {
+        this(reader, processor, writer, encoderThreads, DEFAULT_BATCH_SIZE, encoderThreads * 4);
+    }
+
+    public PipelinedExportTasklet(ItemStreamReader<Chargeback> reader, ItemProcessor<Chargeback, Chargeback> processor,
+                                  ChargebackItemWriter writer, int encoderThreads, int batchSize, int queueCapacity) {
+        if (encoderThreads < 1 || batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("encoderThreads, batchSize and queueCapacity must be at least 1");
+        }
+        this.reader = reader;
+        this.processor = processor;
+        this.writer = writer;
+        this.encoderThreads = encoderThreads;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setWriteListener(ItemWriteListener<Chargeback> writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        ExecutionContext executionContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        BlockingQueue<Future<EncodedBatch>> encoded = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService encoders = newEncoderPool();
+        cancelled = false;
+
+        reader.open(executionContext);
+        try {
+            writer.open(executionContext);
+            try {
+                Thread readerThread = new Thread(() -> readBatches(encoded, encoders), "chargeback-pipeline-reader");
+                readerThread.setDaemon(true);
+                readerThread.start();
+                try {
+                    writeBatches(encoded, contribution).saveTo(executionContext);
+                    // Everything read has been written, so the reader's final position is saved with the step
+                    reader.update(executionContext);
+                } finally {
+                    // Unblocks the reader if it is waiting on a full queue after a failure downstream
+                    cancelled = true;
+                    readerThread.interrupt();
+                    readerThread.join();
+                    encoded.forEach(batch -> batch.cancel(true));
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            encoders.shutdownNow();
+            reader.close();
+        }
+        return RepeatStatus.FINISHED;
+    }
+
+    private void readBatches(BlockingQueue<Future<EncodedBatch>> encoded, ExecutorService encoders) {
+        try {
+            while (!cancelled) {
+                List<Chargeback> batch = new ArrayList<>(batchSize);
+                Chargeback item;
+                while (batch.size() < batchSize && (item = reader.read()) != null) {
+                    batch.add(item);
+                }
+                if (!batch.isEmpty()) {
+                    encoded.put(encoders.submit(() -> encode(batch)));
+                }
+                if (batch.size() < batchSize) {
+                    encoded.put(END);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // Queued behind the batches already read, so those are still written first. Errors are
+            // queued too: without a failed future or END the writer would wait on the queue forever.
+            CompletableFuture<EncodedBatch> failed = CompletableFuture.failedFuture(e);
+            try {
+                encoded.put(failed);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Runs on the encoder pool, so the processor is called from several threads at once
+    private EncodedBatch encode(List<Chargeback> batch) throws Exception {
+        List<Chargeback> processed = new ArrayList<>(batch.size());
+        for (Chargeback item : batch) {
+            Chargeback result = processor.process(item);
+            if (result != null) {
+                processed.add(result);
+            }
+        }
+        ExportSummary summary = new ExportSummary();
+        processed.forEach(summary::add);
+        return new EncodedBatch(writer.encodeLines(processed), batch.size(), processed, summary);
+    }
+
+    private ExportSummary writeBatches(BlockingQueue<Future<EncodedBatch>> encoded, StepContribution contribution)
+            throws Exception {
+        ExportSummary summary = new ExportSummary();
+        while (true) {
+            Future<EncodedBatch> next = encoded.take();
+            if (next == END) {
+                return summary;
+            }
+            EncodedBatch batch;
+            try {
+                batch = next.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            int written = batch.items().size();
+            writer.writeEncoded(batch.lines(), written);
+            for (int i = 0; i < batch.read(); i++) {
+                contribution.incrementReadCount();
+            }
+            contribution.incrementFilterCount(batch.read() - written);
+            contribution.incrementWriteCount(written);
+            summary.merge(batch.summary());
+            if (writeListener != null) {
+                writeListener.afterWrite(new Chunk<>(batch.items()));
+            }
+        }
+    }
+
+    private ExecutorService newEncoderPool() {
+        int pool = POOL_COUNT.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(encoderThreads, task -> {
+            Thread thread = new Thread(task, "chargeback-encoder-" + pool + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private record EncodedBatch(String lines, int read, List<Chargeback> items, ExportSummary summary) {
+    }
+}
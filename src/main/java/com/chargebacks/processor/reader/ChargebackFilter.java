@@ -0,0 +1,89 @@
+package com.chargebacks.processor.reader;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Row predicates pushed down into the readers' WHERE clause, so rows an export leaves out are
+// never sent by the database. Every value is bound as a statement parameter after the two
+// created_time bounds; none is ever spliced into the SQL text.
+public final class ChargebackFilter {
+
+    public static final ChargebackFilter NONE = new ChargebackFilter(List.of(), null, null, null);
+
+    private final List<String> currencies;
+    private final BigDecimal minAmount;
+    private final BigDecimal maxAmount;
+    private final String reasonPattern;
+
+    // An empty currency list and null bounds or pattern leave that column unfiltered; the
+    // reason pattern is a SQL LIKE pattern
+    public ChargebackFilter(List<String> currencies, BigDecimal minAmount, BigDecimal maxAmount,
+                            String reasonPattern) {
+        this.currencies = List.copyOf(currencies);
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.reasonPattern = reasonPattern;
+    }
+
+    public List<String> getCurrencies() {
+        return currencies;
+    }
+
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public String getReasonPattern() {
+        return reasonPattern;
+    }
+
+    public boolean isEmpty() {
+        return currencies.isEmpty() && minAmount == null && maxAmount == null && reasonPattern == null;
+    }
+
+    // The predicates to append to a WHERE clause, each starting with " AND "
+    public String sql() {
+        StringBuilder sql = new StringBuilder();
+        if (!currencies.isEmpty()) {
+            sql.append(" AND disputed_curr IN (")
+               .append(String.join(", ", Collections.nCopies(currencies.size(), "?")))
+               .append(')');
+        }
+        if (minAmount != null) {
+            sql.append(" AND disputed_amt >= ?");
+        }
+        if (maxAmount != null) {
+            sql.append(" AND disputed_amt <= ?");
+        }
+        if (reasonPattern != null) {
+            sql.append(" AND reason_for_dispute LIKE ?");
+        }
+        return sql.toString();
+    }
+
+    // Values for the placeholders of sql(), in order
+    public List<Object> arguments() {
+        List<Object> arguments = new ArrayList<>(currencies);
+        if (minAmount != null) {
+            arguments.add(minAmount);
+        }
+        if (maxAmount != null) {
+            arguments.add(maxAmount);
+        }
+        if (reasonPattern != null) {
+            arguments.add(reasonPattern);
+        }
+        return arguments;
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "no filter" : sql().substring(" AND ".length()) + " " + arguments();
+    }
+}
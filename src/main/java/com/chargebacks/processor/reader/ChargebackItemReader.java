@@ -1,35 +1,91 @@
 package com.chargebacks.processor.reader;
 
 import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
-import org.springframework.jdbc.core.RowMapper;
-import org.springframework.stereotype.Component;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 
 import javax.sql.DataSource;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
-@Component
+// Saves its position the way ChargebackKeysetItemReader does, as the last created_time read
+// plus the number of rows read with that created_time. A restarted step re-runs the query from
+// that created_time and skips just those rows, instead of the default of scrolling the cursor
+// past every row committed before the failure.
 public class ChargebackItemReader extends JdbcCursorItemReader<Chargeback> {
 
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    // AbstractCursorItemReader only applies a fetch size to the statement when it isn't -1
+    private static final int FETCH_SIZE_NOT_SET = -1;
+
+    private static final String LAST_CREATED_TIME = "last.created_time";
+    private static final String LAST_TIE_COUNT = "last.tie_count";
+
     private LocalDateTime startTimestamp;
     private LocalDateTime endTimestamp;
+    private boolean endInclusive = true;
+    private Collection<ChargebackColumn> columns = ChargebackColumn.ALL;
+    private ChargebackFilter filter = ChargebackFilter.NONE;
+    private FetchStrategy fetchStrategy = FetchStrategy.BUFFERED;
+    private int cursorFetchSize = DEFAULT_FETCH_SIZE;
+    private DatabaseMetaDataSummary databaseMetaData;
+
+    private LocalDateTime lastCreatedTime;
+    private int lastTieCount;
+    private LocalDateTime resumeCreatedTime;
+    private int resumeTieCount;
 
     public ChargebackItemReader(DataSource dataSource) {
+        setName("ChargebackItemReader");
         setDataSource(dataSource);
-        setSql("SELECT disputed_dt, disputed_amt, disputed_curr, merchandise_ref, " +
-               "reason_for_dispute, created_time " +
-               "FROM Chargebacks " +
-               "WHERE created_time >= ? AND created_time <= ? " +
-               "ORDER BY created_time");
+        setSql(buildSql());
         setRowMapper(new ChargebackRowMapper());
     }
 
     public void setTimestampRange(LocalDateTime startTimestamp, LocalDateTime endTimestamp) {
+        setTimestampRange(startTimestamp, endTimestamp, true);
+    }
+
+    public void setTimestampRange(LocalDateTime startTimestamp, LocalDateTime endTimestamp, boolean endInclusive) {
         this.startTimestamp = startTimestamp;
         this.endTimestamp = endTimestamp;
+        this.endInclusive = endInclusive;
+        setSql(buildSql());
+    }
+
+    // Columns left out are never fetched and stay null on the items; created_time is always read
+    public void setColumns(Collection<ChargebackColumn> columns) {
+        this.columns = columns;
+        setSql(buildSql());
+    }
+
+    public void setFilter(ChargebackFilter filter) {
+        this.filter = filter;
+        setSql(buildSql());
+    }
+
+    public void setFetchStrategy(FetchStrategy fetchStrategy, int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1");
+        }
+        this.fetchStrategy = fetchStrategy;
+        this.cursorFetchSize = fetchSize;
+    }
+
+    public FetchStrategy getFetchStrategy() {
+        return fetchStrategy;
+    }
+
+    private String buildSql() {
+        return ChargebackQuery.sql(columns, filter, endInclusive);
     }
 
     @Override
@@ -37,40 +93,123 @@ public class ChargebackItemReader extends JdbcCursorItemReader<Chargeback> {
         // Don't validate timestamps here - they'll be set before the job runs
         // Validation will happen in open() method
         if (startTimestamp != null && endTimestamp != null) {
-            setPreparedStatementSetter(ps -> {
-                ps.setObject(1, startTimestamp);
-                ps.setObject(2, endTimestamp);
-            });
+            setPreparedStatementSetter(ps -> bind(ps, startTimestamp));
         }
         super.afterPropertiesSet();
     }
 
     @Override
-    public void open(org.springframework.batch.item.ExecutionContext executionContext) {
+    public void open(ExecutionContext executionContext) {
         // Validate timestamps when reader is actually opened
         if (startTimestamp == null || endTimestamp == null) {
             throw new IllegalStateException("Start and end timestamps must be set before opening the reader");
         }
+        lastCreatedTime = null;
+        lastTieCount = 0;
+        resumeCreatedTime = null;
+        resumeTieCount = 0;
+        if (isSaveState() && executionContext.containsKey(getExecutionContextKey(LAST_CREATED_TIME))) {
+            resumeCreatedTime = LocalDateTime.parse(executionContext.getString(getExecutionContextKey(LAST_CREATED_TIME)));
+            resumeTieCount = executionContext.getInt(getExecutionContextKey(LAST_TIE_COUNT));
+        }
         // Set prepared statement setter (will be called each time reader is opened)
-        setPreparedStatementSetter(ps -> {
-            ps.setObject(1, startTimestamp);
-            ps.setObject(2, endTimestamp);
-        });
+        LocalDateTime from = resumeCreatedTime != null ? resumeCreatedTime : startTimestamp;
+        setPreparedStatementSetter(ps -> bind(ps, from));
+        applyFetchStrategy();
+        if (resumeCreatedTime != null) {
+            // Row numbers of the narrowed query no longer match the step's item count
+            setVerifyCursorPosition(false);
+        }
         super.open(executionContext);
     }
 
-    private static class ChargebackRowMapper implements RowMapper<Chargeback> {
-        @Override
-        public Chargeback mapRow(ResultSet rs, int rowNum) throws SQLException {
-            Chargeback chargeback = new Chargeback();
-            chargeback.setDisputedDt(rs.getObject("disputed_dt", LocalDate.class));
-            chargeback.setDisputedAmt(rs.getBigDecimal("disputed_amt"));
-            chargeback.setDisputedCurr(rs.getString("disputed_curr"));
-            chargeback.setMerchandiseRef(rs.getString("merchandise_ref"));
-            chargeback.setReasonForDispute(rs.getString("reason_for_dispute"));
-            chargeback.setCreatedTime(rs.getObject("created_time", LocalDateTime.class));
-            return chargeback;
+    private void bind(PreparedStatement ps, LocalDateTime from) throws SQLException {
+        ps.setObject(1, from);
+        ps.setObject(2, endTimestamp);
+        List<Object> arguments = filter.arguments();
+        for (int i = 0; i < arguments.size(); i++) {
+            ps.setObject(3 + i, arguments.get(i));
         }
     }
-}
 
+    @Override
+    protected Chargeback readCursor(ResultSet rs, int currentRow) throws SQLException {
+        Chargeback chargeback = super.readCursor(rs, currentRow);
+        if (chargeback.getCreatedTime().equals(lastCreatedTime)) {
+            lastTieCount++;
+        } else {
+            lastCreatedTime = chargeback.getCreatedTime();
+            lastTieCount = 1;
+        }
+        return chargeback;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        super.update(executionContext);
+        if (isSaveState() && lastCreatedTime != null) {
+            executionContext.putString(getExecutionContextKey(LAST_CREATED_TIME), lastCreatedTime.toString());
+            executionContext.putInt(getExecutionContextKey(LAST_TIE_COUNT), lastTieCount);
+        }
+    }
+
+    // Called by open() on restart with the saved read count. The query already starts at the saved
+    // created_time, so only the rows already read with that created_time are skipped; like the
+    // keyset reader, this relies on rows sharing a timestamp coming back in index order.
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        if (resumeCreatedTime == null) {
+            super.jumpToItem(itemIndex);
+            return;
+        }
+        lastCreatedTime = resumeCreatedTime;
+        lastTieCount = 0;
+        int skipped = 0;
+        while (skipped < resumeTieCount && doRead() != null) {
+            skipped++;
+        }
+    }
+
+    private void applyFetchStrategy() {
+        switch (fetchStrategy) {
+            case STREAMING -> {
+                // Connector/J only streams for forward-only, read-only statements with this exact
+                // fetch size; other drivers reject a negative fetch size, so give them a batch hint
+                setFetchSize(isMySql() ? Integer.MIN_VALUE : cursorFetchSize);
+                // getRow() isn't supported on streaming result sets
+                setVerifyCursorPosition(false);
+            }
+            case CURSOR_FETCH -> {
+                // Without useCursorFetch Connector/J silently falls back to buffering everything
+                if (isMySql() && !databaseMetaData().url().contains("useCursorFetch=true")) {
+                    throw new IllegalStateException("CURSOR_FETCH needs useCursorFetch=true on the MySQL connection URL");
+                }
+                setFetchSize(cursorFetchSize);
+                setVerifyCursorPosition(false);
+            }
+            default -> {
+                setFetchSize(FETCH_SIZE_NOT_SET);
+                setVerifyCursorPosition(true);
+            }
+        }
+    }
+
+    private boolean isMySql() {
+        return "MySQL".equalsIgnoreCase(databaseMetaData().productName());
+    }
+
+    private DatabaseMetaDataSummary databaseMetaData() {
+        if (databaseMetaData == null) {
+            try {
+                databaseMetaData = JdbcUtils.extractDatabaseMetaData(getDataSource(),
+                        md -> new DatabaseMetaDataSummary(md.getDatabaseProductName(), String.valueOf(md.getURL())));
+            } catch (MetaDataAccessException e) {
+                databaseMetaData = new DatabaseMetaDataSummary("", "");
+            }
+        }
+        return databaseMetaData;
+    }
+
+    private record DatabaseMetaDataSummary(String productName, String url) {
+    }
+}
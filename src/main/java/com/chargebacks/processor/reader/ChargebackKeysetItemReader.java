@@ -0,0 +1,199 @@
+package com.chargebacks.processor.reader;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Seek-based alternative to ChargebackItemReader. Every page is a short, bounded query on
+// idx_created_time, so no result set or transaction stays open between chunks.
+//
+// Chargebacks has no primary key, so the position is the last created_time returned plus the
+// number of rows already returned with that same created_time. The next page seeks to
+// created_time >= last and skips those rows; rows sharing a timestamp come back in index order.
+//
+// That position has two limits:
+// - Skipped ties are still read. Each page fetches pageSize rows plus every earlier row with the
+//   last created_time, so a run of n rows sharing one timestamp costs O(n^2 / pageSize) rows read.
+//   Bursts of identical timestamps much larger than the page size should use the cursor reader.
+// - Nothing breaks ties in ORDER BY, so which of the rows sharing a timestamp fall before the
+//   position relies on the database returning them in the same index order on every query. A
+//   page boundary inside a tie can skip or repeat rows if that order changes between pages, e.g.
+//   when rows with that timestamp are inserted or deleted mid-read. Ordering by every column would
+//   make it deterministic but turn each page into a sort of the rest of the range, so it isn't done.
+public class ChargebackKeysetItemReader extends AbstractItemCountingItemStreamItemReader<Chargeback> {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final String DEFAULT_NAME = "ChargebackKeysetItemReader";
+
+    private static final String LAST_CREATED_TIME = "last.created_time";
+    private static final String LAST_TIE_COUNT = "last.tie_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChargebackRowMapper rowMapper = new ChargebackRowMapper();
+
+    private LocalDateTime startTimestamp;
+    private LocalDateTime endTimestamp;
+    private boolean endInclusive = true;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private Collection<ChargebackColumn> columns = ChargebackColumn.ALL;
+    private ChargebackFilter filter = ChargebackFilter.NONE;
+    private LocalDateTime startAfterCreatedTime;
+    private int startAfterTieCount;
+
+    private LocalDateTime lastCreatedTime;
+    private int lastTieCount;
+    private List<Chargeback> page;
+    private int pageIndex;
+    private boolean exhausted;
+
+    public ChargebackKeysetItemReader(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        setName(DEFAULT_NAME);
+    }
+
+    // The position a reader named DEFAULT_NAME last saved in a step's execution context, so it can
+    // be picked up after the step has finished with the reader; null if it saved none
+    public static LocalDateTime savedCreatedTime(ExecutionContext executionContext) {
+        String key = DEFAULT_NAME + "." + LAST_CREATED_TIME;
+        return executionContext.containsKey(key) ? LocalDateTime.parse(executionContext.getString(key)) : null;
+    }
+
+    public static int savedTieCount(ExecutionContext executionContext) {
+        return executionContext.getInt(DEFAULT_NAME + "." + LAST_TIE_COUNT, 0);
+    }
+
+    public void setTimestampRange(LocalDateTime startTimestamp, LocalDateTime endTimestamp) {
+        setTimestampRange(startTimestamp, endTimestamp, true);
+    }
+
+    public void setTimestampRange(LocalDateTime startTimestamp, LocalDateTime endTimestamp, boolean endInclusive) {
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.endInclusive = endInclusive;
+        this.startAfterCreatedTime = null;
+        this.startAfterTieCount = 0;
+    }
+
+    // Starts a fresh read just past a position returned by an earlier read, i.e. after the first
+    // tieCount rows with that created_time. Must be called after setTimestampRange().
+    public void setStartPosition(LocalDateTime createdTime, int tieCount) {
+        if (tieCount < 0) {
+            throw new IllegalArgumentException("Tie count must not be negative");
+        }
+        this.startAfterCreatedTime = createdTime;
+        this.startAfterTieCount = tieCount;
+    }
+
+    public LocalDateTime getLastCreatedTime() {
+        return lastCreatedTime;
+    }
+
+    public int getLastTieCount() {
+        return lastTieCount;
+    }
+
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        this.pageSize = pageSize;
+    }
+
+    // Columns left out are never fetched and stay null on the items; created_time is always read
+    public void setColumns(Collection<ChargebackColumn> columns) {
+        this.columns = columns;
+    }
+
+    // The tie count of a saved position counts only the rows the filter lets through, so a
+    // position is only meaningful to a reader with the same filter
+    public void setFilter(ChargebackFilter filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        if (startTimestamp == null || endTimestamp == null) {
+            throw new IllegalStateException("Start and end timestamps must be set before opening the reader");
+        }
+        lastCreatedTime = startAfterCreatedTime;
+        lastTieCount = startAfterTieCount;
+        if (isSaveState() && executionContext.containsKey(getExecutionContextKey(LAST_CREATED_TIME))) {
+            lastCreatedTime = LocalDateTime.parse(executionContext.getString(getExecutionContextKey(LAST_CREATED_TIME)));
+            lastTieCount = executionContext.getInt(getExecutionContextKey(LAST_TIE_COUNT));
+        }
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        super.update(executionContext);
+        if (isSaveState() && lastCreatedTime != null) {
+            executionContext.putString(getExecutionContextKey(LAST_CREATED_TIME), lastCreatedTime.toString());
+            executionContext.putInt(getExecutionContextKey(LAST_TIE_COUNT), lastTieCount);
+        }
+    }
+
+    @Override
+    protected void doOpen() {
+        page = null;
+        pageIndex = 0;
+        exhausted = false;
+    }
+
+    @Override
+    protected Chargeback doRead() {
+        if (page == null || pageIndex >= page.size()) {
+            if (exhausted) {
+                return null;
+            }
+            fetchPage();
+            if (page.isEmpty()) {
+                return null;
+            }
+        }
+
+        Chargeback chargeback = page.get(pageIndex++);
+        if (chargeback.getCreatedTime().equals(lastCreatedTime)) {
+            lastTieCount++;
+        } else {
+            lastCreatedTime = chargeback.getCreatedTime();
+            lastTieCount = 1;
+        }
+        return chargeback;
+    }
+
+    private void fetchPage() {
+        String sql = ChargebackQuery.sql(columns, filter, endInclusive) + " LIMIT ?";
+        LocalDateTime seekFrom = lastCreatedTime != null ? lastCreatedTime : startTimestamp;
+        int skip = lastCreatedTime != null ? lastTieCount : 0;
+        int limit = pageSize + skip;
+
+        List<Object> arguments = new ArrayList<>();
+        arguments.add(seekFrom);
+        arguments.add(endTimestamp);
+        arguments.addAll(filter.arguments());
+        arguments.add(limit);
+        List<Chargeback> rows = jdbcTemplate.query(sql, rowMapper, arguments.toArray());
+        exhausted = rows.size() < limit;
+        page = rows.subList(Math.min(skip, rows.size()), rows.size());
+        pageIndex = 0;
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        // Position is restored from the saved created_time and tie count in open()
+    }
+
+    @Override
+    protected void doClose() {
+        page = null;
+    }
+}
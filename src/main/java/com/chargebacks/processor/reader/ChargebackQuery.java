@@ -0,0 +1,27 @@
+package com.chargebacks.processor.reader;
+
+import com.chargebacks.processor.model.ChargebackColumn;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+// The range query both readers run: the selected columns, always with created_time since the
+// readers track their position by it, over a created_time range narrowed by a ChargebackFilter.
+// Placeholders are the range's start and end followed by the filter's arguments.
+final class ChargebackQuery {
+
+    private ChargebackQuery() {
+    }
+
+    static String sql(Collection<ChargebackColumn> columns, ChargebackFilter filter, boolean endInclusive) {
+        Set<ChargebackColumn> selected = EnumSet.noneOf(ChargebackColumn.class);
+        selected.addAll(columns);
+        selected.add(ChargebackColumn.CREATED_TIME);
+        // Partition slices other than the last are half-open so adjacent slices don't overlap
+        return "SELECT " + ChargebackColumn.join(selected.stream().toList()).replace(",", ", ") + " " +
+               "FROM Chargebacks " +
+               "WHERE created_time >= ? AND created_time " + (endInclusive ? "<=" : "<") + " ?" + filter.sql() + " " +
+               "ORDER BY created_time";
+    }
+}
@@ -0,0 +1,117 @@
+package com.chargebacks.processor.reader;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Column indexes are resolved once per result set rather than by label on every row, amounts
+// are parsed straight into minor units without going through BigDecimal, and the low-cardinality
+// text columns share one String instance per distinct value. Columns the query didn't select are
+// left null. Not thread-safe: one per reader.
+class ChargebackRowMapper implements RowMapper<Chargeback> {
+
+    static final long NOT_MINOR_UNITS = Long.MIN_VALUE;
+
+    private static final int MAX_DIGITS = 18;
+
+    private final StringDeduplicator currencies = new StringDeduplicator(256);
+    private final StringDeduplicator reasons = new StringDeduplicator(4096);
+
+    private ResultSet resolvedFor;
+    private int disputedDtIndex;
+    private int disputedAmtIndex;
+    private int disputedCurrIndex;
+    private int merchandiseRefIndex;
+    private int reasonForDisputeIndex;
+    private int createdTimeIndex;
+
+    @Override
+    public Chargeback mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (rs != resolvedFor) {
+            resolveColumns(rs);
+        }
+
+        Chargeback chargeback = new Chargeback(
+                disputedDtIndex > 0 ? rs.getObject(disputedDtIndex, LocalDate.class) : null,
+                null,
+                disputedCurrIndex > 0 ? currencies.dedupe(rs.getString(disputedCurrIndex)) : null,
+                merchandiseRefIndex > 0 ? rs.getString(merchandiseRefIndex) : null,
+                reasonForDisputeIndex > 0 ? reasons.dedupe(rs.getString(reasonForDisputeIndex)) : null,
+                createdTimeIndex > 0 ? rs.getObject(createdTimeIndex, LocalDateTime.class) : null);
+
+        String amount = disputedAmtIndex > 0 ? rs.getString(disputedAmtIndex) : null;
+        if (amount != null) {
+            long minorUnits = parseMinorUnits(amount);
+            if (minorUnits != NOT_MINOR_UNITS) {
+                chargeback.setDisputedAmtMinor(minorUnits);
+            } else {
+                chargeback.setDisputedAmt(new BigDecimal(amount));
+            }
+        }
+        return chargeback;
+    }
+
+    private void resolveColumns(ResultSet rs) {
+        disputedDtIndex = columnIndex(rs, "disputed_dt");
+        disputedAmtIndex = columnIndex(rs, "disputed_amt");
+        disputedCurrIndex = columnIndex(rs, "disputed_curr");
+        merchandiseRefIndex = columnIndex(rs, "merchandise_ref");
+        reasonForDisputeIndex = columnIndex(rs, "reason_for_dispute");
+        createdTimeIndex = columnIndex(rs, "created_time");
+        resolvedFor = rs;
+    }
+
+    // 0 for a column the query didn't select, which findColumn() reports with an SQLException
+    private static int columnIndex(ResultSet rs, String column) {
+        try {
+            return rs.findColumn(column);
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    // Parses a plain decimal with exactly Chargeback.AMOUNT_SCALE fraction digits, as MySQL
+    // renders DECIMAL(19, 2), into minor units. Anything else (another scale, an exponent, more
+    // than 18 digits) returns NOT_MINOR_UNITS so the caller can keep the exact BigDecimal and its
+    // original rendering.
+    static long parseMinorUnits(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i = 1;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (fractionDigits >= 0) {
+                    return NOT_MINOR_UNITS;
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > MAX_DIGITS) {
+                return NOT_MINOR_UNITS;
+            }
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        if (fractionDigits != Chargeback.AMOUNT_SCALE) {
+            return NOT_MINOR_UNITS;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,16 @@
+package com.chargebacks.processor.reader;
+
+// How the cursor reader asks the JDBC driver to deliver rows.
+//
+// BUFFERED     - driver default. Connector/J reads the whole result set into client heap
+//                before the first row is returned.
+// STREAMING    - rows are pulled one at a time off the wire (fetch size Integer.MIN_VALUE on
+//                MySQL). Lowest memory, but the connection can't be used for anything else
+//                until the result set is closed.
+// CURSOR_FETCH - a server-side cursor returns rows in batches of the configured fetch size.
+//                Needs useCursorFetch=true on the MySQL connection.
+public enum FetchStrategy {
+    BUFFERED,
+    STREAMING,
+    CURSOR_FETCH
+}
@@ -0,0 +1,47 @@
+package com.chargebacks.processor.reader;
+
+// Bounded canonicalizing cache for low-cardinality columns such as disputed_curr and
+// reason_for_dispute, so rows share one String instance per distinct value instead of each
+// holding its own copy. Once full it stops admitting new values and returns them unchanged,
+// so a high-cardinality column can't grow it without bound.
+public class StringDeduplicator {
+
+    private final String[] table;
+    private final int mask;
+    private final int maxEntries;
+    private int size;
+
+    public StringDeduplicator(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        // Power-of-two table at most half full keeps linear probes short
+        int capacity = Integer.highestOneBit(maxEntries * 2 - 1) << 1;
+        this.table = new String[capacity];
+        this.mask = capacity - 1;
+        this.maxEntries = maxEntries;
+    }
+
+    public String dedupe(String value) {
+        if (value == null) {
+            return null;
+        }
+        int slot = value.hashCode() & mask;
+        String existing;
+        while ((existing = table[slot]) != null) {
+            if (existing.equals(value)) {
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size < maxEntries) {
+            table[slot] = value;
+            size++;
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,73 @@
+package com.chargebacks.processor.rollup;
+
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.writer.AtomicFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Merges the rollup tables of each running export job's steps and, when the job completes,
+// writes them to a CSV next to the detailed output (see rollupFileName). The file is replaced
+// atomically. Unlike the metrics file the rollup is part of the export, so failing to write it
+// fails the job.
+@Component
+public class RollupRecorder implements JobExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupRecorder.class);
+
+    private final Map<Long, RollupTable> running = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        if (Boolean.parseBoolean(jobExecution.getJobParameters().getString(ExportOptions.ROLLUP))) {
+            running.put(jobExecution.getId(), new RollupTable());
+        }
+    }
+
+    // Partition workers finish on their own threads
+    public void record(Long jobExecutionId, RollupTable stepTable) {
+        RollupTable table = running.get(jobExecutionId);
+        if (table != null) {
+            synchronized (table) {
+                table.merge(stepTable);
+            }
+        }
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        RollupTable table = running.remove(jobExecution.getId());
+        if (table == null || jobExecution.getStatus() != BatchStatus.COMPLETED) {
+            return;
+        }
+        String rollupFile = rollupFileName(jobExecution.getJobParameters().getString("outputFile"));
+        try {
+            write(table, Paths.get(rollupFile).toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Failed to write rollup {}", rollupFile, e);
+            jobExecution.setStatus(BatchStatus.FAILED);
+            jobExecution.setExitStatus(ExitStatus.FAILED.addExitDescription(e));
+        }
+    }
+
+    private static void write(RollupTable table, Path path) throws IOException {
+        AtomicFiles.replaceText(path, table::writeCsv);
+        logger.info("Rollup of {} groups written to {}", table.size(), path);
+    }
+
+    // chargebacks_..._to_....csv(.gz), .parquet or a rolling export's base name becomes
+    // chargebacks_..._to_..._rollup.csv; the rollup is small, so it is never compressed
+    public static String rollupFileName(String outputFile) {
+        return outputFile.replaceFirst("(\\.csv|\\.parquet)?(\\.gz)?$", "") + "_rollup.csv";
+    }
+}
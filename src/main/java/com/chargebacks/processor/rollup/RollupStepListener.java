@@ -0,0 +1,45 @@
+package com.chargebacks.processor.rollup;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+
+// Rolls up each written chunk into a table of the step's own and hands it to RollupRecorder when
+// the step ends. Does nothing unless the job asked for a rollup. One instance per step execution.
+public class RollupStepListener implements StepExecutionListener, ItemWriteListener<Chargeback> {
+
+    private final RollupRecorder recorder;
+    private final boolean enabled;
+    private RollupTable table = new RollupTable();
+
+    public RollupStepListener(RollupRecorder recorder, boolean enabled) {
+        this.recorder = recorder;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        table = new RollupTable();
+    }
+
+    @Override
+    public void afterWrite(Chunk<? extends Chargeback> items) {
+        if (!enabled) {
+            return;
+        }
+        for (Chargeback item : items) {
+            table.add(item);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (enabled) {
+            recorder.record(stepExecution.getJobExecutionId(), table);
+        }
+        return null;
+    }
+}
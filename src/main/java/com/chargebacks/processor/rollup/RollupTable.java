@@ -0,0 +1,349 @@
+package com.chargebacks.processor.rollup;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.writer.ChargebackLineEncoder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Row count and exact amount total, minimum and maximum for each (disputed_dt, disputed_curr,
+// reason_for_dispute), kept in flat primitive arrays rather than a map of boxed keys and values.
+//
+// Currencies and reasons are numbered through small string tables, and the date's epoch day and
+// the two numbers are packed into one long key in an open-addressing table whose slots index
+// parallel arrays of counts and minor-unit sums, minima and maxima. A group whose amounts aren't
+// all held as minor units, or whose sum would overflow a long, moves to BigDecimal columns that
+// are only allocated once some group needs them. Every group holds at least one row, so a zero
+// count marks a free slot. Not thread safe: each step fills its own and they are merged.
+public class RollupTable {
+
+    public static final String HEADER =
+            "disputed_dt,disputed_curr,reason_for_dispute,row_count,total_amt,min_amt,max_amt";
+
+    private static final int CURRENCY_BITS = 12;
+    private static final int REASON_BITS = 20;
+    // Stands for a missing disputed_dt, outside any real date's epoch day
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StringIds currencies = new StringIds(1 << CURRENCY_BITS);
+    private final StringIds reasons = new StringIds(1 << REASON_BITS);
+
+    private long[] keys;
+    private long[] counts;
+    private long[] sums;
+    private long[] mins;
+    private long[] maxs;
+    private BigDecimal[] exactSums;
+    private BigDecimal[] exactMins;
+    private BigDecimal[] exactMaxs;
+    private int size;
+
+    public RollupTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        sums = new long[capacity];
+        mins = new long[capacity];
+        maxs = new long[capacity];
+        exactSums = null;
+        exactMins = null;
+        exactMaxs = null;
+    }
+
+    public void add(Chargeback item) {
+        LocalDate date = item.getDisputedDt();
+        int slot = slot(key(date != null ? (int) date.toEpochDay() : NO_DATE,
+                currencies.id(item.getDisputedCurr()), reasons.id(item.getReasonForDispute())));
+        counts[slot]++;
+        if (item.hasMinorAmount() && !isExact(slot)) {
+            addMinor(slot, item.getDisputedAmtMinor());
+        } else if (item.getDisputedAmt() != null) {
+            addExact(slot, item.getDisputedAmt(), item.getDisputedAmt(), item.getDisputedAmt());
+        }
+    }
+
+    public void merge(RollupTable other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] == 0) {
+                continue;
+            }
+            long key = other.keys[i];
+            int slot = slot(key(epochDay(key), currencies.id(other.currencies.value(currencyId(key))),
+                    reasons.id(other.reasons.value(reasonId(key)))));
+            counts[slot] += other.counts[i];
+            if (other.isExact(i)) {
+                addExact(slot, other.exactSums[i], other.exactMins[i], other.exactMaxs[i]);
+            } else if (other.hasAmounts(i)) {
+                addMinorGroup(slot, other.sums[i], other.mins[i], other.maxs[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static long key(int epochDay, int currency, int reason) {
+        return ((long) epochDay << 32) | ((long) currency << REASON_BITS) | reason;
+    }
+
+    private static int epochDay(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int currencyId(long key) {
+        return (int) (key >>> REASON_BITS) & ((1 << CURRENCY_BITS) - 1);
+    }
+
+    private static int reasonId(long key) {
+        return (int) key & ((1 << REASON_BITS) - 1);
+    }
+
+    // The slot holding key, set up as an empty group if the key isn't there yet. The caller counts
+    // at least one row into it straight away.
+    private int slot(long key) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size++;
+        keys[slot] = key;
+        mins[slot] = Long.MAX_VALUE;
+        maxs[slot] = Long.MIN_VALUE;
+        return slot;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private boolean isExact(int slot) {
+        return exactSums != null && exactSums[slot] != null;
+    }
+
+    private boolean hasAmounts(int slot) {
+        return mins[slot] <= maxs[slot];
+    }
+
+    private void addMinor(int slot, long minor) {
+        addMinorGroup(slot, minor, minor, minor);
+    }
+
+    private void addMinorGroup(int slot, long sum, long min, long max) {
+        long total = sums[slot] + sum;
+        if (isExact(slot) || ((sums[slot] ^ total) & (sum ^ total)) < 0) {
+            addExact(slot, BigDecimal.valueOf(sum, Chargeback.AMOUNT_SCALE),
+                    BigDecimal.valueOf(min, Chargeback.AMOUNT_SCALE), BigDecimal.valueOf(max, Chargeback.AMOUNT_SCALE));
+            return;
+        }
+        sums[slot] = total;
+        mins[slot] = Math.min(mins[slot], min);
+        maxs[slot] = Math.max(maxs[slot], max);
+    }
+
+    // min and max are null when the amounts being added were all missing
+    private void addExact(int slot, BigDecimal sum, BigDecimal min, BigDecimal max) {
+        toExact(slot);
+        exactSums[slot] = exactSums[slot].add(sum);
+        if (min != null && (exactMins[slot] == null || min.compareTo(exactMins[slot]) < 0)) {
+            exactMins[slot] = min;
+        }
+        if (max != null && (exactMaxs[slot] == null || max.compareTo(exactMaxs[slot]) > 0)) {
+            exactMaxs[slot] = max;
+        }
+    }
+
+    // Moves a group from the minor-unit columns to the BigDecimal ones
+    private void toExact(int slot) {
+        if (exactSums == null) {
+            exactSums = new BigDecimal[keys.length];
+            exactMins = new BigDecimal[keys.length];
+            exactMaxs = new BigDecimal[keys.length];
+        }
+        if (exactSums[slot] != null) {
+            return;
+        }
+        exactSums[slot] = BigDecimal.valueOf(sums[slot], Chargeback.AMOUNT_SCALE);
+        if (hasAmounts(slot)) {
+            exactMins[slot] = BigDecimal.valueOf(mins[slot], Chargeback.AMOUNT_SCALE);
+            exactMaxs[slot] = BigDecimal.valueOf(maxs[slot], Chargeback.AMOUNT_SCALE);
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        long[] oldSums = sums;
+        long[] oldMins = mins;
+        long[] oldMaxs = maxs;
+        BigDecimal[] oldExactSums = exactSums;
+        BigDecimal[] oldExactMins = exactMins;
+        BigDecimal[] oldExactMaxs = exactMaxs;
+        allocate(oldKeys.length * 2);
+        if (oldExactSums != null) {
+            exactSums = new BigDecimal[keys.length];
+            exactMins = new BigDecimal[keys.length];
+            exactMaxs = new BigDecimal[keys.length];
+        }
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] == 0) {
+                continue;
+            }
+            int slot = mix(oldKeys[i]) & mask;
+            while (counts[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            counts[slot] = oldCounts[i];
+            sums[slot] = oldSums[i];
+            mins[slot] = oldMins[i];
+            maxs[slot] = oldMaxs[i];
+            if (oldExactSums != null) {
+                exactSums[slot] = oldExactSums[i];
+                exactMins[slot] = oldExactMins[i];
+                exactMaxs[slot] = oldExactMaxs[i];
+            }
+        }
+    }
+
+    // One line per group, ordered by date, currency and reason. A group without any amounts has an
+    // empty total, min and max; a missing date, currency or reason is an empty field, as in the
+    // detailed CSV, and rows missing a date sort first.
+    public void writeCsv(Writer writer) throws IOException {
+        int[] slots = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                slots[n++] = i;
+            }
+        }
+        Integer[] order = Arrays.stream(slots).boxed().sorted(Comparator.<Integer>comparingInt(i -> epochDay(keys[i]))
+                .thenComparing(i -> currencies.value(currencyId(keys[i])))
+                .thenComparing(i -> reasons.value(reasonId(keys[i])))).toArray(Integer[]::new);
+
+        StringBuilder line = new StringBuilder(128);
+        writer.write(HEADER);
+        writer.write('\n');
+        for (int i : order) {
+            line.setLength(0);
+            if (epochDay(keys[i]) != NO_DATE) {
+                ChargebackLineEncoder.appendDate(LocalDate.ofEpochDay(epochDay(keys[i])), line);
+            }
+            line.append(',');
+            ChargebackLineEncoder.appendText(currencies.value(currencyId(keys[i])), line);
+            line.append(',');
+            ChargebackLineEncoder.appendText(reasons.value(reasonId(keys[i])), line);
+            line.append(',').append(counts[i]).append(',');
+            if (isExact(i)) {
+                ChargebackLineEncoder.appendDecimal(exactSums[i], line);
+                line.append(',');
+                ChargebackLineEncoder.appendDecimal(exactMins[i], line);
+                line.append(',');
+                ChargebackLineEncoder.appendDecimal(exactMaxs[i], line);
+            } else if (hasAmounts(i)) {
+                ChargebackLineEncoder.appendScaled(sums[i], Chargeback.AMOUNT_SCALE, line);
+                line.append(',');
+                ChargebackLineEncoder.appendScaled(mins[i], Chargeback.AMOUNT_SCALE, line);
+                line.append(',');
+                ChargebackLineEncoder.appendScaled(maxs[i], Chargeback.AMOUNT_SCALE, line);
+            } else {
+                line.append(",,");
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+    }
+
+    // Numbers distinct strings from 0 in an open-addressing table of their own. Null is numbered as
+    // the empty string, as both are written as an empty field.
+    private static final class StringIds {
+
+        private final int limit;
+        private String[] slots = new String[16];
+        private int[] ids = new int[16];
+        private String[] values = new String[8];
+        private int size;
+
+        StringIds(int limit) {
+            this.limit = limit;
+        }
+
+        int id(String value) {
+            if (value == null) {
+                value = "";
+            }
+            int mask = slots.length - 1;
+            int slot = spread(value.hashCode()) & mask;
+            String existing;
+            while ((existing = slots[slot]) != null) {
+                // Reader strings are deduplicated, so the identity check usually settles it
+                if (existing == value || existing.equals(value)) {
+                    return ids[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            int id = add(value);
+            slots[slot] = value;
+            ids[slot] = id;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        String value(int id) {
+            return values[id];
+        }
+
+        private int add(String value) {
+            if (size == limit) {
+                throw new IllegalStateException("More than " + limit + " distinct values to roll up");
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            return size++;
+        }
+
+        private void rehash() {
+            String[] oldSlots = slots;
+            int[] oldIds = ids;
+            slots = new String[oldSlots.length * 2];
+            ids = new int[slots.length];
+            int mask = slots.length - 1;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] == null) {
+                    continue;
+                }
+                int slot = spread(oldSlots[i].hashCode()) & mask;
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
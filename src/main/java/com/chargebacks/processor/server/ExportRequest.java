@@ -0,0 +1,85 @@
+package com.chargebacks.processor.server;
+
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.job.ExportRange;
+import com.chargebacks.processor.model.ChargebackColumn;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// The query string of GET /export: start and end as yyyy-MM-ddTHH:mm:ss, both inclusive, and the
+// same optional columns, currency, minAmount, maxAmount and reason as the command line. Anything
+// it can't make sense of is an IllegalArgumentException, which the server answers with a 400.
+record ExportRequest(ExportRange range, ExportOptions options) {
+
+    private static final Set<String> PARAMETERS = Set.of("start", "end", "columns", "currency", "minAmount",
+            "maxAmount", "reason");
+
+    static ExportRequest parse(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String pair : rawQuery.split("&")) {
+                int separator = pair.indexOf('=');
+                String name = decode(separator < 0 ? pair : pair.substring(0, separator));
+                String value = separator < 0 ? "" : decode(pair.substring(separator + 1));
+                if (!PARAMETERS.contains(name)) {
+                    throw new IllegalArgumentException("Unknown parameter '" + name + "'");
+                }
+                parameters.merge(name, value, (first, second) -> first + "," + second);
+            }
+        }
+
+        ExportRange range = new ExportRange(timestamp(parameters, "start"), timestamp(parameters, "end"));
+        ExportOptions options = new ExportOptions();
+        String columns = parameters.get("columns");
+        if (columns != null) {
+            options.setColumns(ChargebackColumn.parse(columns));
+        }
+        String currencies = parameters.get("currency");
+        if (currencies != null) {
+            options.setCurrencies(Arrays.stream(currencies.split(",")).map(String::trim)
+                    .filter(currency -> !currency.isEmpty()).toList());
+        }
+        options.setMinAmount(amount(parameters, "minAmount"));
+        options.setMaxAmount(amount(parameters, "maxAmount"));
+        String reason = parameters.get("reason");
+        options.setReasonPattern(reason == null || reason.isEmpty() ? null : reason);
+        options.validate();
+        return new ExportRequest(range, options);
+    }
+
+    private static LocalDateTime timestamp(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter '" + name + "'");
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Parameter '" + name + "' must be yyyy-MM-ddTHH:mm:ss: " + value);
+        }
+    }
+
+    private static BigDecimal amount(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter '" + name + "' must be a decimal amount: " + value);
+        }
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
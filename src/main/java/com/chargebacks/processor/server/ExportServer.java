@@ -0,0 +1,273 @@
+package com.chargebacks.processor.server;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.processor.ChargebackItemProcessor;
+import com.chargebacks.processor.reader.ChargebackItemReader;
+import com.chargebacks.processor.reader.FetchStrategy;
+import com.chargebacks.processor.writer.ChargebackLineEncoder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+// Serves exports over HTTP from one long-running process, so ad-hoc requests skip Spring Boot
+// startup and reuse the application's connection pool. GET /export streams CSV straight from a
+// streaming reader into the response with chunked transfer encoding; nothing is staged on disk or
+// in memory beyond a small encode buffer. At most maxConcurrentExports exports run at once, and
+// requests beyond that are turned away with a 503 rather than queued behind long exports.
+//
+// The status line goes out before the first row is read, so an error part way through can't
+// become an error status. The connection is dropped without the final chunk instead, which
+// HTTP clients report as a truncated response rather than a complete file.
+//
+// There is no authentication: anyone who can reach the port can export every chargeback. The
+// server therefore listens on the loopback interface unless told to bind somewhere else, and is
+// meant to sit behind something that authenticates callers when it does.
+@Component
+public class ExportServer implements DisposableBean {
+
+    public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_CONCURRENT_EXPORTS = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(ExportServer.class);
+
+    // Characters encoded before they are handed to the response, which sends them as chunks
+    private static final int FLUSH_CHARS = 64 * 1024;
+    private static final int STOP_DELAY_SECONDS = 5;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ChargebackItemProcessor chargebackItemProcessor;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Semaphore exportPermits;
+    private int fetchSize = ChargebackItemReader.DEFAULT_FETCH_SIZE;
+    private CountDownLatch stopped = new CountDownLatch(1);
+
+    // Port 0 picks a free port; the address actually bound is returned
+    public synchronized InetSocketAddress start(String bindAddress, int port, int maxConcurrentExports,
+                                                int fetchSize) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Export server is already running");
+        }
+        if (maxConcurrentExports < 1) {
+            throw new IllegalArgumentException("maxConcurrentExports must be at least 1");
+        }
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be at least 1");
+        }
+        this.fetchSize = fetchSize;
+        InetSocketAddress address = new InetSocketAddress(bindAddress, port);
+        if (address.isUnresolved()) {
+            throw new IllegalArgumentException("Unknown bind address " + bindAddress);
+        }
+        warmUpPool(maxConcurrentExports);
+
+        exportPermits = new Semaphore(maxConcurrentExports);
+        stopped = new CountDownLatch(1);
+        // A thread for every export that may run, plus one so a busy server can still answer
+        // health checks and turn requests away
+        executor = Executors.newFixedThreadPool(maxConcurrentExports + 1);
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/export", this::handleExport);
+        server.createContext("/health", this::handleHealth);
+        server.start();
+        log.info("Export server listening on {}, {} exports at a time", server.getAddress(), maxConcurrentExports);
+        if (!server.getAddress().getAddress().isLoopbackAddress()) {
+            log.warn("Export server is reachable from other hosts at {} and does not authenticate requests",
+                    server.getAddress());
+        }
+        return server.getAddress();
+    }
+
+    // Blocks until stop() is called, e.g. by the context closing on shutdown
+    public void awaitStop() throws InterruptedException {
+        CountDownLatch latch;
+        synchronized (this) {
+            latch = stopped;
+        }
+        latch.await();
+    }
+
+    // Waits a few seconds for exports in progress to finish before closing their connections
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+        stopped.countDown();
+        log.info("Export server stopped");
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    // Opens a connection so the pool is filled before the first request rather than during it
+    private void warmUpPool(int maxConcurrentExports) {
+        if (dataSource instanceof HikariDataSource hikari && hikari.getMaximumPoolSize() < maxConcurrentExports) {
+            log.warn("The connection pool holds {} connections, fewer than the {} concurrent exports allowed",
+                    hikari.getMaximumPoolSize(), maxConcurrentExports);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.isValid(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not connect to the export database", e);
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sendText(exchange, 200, "OK");
+        }
+    }
+
+    private void handleExport(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            try (exchange) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendText(exchange, 405, "Only GET is supported");
+            }
+            return;
+        }
+        ExportRequest request;
+        try {
+            request = ExportRequest.parse(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException e) {
+            try (exchange) {
+                sendText(exchange, 400, e.getMessage());
+            }
+            return;
+        }
+        if (!exportPermits.tryAcquire()) {
+            try (exchange) {
+                exchange.getResponseHeaders().set("Retry-After", "30");
+                sendText(exchange, 503, "Too many exports in progress, try again later");
+            }
+            return;
+        }
+        try {
+            stream(exchange, request);
+        } finally {
+            exportPermits.release();
+        }
+    }
+
+    private void stream(HttpExchange exchange, ExportRequest request) throws IOException {
+        long startNanos = System.nanoTime();
+        List<ChargebackColumn> columns = request.options().getColumns();
+        ChargebackItemReader reader = new ChargebackItemReader(dataSource);
+        reader.setName("ChargebackExportServer");
+        reader.setSaveState(false);
+        reader.setTimestampRange(request.range().start(), request.range().end());
+        reader.setFetchStrategy(FetchStrategy.STREAMING, fetchSize);
+        reader.setColumns(columns);
+        reader.setFilter(request.options().getFilter());
+
+        long rows = 0;
+        try {
+            reader.afterPropertiesSet();
+            reader.open(new ExecutionContext());
+        } catch (Exception e) {
+            log.error("Could not start export of {} to {}", request.range().start(), request.range().end(), e);
+            try (exchange) {
+                sendText(exchange, 500, "Could not start the export: " + e.getMessage());
+            }
+            return;
+        }
+        try {
+            boolean gzip = acceptsGzip(exchange);
+            exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+            exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + fileName(request) + "\"");
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            // A length of 0 selects chunked transfer encoding
+            exchange.sendResponseHeaders(200, 0);
+
+            OutputStream body = exchange.getResponseBody();
+            Writer out = new OutputStreamWriter(gzip ? new GZIPOutputStream(body, 8192) : body, StandardCharsets.UTF_8);
+            ChargebackLineEncoder encoder = new ChargebackLineEncoder(columns);
+            String lineSeparator = System.lineSeparator();
+            StringBuilder buffer = new StringBuilder(FLUSH_CHARS + 1024);
+            buffer.append(ChargebackColumn.join(columns)).append(lineSeparator);
+            Chargeback item;
+            while ((item = reader.read()) != null) {
+                Chargeback processed = chargebackItemProcessor.process(item);
+                if (processed == null) {
+                    continue;
+                }
+                encoder.encode(processed, buffer);
+                buffer.append(lineSeparator);
+                rows++;
+                if (buffer.length() >= FLUSH_CHARS) {
+                    out.write(buffer.toString());
+                    buffer.setLength(0);
+                }
+            }
+            out.write(buffer.toString());
+            // Writes the gzip trailer and the final zero-length chunk
+            out.close();
+            exchange.close();
+            log.info("Streamed {} rows from {} to {} in {} ms", rows, request.range().start(), request.range().end(),
+                    (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (Exception e) {
+            // Leaving the exchange open makes the server drop the connection mid-response
+            log.warn("Export of {} to {} stopped after {} rows: {}", request.range().start(), request.range().end(),
+                    rows, e.toString());
+            throw e instanceof IOException io ? io : new IOException("Export failed after " + rows + " rows", e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static String fileName(ExportRequest request) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+        return "chargebacks_" + request.range().start().format(formatter) + "_to_"
+                + request.range().end().format(formatter) + ".csv";
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
@@ -0,0 +1,198 @@
+package com.chargebacks.processor.summary;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// What an export wrote, gathered from the rows as they are written rather than by reading the
+// output back: the row count, rows and exact totals per currency, the created_time range and how
+// often each reason occurs. Steps keep theirs in the step execution context, so a restarted step
+// carries on from what was committed, and ChargebackJobLauncher merges the steps' summaries.
+// Not thread safe: each step (or pipeline writer) fills its own.
+public class ExportSummary {
+
+    // Reason text is free-form; past this many distinct reasons the rest are only counted as other
+    public static final int MAX_REASONS = 1_000;
+
+    private static final String ROWS = "summary.rows";
+    private static final String MIN_CREATED_TIME = "summary.minCreatedTime";
+    private static final String MAX_CREATED_TIME = "summary.maxCreatedTime";
+    private static final String CURRENCY_ROWS = "summary.currencyRows";
+    private static final String CURRENCY_TOTALS = "summary.currencyTotals";
+    private static final String REASON_ROWS = "summary.reasonRows";
+    private static final String OTHER_REASON_ROWS = "summary.otherReasonRows";
+
+    private long rows;
+    private LocalDateTime minCreatedTime;
+    private LocalDateTime maxCreatedTime;
+    private final Map<String, CurrencyTotal> currencies = new HashMap<>();
+    private final Map<String, Long> reasons = new HashMap<>();
+    private long otherReasonRows;
+
+    // Sums minor units as a long while they fit, which is nearly always
+    private static final class CurrencyTotal {
+        long rows;
+        long minorTotal;
+        BigDecimal total = BigDecimal.ZERO;
+
+        void add(Chargeback item) {
+            rows++;
+            if (item.hasMinorAmount()) {
+                long minor = item.getDisputedAmtMinor();
+                long sum = minorTotal + minor;
+                if (((minorTotal ^ sum) & (minor ^ sum)) < 0) {
+                    total = total.add(BigDecimal.valueOf(minorTotal, Chargeback.AMOUNT_SCALE));
+                    sum = minor;
+                }
+                minorTotal = sum;
+            } else if (item.getDisputedAmt() != null) {
+                total = total.add(item.getDisputedAmt());
+            }
+        }
+
+        BigDecimal total() {
+            return total.add(BigDecimal.valueOf(minorTotal, Chargeback.AMOUNT_SCALE));
+        }
+    }
+
+    public void add(Chargeback item) {
+        rows++;
+        LocalDateTime createdTime = item.getCreatedTime();
+        if (createdTime != null) {
+            if (minCreatedTime == null || createdTime.isBefore(minCreatedTime)) {
+                minCreatedTime = createdTime;
+            }
+            if (maxCreatedTime == null || createdTime.isAfter(maxCreatedTime)) {
+                maxCreatedTime = createdTime;
+            }
+        }
+        currencies.computeIfAbsent(nonNull(item.getDisputedCurr()), currency -> new CurrencyTotal()).add(item);
+        addReason(nonNull(item.getReasonForDispute()), 1);
+    }
+
+    public void merge(ExportSummary other) {
+        rows += other.rows;
+        if (other.minCreatedTime != null && (minCreatedTime == null || other.minCreatedTime.isBefore(minCreatedTime))) {
+            minCreatedTime = other.minCreatedTime;
+        }
+        if (other.maxCreatedTime != null && (maxCreatedTime == null || other.maxCreatedTime.isAfter(maxCreatedTime))) {
+            maxCreatedTime = other.maxCreatedTime;
+        }
+        other.currencies.forEach((currency, otherTotal) -> {
+            CurrencyTotal total = currencies.computeIfAbsent(currency, key -> new CurrencyTotal());
+            total.rows += otherTotal.rows;
+            total.total = total.total().add(otherTotal.total());
+            total.minorTotal = 0;
+        });
+        other.reasons.forEach(this::addReason);
+        otherReasonRows += other.otherReasonRows;
+    }
+
+    private void addReason(String reason, long count) {
+        Long current = reasons.get(reason);
+        if (current != null) {
+            reasons.put(reason, current + count);
+        } else if (reasons.size() < MAX_REASONS) {
+            reasons.put(reason, count);
+        } else {
+            otherReasonRows += count;
+        }
+    }
+
+    // A missing currency or reason is reported as an empty string, as it is written to the CSV
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public LocalDateTime getMinCreatedTime() {
+        return minCreatedTime;
+    }
+
+    public LocalDateTime getMaxCreatedTime() {
+        return maxCreatedTime;
+    }
+
+    // Sorted by currency code
+    public Map<String, Long> getCurrencyRows() {
+        Map<String, Long> result = new TreeMap<>();
+        currencies.forEach((currency, total) -> result.put(currency, total.rows));
+        return result;
+    }
+
+    // Sorted by currency code
+    public Map<String, BigDecimal> getCurrencyTotals() {
+        Map<String, BigDecimal> result = new TreeMap<>();
+        currencies.forEach((currency, total) -> result.put(currency, total.total()));
+        return result;
+    }
+
+    // Most frequent first, ties in reason order
+    public List<Map.Entry<String, Long>> getTopReasons(int limit) {
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(reasons.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return List.copyOf(sorted.subList(0, Math.min(limit, sorted.size())));
+    }
+
+    public long getOtherReasonRows() {
+        return otherReasonRows;
+    }
+
+    public void saveTo(ExecutionContext executionContext) {
+        HashMap<String, Long> currencyRows = new HashMap<>();
+        HashMap<String, String> currencyTotals = new HashMap<>();
+        currencies.forEach((currency, total) -> {
+            currencyRows.put(currency, total.rows);
+            currencyTotals.put(currency, total.total().toPlainString());
+        });
+        executionContext.putLong(ROWS, rows);
+        if (minCreatedTime != null) {
+            executionContext.putString(MIN_CREATED_TIME, minCreatedTime.toString());
+            executionContext.putString(MAX_CREATED_TIME, maxCreatedTime.toString());
+        }
+        executionContext.put(CURRENCY_ROWS, currencyRows);
+        executionContext.put(CURRENCY_TOTALS, currencyTotals);
+        executionContext.put(REASON_ROWS, new HashMap<>(reasons));
+        executionContext.putLong(OTHER_REASON_ROWS, otherReasonRows);
+    }
+
+    public static boolean isSavedIn(ExecutionContext executionContext) {
+        return executionContext.containsKey(ROWS);
+    }
+
+    // An empty summary when the context has none, as at the start of a step
+    @SuppressWarnings("unchecked")
+    public static ExportSummary loadFrom(ExecutionContext executionContext) {
+        ExportSummary summary = new ExportSummary();
+        if (!isSavedIn(executionContext)) {
+            return summary;
+        }
+        summary.rows = executionContext.getLong(ROWS);
+        if (executionContext.containsKey(MIN_CREATED_TIME)) {
+            summary.minCreatedTime = LocalDateTime.parse(executionContext.getString(MIN_CREATED_TIME));
+            summary.maxCreatedTime = LocalDateTime.parse(executionContext.getString(MAX_CREATED_TIME));
+        }
+        Map<String, Number> currencyRows = (Map<String, Number>) executionContext.get(CURRENCY_ROWS);
+        Map<String, String> currencyTotals = (Map<String, String>) executionContext.get(CURRENCY_TOTALS);
+        currencyRows.forEach((currency, count) -> {
+            CurrencyTotal total = new CurrencyTotal();
+            total.rows = count.longValue();
+            total.total = new BigDecimal(currencyTotals.get(currency));
+            summary.currencies.put(currency, total);
+        });
+        ((Map<String, Number>) executionContext.get(REASON_ROWS))
+                .forEach((reason, count) -> summary.reasons.put(reason, count.longValue()));
+        summary.otherReasonRows = executionContext.getLong(OTHER_REASON_ROWS);
+        return summary;
+    }
+}
@@ -0,0 +1,59 @@
+package com.chargebacks.processor.summary;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+
+// Adds each written chunk to the step's ExportSummary. Registered as a stream as well as a
+// listener: for a restartable export the summary is saved with the reader and writer positions at
+// every commit and restored with them when a failed step is restarted. An export that can't resume
+// would never read those saves back, so its summary is only saved once, when the step ends. One
+// instance per step execution.
+public class ExportSummaryListener implements ItemWriteListener<Chargeback>, ItemStream, StepExecutionListener {
+
+    private final boolean restartable;
+    private ExportSummary summary = new ExportSummary();
+
+    public ExportSummaryListener() {
+        this(true);
+    }
+
+    public ExportSummaryListener(boolean restartable) {
+        this.restartable = restartable;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        summary = ExportSummary.loadFrom(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        if (restartable) {
+            summary.saveTo(executionContext);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        summary.saveTo(stepExecution.getExecutionContext());
+        return null;
+    }
+
+    // Runs before the chunk commits, so the rows are in the summary the commit saves
+    @Override
+    public void afterWrite(Chunk<? extends Chargeback> items) {
+        for (Chargeback item : items) {
+            summary.add(item);
+        }
+    }
+
+    public ExportSummary getSummary() {
+        return summary;
+    }
+}
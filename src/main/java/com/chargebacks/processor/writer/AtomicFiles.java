@@ -0,0 +1,48 @@
+package com.chargebacks.processor.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Replaces a file by filling a temporary file in the same directory and renaming it over the
+// target. Anyone reading the target, or a crash part way through, sees the old file or the new one,
+// never part of one. The temporary file ends in .tmp and is removed if filling or renaming fails.
+public final class AtomicFiles {
+
+    @FunctionalInterface
+    public interface Content {
+        void fill(Path temp) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface TextContent {
+        void write(Writer writer) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    // content gets an empty temporary file to fill; it may also replace it (with a link, say)
+    public static void replace(Path target, Content content) throws IOException {
+        Path path = target.toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            content.fill(temp);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static void replaceText(Path target, TextContent content) throws IOException {
+        replace(target, temp -> {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                content.write(writer);
+            }
+        });
+    }
+}
@@ -1,71 +1,242 @@
 package com.chargebacks.processor.writer;
 
 import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.WriterNotOpenException;
 import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
-import org.springframework.batch.item.file.transform.FieldExtractor;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
-import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
-@Component
+// Created for each job from its parameters rather than shared, so exports running at the same
+// time never see each other's file, columns or compression
 public class ChargebackItemWriter extends FlatFileItemWriter<Chargeback> {
 
-    @Value("${chargeback.output.directory:./output}")
-    private String outputDirectory;
+    public static final String HEADER = "disputed_dt,disputed_amt,disputed_curr,merchandise_ref,reason_for_dispute,created_time";
+
+    public static final String DEFAULT_OUTPUT_DIRECTORY = "./output";
+
+    private String outputDirectory = DEFAULT_OUTPUT_DIRECTORY;
 
     private String outputFileName;
 
+    private boolean includeHeader = true;
+
+    private List<ChargebackColumn> columns = ChargebackColumn.ALL;
+
+    private String header = HEADER;
+
+    private Compression compression = Compression.NONE;
+
+    private int compressionThreads = 1;
+
+    // Open only while writing compressed output; plain output goes through FlatFileItemWriter
+    private Writer compressedWriter;
+
+    private ChargebackLineEncoder lineEncoder = new ChargebackLineEncoder();
+
+    // Reused across chunks so encoding allocates one String per chunk rather than several per item
+    private final StringBuilder chunkBuffer = new StringBuilder(8192);
+
+    // UTF-8 size of the rows encoded since open(), before any compression
+    private long uncompressedBytesWritten;
+
     public ChargebackItemWriter() {
-        // Initialize with a default line aggregator to pass Spring validation
-        // This will be reconfigured before the job runs
-        DelimitedLineAggregator<Chargeback> defaultAggregator = new DelimitedLineAggregator<>();
-        defaultAggregator.setDelimiter(",");
-        defaultAggregator.setFieldExtractor(item -> new Object[]{"", "", "", "", "", ""});
-        setLineAggregator(defaultAggregator);
+        setLineAggregator(lineEncoder);
     }
 
     public void setOutputFileName(LocalDateTime startTimestamp, LocalDateTime endTimestamp) {
+        setOutputFile(resolveOutputFileName(startTimestamp, endTimestamp));
+    }
+
+    public String resolveOutputFileName(LocalDateTime startTimestamp, LocalDateTime endTimestamp) {
+        return resolveOutputFileName(startTimestamp, endTimestamp, compression);
+    }
+
+    public String resolveOutputFileName(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                        Compression compression) {
+        return resolveOutputFileName(startTimestamp, endTimestamp, OutputFormat.CSV, compression);
+    }
+
+    public String resolveOutputFileName(LocalDateTime startTimestamp, LocalDateTime endTimestamp,
+                                        OutputFormat format, Compression compression) {
+        return resolveOutputFileName(outputDirectory, startTimestamp, endTimestamp, format, compression);
+    }
+
+    public static String resolveOutputFileName(String outputDirectory, LocalDateTime startTimestamp,
+                                               LocalDateTime endTimestamp, OutputFormat format,
+                                               Compression compression) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
         String startStr = startTimestamp.format(formatter);
         String endStr = endTimestamp.format(formatter);
-        this.outputFileName = String.format("%s/chargebacks_%s_to_%s.csv", 
-            outputDirectory, startStr, endStr);
         
         // Ensure output directory exists
         java.io.File dir = new java.io.File(outputDirectory);
         if (!dir.exists()) {
             dir.mkdirs();
         }
-        
+
+        String extension = format == OutputFormat.CSV ? format.getExtension() + compression.getExtension()
+                : format.getExtension();
+        return String.format("%s/chargebacks_%s_to_%s%s", outputDirectory, startStr, endStr, extension);
+    }
+
+    public void setOutputFile(String outputFileName) {
+        this.outputFileName = outputFileName;
         setResource(new FileSystemResource(outputFileName));
     }
 
+    // Writes only these columns, in this order, under a header naming them
+    public void setColumns(List<ChargebackColumn> columns) {
+        this.columns = List.copyOf(columns);
+        this.header = ChargebackColumn.join(columns);
+        this.lineEncoder = new ChargebackLineEncoder(columns);
+        setLineAggregator(lineEncoder);
+    }
+
+    public List<ChargebackColumn> getColumns() {
+        return columns;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
     public void configureWriter() {
-        setHeaderCallback(writer -> writer.write("disputed_dt,disputed_amt,disputed_curr,merchandise_ref,reason_for_dispute,created_time"));
-        
-        DelimitedLineAggregator<Chargeback> lineAggregator = new DelimitedLineAggregator<>();
-        lineAggregator.setDelimiter(",");
-        
-        FieldExtractor<Chargeback> fieldExtractor = chargeback -> {
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
-            
-            return new Object[]{
-                chargeback.getDisputedDt() != null ? chargeback.getDisputedDt().format(dateFormatter) : "",
-                chargeback.getDisputedAmt() != null ? chargeback.getDisputedAmt().toString() : "",
-                chargeback.getDisputedCurr() != null ? chargeback.getDisputedCurr() : "",
-                chargeback.getMerchandiseRef() != null ? chargeback.getMerchandiseRef() : "",
-                chargeback.getReasonForDispute() != null ? chargeback.getReasonForDispute() : "",
-                chargeback.getCreatedTime() != null ? chargeback.getCreatedTime().format(dateTimeFormatter) : ""
-            };
-        };
-        
-        lineAggregator.setFieldExtractor(fieldExtractor);
-        setLineAggregator(lineAggregator);
+        configureWriter(true);
+    }
+
+    public void configureWriter(boolean includeHeader) {
+        // Part files written by partition workers are merged behind a single header afterwards
+        this.includeHeader = includeHeader;
+        setHeaderCallback(includeHeader ? writer -> writer.write(header) : null);
+    }
+
+    // threads <= 0 uses one compression thread per available processor
+    public void setCompression(Compression compression, int threads) {
+        this.compression = compression;
+        this.compressionThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        uncompressedBytesWritten = 0;
+        if (compression == Compression.NONE) {
+            super.open(executionContext);
+            return;
+        }
+        // Restart offsets kept by FlatFileItemWriter point into the file as written, which for
+        // compressed output is the middle of a deflate stream, so compressed files always start over
+        try {
+            compressedWriter = new OutputStreamWriter(new ParallelGzipOutputStream(
+                    Files.newOutputStream(Paths.get(outputFileName)), compressionThreads), StandardCharsets.UTF_8);
+            if (includeHeader) {
+                compressedWriter.write(header);
+                compressedWriter.write(lineSeparator);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to open compressed output file " + outputFileName, e);
+        }
+    }
+
+    @Override
+    public void write(Chunk<? extends Chargeback> items) throws Exception {
+        if (compressedWriter == null) {
+            super.write(items);
+            return;
+        }
+        compressedWriter.write(doWrite(items));
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        // Flushing compressed output on every commit would end a gzip member per chunk
+        if (compressedWriter == null) {
+            super.update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compressedWriter == null) {
+            super.close();
+            return;
+        }
+        try {
+            compressedWriter.close();
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to close compressed output file " + outputFileName, e);
+        } finally {
+            compressedWriter = null;
+        }
+    }
+
+    @Override
+    public String doWrite(Chunk<? extends Chargeback> items) {
+        chunkBuffer.setLength(0);
+        for (Chargeback item : items) {
+            lineEncoder.encode(item, chunkBuffer);
+            chunkBuffer.append(lineSeparator);
+        }
+        uncompressedBytesWritten += utf8Length(chunkBuffer);
+        return chunkBuffer.toString();
+    }
+
+    // Encodes items the way write() would, into a fresh buffer, so several threads can encode
+    // chunks at once ahead of a single thread calling writeEncoded()
+    public String encodeLines(List<? extends Chargeback> items) {
+        StringBuilder lines = new StringBuilder(items.size() * 96);
+        for (Chargeback item : items) {
+            lineEncoder.encode(item, lines);
+            lines.append(lineSeparator);
+        }
+        return lines.toString();
+    }
+
+    // Writes lines produced by encodeLines(); itemCount keeps the written-lines statistic in step
+    public void writeEncoded(String lines, int itemCount) throws IOException {
+        uncompressedBytesWritten += utf8Length(lines);
+        if (compressedWriter != null) {
+            compressedWriter.write(lines);
+            return;
+        }
+        OutputState state = getOutputState();
+        if (!state.isInitialized()) {
+            throw new WriterNotOpenException("Writer must be open before it can be written to");
+        }
+        state.write(lines);
+        state.setLinesWritten(state.getLinesWritten() + itemCount);
+    }
+
+    public long getUncompressedBytesWritten() {
+        return uncompressedBytesWritten;
+    }
+
+    private static long utf8Length(CharSequence chars) {
+        long bytes = chars.length();
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c >= 0x80) {
+                // A surrogate pair is 4 bytes, so each of its two chars adds 1
+                bytes += c < 0x800 ? 1 : Character.isSurrogate(c) ? 1 : 2;
+            }
+        }
+        return bytes;
     }
 
     public String getOutputFileName() {
@@ -0,0 +1,214 @@
+package com.chargebacks.processor.writer;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.springframework.batch.item.file.transform.LineAggregator;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Encodes a Chargeback as one CSV line straight into a caller-supplied buffer, without the
+// per-item Object[], formatter and intermediate Strings of a DelimitedLineAggregator. Output is
+// identical to "yyyy-MM-dd", BigDecimal.toString() and "yyyy-MM-dd'T'HH:mm:ss" joined by commas;
+// text fields containing a delimiter, quote or line break are quoted as per RFC 4180. Given a
+// list of columns, only those are written, in that order.
+// encode() keeps no state, so one encoder can be shared between threads; aggregate() cannot.
+public class ChargebackLineEncoder implements LineAggregator<Chargeback> {
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Only used for values outside the fast paths (years beyond 0..9999)
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final StringBuilder lineBuffer = new StringBuilder(128);
+
+    // Null writes every column through the unrolled path in encode()
+    private final ChargebackColumn[] columns;
+
+    public ChargebackLineEncoder() {
+        this.columns = null;
+    }
+
+    public ChargebackLineEncoder(List<ChargebackColumn> columns) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("At least one column must be encoded");
+        }
+        this.columns = columns.equals(ChargebackColumn.ALL) ? null : columns.toArray(new ChargebackColumn[0]);
+    }
+
+    @Override
+    public String aggregate(Chargeback chargeback) {
+        lineBuffer.setLength(0);
+        encode(chargeback, lineBuffer);
+        return lineBuffer.toString();
+    }
+
+    public void encode(Chargeback chargeback, StringBuilder out) {
+        if (columns != null) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    out.append(DELIMITER);
+                }
+                appendColumn(chargeback, columns[i], out);
+            }
+            return;
+        }
+        appendDate(chargeback.getDisputedDt(), out);
+        out.append(DELIMITER);
+        if (chargeback.hasMinorAmount()) {
+            appendScaled(chargeback.getDisputedAmtMinor(), Chargeback.AMOUNT_SCALE, out);
+        } else {
+            appendDecimal(chargeback.getDisputedAmt(), out);
+        }
+        out.append(DELIMITER);
+        appendText(chargeback.getDisputedCurr(), out);
+        out.append(DELIMITER);
+        appendText(chargeback.getMerchandiseRef(), out);
+        out.append(DELIMITER);
+        appendText(chargeback.getReasonForDispute(), out);
+        out.append(DELIMITER);
+        appendDateTime(chargeback.getCreatedTime(), out);
+    }
+
+    private static void appendColumn(Chargeback chargeback, ChargebackColumn column, StringBuilder out) {
+        switch (column) {
+            case DISPUTED_DT -> appendDate(chargeback.getDisputedDt(), out);
+            case DISPUTED_AMT -> {
+                if (chargeback.hasMinorAmount()) {
+                    appendScaled(chargeback.getDisputedAmtMinor(), Chargeback.AMOUNT_SCALE, out);
+                } else {
+                    appendDecimal(chargeback.getDisputedAmt(), out);
+                }
+            }
+            case DISPUTED_CURR -> appendText(chargeback.getDisputedCurr(), out);
+            case MERCHANDISE_REF -> appendText(chargeback.getMerchandiseRef(), out);
+            case REASON_FOR_DISPUTE -> appendText(chargeback.getReasonForDispute(), out);
+            case CREATED_TIME -> appendDateTime(chargeback.getCreatedTime(), out);
+        }
+    }
+
+    public static void appendDate(LocalDate date, StringBuilder out) {
+        if (date == null) {
+            return;
+        }
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            out.append(date.format(DATE_FORMATTER));
+            return;
+        }
+        appendPadded(year, 4, out);
+        out.append('-');
+        appendPadded(date.getMonthValue(), 2, out);
+        out.append('-');
+        appendPadded(date.getDayOfMonth(), 2, out);
+    }
+
+    static void appendDateTime(LocalDateTime dateTime, StringBuilder out) {
+        if (dateTime == null) {
+            return;
+        }
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            out.append(dateTime.format(DATE_TIME_FORMATTER));
+            return;
+        }
+        appendPadded(year, 4, out);
+        out.append('-');
+        appendPadded(dateTime.getMonthValue(), 2, out);
+        out.append('-');
+        appendPadded(dateTime.getDayOfMonth(), 2, out);
+        out.append('T');
+        appendPadded(dateTime.getHour(), 2, out);
+        out.append(':');
+        appendPadded(dateTime.getMinute(), 2, out);
+        out.append(':');
+        appendPadded(dateTime.getSecond(), 2, out);
+    }
+
+    public static void appendDecimal(BigDecimal amount, StringBuilder out) {
+        if (amount == null) {
+            return;
+        }
+        int scale = amount.scale();
+        int precision = amount.precision();
+        // BigDecimal.toString() switches to scientific notation for negative scales and very
+        // small magnitudes; those (and anything that doesn't fit a long) take the slow path
+        if (scale < 0 || scale >= POWERS_OF_TEN.length || precision > 18 || precision - scale - 1 < -6) {
+            out.append(amount.toString());
+            return;
+        }
+        appendScaled(amount.unscaledValue().longValue(), scale, out);
+    }
+
+    public static void appendScaled(long unscaled, int scale, StringBuilder out) {
+        if (unscaled < 0) {
+            out.append('-');
+            unscaled = -unscaled;
+        }
+        if (scale == 0) {
+            out.append(unscaled);
+            return;
+        }
+        long divisor = POWERS_OF_TEN[scale];
+        out.append(unscaled / divisor);
+        out.append('.');
+        appendPadded(unscaled % divisor, scale, out);
+    }
+
+    public static void appendText(String value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuoting(value)) {
+            out.append(value);
+            return;
+        }
+        out.append(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == QUOTE) {
+                out.append(QUOTE);
+            }
+            out.append(c);
+        }
+        out.append(QUOTE);
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == DELIMITER || c == QUOTE || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendPadded(long value, int width, StringBuilder out) {
+        for (int digits = digitCount(value); digits < width; digits++) {
+            out.append('0');
+        }
+        out.append(value);
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+}
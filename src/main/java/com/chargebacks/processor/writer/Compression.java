@@ -0,0 +1,18 @@
+package com.chargebacks.processor.writer;
+
+// GZIP output is a sequence of independently compressed gzip members (see
+// ParallelGzipOutputStream), which gunzip and GZIPInputStream read back as a single stream.
+public enum Compression {
+    NONE(""),
+    GZIP(".gz");
+
+    private final String extension;
+
+    Compression(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
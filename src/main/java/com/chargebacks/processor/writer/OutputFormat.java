@@ -0,0 +1,18 @@
+package com.chargebacks.processor.writer;
+
+// PARQUET is written by ChargebackParquetItemWriter; compression is then applied per page
+// inside the file rather than to the file as a whole.
+public enum OutputFormat {
+    CSV(".csv"),
+    PARQUET(".parquet");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,194 @@
+package com.chargebacks.processor.writer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// pigz-style gzip: the stream is cut into fixed-size blocks, each block is deflated into a
+// complete gzip member on a pool of threads, and members are written out in order. RFC 1952
+// allows members to be concatenated, so the result is an ordinary .gz file. Blocks are
+// compressed independently, which costs a little ratio against a single deflate stream.
+// Not thread-safe: one writer thread per stream.
+public class ParallelGzipOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    // Magic, deflate, no flags, no mtime, no extra flags, unknown OS
+    private static final byte[] MEMBER_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int MEMBER_TRAILER_LENGTH = 8;
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int level;
+    private final int maxPending;
+    private final ArrayDeque<Future<Member>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private long membersWritten;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out, int threads) {
+        this(out, threads, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize, int level) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be at least 1");
+        }
+        this.out = out;
+        this.blockSize = blockSize;
+        this.level = level;
+        // Enough queued blocks to keep every thread busy while the head member is written out,
+        // without letting a slow disk buffer the whole file in memory
+        this.maxPending = threads * 2;
+        this.block = new byte[blockSize];
+        String prefix = "chargeback-gzip-" + POOL_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[blockLength++] = (byte) b;
+        if (blockLength == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            int count = Math.min(length, blockSize - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    // Ends the current member early, so only call this where a short block is acceptable
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeMember(pending.poll());
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            // A file with no members isn't valid gzip, so an empty stream still gets one
+            if (membersWritten == 0) {
+                Member empty = compress(new byte[0], 0, level);
+                out.write(empty.bytes(), 0, empty.length());
+            }
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        block = new byte[blockSize];
+        blockLength = 0;
+        pending.add(executor.submit(() -> compress(data, length, level)));
+        while (pending.size() > maxPending) {
+            writeMember(pending.poll());
+        }
+    }
+
+    private void writeMember(Future<Member> future) throws IOException {
+        Member member;
+        try {
+            member = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a compressed block");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress block", e.getCause());
+        }
+        out.write(member.bytes(), 0, member.length());
+        membersWritten++;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    static Member compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[MEMBER_HEADER.length + length + length / 1000 + 64];
+            System.arraycopy(MEMBER_HEADER, 0, buffer, 0, MEMBER_HEADER.length);
+            int position = MEMBER_HEADER.length;
+            while (!deflater.finished()) {
+                if (position == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                position += deflater.deflate(buffer, position, buffer.length - position);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            if (buffer.length - position < MEMBER_TRAILER_LENGTH) {
+                buffer = Arrays.copyOf(buffer, position + MEMBER_TRAILER_LENGTH);
+            }
+            position = writeIntLittleEndian(buffer, position, (int) crc.getValue());
+            position = writeIntLittleEndian(buffer, position, length);
+            return new Member(buffer, position);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int writeIntLittleEndian(byte[] buffer, int position, int value) {
+        buffer[position] = (byte) value;
+        buffer[position + 1] = (byte) (value >>> 8);
+        buffer[position + 2] = (byte) (value >>> 16);
+        buffer[position + 3] = (byte) (value >>> 24);
+        return position + 4;
+    }
+
+    record Member(byte[] bytes, int length) {
+    }
+}
@@ -0,0 +1,242 @@
+package com.chargebacks.processor.writer;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+// Splits a CSV export into numbered part files, each with its own header, so downstream loaders
+// can ingest them concurrently. A new part starts once the current one holds maxRows rows (exact:
+// a chunk is split across parts if needed) or maxBytes of uncompressed CSV (checked after each
+// chunk, so a part can go over by up to one chunk). On close a manifest listing every part is
+// moved into place; its presence means the export is complete. A step closes its streams after its
+// final status is set, so the manifest is only written when the step the writer runs in COMPLETED.
+// A failed step's row counts still include the rolled-back chunk, so instead the manifest left by
+// an earlier export of the same range is deleted, and loaders don't pick up half-written parts.
+public class RollingChargebackItemWriter implements ItemStreamWriter<Chargeback> {
+
+    private static final String NAME = "rollingChargebackItemWriter";
+    private static final String PART_INDEX = "part.index";
+    private static final String COMPLETED_PART_ROWS = "part.completed_rows";
+    private static final String PART_ROWS = "part.rows";
+
+    private final String outputFileName;
+    private final String stem;
+    private final String extension;
+    private final long maxRows;
+    private final long maxBytes;
+    private final Compression compression;
+    private final int compressionThreads;
+    private List<ChargebackColumn> columns = ChargebackColumn.ALL;
+
+    private ChargebackItemWriter currentPart;
+    private int partIndex;
+    private long partRows;
+    private final List<Long> completedPartRows = new ArrayList<>();
+    private StepExecution stepExecution;
+    private LongConsumer outputBytesListener;
+
+    // maxRows or maxBytes <= 0 means no limit on that dimension
+    public RollingChargebackItemWriter(String outputFileName, long maxRows, long maxBytes,
+                                       Compression compression, int compressionThreads) {
+        String csvExtension = OutputFormat.CSV.getExtension() + compression.getExtension();
+        if (!outputFileName.endsWith(csvExtension)) {
+            throw new IllegalArgumentException("Output file " + outputFileName + " must end with " + csvExtension);
+        }
+        this.outputFileName = outputFileName;
+        this.stem = outputFileName.substring(0, outputFileName.length() - csvExtension.length());
+        this.extension = csvExtension;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.compression = compression;
+        this.compressionThreads = compressionThreads;
+    }
+
+    public static String manifestFileName(String outputFileName, Compression compression) {
+        String csvExtension = OutputFormat.CSV.getExtension() + compression.getExtension();
+        return outputFileName.substring(0, outputFileName.length() - csvExtension.length()) + ".manifest.json";
+    }
+
+    // Every part is written with these columns, see ChargebackItemWriter.setColumns()
+    public void setColumns(List<ChargebackColumn> columns) {
+        this.columns = List.copyOf(columns);
+    }
+
+    // The step whose outcome decides whether close() writes the manifest; without one there is no
+    // outcome, and no manifest is written
+    public void setStepExecution(StepExecution stepExecution) {
+        this.stepExecution = stepExecution;
+    }
+
+    // Told the total size of the parts once the manifest listing them is written
+    public void setOutputBytesListener(LongConsumer outputBytesListener) {
+        this.outputBytesListener = outputBytesListener;
+    }
+
+    // The same keys ItemStreamSupport would give a stream named NAME, so saved positions still resume
+    private static String getExecutionContextKey(String key) {
+        return NAME + "." + key;
+    }
+
+    public String partFileName(int partIndex) {
+        return String.format("%s_part%05d%s", stem, partIndex, extension);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        partIndex = 1;
+        partRows = 0;
+        completedPartRows.clear();
+        if (executionContext.containsKey(getExecutionContextKey(PART_INDEX))) {
+            partIndex = executionContext.getInt(getExecutionContextKey(PART_INDEX));
+            partRows = executionContext.getLong(getExecutionContextKey(PART_ROWS));
+            String completed = executionContext.getString(getExecutionContextKey(COMPLETED_PART_ROWS));
+            if (!completed.isEmpty()) {
+                Arrays.stream(completed.split(",")).map(Long::valueOf).forEach(completedPartRows::add);
+            }
+        }
+        // The part being written when a run stopped resumes from the delegate's own saved state
+        openPart(executionContext);
+    }
+
+    @Override
+    public void write(Chunk<? extends Chargeback> items) throws Exception {
+        List<? extends Chargeback> remaining = items.getItems();
+        while (!remaining.isEmpty()) {
+            if (isPartFull()) {
+                rollOver();
+            }
+            int count = maxRows > 0 ? (int) Math.min(remaining.size(), maxRows - partRows) : remaining.size();
+            currentPart.write(new Chunk<>(remaining.subList(0, count)));
+            partRows += count;
+            remaining = remaining.subList(count, remaining.size());
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        executionContext.putInt(getExecutionContextKey(PART_INDEX), partIndex);
+        executionContext.putLong(getExecutionContextKey(PART_ROWS), partRows);
+        executionContext.putString(getExecutionContextKey(COMPLETED_PART_ROWS), joinRows());
+        if (currentPart != null) {
+            currentPart.update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (currentPart == null) {
+            return;
+        }
+        currentPart.close();
+        currentPart = null;
+        if (stepExecution != null && stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            completedPartRows.add(partRows);
+            writeManifest();
+        } else {
+            deleteManifest();
+        }
+    }
+
+    public String getOutputFileName() {
+        return outputFileName;
+    }
+
+    private boolean isPartFull() {
+        return (maxRows > 0 && partRows >= maxRows)
+                || (maxBytes > 0 && currentPart.getUncompressedBytesWritten() >= maxBytes);
+    }
+
+    private void rollOver() {
+        currentPart.close();
+        completedPartRows.add(partRows);
+        partIndex++;
+        partRows = 0;
+        // The next part starts from scratch, not from the previous part's restart offsets
+        openPart(new ExecutionContext());
+    }
+
+    private void openPart(ExecutionContext partContext) {
+        ChargebackItemWriter part = new ChargebackItemWriter();
+        part.setCompression(compression, compressionThreads);
+        part.setOutputFile(partFileName(partIndex));
+        part.setColumns(columns);
+        part.configureWriter();
+        try {
+            part.afterPropertiesSet();
+        } catch (Exception e) {
+            throw new ItemStreamException("Failed to configure part file " + partFileName(partIndex), e);
+        }
+        part.open(partContext);
+        currentPart = part;
+    }
+
+    private String joinRows() {
+        StringBuilder rows = new StringBuilder();
+        for (Long count : completedPartRows) {
+            if (rows.length() > 0) {
+                rows.append(',');
+            }
+            rows.append(count);
+        }
+        return rows.toString();
+    }
+
+    private void writeManifest() {
+        Path manifest = Paths.get(manifestFileName(outputFileName, compression)).toAbsolutePath();
+        long totalRows = 0;
+        long totalBytes = 0;
+        StringBuilder json = new StringBuilder("{\n  \"parts\": [\n");
+        for (int i = 0; i < completedPartRows.size(); i++) {
+            Path part = Paths.get(partFileName(i + 1));
+            long rows = completedPartRows.get(i);
+            long bytes = sizeOf(part);
+            totalRows += rows;
+            totalBytes += bytes;
+            json.append("    {\"file\": \"").append(part.getFileName())
+                    .append("\", \"rows\": ").append(rows)
+                    .append(", \"bytes\": ").append(bytes)
+                    .append(i < completedPartRows.size() - 1 ? "},\n" : "}\n");
+        }
+        json.append("  ],\n  \"totalRows\": ").append(totalRows).append("\n}\n");
+
+        try {
+            AtomicFiles.replaceText(manifest, writer -> writer.write(json.toString()));
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to write manifest " + manifest, e);
+        }
+        if (outputBytesListener != null) {
+            outputBytesListener.accept(totalBytes);
+        }
+    }
+
+    private void deleteManifest() {
+        Path manifest = Paths.get(manifestFileName(outputFileName, compression));
+        try {
+            Files.deleteIfExists(manifest);
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to delete manifest " + manifest, e);
+        }
+    }
+
+    private static long sizeOf(Path part) {
+        try {
+            return Files.size(part);
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to read size of part file " + part, e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+// Buffers one optional column for the current row group. Subclasses hold the non-null values
+// in primitive form and know how to describe and encode them; definition levels (1 = value
+// present, 0 = null) are kept here.
+abstract class ColumnBuffer {
+
+    static final int INT32 = 1;
+    static final int INT64 = 2;
+    static final int BYTE_ARRAY = 6;
+    static final int FIXED_LEN_BYTE_ARRAY = 7;
+
+    private final String name;
+    private int[] definitionLevels = new int[1024];
+    private int rows;
+    private int nullCount;
+
+    ColumnBuffer(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int nullCount() {
+        return nullCount;
+    }
+
+    final void addNull() {
+        addDefinitionLevel(0);
+        nullCount++;
+    }
+
+    final void addDefined() {
+        addDefinitionLevel(1);
+    }
+
+    private void addDefinitionLevel(int level) {
+        if (rows == definitionLevels.length) {
+            definitionLevels = Arrays.copyOf(definitionLevels, rows * 2);
+        }
+        definitionLevels[rows++] = level;
+    }
+
+    // Data page v1 layout: 4-byte length, then the levels as an RLE / bit-packing hybrid
+    void writeDefinitionLevels(ByteArrayOutputStream out) {
+        ByteArrayOutputStream levels = new ByteArrayOutputStream();
+        ParquetBytes.writeHybrid(levels, definitionLevels, rows, 1);
+        ParquetBytes.writeIntLittleEndian(out, levels.size());
+        out.writeBytes(levels.toByteArray());
+    }
+
+    void reset() {
+        rows = 0;
+        nullCount = 0;
+        resetValues();
+    }
+
+    abstract int physicalType();
+
+    int typeLength() {
+        return 0;
+    }
+
+    // Writes SchemaElement fields 6 (converted_type) through 10 (logicalType)
+    abstract void writeLogicalType(ThriftCompactWriter thrift);
+
+    // Called once per row group, before any of the encoding methods below
+    void prepare() {
+    }
+
+    // Null when the chunk is PLAIN encoded
+    byte[] dictionaryPage() {
+        return null;
+    }
+
+    int dictionarySize() {
+        return 0;
+    }
+
+    abstract void writeValues(ByteArrayOutputStream out);
+
+    // Statistics in the column's PLAIN encoding, or null when every value is null
+    abstract byte[] minValue();
+
+    abstract byte[] maxValue();
+
+    abstract void resetValues();
+}
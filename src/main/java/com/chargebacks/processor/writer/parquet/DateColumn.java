@@ -0,0 +1,72 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// DATE: INT32 days since 1970-01-01
+final class DateColumn extends ColumnBuffer {
+
+    private int[] values = new int[1024];
+    private int count;
+    private int min;
+    private int max;
+
+    DateColumn(String name) {
+        super(name);
+    }
+
+    void add(LocalDate date) {
+        if (date == null) {
+            addNull();
+            return;
+        }
+        addDefined();
+        int days = Math.toIntExact(date.toEpochDay());
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        if (count == 0 || days < min) {
+            min = days;
+        }
+        if (count == 0 || days > max) {
+            max = days;
+        }
+        values[count++] = days;
+    }
+
+    @Override
+    int physicalType() {
+        return INT32;
+    }
+
+    @Override
+    void writeLogicalType(ThriftCompactWriter thrift) {
+        thrift.i32Field(6, 6);
+        thrift.beginStructField(10);
+        thrift.emptyStructField(6);
+        thrift.endStruct();
+    }
+
+    @Override
+    void writeValues(ByteArrayOutputStream out) {
+        for (int i = 0; i < count; i++) {
+            ParquetBytes.writeIntLittleEndian(out, values[i]);
+        }
+    }
+
+    @Override
+    byte[] minValue() {
+        return count == 0 ? null : ParquetBytes.intLittleEndian(min);
+    }
+
+    @Override
+    byte[] maxValue() {
+        return count == 0 ? null : ParquetBytes.intLittleEndian(max);
+    }
+
+    @Override
+    void resetValues() {
+        count = 0;
+    }
+}
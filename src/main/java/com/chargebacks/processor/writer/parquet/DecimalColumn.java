@@ -0,0 +1,137 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+// DECIMAL(19, 2) to match disputed_amt. Precision 19 doesn't fit INT64 (at most 18 digits), so
+// values are FIXED_LEN_BYTE_ARRAY(9): big-endian two's complement of the unscaled value.
+final class DecimalColumn extends ColumnBuffer {
+
+    static final int PRECISION = 19;
+    static final int SCALE = 2;
+
+    private static final int LENGTH = 9;
+    private static final BigInteger LIMIT = BigInteger.TEN.pow(PRECISION);
+
+    private byte[] values = new byte[LENGTH * 1024];
+    private int count;
+    private int minIndex;
+    private int maxIndex;
+
+    DecimalColumn(String name) {
+        super(name);
+    }
+
+    void addUnscaled(long unscaled) {
+        addDefined();
+        int offset = nextSlot();
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            values[offset + i] = (byte) unscaled;
+            // Arithmetic shift, so the ninth byte is the sign extension
+            unscaled >>= 8;
+        }
+        updateStatistics();
+    }
+
+    void add(BigDecimal value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        BigInteger unscaled;
+        try {
+            unscaled = value.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + value + " does not fit DECIMAL(19, 2)", e);
+        }
+        if (unscaled.bitLength() < Long.SIZE) {
+            addUnscaled(unscaled.longValue());
+            return;
+        }
+        if (unscaled.abs().compareTo(LIMIT) >= 0) {
+            throw new IllegalArgumentException("Amount " + value + " does not fit DECIMAL(19, 2)");
+        }
+        addDefined();
+        int offset = nextSlot();
+        byte[] bytes = unscaled.toByteArray();
+        byte sign = (byte) (unscaled.signum() < 0 ? -1 : 0);
+        Arrays.fill(values, offset, offset + LENGTH - bytes.length, sign);
+        System.arraycopy(bytes, 0, values, offset + LENGTH - bytes.length, bytes.length);
+        updateStatistics();
+    }
+
+    private int nextSlot() {
+        if ((count + 1) * LENGTH > values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        return count * LENGTH;
+    }
+
+    private void updateStatistics() {
+        if (count == 0 || compare(count, minIndex) < 0) {
+            minIndex = count;
+        }
+        if (count == 0 || compare(count, maxIndex) > 0) {
+            maxIndex = count;
+        }
+        count++;
+    }
+
+    // Signed comparison of two stored values: the first byte carries the sign
+    private int compare(int left, int right) {
+        int leftOffset = left * LENGTH;
+        int rightOffset = right * LENGTH;
+        int result = Byte.compare(values[leftOffset], values[rightOffset]);
+        if (result != 0) {
+            return result;
+        }
+        return Arrays.compareUnsigned(values, leftOffset + 1, leftOffset + LENGTH,
+                values, rightOffset + 1, rightOffset + LENGTH);
+    }
+
+    @Override
+    int physicalType() {
+        return FIXED_LEN_BYTE_ARRAY;
+    }
+
+    @Override
+    int typeLength() {
+        return LENGTH;
+    }
+
+    @Override
+    void writeLogicalType(ThriftCompactWriter thrift) {
+        thrift.i32Field(6, 5);
+        thrift.i32Field(7, SCALE);
+        thrift.i32Field(8, PRECISION);
+        thrift.beginStructField(10);
+        thrift.beginStructField(5);
+        thrift.i32Field(1, SCALE);
+        thrift.i32Field(2, PRECISION);
+        thrift.endStruct();
+        thrift.endStruct();
+    }
+
+    @Override
+    void writeValues(ByteArrayOutputStream out) {
+        out.write(values, 0, count * LENGTH);
+    }
+
+    @Override
+    byte[] minValue() {
+        return count == 0 ? null : Arrays.copyOfRange(values, minIndex * LENGTH, (minIndex + 1) * LENGTH);
+    }
+
+    @Override
+    byte[] maxValue() {
+        return count == 0 ? null : Arrays.copyOfRange(values, maxIndex * LENGTH, (maxIndex + 1) * LENGTH);
+    }
+
+    @Override
+    void resetValues() {
+        count = 0;
+    }
+}
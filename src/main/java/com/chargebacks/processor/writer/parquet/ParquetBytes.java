@@ -0,0 +1,80 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.ByteArrayOutputStream;
+
+final class ParquetBytes {
+
+    private ParquetBytes() {
+    }
+
+    static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    static void writeLongLittleEndian(ByteArrayOutputStream out, long value) {
+        writeIntLittleEndian(out, (int) value);
+        writeIntLittleEndian(out, (int) (value >>> 32));
+    }
+
+    static byte[] intLittleEndian(int value) {
+        return new byte[]{(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)};
+    }
+
+    static byte[] longLittleEndian(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (8 * i));
+        }
+        return bytes;
+    }
+
+    static void writeUnsignedVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // RLE / bit-packing hybrid encoding. All-equal values become a single RLE run; anything else
+    // is one bit-packed run whose last group is zero-padded, since readers stop at the value
+    // count from the page header.
+    static void writeHybrid(ByteArrayOutputStream out, int[] values, int count, int bitWidth) {
+        if (count == 0) {
+            return;
+        }
+        boolean allEqual = true;
+        for (int i = 1; i < count && allEqual; i++) {
+            allEqual = values[i] == values[0];
+        }
+        if (allEqual) {
+            writeUnsignedVarint(out, (long) count << 1);
+            for (int i = 0, bytes = (bitWidth + 7) / 8; i < bytes; i++) {
+                out.write(values[0] >>> (8 * i));
+            }
+            return;
+        }
+
+        int groups = (count + 7) / 8;
+        writeUnsignedVarint(out, (long) groups << 1 | 1);
+        long buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < groups * 8; i++) {
+            long value = i < count ? values[i] & 0xFFFFFFFFL : 0;
+            buffer |= value << bits;
+            bits += bitWidth;
+            while (bits >= 8) {
+                out.write((int) buffer);
+                buffer >>>= 8;
+                bits -= 8;
+            }
+        }
+    }
+
+    static int bitWidth(int maxValue) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+    }
+}
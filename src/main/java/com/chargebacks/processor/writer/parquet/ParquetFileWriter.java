@@ -0,0 +1,233 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Writes a Parquet file of flat, optional columns: "PAR1", then per row group one column chunk
+// per column (an optional dictionary page and a single v1 data page), then the Thrift footer.
+// Only the current row group is held in memory, in the column buffers.
+final class ParquetFileWriter implements Closeable {
+
+    static final String CREATED_BY = "chargebacks-processor";
+
+    private static final byte[] MAGIC = {'P', 'A', 'R', '1'};
+
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CODEC_GZIP = 2;
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_PLAIN_DICTIONARY = 2;
+    private static final int ENCODING_RLE = 3;
+
+    private final OutputStream out;
+    private final String schemaName;
+    private final List<ColumnBuffer> columns;
+    private final int codec;
+    private final List<RowGroup> rowGroups = new ArrayList<>();
+    private long position;
+    private long totalRows;
+    private boolean closed;
+
+    ParquetFileWriter(Path path, String schemaName, List<ColumnBuffer> columns, boolean gzip) throws IOException {
+        this.out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+        this.schemaName = schemaName;
+        this.columns = columns;
+        this.codec = gzip ? CODEC_GZIP : CODEC_UNCOMPRESSED;
+        write(MAGIC);
+    }
+
+    // Writes whatever the column buffers hold as one row group and resets them
+    void writeRowGroup() throws IOException {
+        int rows = columns.get(0).rows();
+        if (rows == 0) {
+            return;
+        }
+        long start = position;
+        List<ColumnChunk> chunks = new ArrayList<>(columns.size());
+        long uncompressedBytes = 0;
+        for (ColumnBuffer column : columns) {
+            ColumnChunk chunk = writeColumnChunk(column, rows);
+            uncompressedBytes += chunk.uncompressedSize();
+            chunks.add(chunk);
+            column.reset();
+        }
+        rowGroups.add(new RowGroup(chunks, rows, uncompressedBytes, start, position - start));
+        totalRows += rows;
+    }
+
+    private ColumnChunk writeColumnChunk(ColumnBuffer column, int rows) throws IOException {
+        column.prepare();
+        long chunkStart = position;
+        long uncompressedSize = 0;
+        long dictionaryPageOffset = -1;
+
+        byte[] dictionary = column.dictionaryPage();
+        if (dictionary != null) {
+            dictionaryPageOffset = position;
+            uncompressedSize += writePage(PAGE_DICTIONARY, dictionary, column.dictionarySize(), ENCODING_PLAIN_DICTIONARY);
+        }
+
+        long dataPageOffset = position;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        column.writeDefinitionLevels(body);
+        column.writeValues(body);
+        int encoding = dictionary != null ? ENCODING_PLAIN_DICTIONARY : ENCODING_PLAIN;
+        uncompressedSize += writePage(PAGE_DATA, body.toByteArray(), rows, encoding);
+
+        return new ColumnChunk(column, encoding, rows, column.nullCount(), column.minValue(), column.maxValue(),
+                chunkStart, dataPageOffset, dictionaryPageOffset, uncompressedSize, position - chunkStart);
+    }
+
+    // Returns the page size, header included, before compression
+    private long writePage(int type, byte[] body, int valueCount, int encoding) throws IOException {
+        byte[] stored = codec == CODEC_GZIP ? gzip(body) : body;
+        ThriftCompactWriter header = new ThriftCompactWriter();
+        header.i32Field(1, type);
+        header.i32Field(2, body.length);
+        header.i32Field(3, stored.length);
+        if (type == PAGE_DATA) {
+            header.beginStructField(5);
+            header.i32Field(1, valueCount);
+            header.i32Field(2, encoding);
+            header.i32Field(3, ENCODING_RLE);
+            header.i32Field(4, ENCODING_RLE);
+            header.endStruct();
+        } else {
+            header.beginStructField(7);
+            header.i32Field(1, valueCount);
+            header.i32Field(2, encoding);
+            header.endStruct();
+        }
+        byte[] headerBytes = header.finish();
+        write(headerBytes);
+        write(stored);
+        return headerBytes.length + body.length;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeRowGroup();
+            byte[] footer = footer();
+            write(footer);
+            write(ParquetBytes.intLittleEndian(footer.length));
+            write(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private byte[] footer() {
+        ThriftCompactWriter thrift = new ThriftCompactWriter();
+        thrift.i32Field(1, 1);
+
+        thrift.listField(2, ThriftCompactWriter.STRUCT, columns.size() + 1);
+        thrift.beginStruct();
+        thrift.stringField(4, schemaName);
+        thrift.i32Field(5, columns.size());
+        thrift.endStruct();
+        for (ColumnBuffer column : columns) {
+            thrift.beginStruct();
+            thrift.i32Field(1, column.physicalType());
+            if (column.typeLength() > 0) {
+                thrift.i32Field(2, column.typeLength());
+            }
+            thrift.i32Field(3, REPETITION_OPTIONAL);
+            thrift.stringField(4, column.name());
+            column.writeLogicalType(thrift);
+            thrift.endStruct();
+        }
+
+        thrift.i64Field(3, totalRows);
+
+        thrift.listField(4, ThriftCompactWriter.STRUCT, rowGroups.size());
+        for (RowGroup rowGroup : rowGroups) {
+            thrift.beginStruct();
+            thrift.listField(1, ThriftCompactWriter.STRUCT, rowGroup.chunks().size());
+            for (ColumnChunk chunk : rowGroup.chunks()) {
+                writeColumnChunk(thrift, chunk);
+            }
+            thrift.i64Field(2, rowGroup.uncompressedSize());
+            thrift.i64Field(3, rowGroup.rows());
+            thrift.i64Field(5, rowGroup.fileOffset());
+            thrift.i64Field(6, rowGroup.compressedSize());
+            thrift.endStruct();
+        }
+
+        thrift.stringField(6, CREATED_BY);
+
+        // TYPE_DEFINED_ORDER for every column, so readers trust min_value / max_value
+        thrift.listField(7, ThriftCompactWriter.STRUCT, columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            thrift.beginStruct();
+            thrift.emptyStructField(1);
+            thrift.endStruct();
+        }
+        return thrift.finish();
+    }
+
+    private void writeColumnChunk(ThriftCompactWriter thrift, ColumnChunk chunk) {
+        thrift.beginStruct();
+        thrift.i64Field(2, chunk.chunkOffset());
+        thrift.beginStructField(3);
+        thrift.i32Field(1, chunk.column().physicalType());
+        thrift.listField(2, ThriftCompactWriter.I32, 2);
+        thrift.i32Element(chunk.encoding());
+        thrift.i32Element(ENCODING_RLE);
+        thrift.listField(3, ThriftCompactWriter.BINARY, 1);
+        thrift.stringElement(chunk.column().name());
+        thrift.i32Field(4, codec);
+        thrift.i64Field(5, chunk.valueCount());
+        thrift.i64Field(6, chunk.uncompressedSize());
+        thrift.i64Field(7, chunk.compressedSize());
+        thrift.i64Field(9, chunk.dataPageOffset());
+        if (chunk.dictionaryPageOffset() >= 0) {
+            thrift.i64Field(11, chunk.dictionaryPageOffset());
+        }
+        thrift.beginStructField(12);
+        thrift.i64Field(3, chunk.nullCount());
+        if (chunk.max() != null) {
+            thrift.binaryField(5, chunk.max());
+            thrift.binaryField(6, chunk.min());
+        }
+        thrift.endStruct();
+        thrift.endStruct();
+        thrift.endStruct();
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    private record ColumnChunk(ColumnBuffer column, int encoding, int valueCount, int nullCount, byte[] min,
+                               byte[] max, long chunkOffset, long dataPageOffset, long dictionaryPageOffset,
+                               long uncompressedSize, long compressedSize) {
+    }
+
+    private record RowGroup(List<ColumnChunk> chunks, int rows, long uncompressedSize, long fileOffset,
+                            long compressedSize) {
+    }
+}
@@ -0,0 +1,158 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// STRING: UTF-8 BYTE_ARRAY. Each row group is dictionary encoded when the distinct values are
+// few enough to pay off (currency and reason), and PLAIN encoded otherwise (merchandise_ref).
+final class StringColumn extends ColumnBuffer {
+
+    static final int MAX_DICTIONARY_ENTRIES = 1 << 16;
+    private static final int MAX_DICTIONARY_BYTES = 1 << 20;
+
+    private String[] values = new String[1024];
+    private int count;
+
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+    private final List<byte[]> dictionary = new ArrayList<>();
+    private int[] ids = new int[0];
+    private boolean dictionaryEncoded;
+    private byte[] min;
+    private byte[] max;
+
+    StringColumn(String name) {
+        super(name);
+    }
+
+    void add(String value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        addDefined();
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = value;
+    }
+
+    @Override
+    int physicalType() {
+        return BYTE_ARRAY;
+    }
+
+    @Override
+    void writeLogicalType(ThriftCompactWriter thrift) {
+        thrift.i32Field(6, 0);
+        thrift.beginStructField(10);
+        thrift.emptyStructField(1);
+        thrift.endStruct();
+    }
+
+    @Override
+    void prepare() {
+        dictionaryEncoded = count > 0 && buildDictionary();
+        min = null;
+        max = null;
+        if (dictionaryEncoded) {
+            dictionary.forEach(this::updateStatistics);
+        } else {
+            for (int i = 0; i < count; i++) {
+                updateStatistics(values[i].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private boolean buildDictionary() {
+        dictionaryIds.clear();
+        dictionary.clear();
+        if (ids.length < count) {
+            ids = new int[values.length];
+        }
+        int dictionaryBytes = 0;
+        for (int i = 0; i < count; i++) {
+            Integer id = dictionaryIds.get(values[i]);
+            if (id == null) {
+                byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+                dictionaryBytes += bytes.length + 4;
+                // A dictionary nearly as large as the column buys nothing
+                if (dictionary.size() == MAX_DICTIONARY_ENTRIES || dictionaryBytes > MAX_DICTIONARY_BYTES
+                        || dictionary.size() > count / 2) {
+                    return false;
+                }
+                id = dictionary.size();
+                dictionaryIds.put(values[i], id);
+                dictionary.add(bytes);
+            }
+            ids[i] = id;
+        }
+        return true;
+    }
+
+    private void updateStatistics(byte[] value) {
+        if (min == null || Arrays.compareUnsigned(value, min) < 0) {
+            min = value;
+        }
+        if (max == null || Arrays.compareUnsigned(value, max) > 0) {
+            max = value;
+        }
+    }
+
+    @Override
+    byte[] dictionaryPage() {
+        if (!dictionaryEncoded) {
+            return null;
+        }
+        ByteArrayOutputStream page = new ByteArrayOutputStream();
+        for (byte[] entry : dictionary) {
+            writePlain(page, entry);
+        }
+        return page.toByteArray();
+    }
+
+    @Override
+    int dictionarySize() {
+        return dictionary.size();
+    }
+
+    @Override
+    void writeValues(ByteArrayOutputStream out) {
+        if (dictionaryEncoded) {
+            int bitWidth = ParquetBytes.bitWidth(dictionary.size() - 1);
+            out.write(bitWidth);
+            ParquetBytes.writeHybrid(out, ids, count, bitWidth);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            writePlain(out, values[i].getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writePlain(ByteArrayOutputStream out, byte[] value) {
+        ParquetBytes.writeIntLittleEndian(out, value.length);
+        out.writeBytes(value);
+    }
+
+    @Override
+    byte[] minValue() {
+        return min;
+    }
+
+    @Override
+    byte[] maxValue() {
+        return max;
+    }
+
+    @Override
+    void resetValues() {
+        Arrays.fill(values, 0, count, null);
+        count = 0;
+        dictionaryIds.clear();
+        dictionary.clear();
+    }
+}
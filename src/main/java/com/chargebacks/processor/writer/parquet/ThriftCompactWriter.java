@@ -0,0 +1,114 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Just enough of the Thrift compact protocol to write Parquet page headers and the file footer.
+// Field ids within a struct must be written in increasing order.
+final class ThriftCompactWriter {
+
+    static final int BOOLEAN_TRUE = 1;
+    static final int BOOLEAN_FALSE = 2;
+    static final int I32 = 5;
+    static final int I64 = 6;
+    static final int BINARY = 8;
+    static final int LIST = 9;
+    static final int STRUCT = 12;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    private final int[] fieldIdStack = new int[16];
+    private int depth;
+    private int lastFieldId;
+
+    void i32Field(int id, int value) {
+        fieldHeader(id, I32);
+        ParquetBytes.writeUnsignedVarint(out, zigzag(value));
+    }
+
+    void i64Field(int id, long value) {
+        fieldHeader(id, I64);
+        ParquetBytes.writeUnsignedVarint(out, zigzag(value));
+    }
+
+    void boolField(int id, boolean value) {
+        fieldHeader(id, value ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+    }
+
+    void binaryField(int id, byte[] value) {
+        fieldHeader(id, BINARY);
+        binary(value);
+    }
+
+    void stringField(int id, String value) {
+        binaryField(id, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void beginStructField(int id) {
+        fieldHeader(id, STRUCT);
+        beginStruct();
+    }
+
+    void emptyStructField(int id) {
+        beginStructField(id);
+        endStruct();
+    }
+
+    void listField(int id, int elementType, int size) {
+        fieldHeader(id, LIST);
+        if (size < 15) {
+            out.write(size << 4 | elementType);
+        } else {
+            out.write(0xF0 | elementType);
+            ParquetBytes.writeUnsignedVarint(out, size);
+        }
+    }
+
+    // Struct elements of a list have no field header of their own
+    void beginStruct() {
+        fieldIdStack[depth++] = lastFieldId;
+        lastFieldId = 0;
+    }
+
+    void endStruct() {
+        out.write(0);
+        lastFieldId = fieldIdStack[--depth];
+    }
+
+    void i32Element(int value) {
+        ParquetBytes.writeUnsignedVarint(out, zigzag(value));
+    }
+
+    void stringElement(String value) {
+        binary(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Ends the top-level struct and returns the encoded bytes
+    byte[] finish() {
+        out.write(0);
+        return out.toByteArray();
+    }
+
+    private void fieldHeader(int id, int type) {
+        int delta = id - lastFieldId;
+        if (delta > 0 && delta <= 15) {
+            out.write(delta << 4 | type);
+        } else {
+            out.write(type);
+            ParquetBytes.writeUnsignedVarint(out, zigzag(id));
+        }
+        lastFieldId = id;
+    }
+
+    private void binary(byte[] value) {
+        ParquetBytes.writeUnsignedVarint(out, value.length);
+        out.write(value, 0, value.length);
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
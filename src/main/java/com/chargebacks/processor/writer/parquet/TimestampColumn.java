@@ -0,0 +1,80 @@
+package com.chargebacks.processor.writer.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+// TIMESTAMP(MICROS, isAdjustedToUTC = false): INT64 microseconds of the local date-time, as
+// created_time is stored without a zone
+final class TimestampColumn extends ColumnBuffer {
+
+    private long[] values = new long[1024];
+    private int count;
+    private long min;
+    private long max;
+
+    TimestampColumn(String name) {
+        super(name);
+    }
+
+    void add(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            addNull();
+            return;
+        }
+        addDefined();
+        long micros = Math.addExact(Math.multiplyExact(dateTime.toEpochSecond(ZoneOffset.UTC), 1_000_000L),
+                dateTime.getNano() / 1_000);
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        if (count == 0 || micros < min) {
+            min = micros;
+        }
+        if (count == 0 || micros > max) {
+            max = micros;
+        }
+        values[count++] = micros;
+    }
+
+    @Override
+    int physicalType() {
+        return INT64;
+    }
+
+    @Override
+    void writeLogicalType(ThriftCompactWriter thrift) {
+        // No converted_type: TIMESTAMP_MICROS would mean a UTC-adjusted instant
+        thrift.beginStructField(10);
+        thrift.beginStructField(8);
+        thrift.boolField(1, false);
+        thrift.beginStructField(2);
+        thrift.emptyStructField(2);
+        thrift.endStruct();
+        thrift.endStruct();
+        thrift.endStruct();
+    }
+
+    @Override
+    void writeValues(ByteArrayOutputStream out) {
+        for (int i = 0; i < count; i++) {
+            ParquetBytes.writeLongLittleEndian(out, values[i]);
+        }
+    }
+
+    @Override
+    byte[] minValue() {
+        return count == 0 ? null : ParquetBytes.longLittleEndian(min);
+    }
+
+    @Override
+    byte[] maxValue() {
+        return count == 0 ? null : ParquetBytes.longLittleEndian(max);
+    }
+
+    @Override
+    void resetValues() {
+        count = 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.chargebacks.processor.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Bulk-loads synthetic rows for the benchmark tests, spread evenly over the given window
+class ChargebackDataSeeder {
+
+    private static final String INSERT_SQL = "INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+            "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "JPY", "CAD"};
+    private static final String[] REASONS = {"Product not received", "Unauthorized transaction",
+            "Duplicate charge", "Fraudulent transaction", "Item not as described"};
+    private static final int BATCH_SIZE = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    ChargebackDataSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    void reset() {
+        jdbcTemplate.execute("DELETE FROM Chargebacks");
+    }
+
+    void seed(int rows, LocalDateTime start, LocalDateTime end) {
+        long spanSeconds = Math.max(1, java.time.Duration.between(start, end).getSeconds());
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            LocalDateTime createdTime = start.plusSeconds(spanSeconds * i / rows);
+            batch.add(new Object[]{
+                Date.valueOf(createdTime.toLocalDate().minusDays(i % 30)),
+                BigDecimal.valueOf(100 + (i % 100_000), 2),
+                CURRENCIES[i % CURRENCIES.length],
+                "REF-" + i,
+                REASONS[i % REASONS.length],
+                Timestamp.valueOf(createdTime)
+            });
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        }
+    }
+}
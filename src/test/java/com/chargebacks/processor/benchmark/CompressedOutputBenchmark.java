@@ -0,0 +1,99 @@
+package com.chargebacks.processor.benchmark;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.writer.ChargebackItemWriter;
+import com.chargebacks.processor.writer.Compression;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// CSV megabytes per second through ChargebackItemWriter, plain and gzip with one and with all
+// compression threads. MB/s is measured on the uncompressed CSV, so the rows are comparable.
+// Run with: mvn test -Pbenchmark -Dtest=CompressedOutputBenchmark -Dbenchmark.rows=2000000
+@Tag("benchmark")
+class CompressedOutputBenchmark {
+
+    private static final int CHUNK_SIZE = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void plainVersusGzip() throws Exception {
+        int rows = Integer.getInteger("benchmark.rows", 2_000_000);
+        List<Chunk<Chargeback>> chunks = sampleChunks();
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int round = 0; round < 2; round++) {
+            run(Compression.NONE, 1, chunks, rows / 4);
+            run(Compression.GZIP, processors, chunks, rows / 4);
+        }
+
+        Result plain = run(Compression.NONE, 1, chunks, rows);
+        System.out.printf("%-6s %8s %10s %10s %8s%n", "mode", "threads", "MB/s", "file MB", "ratio");
+        report("plain", 1, plain, plain);
+        report("gzip", 1, plain, run(Compression.GZIP, 1, chunks, rows));
+        report("gzip", processors, plain, run(Compression.GZIP, processors, chunks, rows));
+    }
+
+    private static void report(String label, int threads, Result plain, Result result) {
+        System.out.printf("%-6s %8d %10.1f %10.1f %8.2f%n", label, threads,
+                plain.fileBytes() / result.seconds() / (1024 * 1024), result.fileBytes() / (1024.0 * 1024),
+                (double) plain.fileBytes() / result.fileBytes());
+    }
+
+    private Result run(Compression compression, int threads, List<Chunk<Chargeback>> chunks, int rows)
+            throws Exception {
+        ChargebackItemWriter writer = new ChargebackItemWriter();
+        writer.setCompression(compression, threads);
+        Path file = tempDir.resolve("benchmark.csv" + compression.getExtension());
+        writer.setOutputFile(file.toString());
+        writer.configureWriter();
+        writer.afterPropertiesSet();
+
+        long begin = System.nanoTime();
+        writer.open(new ExecutionContext());
+        ExecutionContext executionContext = new ExecutionContext();
+        for (int written = 0; written < rows; written += CHUNK_SIZE) {
+            writer.write(chunks.get((written / CHUNK_SIZE) % chunks.size()));
+            writer.update(executionContext);
+        }
+        writer.close();
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+
+        long fileBytes = Files.size(file);
+        Files.delete(file);
+        return new Result(seconds, fileBytes);
+    }
+
+    private record Result(double seconds, long fileBytes) {
+    }
+
+    private static List<Chunk<Chargeback>> sampleChunks() {
+        String[] currencies = {"USD", "EUR", "GBP"};
+        String[] reasons = {"Product not received", "Unauthorized transaction", "Duplicate charge"};
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        List<Chunk<Chargeback>> chunks = new ArrayList<>();
+        int i = 0;
+        for (int c = 0; c < 64; c++) {
+            Chunk<Chargeback> chunk = new Chunk<>();
+            for (int r = 0; r < CHUNK_SIZE; r++, i++) {
+                chunk.add(new Chargeback(LocalDate.of(2024, 1, 1 + i % 28), BigDecimal.valueOf(1_000 + i * 37L, 2),
+                        currencies[i % currencies.length], "REF-" + i, reasons[i % reasons.length],
+                        base.plusSeconds(i * 13L)));
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,86 @@
+package com.chargebacks.processor.benchmark;
+
+import com.chargebacks.processor.duplicate.DuplicateIndex;
+import com.chargebacks.processor.model.Chargeback;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The duplicate check's two passes over generated rows, one row in every thousand repeating an
+// earlier row's key, for a few Bloom filter sizes: time per row to build the index and to check
+// every row against it, how many keys the filter left as suspects, and the heap held at the end of
+// the first pass, the filter and the suspects (measured after a GC). Rows are generated as they
+// are read, so nothing else stays on the heap.
+// Run with: mvn test -Pbenchmark -Dtest=DuplicateIndexBenchmark [-Dbenchmark.rows=10000000]
+@Tag("benchmark")
+class DuplicateIndexBenchmark {
+
+    private static final int REPEAT_EVERY = 1_000;
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP"};
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+    @Test
+    void buildAndCheck() {
+        int rows = Integer.getInteger("benchmark.rows", 10_000_000);
+        long[] budgets = {4L << 20, 16L << 20, 64L << 20};
+
+        // Warm-up on a smaller run so JIT costs don't land on the first measurement
+        run(rows / 10, 16L << 20);
+
+        System.out.printf("%-10s %10s %12s %12s %12s %12s%n", "rows", "budget MB", "suspects", "build ns/row",
+                "check ns/row", "heap MB");
+        for (long budget : budgets) {
+            Result result = run(rows, budget);
+            System.out.printf("%-10d %10d %12d %12.1f %12.1f %12.1f%n", rows, budget >> 20, result.suspects(),
+                    (double) result.buildNanos() / rows, (double) result.checkNanos() / rows,
+                    result.heapBytes() / (1024.0 * 1024));
+            assertEquals(rows / REPEAT_EVERY, result.duplicates());
+        }
+    }
+
+    private static Result run(int rows, long budget) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        long begin = System.nanoTime();
+        DuplicateIndex.Builder builder = new DuplicateIndex.Builder(budget, rows);
+        for (int i = 0; i < rows; i++) {
+            builder.add(row(i));
+        }
+        long scanNanos = System.nanoTime() - begin;
+
+        // The filter is dropped once the index is built, so the heap peaks here
+        System.gc();
+        long heapBytes = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+
+        begin = System.nanoTime();
+        DuplicateIndex index = builder.build();
+        long buildNanos = scanNanos + System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            index.isDuplicate(row(i));
+        }
+        long checkNanos = System.nanoTime() - begin;
+        return new Result(index.getSuspectKeys(), index.getDuplicateRows(), buildNanos, checkNanos, heapBytes);
+    }
+
+    // Every REPEAT_EVERY-th row repeats the key of the row half a repeat interval before it
+    private static Chargeback row(int i) {
+        int key = i % REPEAT_EVERY == REPEAT_EVERY - 1 ? i - REPEAT_EVERY / 2 : i;
+        Chargeback chargeback = new Chargeback(LocalDate.of(2024, 1, 1 + key % 28), null,
+                CURRENCIES[key % CURRENCIES.length], "REF-" + key, "Duplicate charge", BASE.plusSeconds(i));
+        chargeback.setDisputedAmtMinor(1_000 + key * 37L);
+        return chargeback;
+    }
+
+    private record Result(int suspects, long duplicates, long buildNanos, long checkNanos, long heapBytes) {
+    }
+}
@@ -0,0 +1,120 @@
+package com.chargebacks.processor.benchmark;
+
+import com.chargebacks.processor.job.ChargebackJobLauncher;
+import com.chargebacks.processor.job.ExportOptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs ChargebackJobLauncher.launchJob end to end over SyntheticChargebackGenerator data at
+// several sizes and reports rows/sec, peak heap and GC time for each. The database is a
+// file-backed H2 in MySQL mode, so the table lives on disk rather than in the heap being
+// measured; peak heap is the sum of the heap pools' peaks while the export ran.
+// Run with: mvn test -Pbenchmark -Dtest=EndToEndThroughputBenchmark [-Dbenchmark.sizes=100000,1000000,5000000]
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:file:./target/benchmark-db/chargebacks;MODE=MySQL",
+    "spring.sql.init.mode=always"
+})
+@ActiveProfiles("test")
+@Tag("benchmark")
+class EndToEndThroughputBenchmark {
+
+    private static final int[] SIZES = Arrays.stream(System.getProperty("benchmark.sizes", "100000,1000000")
+            .split(",")).mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+    private static final int WARMUP_ROWS = 50_000;
+    private static final long SEED = 20240101L;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void exportAtSeveralSizes() throws Exception {
+        SyntheticChargebackGenerator generator = new SyntheticChargebackGenerator(jdbcTemplate, SEED);
+
+        // Warms up the JIT so the first size isn't measured against the interpreter
+        generator.reset();
+        generator.generate(WARMUP_ROWS, START, END);
+        jobLauncher.launchJob(START, END, new ExportOptions());
+
+        System.out.printf("%12s %10s %10s %12s %14s %10s %10s%n",
+                "rows", "load ms", "export ms", "rows/sec", "peak heap MB", "GC ms", "GC count");
+        for (int rows : SIZES) {
+            long loadBegin = System.nanoTime();
+            generator.reset();
+            generator.generate(rows, START, END);
+            long loadMillis = (System.nanoTime() - loadBegin) / 1_000_000;
+
+            System.gc();
+            resetPeakHeap();
+            long gcMillisBefore = gcMillis();
+            long gcCountBefore = gcCount();
+            long begin = System.nanoTime();
+            String outputFile = jobLauncher.launchJob(START, END, new ExportOptions());
+            long elapsedNanos = System.nanoTime() - begin;
+            long peakHeap = peakHeap();
+            long gcMillis = gcMillis() - gcMillisBefore;
+            long gcCount = gcCount() - gcCountBefore;
+
+            try (Stream<String> lines = Files.lines(Paths.get(outputFile))) {
+                assertEquals(rows + 1, lines.count(), "Header plus every generated row");
+            }
+            Files.delete(Paths.get(outputFile));
+            System.out.printf("%12d %10d %10d %12.0f %14d %10d %10d%n", rows, loadMillis, elapsedNanos / 1_000_000,
+                    rows / (elapsedNanos / 1_000_000_000.0), peakHeap / (1024 * 1024), gcMillis, gcCount);
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+}
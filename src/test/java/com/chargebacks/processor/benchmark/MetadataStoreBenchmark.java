@@ -0,0 +1,135 @@
+package com.chargebacks.processor.benchmark;
+
+import com.chargebacks.processor.ChargebacksProcessorApplication;
+import com.chargebacks.processor.job.ChargebackJobLauncher;
+import com.chargebacks.processor.job.ExportOptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Exports the same SyntheticChargebackGenerator data with chargeback.metadata.store=database and
+// =memory, counting the statements executed and transactions committed against the export
+// datasource in each, scaled to 1M rows. With the database store every chunk commit also updates
+// BATCH_STEP_EXECUTION and BATCH_STEP_EXECUTION_CONTEXT there; with the memory store only the
+// reader's query should be left.
+// Run with: mvn test -Pbenchmark -Dtest=MetadataStoreBenchmark [-Dbenchmark.rows=1000000]
+@Tag("benchmark")
+class MetadataStoreBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final long SEED = 20240101L;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+
+    @Test
+    void compareMetadataStores() throws Exception {
+        System.out.printf("%10s %12s %10s %16s %16s%n", "store", "rows", "export ms", "statements/1M", "commits/1M");
+        for (String store : new String[] {"database", "memory"}) {
+            DataSourceCounters counters = new DataSourceCounters();
+            try (ConfigurableApplicationContext context = start(store, counters)) {
+                SyntheticChargebackGenerator generator =
+                        new SyntheticChargebackGenerator(context.getBean(JdbcTemplate.class), SEED);
+                generator.reset();
+                generator.generate(ROWS, START, END);
+                ChargebackJobLauncher jobLauncher = context.getBean(ChargebackJobLauncher.class);
+
+                counters.reset();
+                long begin = System.nanoTime();
+                String outputFile = jobLauncher.launchJob(START, END, new ExportOptions());
+                long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+
+                try (Stream<String> lines = Files.lines(Paths.get(outputFile))) {
+                    assertEquals(ROWS + 1, lines.count(), "Header plus every generated row");
+                }
+                Files.delete(Paths.get(outputFile));
+                System.out.printf("%10s %12d %10d %16.0f %16.0f%n", store, ROWS, elapsedMillis,
+                        counters.statements.get() * 1_000_000d / ROWS, counters.commits.get() * 1_000_000d / ROWS);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String store, DataSourceCounters counters) {
+        return new SpringApplicationBuilder(ChargebacksProcessorApplication.class)
+                .profiles("test")
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(counters))
+                // As arguments rather than default properties, which application.yml would override
+                .run("--spring.datasource.url=jdbc:h2:file:./target/benchmark-db/chargebacks;MODE=MySQL",
+                        "--spring.sql.init.mode=always",
+                        "--chargeback.metadata.store=" + store,
+                        "--logging.level.org.springframework.batch=INFO",
+                        "--logging.level.com.chargebacks.processor=INFO");
+    }
+
+    // Wraps the export datasource so every connection and statement it hands out is counted
+    private static class DataSourceCounters implements BeanPostProcessor {
+
+        final AtomicLong statements = new AtomicLong();
+        final AtomicLong commits = new AtomicLong();
+
+        void reset() {
+            statements.set(0);
+            commits.set(0);
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                return proxy(DataSource.class, dataSource, (target, method, result) -> {
+                    return result instanceof Connection connection ? countConnection(connection) : result;
+                });
+            }
+            return bean;
+        }
+
+        private Connection countConnection(Connection connection) {
+            return proxy(Connection.class, connection, (target, method, result) -> {
+                if ("commit".equals(method.getName())) {
+                    commits.incrementAndGet();
+                }
+                if (result instanceof Statement statement) {
+                    return proxy(method.getReturnType(), statement, (statementTarget, statementMethod, value) -> {
+                        if (statementMethod.getName().startsWith("execute")) {
+                            statements.incrementAndGet();
+                        }
+                        return value;
+                    });
+                }
+                return result;
+            });
+        }
+
+        private interface AfterCall {
+            Object apply(Object target, java.lang.reflect.Method method, Object result) throws Exception;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<?> type, Object target, AfterCall afterCall) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                try {
+                    return afterCall.apply(target, method, method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            };
+            return (T) Proxy.newProxyInstance(MetadataStoreBenchmark.class.getClassLoader(), new Class<?>[] {type},
+                    handler);
+        }
+    }
+}
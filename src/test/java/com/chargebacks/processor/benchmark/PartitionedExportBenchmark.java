@@ -0,0 +1,70 @@
+package com.chargebacks.processor.benchmark;
+
+import com.chargebacks.processor.job.ChargebackJobLauncher;
+import com.chargebacks.processor.job.ExportOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Run with: mvn test -Pbenchmark -Dtest=PartitionedExportBenchmark [-Dbenchmark.rows=1000000]
+@SpringBootTest
+@ActiveProfiles("test")
+@Tag("benchmark")
+class PartitionedExportBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int[] WORKER_COUNTS = {1, 2, 4, 8};
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        ChargebackDataSeeder seeder = new ChargebackDataSeeder(jdbcTemplate);
+        seeder.reset();
+        seeder.seed(ROWS, START, END);
+    }
+
+    @Test
+    void throughputByWorkerCount() throws Exception {
+        // Warm-up run so JIT and connection pool costs don't land on the first measurement
+        jobLauncher.launchJob(START, END);
+
+        System.out.printf("%-8s %12s %14s%n", "workers", "millis", "rows/sec");
+        for (int workers : WORKER_COUNTS) {
+            ExportOptions options = new ExportOptions();
+            options.setWorkers(workers);
+
+            long begin = System.nanoTime();
+            String outputFile = jobLauncher.launchJob(START, END, options);
+            long elapsedNanos = System.nanoTime() - begin;
+
+            assertEquals(ROWS + 1, countLines(Paths.get(outputFile)), "Every row should be exported exactly once");
+            System.out.printf("%-8d %12d %14.0f%n", workers, elapsedNanos / 1_000_000,
+                    ROWS / (elapsedNanos / 1_000_000_000.0));
+        }
+    }
+
+    private static long countLines(Path file) throws Exception {
+        try (Stream<String> lines = Files.lines(file)) {
+            return lines.count();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.chargebacks.processor.benchmark;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.pipeline.PipelinedExportTasklet;
+import com.chargebacks.processor.processor.ChargebackItemProcessor;
+import com.chargebacks.processor.writer.ChargebackItemWriter;
+import com.chargebacks.processor.writer.Compression;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The chunk loop (read 100, process, write, repeat on one thread) against PipelinedExportTasklet
+// over a reader that stalls for a simulated round trip every fetch of 1000 rows, writing plain
+// and gzip CSV. With the chunk loop the stalls and the encoding/compression add up; pipelined
+// they overlap, so the run approaches whichever of the two is slower.
+// Run with: mvn test -Pbenchmark -Dtest=PipelinedExportBenchmark [-Dbenchmark.rows=1000000]
+//           [-Dbenchmark.latencyMillis=1]
+@Tag("benchmark")
+class PipelinedExportBenchmark {
+
+    private static final int CHUNK_SIZE = 100;
+    private static final int FETCH_SIZE = 1000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void chunkLoopVersusPipeline() throws Exception {
+        int rows = Integer.getInteger("benchmark.rows", 1_000_000);
+        long latencyMillis = Long.getLong("benchmark.latencyMillis", 1);
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        // Warm-up without latency so JIT costs don't land on the first measurement
+        for (int round = 0; round < 2; round++) {
+            chunkLoop(rows / 4, 0, Compression.NONE);
+            pipelined(rows / 4, 0, Compression.NONE, threads);
+        }
+
+        System.out.printf("%-10s %-5s %12s %10s %14s%n", "mode", "codec", "latency ms", "millis", "rows/sec");
+        for (Compression compression : Compression.values()) {
+            report("chunk", compression, latencyMillis, rows, chunkLoop(rows, latencyMillis, compression));
+            report("pipelined", compression, latencyMillis, rows, pipelined(rows, latencyMillis, compression, threads));
+        }
+    }
+
+    private static void report(String mode, Compression compression, long latencyMillis, int rows, long nanos) {
+        System.out.printf("%-10s %-5s %12d %10d %14.0f%n", mode, compression, latencyMillis, nanos / 1_000_000,
+                rows / (nanos / 1_000_000_000.0));
+    }
+
+    private long chunkLoop(int rows, long latencyMillis, Compression compression) throws Exception {
+        SimulatedDatabaseReader reader = new SimulatedDatabaseReader(rows, latencyMillis);
+        ChargebackItemProcessor processor = new ChargebackItemProcessor();
+        Path file = tempDir.resolve("chunk.csv" + compression.getExtension());
+        ChargebackItemWriter writer = newWriter(file, compression, 1);
+
+        long begin = System.nanoTime();
+        reader.open(new ExecutionContext());
+        writer.open(new ExecutionContext());
+        Chunk<Chargeback> chunk = new Chunk<>();
+        Chargeback item;
+        do {
+            chunk.clear();
+            while (chunk.size() < CHUNK_SIZE && (item = reader.read()) != null) {
+                chunk.add(processor.process(item));
+            }
+            writer.write(chunk);
+        } while (chunk.size() == CHUNK_SIZE);
+        writer.close();
+        reader.close();
+        long elapsed = System.nanoTime() - begin;
+
+        assertEquals(rows, reader.returned);
+        Files.delete(file);
+        return elapsed;
+    }
+
+    private long pipelined(int rows, long latencyMillis, Compression compression, int threads) throws Exception {
+        SimulatedDatabaseReader reader = new SimulatedDatabaseReader(rows, latencyMillis);
+        Path file = tempDir.resolve("pipelined.csv" + compression.getExtension());
+        ChargebackItemWriter writer = newWriter(file, compression, threads);
+        // Encoding and compression share the processors with the reader
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(reader, new ChargebackItemProcessor(), writer,
+                Math.max(1, threads / 2));
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+
+        long begin = System.nanoTime();
+        tasklet.execute(stepExecution.createStepContribution(), new ChunkContext(new StepContext(stepExecution)));
+        long elapsed = System.nanoTime() - begin;
+
+        assertEquals(rows, reader.returned);
+        Files.delete(file);
+        return elapsed;
+    }
+
+    private static ChargebackItemWriter newWriter(Path file, Compression compression, int threads) throws Exception {
+        ChargebackItemWriter writer = new ChargebackItemWriter();
+        writer.setCompression(compression, threads);
+        writer.setOutputFile(file.toString());
+        writer.configureWriter();
+        writer.setTransactional(false);
+        writer.afterPropertiesSet();
+        return writer;
+    }
+
+    // Produces rows the way a streaming JDBC cursor does: a stall for the round trip at the start
+    // of every fetch, then rows straight out of the buffer
+    private static class SimulatedDatabaseReader implements ItemStreamReader<Chargeback> {
+
+        private static final String[] CURRENCIES = {"USD", "EUR", "GBP"};
+        private static final String[] REASONS = {"Product not received", "Unauthorized transaction",
+            "Duplicate charge"};
+        private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+        private final int rows;
+        private final long latencyMillis;
+        private volatile int returned;
+
+        SimulatedDatabaseReader(int rows, long latencyMillis) {
+            this.rows = rows;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Chargeback read() throws Exception {
+            int i = returned;
+            if (i >= rows) {
+                return null;
+            }
+            if (i % FETCH_SIZE == 0 && latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            returned = i + 1;
+            return new Chargeback(LocalDate.of(2024, 1, 1 + i % 28), BigDecimal.valueOf(1_000 + i * 37L, 2),
+                    CURRENCIES[i % CURRENCIES.length], "REF-" + i, REASONS[i % REASONS.length],
+                    BASE.plusSeconds(i * 13L));
+        }
+    }
+}
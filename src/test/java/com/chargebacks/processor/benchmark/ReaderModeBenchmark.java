@@ -0,0 +1,78 @@
+package com.chargebacks.processor.benchmark;
+
+import com.chargebacks.processor.job.ChargebackJobLauncher;
+import com.chargebacks.processor.job.ExportOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compares the cursor reader with the keyset reader. H2 runs inside the test JVM, so the
+// sampled peak heap covers both the database side and the client side of the result set.
+// Run with: mvn test -Pbenchmark -Dtest=ReaderModeBenchmark [-Dbenchmark.rows=1000000]
+@SpringBootTest
+@ActiveProfiles("test")
+@Tag("benchmark")
+class ReaderModeBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 500_000);
+    private static final int[] PAGE_SIZES = {500, 2_000, 10_000};
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        ChargebackDataSeeder seeder = new ChargebackDataSeeder(jdbcTemplate);
+        seeder.reset();
+        seeder.seed(ROWS, START, END);
+    }
+
+    @Test
+    void cursorVersusKeyset() throws Exception {
+        jobLauncher.launchJob(START, END);
+
+        System.out.printf("%-16s %12s %14s %14s%n", "reader", "millis", "rows/sec", "peak heap MB");
+        run("cursor", new ExportOptions());
+        for (int pageSize : PAGE_SIZES) {
+            ExportOptions options = new ExportOptions();
+            options.setReaderMode(ExportOptions.ReaderMode.KEYSET);
+            options.setPageSize(pageSize);
+            run("keyset/" + pageSize, options);
+        }
+    }
+
+    private void run(String label, ExportOptions options) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        AtomicLong peakHeap = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+        try {
+            long begin = System.nanoTime();
+            jobLauncher.launchJob(START, END, options);
+            long elapsedNanos = System.nanoTime() - begin;
+            System.out.printf("%-16s %12d %14.0f %14d%n", label, elapsedNanos / 1_000_000,
+                    ROWS / (elapsedNanos / 1_000_000_000.0), peakHeap.get() / (1024 * 1024));
+        } finally {
+            sampler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.chargebacks.processor.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Bulk-loads rows shaped like production traffic, where ChargebackDataSeeder spreads identical
+// looking rows evenly over the window:
+//  - currencies are skewed: mostly USD and EUR with a long tail;
+//  - reasons repeat from a small catalogue, a few with commas or quotes that need CSV quoting;
+//  - amounts are log-normal (many small disputes, a few large ones);
+//  - created_time follows a daily cycle, plus bursts where an acquirer's batch file lands
+//    hundreds of disputes within a few seconds, so many rows share a created_time.
+// Seeded, so a given row count and window always produce the same data.
+class SyntheticChargebackGenerator {
+
+    private static final String INSERT_SQL = "INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+            "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int BATCH_SIZE = 5_000;
+
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "CAD", "AUD", "JPY", "CHF", "SEK", "MXN", "BRL"};
+    private static final double[] CURRENCY_WEIGHTS = {52, 21, 9, 5, 4, 3, 2, 1.5, 1.5, 1};
+
+    private static final String[] REASONS = {
+        "Product not received",
+        "Unauthorized transaction",
+        "Duplicate charge",
+        "Fraudulent transaction",
+        "Item not as described",
+        "Subscription cancelled",
+        "Credit not processed",
+        "Incorrect amount",
+        "Defective, returned to merchant",
+        "Customer says \"never ordered\"",
+        "Late presentment",
+        "Processing error"
+    };
+    private static final double[] REASON_WEIGHTS = {24, 20, 14, 12, 10, 6, 5, 4, 2, 1, 1, 1};
+
+    // Relative dispute volume per hour of the day (UTC): quiet overnight, peaking mid-afternoon
+    private static final double[] HOUR_WEIGHTS = {2, 1, 1, 1, 1, 2, 3, 5, 7, 8, 9, 10,
+            10, 10, 10, 9, 8, 7, 6, 5, 4, 4, 3, 2};
+    private static final double MAX_HOUR_WEIGHT = 10;
+
+    private static final double BURST_START_PROBABILITY = 1 / 2_000d;
+    private static final int MIN_BURST_ROWS = 100;
+    private static final int MAX_BURST_ROWS = 1_000;
+    private static final int BURST_SECONDS = 5;
+    private static final double REPEATED_ORDER_PROBABILITY = 0.02;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long seed;
+
+    SyntheticChargebackGenerator(JdbcTemplate jdbcTemplate, long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.seed = seed;
+    }
+
+    void reset() {
+        jdbcTemplate.execute("TRUNCATE TABLE Chargebacks");
+    }
+
+    void generate(int rows, LocalDateTime start, LocalDateTime end) {
+        Random random = new Random(seed);
+        long spanSeconds = Math.max(1, Duration.between(start, end).getSeconds());
+        double[] currencyThresholds = cumulative(CURRENCY_WEIGHTS);
+        double[] reasonThresholds = cumulative(REASON_WEIGHTS);
+
+        int burstRemaining = 0;
+        LocalDateTime burstStart = start;
+        long lastOrder = 0;
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            LocalDateTime createdTime;
+            if (burstRemaining == 0 && random.nextDouble() < BURST_START_PROBABILITY) {
+                burstRemaining = MIN_BURST_ROWS + random.nextInt(MAX_BURST_ROWS - MIN_BURST_ROWS + 1);
+                burstStart = start.plusSeconds(Math.max(0, (long) (random.nextDouble() * spanSeconds) - BURST_SECONDS));
+            }
+            if (burstRemaining > 0) {
+                createdTime = burstStart.plusSeconds(random.nextInt(BURST_SECONDS + 1));
+                burstRemaining--;
+            } else {
+                createdTime = dailyCycleTime(random, start, spanSeconds);
+            }
+
+            long order = random.nextDouble() < REPEATED_ORDER_PROBABILITY && lastOrder > 0
+                    ? lastOrder - random.nextInt((int) Math.min(lastOrder, 10_000))
+                    : ++lastOrder;
+            // Log-normal around a median of about 45.00, capped at 50,000.00
+            long cents = Math.min(5_000_000L, Math.max(1L, Math.round(Math.exp(8.4 + 1.3 * random.nextGaussian()))));
+
+            batch.add(new Object[]{
+                Date.valueOf(createdTime.toLocalDate().minusDays(random.nextInt(46))),
+                BigDecimal.valueOf(cents, 2),
+                CURRENCIES[pick(random, currencyThresholds)],
+                String.format("ORD-%010d", order),
+                REASONS[pick(random, reasonThresholds)],
+                Timestamp.valueOf(createdTime)
+            });
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        }
+    }
+
+    // Uniform over the window, thinned by hour of day
+    private static LocalDateTime dailyCycleTime(Random random, LocalDateTime start, long spanSeconds) {
+        while (true) {
+            LocalDateTime candidate = start.plusSeconds((long) (random.nextDouble() * (spanSeconds + 1)));
+            if (random.nextDouble() * MAX_HOUR_WEIGHT < HOUR_WEIGHTS[candidate.getHour()]) {
+                return candidate;
+            }
+        }
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double[] thresholds = new double[weights.length];
+        double running = 0;
+        for (int i = 0; i < weights.length; i++) {
+            running += weights[i];
+            thresholds[i] = running / total;
+        }
+        return thresholds;
+    }
+
+    private static int pick(Random random, double[] thresholds) {
+        double value = random.nextDouble();
+        for (int i = 0; i < thresholds.length - 1; i++) {
+            if (value < thresholds[i]) {
+                return i;
+            }
+        }
+        return thresholds.length - 1;
+    }
+}
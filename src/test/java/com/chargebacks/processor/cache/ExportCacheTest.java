@@ -0,0 +1,170 @@
+package com.chargebacks.processor.cache;
+
+import com.chargebacks.processor.job.ChargebackJobLauncher;
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.job.ExportResult;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "chargeback.metadata.store=memory",
+        "chargeback.cache.enabled=true",
+        "chargeback.cache.directory=./target/test-output/export-cache",
+        "chargeback.cache.max-bytes=900"
+})
+@ActiveProfiles("test")
+class ExportCacheTest {
+
+    // A range of its own, like the other job tests
+    private static final LocalDateTime START = LocalDateTime.of(2024, 8, 1, 0, 0, 0);
+    private static final Path CACHE_DIRECTORY = Paths.get("./target/test-output/export-cache");
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private ExportCache exportCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileSystemUtils.deleteRecursively(CACHE_DIRECTORY);
+        jdbcTemplate.update("DELETE FROM Chargebacks WHERE created_time >= ? AND created_time < ?",
+                START, START.plusDays(10));
+        // Two rows a day, so each day's file is just under 200 bytes
+        for (int day = 0; day < 10; day++) {
+            insertChargeback("REF-" + day + "-A", START.plusDays(day).plusHours(1), "Fraud");
+            insertChargeback("REF-" + day + "-B", START.plusDays(day).plusHours(2), "Fraud");
+        }
+    }
+
+    private void insertChargeback(String merchandiseRef, LocalDateTime createdTime, String reason) {
+        jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                        "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                LocalDate.of(2024, 7, 31), new BigDecimal("12.50"), "USD", merchandiseRef, reason, createdTime);
+    }
+
+    private ExportResult exportDay(int day, ExportOptions options) throws Exception {
+        return jobLauncher.export(START.plusDays(day), START.plusDays(day + 1).minusSeconds(1), options);
+    }
+
+    private static List<String> lines(ExportResult result) throws IOException {
+        return Files.readAllLines(Paths.get(result.outputFile()));
+    }
+
+    @Test
+    void testExport_ServesAnUnchangedRangeFromTheCache() throws Exception {
+        // Arrange
+        ExportResult first = exportDay(0, new ExportOptions());
+        List<String> exported = lines(first);
+        Files.delete(Paths.get(first.outputFile()));
+        // Options that only change how the export runs share the entry
+        ExportOptions partitioned = new ExportOptions();
+        partitioned.setWorkers(2);
+
+        // Act
+        ExportResult second = exportDay(0, partitioned);
+
+        // Assert
+        assertFalse(first.cached());
+        assertTrue(second.cached());
+        assertEquals(first.outputFile(), second.outputFile());
+        assertEquals(exported, lines(second));
+        assertEquals(3, exported.size());
+        assertEquals(2, second.summary().getRows());
+        assertEquals(first.summary().getCurrencyTotals(), second.summary().getCurrencyTotals());
+        assertFalse(exportCache.accepts(START, LocalDateTime.now().plusDays(1), new ExportOptions()),
+                "A range that hasn't ended yet can still change");
+    }
+
+    @Test
+    void testExport_RunsAgainWhenTheRangeOrTheOutputOptionsChange() throws Exception {
+        // Arrange
+        exportDay(1, new ExportOptions());
+        ExportOptions columns = new ExportOptions();
+        columns.setColumns(ChargebackColumn.parse("merchandise_ref,created_time"));
+        ExportOptions noCache = new ExportOptions();
+        noCache.setCache(false);
+
+        // Act & Assert
+        ExportResult otherColumns = exportDay(1, columns);
+        assertFalse(otherColumns.cached());
+        assertEquals("merchandise_ref,created_time", lines(otherColumns).get(0));
+        ExportResult forced = exportDay(1, noCache);
+        assertFalse(forced.cached());
+
+        insertChargeback("REF-LATE", START.plusDays(1).plusHours(3), "Fraud");
+        ExportResult changed = exportDay(1, new ExportOptions());
+        assertFalse(changed.cached(), "A new row changes the fingerprint");
+        assertEquals(4, lines(changed).size());
+        assertTrue(exportDay(1, new ExportOptions()).cached());
+    }
+
+    @Test
+    void testExport_RunningAgainLeavesTheServedEntryAlone() throws Exception {
+        // Arrange - an update changes neither the row count nor the latest created_time
+        List<String> cached = lines(exportDay(2, new ExportOptions()));
+        assertTrue(exportDay(2, new ExportOptions()).cached());
+        jdbcTemplate.update("UPDATE Chargebacks SET reason_for_dispute = 'Updated' WHERE merchandise_ref = 'REF-2-A'");
+        ExportOptions noCache = new ExportOptions();
+        noCache.setCache(false);
+
+        // Act - rewrites the output file the entry was served to
+        List<String> rewritten = lines(exportDay(2, noCache));
+        ExportResult served = exportDay(2, new ExportOptions());
+
+        // Assert
+        assertTrue(rewritten.get(1).contains("Updated"));
+        assertTrue(served.cached());
+        assertEquals(cached, lines(served), "The entry keeps the file as it was first exported");
+    }
+
+    @Test
+    void testExport_EvictsTheLeastRecentlyUsedEntries() throws Exception {
+        // Arrange - four days fit in 900 bytes, five don't
+        List<Path> outputs = new ArrayList<>();
+        for (int day = 3; day < 7; day++) {
+            outputs.add(Paths.get(exportDay(day, new ExportOptions()).outputFile()));
+        }
+        assertTrue(exportDay(3, new ExportOptions()).cached(), "Day 3 becomes the most recently used");
+
+        // Act
+        exportDay(7, new ExportOptions());
+
+        // Assert
+        assertTrue(cacheBytes() <= 900);
+        assertFalse(Files.exists(outputs.get(1)), "Day 4's output was the evicted entry's bytes");
+        assertTrue(Files.exists(outputs.get(0)));
+        assertTrue(Files.exists(outputs.get(2)));
+        assertFalse(exportDay(4, new ExportOptions()).cached(), "Day 4 was the least recently used");
+        assertTrue(exportDay(3, new ExportOptions()).cached());
+        assertTrue(exportDay(7, new ExportOptions()).cached());
+    }
+
+    private static long cacheBytes() throws IOException {
+        try (Stream<Path> files = Files.list(CACHE_DIRECTORY)) {
+            return files.filter(file -> file.toString().endsWith(".data")).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.chargebacks.processor.cache;
+
+import com.chargebacks.processor.job.ChargebackJobLauncher;
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.job.ExportResult;
+import com.chargebacks.processor.metrics.ExportMetricsRecorder;
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.writer.Compression;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "chargeback.metadata.store=memory",
+        "chargeback.segments.enabled=true",
+        "chargeback.segments.directory=./target/test-output/segments",
+        "chargeback.segments.max-bytes=450"
+})
+@ActiveProfiles("test")
+class SegmentStoreTest {
+
+    // A range of its own, like the other job tests
+    private static final LocalDateTime START = LocalDateTime.of(2024, 9, 1, 0, 0, 0);
+    private static final Path SEGMENT_DIRECTORY = Paths.get("./target/test-output/segments");
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExportMetricsRecorder metricsRecorder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileSystemUtils.deleteRecursively(SEGMENT_DIRECTORY);
+        jdbcTemplate.update("DELETE FROM Chargebacks WHERE created_time >= ? AND created_time < ?",
+                START, START.plusDays(10));
+        // Rows early and late in every day, so ranges starting or ending mid-day cut days in half
+        for (int day = 0; day < 10; day++) {
+            insertChargeback("REF-" + day + "-A", START.plusDays(day).plusHours(3));
+            insertChargeback("REF-" + day + "-B", START.plusDays(day).plusHours(21));
+        }
+    }
+
+    private void insertChargeback(String merchandiseRef, LocalDateTime createdTime) {
+        jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                        "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                LocalDate.of(2024, 8, 31), new BigDecimal("12.50"), "USD", merchandiseRef, "Fraud", createdTime);
+    }
+
+    // The lines of an export read straight from the database, to compare assembled exports with
+    private List<String> freshLines(LocalDateTime startTimestamp, LocalDateTime endTimestamp) throws Exception {
+        ExportOptions noSegments = new ExportOptions();
+        noSegments.setCache(false);
+        return lines(jobLauncher.export(startTimestamp, endTimestamp, noSegments));
+    }
+
+    private static List<String> lines(ExportResult result) throws IOException {
+        return Files.readAllLines(Paths.get(result.outputFile()));
+    }
+
+    // The day's segment file, or null if it has none; the name changes with every version
+    private static Path segment(int day) throws IOException {
+        String prefix = START.toLocalDate().plusDays(day) + ".";
+        try (Stream<Path> files = Files.list(SEGMENT_DIRECTORY)) {
+            List<Path> segments = files.filter(file -> file.getFileName().toString().startsWith(prefix)
+                    && file.toString().endsWith(".csv")).toList();
+            assertTrue(segments.size() <= 1, "Replaced segments are deleted");
+            return segments.isEmpty() ? null : segments.get(0);
+        }
+    }
+
+    @Test
+    void testExport_AssemblesWholeDaysFromSegments() throws Exception {
+        // Arrange - from noon on day 0 to noon on day 3, so days 1 and 2 are whole
+        LocalDateTime start = START.plusHours(12);
+        LocalDateTime end = START.plusDays(3).plusHours(12).minusSeconds(1);
+        List<String> expected = freshLines(start, end);
+
+        // Act
+        ExportResult assembled = jobLauncher.export(start, end, new ExportOptions());
+
+        // Assert
+        assertEquals(expected, lines(assembled));
+        assertEquals(7, expected.size());
+        assertEquals(6, assembled.summary().getRows());
+        assertEquals(new BigDecimal("75.00"), assembled.summary().getCurrencyTotals().get("USD"));
+        assertNull(segment(0), "Partial days are not kept");
+        assertEquals(2, Files.readAllLines(segment(1)).size(), "Segments have no header");
+        assertNotNull(segment(2));
+        assertNull(segment(3));
+        try (Stream<Path> files = Files.list(SEGMENT_DIRECTORY)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")), "Work files are cleaned up");
+        }
+    }
+
+    @Test
+    void testExport_ReusesSegmentsAcrossOverlappingRanges() throws Exception {
+        // Arrange
+        jobLauncher.export(START.plusDays(4), START.plusDays(6).minusSeconds(1), new ExportOptions());
+        Path day4 = segment(4);
+        FileTime written = Files.getLastModifiedTime(day4);
+        LocalDateTime start = START.plusDays(4);
+        LocalDateTime end = START.plusDays(7).plusHours(6);
+        List<String> expected = freshLines(start, end);
+        ExportOptions partitioned = new ExportOptions();
+        partitioned.setWorkers(2);
+
+        // Act
+        ExportResult assembled = jobLauncher.export(start, end, partitioned);
+
+        // Assert
+        assertEquals(expected, lines(assembled));
+        assertEquals(day4, segment(4), "An unchanged day is not written again");
+        assertEquals(written, Files.getLastModifiedTime(day4));
+        assertNotNull(segment(6));
+        assertEquals(7, assembled.summary().getRows());
+    }
+
+    @Test
+    void testExport_RebuildsTheSegmentOfADayThatChanged() throws Exception {
+        // Arrange - day 8 and the first hours of day 9
+        LocalDateTime start = START.plusDays(8);
+        LocalDateTime end = START.plusDays(9).plusHours(6);
+        jobLauncher.export(start, end, new ExportOptions());
+        Path stale = segment(8);
+        insertChargeback("REF-LATE", START.plusDays(8).plusHours(12));
+
+        // Act
+        ExportResult assembled = jobLauncher.export(start, end, new ExportOptions());
+
+        // Assert
+        assertEquals(freshLines(start, end), lines(assembled));
+        assertEquals(4, assembled.summary().getRows());
+        assertNotEquals(stale, segment(8), "A new version gets a name of its own");
+        assertFalse(Files.exists(stale));
+        assertEquals(3, Files.readAllLines(segment(8)).size());
+    }
+
+    @Test
+    void testExport_RecordsMetricsForTheWholeAssembledExport() throws Exception {
+        // Arrange - days 1 and 2 are copied in from their segments on the second run
+        LocalDateTime start = START.plusDays(1);
+        LocalDateTime end = START.plusDays(3).minusSeconds(1);
+        jobLauncher.export(start, end, new ExportOptions());
+
+        // Act
+        ExportResult assembled = jobLauncher.export(start, end, new ExportOptions());
+
+        // Assert
+        List<String> metrics = Files.readAllLines(Paths.get(metricsRecorder.getMetricsFile()));
+        assertTrue(metrics.contains("chargeback_export_rows_read 0"), "No job read a row");
+        assertTrue(metrics.contains("chargeback_export_rows_written 4"));
+        assertTrue(metrics.contains("chargeback_export_output_bytes "
+                + Files.size(Paths.get(assembled.outputFile()))));
+        assertTrue(metrics.contains("chargeback_export_success 1"));
+    }
+
+    @Test
+    void testExport_EvictsTheLeastRecentlyUsedDays() throws Exception {
+        // Arrange - four days of two rows fit in 450 bytes, five don't
+        jobLauncher.export(START, START.plusDays(2).plusHours(6), new ExportOptions());
+        jobLauncher.export(START.plusDays(2), START.plusDays(4).plusHours(6), new ExportOptions());
+        jobLauncher.export(START, START.plusDays(2).plusHours(6), new ExportOptions());
+
+        // Act
+        jobLauncher.export(START.plusDays(4), START.plusDays(5).plusHours(6), new ExportOptions());
+
+        // Assert
+        assertNull(segment(2), "Day 2 was the least recently used");
+        assertNotNull(segment(0));
+        assertNotNull(segment(1));
+        assertNotNull(segment(3));
+        assertNotNull(segment(4));
+        try (Stream<Path> files = Files.list(SEGMENT_DIRECTORY)) {
+            assertEquals(4, files.filter(file -> file.toString().endsWith(".entry")).count());
+        }
+    }
+
+    @Test
+    void testAccepts_OnlyPlainCsvExportsSpanningAWholeDay() {
+        // Arrange
+        LocalDateTime end = START.plusDays(2).minusSeconds(1);
+        ExportOptions gzip = new ExportOptions();
+        gzip.setCompression(Compression.GZIP);
+        ExportOptions columns = new ExportOptions();
+        columns.setColumns(ChargebackColumn.parse("merchandise_ref,created_time"));
+        ExportOptions currencies = new ExportOptions();
+        currencies.setCurrencies(List.of("USD"));
+
+        // Act & Assert
+        assertTrue(segmentStore.accepts(START, end, new ExportOptions()));
+        assertFalse(segmentStore.accepts(START, end, gzip));
+        assertFalse(segmentStore.accepts(START, end, columns));
+        assertFalse(segmentStore.accepts(START, end, currencies));
+        assertFalse(segmentStore.accepts(START.plusHours(6), START.plusHours(18), new ExportOptions()),
+                "No whole day in the range");
+        assertFalse(segmentStore.accepts(START, START.plusDays(1).minusSeconds(1), new ExportOptions()),
+                "Exactly one whole day is exported directly");
+        assertTrue(segmentStore.accepts(START, START.plusDays(1).plusHours(1), new ExportOptions()));
+        assertFalse(segmentStore.accepts(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusDays(1),
+                new ExportOptions()), "Today hasn't ended yet");
+    }
+}
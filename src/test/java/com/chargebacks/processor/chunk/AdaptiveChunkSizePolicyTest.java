@@ -0,0 +1,110 @@
+package com.chargebacks.processor.chunk;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveChunkSizePolicyTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    // Feeds chunks whose duration is a fixed commit cost plus a per-row cost
+    private static void run(AdaptiveChunkSizePolicy policy, int chunks, long commitNanos, long nanosPerRow) {
+        for (int i = 0; i < chunks; i++) {
+            int rows = policy.getChunkSize();
+            policy.recordChunk(rows, commitNanos + rows * nanosPerRow, commitNanos);
+        }
+    }
+
+    @Test
+    void testGrowsWhileLargerChunksAmortizeCommits() {
+        // Arrange - 10ms per commit, 10us per row: doubling pays off until 12800 (25600 is under 5% better)
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(100, 100_000, 60_000);
+
+        // Act
+        run(policy, 100, 10 * MILLIS, 10_000);
+
+        // Assert
+        assertEquals(12_800, policy.getChunkSize());
+    }
+
+    @Test
+    void testStopsAtMaxChunkSize() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(100, 1_000, 60_000);
+
+        run(policy, 100, 10 * MILLIS, 10_000);
+
+        assertEquals(1_000, policy.getChunkSize());
+    }
+
+    @Test
+    void testFallsBackToBestSizeWhenThroughputDrops() {
+        // Arrange
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(100, 10_000, 60_000);
+        run(policy, 5, 10 * MILLIS, 10_000);
+        assertEquals(200, policy.getChunkSize());
+
+        // Act - at 200 rows every chunk is much slower, e.g. the writer starts to thrash
+        for (int i = 0; i < 3; i++) {
+            policy.recordChunk(200, 200 * MILLIS, 10 * MILLIS);
+        }
+        run(policy, 30, 10 * MILLIS, 10_000);
+
+        // Assert
+        assertEquals(100, policy.getChunkSize());
+    }
+
+    @Test
+    void testDoesNotGrowWhenCommitsAreCheap() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(100, 10_000, 60_000);
+
+        run(policy, 100, 1_000, 10_000);
+
+        assertEquals(100, policy.getChunkSize());
+    }
+
+    @Test
+    void testHalvesWhenChunksExceedMaxDuration() {
+        // Arrange
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(100, 10_000, 100);
+        run(policy, 14, 10 * MILLIS, 10_000);
+        assertEquals(800, policy.getChunkSize());
+
+        // Act - 800 rows at 200us per row is 160ms, over the 100ms limit
+        run(policy, 30, 10 * MILLIS, 200_000);
+
+        // Assert
+        assertEquals(400, policy.getChunkSize());
+    }
+
+    @Test
+    void testIsComplete_AfterChunkSizeItems() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(3, 3);
+        RepeatContextSupport context = new RepeatContextSupport(null);
+
+        context.increment();
+        context.increment();
+        assertFalse(policy.isComplete(context));
+        context.increment();
+        assertTrue(policy.isComplete(context));
+    }
+
+    @Test
+    void testAfterStep_RecordsChunkSize() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(250, 250);
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+
+        policy.afterStep(stepExecution);
+
+        assertEquals(250, stepExecution.getExecutionContext().getInt(AdaptiveChunkSizePolicy.CHUNK_SIZE));
+    }
+
+    @Test
+    void testConstructor_RejectsInvertedBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveChunkSizePolicy(500, 100));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveChunkSizePolicy(0, 100));
+    }
+}
@@ -1,18 +1,36 @@
 package com.chargebacks.processor.command;
 
+import com.chargebacks.processor.job.BackfillRunner;
 import com.chargebacks.processor.job.ChargebackJobLauncher;
+import com.chargebacks.processor.job.ExportOptions;
+import com.chargebacks.processor.job.ExportRange;
+import com.chargebacks.processor.job.ExportResult;
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.summary.ExportSummary;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +39,9 @@ class ChargebackCommandTest {
     @Mock
     private ChargebackJobLauncher jobLauncher;
 
+    @Mock
+    private BackfillRunner backfillRunner;
+
     @InjectMocks
     private ChargebackCommand command;
 
@@ -31,6 +52,10 @@ class ChargebackCommandTest {
             java.lang.reflect.Field field = ChargebackCommand.class.getDeclaredField("jobLauncher");
             field.setAccessible(true);
             field.set(command, jobLauncher);
+
+            java.lang.reflect.Field backfillField = ChargebackCommand.class.getDeclaredField("backfillRunner");
+            backfillField.setAccessible(true);
+            backfillField.set(command, backfillRunner);
         } catch (Exception e) {
             fail("Failed to inject mock: " + e.getMessage());
         }
@@ -55,17 +80,18 @@ class ChargebackCommandTest {
         }
 
         String expectedOutputFile = "/app/output/chargebacks_20240101_000000_to_20240131_235959.csv";
-        when(jobLauncher.launchJob(any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(expectedOutputFile);
+        when(jobLauncher.export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
+                .thenReturn(new ExportResult(expectedOutputFile, new ExportSummary()));
 
         // Act
         Integer exitCode = command.call();
 
         // Assert
         assertEquals(0, exitCode, "Should return success exit code");
-        verify(jobLauncher, times(1)).launchJob(
-                LocalDateTime.of(2024, 1, 1, 0, 0, 0),
-                LocalDateTime.of(2024, 1, 31, 23, 59, 59)
+        verify(jobLauncher, times(1)).export(
+                eq(LocalDateTime.of(2024, 1, 1, 0, 0, 0)),
+                eq(LocalDateTime.of(2024, 1, 31, 23, 59, 59)),
+                any(ExportOptions.class)
         );
     }
 
@@ -85,20 +111,21 @@ class ChargebackCommandTest {
         }
 
         String expectedOutputFile = "/app/output/chargebacks_today.csv";
-        when(jobLauncher.launchJob(any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(expectedOutputFile);
+        when(jobLauncher.export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
+                .thenReturn(new ExportResult(expectedOutputFile, new ExportSummary()));
 
         // Act
         Integer exitCode = command.call();
 
         // Assert
         assertEquals(0, exitCode);
-        verify(jobLauncher, times(1)).launchJob(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(jobLauncher, times(1)).export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class));
         
         // Verify defaults are used (start of today, end of today)
-        verify(jobLauncher).launchJob(
+        verify(jobLauncher).export(
                 argThat(start -> start.equals(LocalDate.now().atStartOfDay())),
-                argThat(end -> end.equals(LocalDate.now().atTime(23, 59, 59)))
+                argThat(end -> end.equals(LocalDate.now().atTime(23, 59, 59))),
+                any(ExportOptions.class)
         );
     }
 
@@ -118,15 +145,15 @@ class ChargebackCommandTest {
         }
 
         String expectedOutputFile = "/app/output/chargebacks_today.csv";
-        when(jobLauncher.launchJob(any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(expectedOutputFile);
+        when(jobLauncher.export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
+                .thenReturn(new ExportResult(expectedOutputFile, new ExportSummary()));
 
         // Act
         Integer exitCode = command.call();
 
         // Assert
         assertEquals(0, exitCode);
-        verify(jobLauncher, times(1)).launchJob(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(jobLauncher, times(1)).export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class));
     }
 
     @Test
@@ -166,7 +193,7 @@ class ChargebackCommandTest {
             fail("Failed to set fields: " + e.getMessage());
         }
 
-        when(jobLauncher.launchJob(any(LocalDateTime.class), any(LocalDateTime.class)))
+        when(jobLauncher.export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
                 .thenThrow(new RuntimeException("Database connection failed"));
 
         // Act
@@ -174,7 +201,210 @@ class ChargebackCommandTest {
 
         // Assert
         assertEquals(1, exitCode, "Should return error exit code");
-        verify(jobLauncher, times(1)).launchJob(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(jobLauncher, times(1)).export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class));
+    }
+
+    @Test
+    void testCall_WithWorkers_PassesPartitionOptions() throws Exception {
+        // Arrange
+        try {
+            java.lang.reflect.Field startField = ChargebackCommand.class.getDeclaredField("startTimestamp");
+            startField.setAccessible(true);
+            startField.set(command, "2024-01-01T00:00:00");
+
+            java.lang.reflect.Field endField = ChargebackCommand.class.getDeclaredField("endTimestamp");
+            endField.setAccessible(true);
+            endField.set(command, "2024-01-31T23:59:59");
+
+            java.lang.reflect.Field workersField = ChargebackCommand.class.getDeclaredField("workers");
+            workersField.setAccessible(true);
+            workersField.set(command, 4);
+
+            java.lang.reflect.Field sliceField = ChargebackCommand.class.getDeclaredField("sliceMinutes");
+            sliceField.setAccessible(true);
+            sliceField.set(command, 360L);
+        } catch (Exception e) {
+            fail("Failed to set fields: " + e.getMessage());
+        }
+
+        when(jobLauncher.export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
+                .thenReturn(new ExportResult("/app/output/chargebacks.csv", new ExportSummary()));
+
+        // Act
+        Integer exitCode = command.call();
+
+        // Assert
+        assertEquals(0, exitCode);
+        verify(jobLauncher).export(
+                any(LocalDateTime.class),
+                any(LocalDateTime.class),
+                argThat(options -> options.getWorkers() == 4
+                        && options.getSliceMinutes() == 360L
+                        && options.isPartitioned())
+        );
     }
-}
 
+    @Test
+    void testCall_Incremental_DefaultsEndToNow() throws Exception {
+        // Arrange
+        try {
+            java.lang.reflect.Field incrementalField = ChargebackCommand.class.getDeclaredField("incremental");
+            incrementalField.setAccessible(true);
+            incrementalField.set(command, true);
+        } catch (Exception e) {
+            fail("Failed to set fields: " + e.getMessage());
+        }
+
+        when(jobLauncher.export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
+                .thenReturn(new ExportResult("/app/output/chargebacks.csv", new ExportSummary()));
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+
+        // Act
+        Integer exitCode = command.call();
+
+        // Assert
+        assertEquals(0, exitCode);
+        verify(jobLauncher).export(
+                any(LocalDateTime.class),
+                argThat(end -> !end.isBefore(before) && !end.isAfter(LocalDateTime.now())),
+                argThat(ExportOptions::isIncremental)
+        );
+    }
+
+    @Test
+    void testCall_Backfill_ExportsOneRangePerDay() throws Exception {
+        // Arrange
+        try {
+            java.lang.reflect.Field fromField = ChargebackCommand.class.getDeclaredField("backfillFrom");
+            fromField.setAccessible(true);
+            fromField.set(command, LocalDate.of(2024, 1, 1));
+
+            java.lang.reflect.Field toField = ChargebackCommand.class.getDeclaredField("backfillTo");
+            toField.setAccessible(true);
+            toField.set(command, LocalDate.of(2024, 1, 3));
+
+            java.lang.reflect.Field parallelismField = ChargebackCommand.class.getDeclaredField("parallelism");
+            parallelismField.setAccessible(true);
+            parallelismField.set(command, 2);
+        } catch (Exception e) {
+            fail("Failed to set fields: " + e.getMessage());
+        }
+
+        ExportRange first = new ExportRange(LocalDateTime.of(2024, 1, 1, 0, 0, 0), LocalDateTime.of(2024, 1, 1, 23, 59, 59));
+        ExportRange last = new ExportRange(LocalDateTime.of(2024, 1, 3, 0, 0, 0), LocalDateTime.of(2024, 1, 3, 23, 59, 59));
+        when(backfillRunner.run(anyList(), any(ExportOptions.class), eq(2))).thenReturn(List.of(
+                new BackfillRunner.Result(first, "/app/output/day1.csv", 10, null),
+                new BackfillRunner.Result(last, null, 10, new IllegalStateException("Database connection failed"))));
+
+        // Act
+        Integer exitCode = command.call();
+
+        // Assert
+        assertEquals(1, exitCode, "A failed range should fail the run");
+        verify(backfillRunner).run(
+                argThat(ranges -> ranges.size() == 3 && ranges.get(0).equals(first) && ranges.get(2).equals(last)),
+                any(ExportOptions.class),
+                eq(2));
+        verifyNoInteractions(jobLauncher);
+    }
+
+    @Test
+    void testCall_PrintsSummaryAndPreview(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        Path outputFile = tempDir.resolve("chargebacks.csv");
+        List<String> lines = new ArrayList<>();
+        lines.add("header");
+        ExportSummary summary = new ExportSummary();
+        for (int i = 1; i <= 10; i++) {
+            lines.add("row-" + i);
+            summary.add(new Chargeback(LocalDate.of(2024, 1, 1), new BigDecimal("2.50"), "USD", "REF-" + i,
+                    "Duplicate charge", LocalDateTime.of(2024, 1, 1, i, 0, 0)));
+        }
+        Files.write(outputFile, lines);
+        try {
+            java.lang.reflect.Field previewField = ChargebackCommand.class.getDeclaredField("preview");
+            previewField.setAccessible(true);
+            previewField.set(command, 2);
+        } catch (Exception e) {
+            fail("Failed to set fields: " + e.getMessage());
+        }
+        when(jobLauncher.export(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
+                .thenReturn(new ExportResult(outputFile.toString(), summary));
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        Integer exitCode;
+        try {
+            exitCode = command.call();
+        } finally {
+            System.setOut(stdout);
+        }
+
+        // Assert
+        String printed = out.toString(StandardCharsets.UTF_8);
+        assertEquals(0, exitCode);
+        assertTrue(printed.contains("Rows exported: 10\n"));
+        assertTrue(printed.contains("Created time: 2024-01-01T01:00 to 2024-01-01T10:00\n"));
+        assertTrue(printed.matches("(?s).*USD +10 +25\\.00\n.*"));
+        assertTrue(printed.matches("(?s).*\n +10  Duplicate charge\n.*"));
+        assertTrue(printed.contains("header\nrow-1\nrow-2\n... 6 more rows ...\nrow-9\nrow-10\n"));
+    }
+
+    @Test
+    void testOutputPreview_TailSpansBlocksAndCompressedFiles(@TempDir Path tempDir) throws Exception {
+        // Arrange - lines long enough that the last three span several read blocks
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add(i + "," + "é".repeat(1500));
+        }
+        Path plain = tempDir.resolve("plain.csv");
+        Files.write(plain, lines);
+        Path noTrailingBreak = tempDir.resolve("short.csv");
+        Files.writeString(noTrailingBreak, "header\r\nrow-1\r\nrow-2");
+        Path gzip = tempDir.resolve("plain.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            Files.copy(plain, out);
+        }
+
+        // Act & Assert
+        assertEquals(lines.subList(47, 50), OutputPreview.tail(plain, 3));
+        assertEquals(lines, OutputPreview.tail(plain, 80));
+        assertEquals(lines.subList(47, 50), OutputPreview.tail(gzip, 3));
+        assertEquals(lines.subList(0, 2), OutputPreview.head(gzip, 2));
+        assertEquals(List.of("row-1", "row-2"), OutputPreview.tail(noTrailingBreak, 2));
+        assertEquals(List.of(), OutputPreview.tail(noTrailingBreak, 0));
+    }
+
+    @Test
+    void testOutputPreview_KeepsQuotedLineBreaksInsideTheirRecord(@TempDir Path tempDir) throws Exception {
+        // Arrange - reasons with line breaks and escaped quotes, as the line encoder quotes them
+        List<String> records = List.of(
+                "id,reason",
+                "1,\"first line\nsecond \"\"quoted\"\" line\"",
+                "2,plain",
+                "3,\"\nstarts\nwith a break\"");
+        Path plain = tempDir.resolve("multiline.csv");
+        Files.writeString(plain, String.join("\n", records) + "\n");
+        Path gzip = tempDir.resolve("multiline.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            Files.copy(plain, out);
+        }
+
+        // Act & Assert
+        assertEquals(records.subList(0, 2), OutputPreview.head(plain, 2));
+        assertEquals(records.subList(1, 4), OutputPreview.tail(plain, 3));
+        assertEquals(records, OutputPreview.tail(plain, 10));
+        assertEquals(records.subList(2, 4), OutputPreview.tail(gzip, 2));
+    }
+
+    @Test
+    void testParseSize_AcceptsSuffixes() {
+        assertEquals(0L, ChargebackCommand.parseSize("0"));
+        assertEquals(1500L, ChargebackCommand.parseSize("1500"));
+        assertEquals(512L * 1024 * 1024, ChargebackCommand.parseSize("512M"));
+        assertEquals(2L * 1024 * 1024 * 1024, ChargebackCommand.parseSize("2g"));
+        assertThrows(IllegalArgumentException.class, () -> ChargebackCommand.parseSize("lots"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.chargebacks.processor.config;
+
+import com.chargebacks.processor.job.ChargebackJobLauncher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "chargeback.metadata.store=memory")
+@ActiveProfiles("test")
+class MetadataStoreConfigTest {
+
+    // A range of its own, like the other job tests
+    private static final LocalDateTime START = LocalDateTime.of(2024, 7, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 7, 1, 23, 59, 59);
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Test
+    void testMemoryStore_KeepsMetadataOutOfTheExportDatabase() throws Exception {
+        // Arrange - other test contexts may already have created BATCH_* tables in the shared database
+        jdbcTemplate.execute("DELETE FROM Chargebacks");
+        jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                        "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                LocalDate.of(2024, 6, 30), new BigDecimal("10.00"), "USD", "REF-1", "Duplicate charge",
+                START.plusHours(1));
+        Integer batchTables = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'BATCH_JOB_EXECUTION'", Integer.class);
+        long executionsBefore = batchTables > 0
+                ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM BATCH_JOB_EXECUTION", Long.class) : 0;
+
+        // Act
+        List<String> lines = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END)));
+
+        // Assert
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).contains("REF-1"));
+        JobExecution execution = jobExplorer.getLastJobExecution(jobExplorer.getLastJobInstance("chargebackExportJob"));
+        assertEquals(BatchStatus.COMPLETED, execution.getStatus());
+        long executionsAfter = batchTables > 0
+                ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM BATCH_JOB_EXECUTION", Long.class) : 0;
+        assertEquals(executionsBefore, executionsAfter, "Nothing should be written to the export database's BATCH_* tables");
+    }
+
+    @Test
+    void testFileStore_SchemaSurvivesReopening(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        MetadataStoreConfig first = newFileStore(tempDir.resolve("batch-metadata"));
+        new JdbcTemplate(dataSource(first)).update(
+                "INSERT INTO BATCH_JOB_INSTANCE (JOB_INSTANCE_ID, VERSION, JOB_NAME, JOB_KEY) VALUES (1, 0, 'job', 'key')");
+        first.destroy();
+
+        // Act - the second store finds the tables and leaves them alone
+        MetadataStoreConfig second = newFileStore(tempDir.resolve("batch-metadata"));
+        Integer instances = new JdbcTemplate(dataSource(second)).queryForObject(
+                "SELECT COUNT(*) FROM BATCH_JOB_INSTANCE", Integer.class);
+        second.destroy();
+
+        // Assert
+        assertEquals(1, instances);
+        assertTrue(Files.exists(tempDir.resolve("batch-metadata.mv.db")));
+    }
+
+    private static MetadataStoreConfig newFileStore(Path path) throws Exception {
+        MetadataStoreConfig config = new MetadataStoreConfig();
+        setField(config, "store", "file");
+        setField(config, "path", path.toString());
+        return config;
+    }
+
+    private static DataSource dataSource(MetadataStoreConfig config) throws Exception {
+        Method method = MetadataStoreConfig.class.getDeclaredMethod("getDataSource");
+        method.setAccessible(true);
+        return (DataSource) method.invoke(config);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
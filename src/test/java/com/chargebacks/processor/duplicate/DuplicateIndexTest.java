@@ -0,0 +1,73 @@
+package com.chargebacks.processor.duplicate;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.chargebacks.processor.model.ChargebackFixture.chargeback;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateIndexTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    private static DuplicateIndex index(long memoryBytes, List<Chargeback> rows) {
+        DuplicateIndex.Builder builder = new DuplicateIndex.Builder(memoryBytes, rows.size());
+        rows.forEach(builder::add);
+        return builder.build();
+    }
+
+    @Test
+    void testIsDuplicate_OnlyRowsRepeatingAnEarlierKeyWhenTheFilterIsOverfull() {
+        // Arrange - far more rows than a 1K filter holds, so many unique keys become suspects
+        List<Chargeback> rows = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            rows.add(chargeback().ref("REF-" + i).minorUnits(1_000 + i).build());
+            if (i % 1_000 == 0) {
+                rows.add(chargeback().ref("REF-" + i).minorUnits(1_000 + i).build());
+                rows.add(chargeback().ref("REF-" + i).minorUnits(1_000 + i).build());
+            }
+        }
+        DuplicateIndex index = index(1024, rows);
+
+        // Act
+        List<Integer> duplicates = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (index.isDuplicate(rows.get(i))) {
+                duplicates.add(i);
+            }
+        }
+
+        // Assert - the two later copies of every thousandth key, and nothing the filter mistook
+        assertEquals(40, duplicates.size());
+        assertEquals(List.of(1, 2, 1003, 1004), duplicates.subList(0, 4));
+        assertEquals(40, index.getDuplicateRows());
+        assertTrue(index.getSuspectKeys() > 1_000, "The filter is too small to rule out most keys");
+    }
+
+    @Test
+    void testIsDuplicate_ComparesTheKeyColumnsByValue() {
+        // Arrange
+        List<Chargeback> rows = List.of(
+                chargeback().ref("REF-1").minorUnits(150).currency("USD").date(DAY).build(),
+                chargeback().ref("REF-1").amount("1.5").currency("USD").date(DAY).build(),
+                chargeback().ref("REF-1").amount("1.500").currency("USD").date(DAY).build(),
+                chargeback().ref("REF-1").amount("1.50").currency("EUR").date(DAY).build(),
+                chargeback().ref("REF-1").amount("1.50").currency("USD").date(DAY.plusDays(1)).build(),
+                chargeback().ref("REF-2").amount("1.50").currency("USD").date(DAY).build(),
+                chargeback().ref("REF-1").amount("1.505").currency("USD").date(DAY).build(),
+                chargeback().ref(null).currency(null).date(null).build(),
+                chargeback().ref(null).currency(null).date(null).build());
+        DuplicateIndex index = index(1024 * 1024, rows);
+
+        // Act
+        List<Boolean> duplicates = rows.stream().map(index::isDuplicate).toList();
+
+        // Assert
+        assertEquals(List.of(false, true, true, false, false, false, false, false, true), duplicates);
+        assertEquals(2, index.getSuspectKeys(), "A filter this size only suspects the repeated keys");
+    }
+}
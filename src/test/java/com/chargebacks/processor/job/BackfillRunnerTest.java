@@ -0,0 +1,103 @@
+package com.chargebacks.processor.job;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BackfillRunnerTest {
+
+    @Mock
+    private ChargebackJobLauncher jobLauncher;
+
+    private BackfillRunner runner;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        runner = new BackfillRunner();
+        Field field = BackfillRunner.class.getDeclaredField("jobLauncher");
+        field.setAccessible(true);
+        field.set(runner, jobLauncher);
+    }
+
+    @Test
+    void testSplit_WholeDaysEndOneSecondBeforeTheNext() {
+        // Act
+        List<ExportRange> days = ExportRange.split(LocalDate.of(2024, 2, 28), LocalDate.of(2024, 3, 1),
+                ExportRange.Interval.DAY);
+        List<ExportRange> hours = ExportRange.split(LocalDate.of(2024, 2, 28), LocalDate.of(2024, 2, 28),
+                ExportRange.Interval.HOUR);
+
+        // Assert
+        assertEquals(3, days.size(), "2024 is a leap year");
+        assertEquals(new ExportRange(LocalDateTime.of(2024, 2, 29, 0, 0, 0), LocalDateTime.of(2024, 2, 29, 23, 59, 59)),
+                days.get(1));
+        assertEquals(24, hours.size());
+        assertEquals(new ExportRange(LocalDateTime.of(2024, 2, 28, 23, 0, 0), LocalDateTime.of(2024, 2, 28, 23, 59, 59)),
+                hours.get(23));
+        assertEquals(new ExportRange(LocalDateTime.of(2024, 1, 1, 6, 0, 0), LocalDateTime.of(2024, 1, 1, 18, 0, 0)),
+                ExportRange.parse("2024-01-01T06:00:00/2024-01-01T18:00:00"));
+        assertThrows(IllegalArgumentException.class, () -> ExportRange.parse("2024-01-01T06:00:00"));
+    }
+
+    @Test
+    void testRun_BoundsConcurrencyAndKeepsGoingPastFailures() throws Exception {
+        // Arrange
+        List<ExportRange> ranges = ExportRange.split(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 6),
+                ExportRange.Interval.DAY);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(jobLauncher.launchJob(any(LocalDateTime.class), any(LocalDateTime.class), any(ExportOptions.class)))
+                .thenAnswer(invocation -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                        LocalDateTime start = invocation.getArgument(0);
+                        if (start.getDayOfMonth() == 3) {
+                            throw new IllegalStateException("chargebackExportJob finished with status FAILED");
+                        }
+                        return "chargebacks_" + start.toLocalDate() + ".csv";
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+
+        // Act
+        List<BackfillRunner.Result> results = runner.run(ranges, new ExportOptions(), 2);
+
+        // Assert
+        assertEquals(2, maxRunning.get(), "At most two ranges should export at once");
+        assertEquals(6, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(ranges.get(i), results.get(i).range(), "Results should be in range order");
+            assertEquals(i != 2, results.get(i).succeeded());
+        }
+        assertEquals("chargebacks_2024-01-06.csv", results.get(5).outputFile());
+        assertEquals("chargebackExportJob finished with status FAILED", results.get(2).error().getMessage());
+    }
+
+    @Test
+    void testRun_RejectsRepeatedRangesAndIncrementalExports() {
+        // Arrange
+        ExportRange day = new ExportRange(LocalDateTime.of(2024, 1, 1, 0, 0, 0), LocalDateTime.of(2024, 1, 1, 23, 59, 59));
+        ExportOptions incremental = new ExportOptions();
+        incremental.setIncremental(true);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> runner.run(List.of(day, day), new ExportOptions(), 2));
+        assertThrows(IllegalArgumentException.class, () -> runner.run(List.of(day), incremental, 2));
+        assertThrows(IllegalArgumentException.class, () -> runner.run(List.of(day), new ExportOptions(), 0));
+    }
+}
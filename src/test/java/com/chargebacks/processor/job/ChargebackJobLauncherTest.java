@@ -0,0 +1,602 @@
+package com.chargebacks.processor.job;
+
+import com.chargebacks.processor.chunk.AdaptiveChunkSizePolicy;
+import com.chargebacks.processor.metrics.ExportMetricsRecorder;
+import com.chargebacks.processor.model.ChargebackColumn;
+import com.chargebacks.processor.reader.FetchStrategy;
+import com.chargebacks.processor.rollup.RollupRecorder;
+import com.chargebacks.processor.rollup.RollupTable;
+import com.chargebacks.processor.summary.ExportSummary;
+import com.chargebacks.processor.writer.ChargebackItemWriter;
+import com.chargebacks.processor.writer.Compression;
+import com.chargebacks.processor.writer.OutputFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ChargebackJobLauncherTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 3, 4, 23, 59, 59);
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private WatermarkStore watermarkStore;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private ExportMetricsRecorder metricsRecorder;
+
+    @Autowired
+    private BackfillRunner backfillRunner;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM Chargebacks");
+
+        // Rows on slice boundaries, at both range ends, and just outside the range
+        insertChargeback("REF-BEFORE", START.minusSeconds(1));
+        insertChargeback("REF-START", START);
+        insertChargeback("REF-01", START.plusHours(5));
+        insertChargeback("REF-BOUNDARY", START.plusDays(1));
+        insertChargeback("REF-02", START.plusDays(1).plusMinutes(30));
+        insertChargeback("REF-03", START.plusDays(2).plusHours(12));
+        insertChargeback("REF-BOUNDARY-2", START.plusDays(3));
+        insertChargeback("REF-END", END);
+        insertChargeback("REF-AFTER", END.plusSeconds(1));
+    }
+
+    private void insertChargeback(String merchandiseRef, LocalDateTime createdTime) {
+        insertChargeback(merchandiseRef, createdTime, "10.00", "USD", "Duplicate charge");
+    }
+
+    private void insertChargeback(String merchandiseRef, LocalDateTime createdTime, String amount, String currency,
+                                  String reason) {
+        jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                        "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                LocalDate.of(2024, 2, 28), new BigDecimal(amount), currency, merchandiseRef, reason, createdTime);
+    }
+
+    @Test
+    void testPartitionedExport_MatchesSingleThreadedExport() throws Exception {
+        // Act
+        String singleFile = jobLauncher.launchJob(START, END);
+        List<String> single = Files.readAllLines(Paths.get(singleFile));
+
+        ExportOptions options = new ExportOptions();
+        options.setWorkers(4);
+        String partitionedFile = jobLauncher.launchJob(START, END, options);
+        List<String> partitioned = Files.readAllLines(Paths.get(partitionedFile));
+
+        // Assert
+        assertEquals(ChargebackItemWriter.HEADER, partitioned.get(0));
+        assertEquals(8, partitioned.size(), "Header plus the seven rows inside the range");
+        assertEquals(single, partitioned, "Partitioned output should match the single-threaded export");
+    }
+
+    @Test
+    void testExport_SummaryIsTheSameForEveryJobShape() throws Exception {
+        // Arrange
+        ExportOptions partitioned = new ExportOptions();
+        partitioned.setWorkers(4);
+        ExportOptions pipelined = new ExportOptions();
+        pipelined.setPipelined(true);
+        ExportOptions parquet = new ExportOptions();
+        parquet.setFormat(OutputFormat.PARQUET);
+
+        for (ExportOptions options : List.of(new ExportOptions(), partitioned, pipelined, parquet)) {
+            // Act
+            ExportSummary summary = jobLauncher.export(START, END, options).summary();
+
+            // Assert
+            assertEquals(7, summary.getRows(), "The seven rows inside the range");
+            assertEquals(Map.of("USD", 7L), summary.getCurrencyRows());
+            assertEquals(Map.of("USD", new BigDecimal("70.00")), summary.getCurrencyTotals());
+            assertEquals(START, summary.getMinCreatedTime());
+            assertEquals(END, summary.getMaxCreatedTime());
+            assertEquals(List.of(Map.entry("Duplicate charge", 7L)), summary.getTopReasons(5));
+        }
+    }
+
+    @Test
+    void testExport_RollupIsTheSameForEveryJobShape() throws Exception {
+        // Arrange
+        ExportOptions sequential = new ExportOptions();
+        sequential.setRollup(true);
+        ExportOptions partitioned = new ExportOptions();
+        partitioned.setRollup(true);
+        partitioned.setWorkers(4);
+        ExportOptions pipelined = new ExportOptions();
+        pipelined.setRollup(true);
+        pipelined.setPipelined(true);
+
+        for (ExportOptions options : List.of(sequential, partitioned, pipelined)) {
+            // Act
+            ExportResult result = jobLauncher.export(START, END, options);
+
+            // Assert
+            assertEquals(RollupRecorder.rollupFileName(result.outputFile()), result.rollupFile());
+            assertEquals(List.of(RollupTable.HEADER, "2024-02-28,USD,Duplicate charge,7,70.00,10.00,10.00"),
+                    Files.readAllLines(Paths.get(result.rollupFile())));
+            Files.delete(Paths.get(result.rollupFile()));
+        }
+        assertNull(jobLauncher.export(START, END, new ExportOptions()).rollupFile());
+        assertFalse(sequential.isRestartable(), "The rollup is only gathered in memory");
+    }
+
+    @Test
+    void testExport_DuplicatesAreFoundInEveryJobShape() throws Exception {
+        // Arrange - REF-01 charged again in a later slice, and an exact copy of REF-02
+        insertChargeback("REF-01", START.plusDays(2));
+        insertChargeback("REF-02", START.plusDays(1).plusMinutes(30));
+
+        for (int workers : new int[] {1, 4}) {
+            for (boolean pipelined : new boolean[] {false, true}) {
+                if (workers > 1 && pipelined) {
+                    continue;
+                }
+                for (ExportOptions.DuplicateMode mode : List.of(ExportOptions.DuplicateMode.FLAG,
+                        ExportOptions.DuplicateMode.DROP)) {
+                    ExportOptions options = new ExportOptions();
+                    options.setWorkers(workers);
+                    options.setPipelined(pipelined);
+                    options.setDuplicates(mode);
+                    if (mode == ExportOptions.DuplicateMode.DROP && (workers > 1 || pipelined)) {
+                        // Concurrent checks would keep a different copy from run to run
+                        assertThrows(IllegalArgumentException.class, () -> jobLauncher.export(START, END, options));
+                        continue;
+                    }
+
+                    // Act
+                    ExportResult result = jobLauncher.export(START, END, options);
+
+                    // Assert
+                    String shape = mode + " with " + workers + " workers" + (pipelined ? ", pipelined" : "");
+                    List<String> lines = Files.readAllLines(Paths.get(result.outputFile()));
+                    boolean dropped = mode == ExportOptions.DuplicateMode.DROP;
+                    assertEquals(2, result.duplicateRows(), shape);
+                    assertEquals(dropped ? 8 : 10, lines.size(), shape);
+                    assertEquals(dropped ? 1 : 2, lines.stream().filter(line -> line.contains(",REF-01,")).count(), shape);
+                    assertEquals(dropped ? 7 : 9, result.summary().getRows(), shape);
+                    assertFalse(options.isRestartable());
+                }
+            }
+        }
+        assertEquals(0, jobLauncher.export(START, END, new ExportOptions()).duplicateRows());
+    }
+
+    @Test
+    void testExport_FiltersAndColumnsApplyToEveryJobShape() throws Exception {
+        // Arrange - rows each left out by one of the filters
+        insertChargeback("REF-EUR", START.plusHours(1), "10.00", "EUR", "Duplicate charge");
+        insertChargeback("REF-LARGE", START.plusHours(2), "500.00", "USD", "Duplicate charge");
+        insertChargeback("REF-SMALL", START.plusHours(3), "1.00", "USD", "Duplicate charge");
+        insertChargeback("REF-FRAUD", START.plusHours(4), "10.00", "USD", "Fraud");
+        List<String> expected = List.of("created_time,merchandise_ref,disputed_amt",
+                "2024-03-01T00:00:00,REF-START,10.00",
+                "2024-03-01T05:00:00,REF-01,10.00",
+                "2024-03-02T00:00:00,REF-BOUNDARY,10.00",
+                "2024-03-02T00:30:00,REF-02,10.00",
+                "2024-03-03T12:00:00,REF-03,10.00",
+                "2024-03-04T00:00:00,REF-BOUNDARY-2,10.00",
+                "2024-03-04T23:59:59,REF-END,10.00");
+
+        List<ExportOptions> shapes = new ArrayList<>();
+        for (int shape = 0; shape < 5; shape++) {
+            ExportOptions options = new ExportOptions();
+            options.setColumns(ChargebackColumn.parse("created_time,merchandise_ref,disputed_amt"));
+            options.setCurrencies(List.of("USD", "GBP"));
+            options.setMinAmount(new BigDecimal("5"));
+            options.setMaxAmount(new BigDecimal("100.00"));
+            options.setReasonPattern("Dup%");
+            shapes.add(options);
+        }
+        shapes.get(1).setWorkers(4);
+        shapes.get(2).setPipelined(true);
+        shapes.get(3).setReaderMode(ExportOptions.ReaderMode.KEYSET);
+        // The rollup and duplicate check read the columns they key on even though they aren't written
+        shapes.get(4).setRollup(true);
+        shapes.get(4).setDuplicates(ExportOptions.DuplicateMode.FLAG);
+
+        for (ExportOptions options : shapes) {
+            // Act
+            ExportResult result = jobLauncher.export(START, END, options);
+
+            // Assert
+            assertEquals(expected, Files.readAllLines(Paths.get(result.outputFile())));
+            assertEquals(7, result.summary().getRows());
+            if (options.isRollup()) {
+                assertEquals(List.of(RollupTable.HEADER, "2024-02-28,USD,Duplicate charge,7,70.00,10.00,10.00"),
+                        Files.readAllLines(Paths.get(result.rollupFile())));
+                assertEquals(0, result.duplicateRows());
+                Files.delete(Paths.get(result.rollupFile()));
+            }
+        }
+    }
+
+    @Test
+    void testExport_RejectsFiltersOnIncrementalExports() {
+        ExportOptions options = new ExportOptions();
+        options.setIncremental(true);
+        options.setCurrencies(List.of("USD"));
+
+        assertThrows(IllegalArgumentException.class, () -> jobLauncher.export(START, END, options));
+    }
+
+    @Test
+    void testPartitionedExport_WithSliceMinutes() throws Exception {
+        // Arrange
+        ExportOptions options = new ExportOptions();
+        options.setWorkers(2);
+        options.setSliceMinutes(6 * 60);
+
+        // Act
+        String outputFile = jobLauncher.launchJob(START, END, options);
+
+        // Assert
+        List<String> lines = Files.readAllLines(Paths.get(outputFile));
+        assertEquals(8, lines.size());
+        assertTrue(lines.get(1).contains("REF-START"));
+        assertTrue(lines.get(7).contains("REF-END"));
+    }
+
+    @Test
+    void testKeysetReaderMode_MatchesCursorExport() throws Exception {
+        // Arrange
+        List<String> cursor = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END)));
+
+        ExportOptions options = new ExportOptions();
+        options.setReaderMode(ExportOptions.ReaderMode.KEYSET);
+        options.setPageSize(2);
+
+        // Act
+        List<String> keyset = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END, options)));
+        options.setWorkers(3);
+        List<String> partitionedKeyset = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END, options)));
+
+        // Assert
+        assertEquals(cursor, keyset);
+        assertEquals(cursor, partitionedKeyset);
+    }
+
+    @Test
+    void testStreamingFetchStrategy_MatchesBufferedExport() throws Exception {
+        // Arrange
+        List<String> buffered = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END)));
+
+        ExportOptions options = new ExportOptions();
+        options.setFetchStrategy(FetchStrategy.STREAMING);
+
+        // Act
+        List<String> streamed = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END, options)));
+
+        // Assert
+        assertEquals(buffered, streamed);
+    }
+
+    @Test
+    void testGzipCompression_MatchesPlainExport() throws Exception {
+        // Arrange
+        List<String> plain = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END)));
+
+        ExportOptions options = new ExportOptions();
+        options.setCompression(Compression.GZIP);
+        options.setCompressionThreads(2);
+
+        // Act
+        String compressedFile = jobLauncher.launchJob(START, END, options);
+        List<String> compressed = gunzipLines(compressedFile);
+        options.setWorkers(3);
+        String partitionedFile = jobLauncher.launchJob(START, END, options);
+        List<String> partitioned = gunzipLines(partitionedFile);
+
+        // Assert
+        assertTrue(compressedFile.endsWith(".csv.gz"));
+        assertEquals(plain, compressed);
+        assertEquals(plain, partitioned, "Merged gzip parts should read back as one stream");
+    }
+
+    @Test
+    void testParquetFormat_WritesParquetFile() throws Exception {
+        // Arrange
+        ExportOptions options = new ExportOptions();
+        options.setFormat(OutputFormat.PARQUET);
+
+        // Act
+        String outputFile = jobLauncher.launchJob(START, END, options);
+
+        // Assert
+        byte[] bytes = Files.readAllBytes(Paths.get(outputFile));
+        assertTrue(outputFile.endsWith(".parquet"));
+        assertEquals("PAR1", new String(bytes, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals("PAR1", new String(bytes, bytes.length - 4, 4, StandardCharsets.US_ASCII));
+        assertTrue(new String(bytes, StandardCharsets.ISO_8859_1).contains("REF-BOUNDARY-2"));
+        assertFalse(new String(bytes, StandardCharsets.ISO_8859_1).contains("REF-AFTER"));
+
+        options.setWorkers(2);
+        assertThrows(IllegalArgumentException.class, () -> jobLauncher.launchJob(START, END, options));
+    }
+
+    @Test
+    void testAdaptiveChunkSize_RecordsSettledSizeAndExportsEveryRow() throws Exception {
+        // Arrange
+        for (int i = 0; i < 2_000; i++) {
+            insertChargeback("REF-BULK-" + i, START.plusHours(1).plusSeconds(i));
+        }
+        ExportOptions options = new ExportOptions();
+        options.setMinChunkSize(10);
+        options.setMaxChunkSize(400);
+
+        // Act
+        List<String> lines = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END, options)));
+
+        // Assert
+        assertEquals(2_008, lines.size(), "Header plus the seven rows in range plus the bulk rows");
+        JobInstance instance = jobExplorer.getLastJobInstance("chargebackExportJob");
+        StepExecution step = jobExplorer.getLastJobExecution(instance).getStepExecutions().iterator().next();
+        int chunkSize = step.getExecutionContext().getInt(AdaptiveChunkSizePolicy.CHUNK_SIZE);
+        assertTrue(chunkSize >= 10 && chunkSize <= 400, "Chunk size " + chunkSize);
+        assertTrue(step.getCommitCount() < 2_008 / 10, "Commits " + step.getCommitCount());
+    }
+
+    @Test
+    void testMetricsFile_RecordsLastRunForEachJob() throws Exception {
+        // Arrange
+        Files.deleteIfExists(Paths.get(metricsRecorder.getMetricsFile()));
+        ExportOptions partitioned = new ExportOptions();
+        partitioned.setWorkers(3);
+
+        // Act
+        String outputFile = jobLauncher.launchJob(START, END);
+        String chunked = Files.readString(Paths.get(metricsRecorder.getMetricsFile()));
+        jobLauncher.launchJob(START, END, partitioned);
+        String workers = Files.readString(Paths.get(metricsRecorder.getMetricsFile()));
+
+        // Assert
+        assertTrue(chunked.contains("\nchargeback_export_success 1\n"));
+        assertTrue(chunked.contains("\nchargeback_export_rows_read 7\n"));
+        assertTrue(chunked.contains("\nchargeback_export_rows_written 7\n"));
+        assertTrue(chunked.contains("\nchargeback_export_output_bytes " + Files.size(Paths.get(outputFile)) + "\n"));
+        assertTrue(chunked.contains("chargeback_export_phase_duration_seconds_count{phase=\"read\"} 7\n"));
+        assertTrue(chunked.contains("chargeback_export_phase_duration_seconds_count{phase=\"query\"} 1\n"));
+        assertTrue(workers.contains("\nchargeback_export_rows_written 7\n"), "Worker steps are summed");
+        assertTrue(workers.contains("chargeback_export_phase_duration_seconds_count{phase=\"query\"} 3\n"));
+    }
+
+    @Test
+    void testPipelinedExport_MatchesChunkedExport() throws Exception {
+        // Arrange
+        List<String> chunked = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END)));
+
+        ExportOptions options = new ExportOptions();
+        options.setPipelined(true);
+        options.setEncoderThreads(3);
+
+        // Act
+        List<String> pipelined = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END, options)));
+        options.setReaderMode(ExportOptions.ReaderMode.KEYSET);
+        options.setCompression(Compression.GZIP);
+        List<String> pipelinedKeysetGzip = gunzipLines(jobLauncher.launchJob(START, END, options));
+
+        // Assert
+        assertEquals(chunked, pipelined);
+        assertEquals(chunked, pipelinedKeysetGzip);
+
+        options.setWorkers(2);
+        assertThrows(IllegalArgumentException.class, () -> jobLauncher.launchJob(START, END, options));
+    }
+
+    @Test
+    void testRollingOutput_PartsMatchSingleFileExport() throws Exception {
+        // Arrange
+        List<String> single = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END)));
+
+        ExportOptions options = new ExportOptions();
+        options.setMaxFileRows(3);
+
+        // Act
+        String manifest = jobLauncher.launchJob(START, END, options);
+
+        // Assert
+        assertTrue(manifest.endsWith(".manifest.json"));
+        String csv = manifest.replace(".manifest.json", "");
+        List<String> rows = new ArrayList<>();
+        long partBytes = 0;
+        for (int part = 1; part <= 3; part++) {
+            Path partFile = Paths.get(String.format("%s_part%05d.csv", csv, part));
+            List<String> lines = Files.readAllLines(partFile);
+            assertEquals(ChargebackItemWriter.HEADER, lines.get(0));
+            rows.addAll(lines.subList(1, lines.size()));
+            partBytes += Files.size(partFile);
+        }
+        assertEquals(single.subList(1, single.size()), rows);
+        assertTrue(Files.readString(Paths.get(manifest)).contains("\"totalRows\": 7"));
+        String metrics = Files.readString(Paths.get(metricsRecorder.getMetricsFile()));
+        assertTrue(metrics.contains("\nchargeback_export_output_bytes " + partBytes + "\n"), "Sized from the parts");
+
+        options.setFormat(OutputFormat.PARQUET);
+        assertThrows(IllegalArgumentException.class, () -> jobLauncher.launchJob(START, END, options));
+    }
+
+    @Test
+    void testIncrementalExport_ExportsOnlyRowsAfterWatermark() throws Exception {
+        // Arrange
+        Files.deleteIfExists(Paths.get(watermarkStore.getWatermarkFile()));
+        ExportOptions options = new ExportOptions();
+        options.setIncremental(true);
+        options.setPageSize(2);
+
+        // Act - the first run has no watermark yet and starts at START
+        List<String> first = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END, options)));
+        Watermark afterFirst = watermarkStore.load();
+
+        // A late row sharing the watermark's created_time, plus one beyond the first run's end
+        insertChargeback("REF-END-TIE", END);
+        insertChargeback("REF-NEW", END.plusMinutes(30));
+        List<String> second = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END.plusHours(1), options)));
+        List<String> third = Files.readAllLines(Paths.get(jobLauncher.launchJob(START, END.plusHours(2), options)));
+
+        // Assert
+        assertEquals(8, first.size(), "Header plus the seven rows inside the range");
+        assertEquals(new Watermark(END, 1), afterFirst);
+        assertEquals(4, second.size());
+        assertTrue(second.get(1).contains("REF-END-TIE"));
+        assertTrue(second.get(2).contains("REF-AFTER"));
+        assertTrue(second.get(3).contains("REF-NEW"));
+        assertEquals(List.of(ChargebackItemWriter.HEADER), third, "Nothing new since the second run");
+        assertEquals(new Watermark(END.plusMinutes(30), 1), watermarkStore.load());
+
+        options.setWorkers(2);
+        assertThrows(IllegalArgumentException.class, () -> jobLauncher.launchJob(START, END, options));
+        Files.deleteIfExists(Paths.get(watermarkStore.getWatermarkFile()));
+    }
+
+    private static List<String> gunzipLines(String fileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(Paths.get(fileName))), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+    @Test
+    void testBackfill_ConcurrentDaysMatchSeparateExports() throws Exception {
+        // Arrange - keyset and partitioned days too, since every job now builds its own reader and writer
+        List<ExportRange> days = ExportRange.split(START.toLocalDate(), END.toLocalDate(), ExportRange.Interval.DAY);
+        ExportOptions keyset = new ExportOptions();
+        keyset.setReaderMode(ExportOptions.ReaderMode.KEYSET);
+        keyset.setPageSize(1);
+        ExportOptions partitioned = new ExportOptions();
+        partitioned.setWorkers(2);
+
+        for (ExportOptions options : List.of(new ExportOptions(), keyset, partitioned)) {
+            // Act
+            List<BackfillRunner.Result> results = backfillRunner.run(days, options, days.size());
+            List<List<String>> backfilled = new ArrayList<>();
+            for (BackfillRunner.Result result : results) {
+                assertTrue(result.succeeded(), () -> "Backfill failed: " + result.error());
+                backfilled.add(Files.readAllLines(Paths.get(result.outputFile())));
+            }
+
+            // Assert
+            int rows = 0;
+            for (int i = 0; i < days.size(); i++) {
+                List<String> separate = Files.readAllLines(Paths.get(
+                        jobLauncher.launchJob(days.get(i).start(), days.get(i).end())));
+                assertEquals(separate, backfilled.get(i), "Day " + days.get(i).start().toLocalDate());
+                rows += separate.size() - 1;
+            }
+            assertEquals(7, rows, "Every row inside the range, each in exactly one day");
+        }
+    }
+
+    @Test
+    void testExport_ConcurrentExportsMatchSeparateExports() throws Exception {
+        // Arrange - every job shape for every day, plus an incremental export of the whole range
+        List<ExportOptions> shapes = new ArrayList<>();
+        for (int shape = 0; shape < 6; shape++) {
+            shapes.add(new ExportOptions());
+        }
+        shapes.get(1).setReaderMode(ExportOptions.ReaderMode.KEYSET);
+        shapes.get(1).setPageSize(1);
+        shapes.get(2).setPipelined(true);
+        shapes.get(3).setWorkers(2);
+        shapes.get(4).setCompression(Compression.GZIP);
+        shapes.get(5).setColumns(ChargebackColumn.parse("merchandise_ref,created_time"));
+        shapes.get(5).setCurrencies(List.of("USD"));
+
+        List<ExportRange> ranges = new ArrayList<>();
+        List<ExportOptions> options = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int day = 0; day < 4; day++) {
+            for (int shape = 0; shape < shapes.size(); shape++) {
+                // Starts a second apart, so no two exports write the same file
+                ExportRange range = new ExportRange(START.plusDays(day).minusSeconds(shape),
+                        START.plusDays(day + 1).minusSeconds(1));
+                ranges.add(range);
+                options.add(shapes.get(shape));
+                expected.add(readLines(jobLauncher.launchJob(range.start(), range.end(), shapes.get(shape))));
+            }
+        }
+        Files.deleteIfExists(Paths.get(watermarkStore.getWatermarkFile()));
+        ExportOptions incremental = new ExportOptions();
+        incremental.setIncremental(true);
+        incremental.setPageSize(2);
+
+        // Act
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> exports = new ArrayList<>();
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                ExportRange range = ranges.get(i);
+                ExportOptions exportOptions = options.get(i);
+                exports.add(executor.submit(() -> jobLauncher.launchJob(range.start(), range.end(), exportOptions)));
+                if (i == ranges.size() / 2) {
+                    exports.add(executor.submit(() -> jobLauncher.launchJob(START, END, incremental)));
+                }
+            }
+            List<String> outputFiles = new ArrayList<>();
+            for (Future<String> export : exports) {
+                outputFiles.add(export.get(5, TimeUnit.MINUTES));
+            }
+
+            // Assert
+            List<String> incrementalLines = readLines(outputFiles.remove(ranges.size() / 2 + 1));
+            for (int i = 0; i < ranges.size(); i++) {
+                assertEquals(expected.get(i), readLines(outputFiles.get(i)), "Export of " + ranges.get(i));
+            }
+            assertEquals(8, incrementalLines.size(), "Header plus the seven rows inside the range");
+            assertEquals(new Watermark(END, 1), watermarkStore.load());
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(Paths.get(watermarkStore.getWatermarkFile()));
+        }
+    }
+
+    private static List<String> readLines(String fileName) throws IOException {
+        return fileName.endsWith(".gz") ? gunzipLines(fileName) : Files.readAllLines(Paths.get(fileName));
+    }
+
+    @Test
+    void testLaunchJob_RejectsInvalidWorkers() {
+        ExportOptions options = new ExportOptions();
+        options.setWorkers(0);
+
+        assertThrows(IllegalArgumentException.class, () -> jobLauncher.launchJob(START, END, options));
+    }
+}
@@ -0,0 +1,254 @@
+package com.chargebacks.processor.job;
+
+import com.chargebacks.processor.processor.ChargebackItemProcessor;
+import com.chargebacks.processor.summary.ExportSummary;
+import com.chargebacks.processor.writer.Compression;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = "chargeback.restart.stale-after=PT1S")
+@ActiveProfiles("test")
+class ChargebackJobRestartTest {
+
+    // A range of its own, so a failed run left behind here is never restarted by another test
+    private static final LocalDateTime START = LocalDateTime.of(2024, 6, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 6, 30, 23, 59, 59);
+    private static final int ROWS = 1000;
+    private static final int CHUNK_SIZE = 100;
+    private static final int FAIL_AT_ROW = 550;
+
+    @Autowired
+    private ChargebackJobLauncher jobLauncher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobExplorer jobExplorer;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @SpyBean
+    private ChargebackItemProcessor processor;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private volatile int failAt;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.execute("DELETE FROM Chargebacks");
+        // Three rows per created_time, so a commit can land in the middle of a run of ties
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{LocalDate.of(2024, 5, 31), new BigDecimal("10.00").add(BigDecimal.valueOf(i)),
+                "USD", String.format("REF-%04d", i), "Duplicate charge", START.plusHours(2L * (i / 3))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)", rows);
+
+        processed.set(0);
+        failAt = 0;
+        doAnswer(invocation -> {
+            if (processed.incrementAndGet() == failAt) {
+                throw new IllegalStateException("Simulated failure");
+            }
+            return invocation.callRealMethod();
+        }).when(processor).process(any());
+    }
+
+    private ExportOptions options() {
+        ExportOptions options = new ExportOptions();
+        options.setMinChunkSize(CHUNK_SIZE);
+        options.setMaxChunkSize(CHUNK_SIZE);
+        return options;
+    }
+
+    private List<String> cleanExport(ExportOptions options) throws Exception {
+        String outputFile = jobLauncher.launchJob(START, END, options);
+        List<String> lines = readOutput(outputFile);
+        Files.delete(Paths.get(outputFile));
+        processed.set(0);
+        return lines;
+    }
+
+    private void failingExport(ExportOptions options) {
+        failAt = FAIL_AT_ROW;
+        assertThrows(IllegalStateException.class, () -> jobLauncher.launchJob(START, END, options));
+        failAt = 0;
+        processed.set(0);
+    }
+
+    @Test
+    void testRerunAfterFailure_ResumesFromLastCommit() throws Exception {
+        // Arrange
+        List<String> expected = cleanExport(options());
+        failingExport(options());
+
+        // Act
+        ExportResult result = jobLauncher.export(START, END, options());
+
+        // Assert
+        assertEquals(ROWS - 500, processed.get(), "Only the rows after the fifth commit should be processed again");
+        assertEquals(expected, readOutput(result.outputFile()));
+        assertSummaryCoversEveryRow(result.summary());
+        JobExecution restarted = jobExplorer.getLastJobExecution(jobExplorer.getLastJobInstance("chargebackExportJob"));
+        assertEquals(BatchStatus.COMPLETED, restarted.getStatus());
+        assertEquals(2, jobExplorer.getJobExecutions(restarted.getJobInstance()).size(),
+                "The rerun should restart the failed job instance rather than start a new one");
+    }
+
+    // Marks the last execution as still running, as a process that died mid-run leaves it
+    private JobExecution markLastExecutionRunning() {
+        JobExecution execution = jobExplorer.getLastJobExecution(jobExplorer.getLastJobInstance("chargebackExportJob"));
+        for (StepExecution stepExecution : execution.getStepExecutions()) {
+            stepExecution.setStatus(BatchStatus.STARTED);
+            stepExecution.setExitStatus(ExitStatus.EXECUTING);
+            stepExecution.setEndTime(null);
+            jobRepository.update(stepExecution);
+        }
+        execution.setStatus(BatchStatus.STARTED);
+        execution.setExitStatus(ExitStatus.UNKNOWN);
+        execution.setEndTime(null);
+        jobRepository.update(execution);
+        return execution;
+    }
+
+    @Test
+    void testRerunAfterKilledProcess_ResumesFromLastCommit() throws Exception {
+        // Arrange - the killed execution hasn't been updated for longer than stale-after
+        List<String> expected = cleanExport(options());
+        failingExport(options());
+        JobExecution killed = markLastExecutionRunning();
+        Thread.sleep(1500);
+
+        // Act
+        String outputFile = jobLauncher.launchJob(START, END, options());
+
+        // Assert
+        assertEquals(ROWS - 500, processed.get());
+        assertEquals(expected, readOutput(outputFile));
+        assertEquals(BatchStatus.FAILED, jobExplorer.getJobExecution(killed.getId()).getStatus(),
+                "The abandoned execution should be recorded as failed before the restart");
+    }
+
+    @Test
+    void testRerunWhileAnotherProcessRuns_LeavesTheLiveExecutionAlone() throws Exception {
+        // Arrange - an execution updated just now may be a live export in another process
+        cleanExport(options());
+        failingExport(options());
+        JobExecution live = markLastExecutionRunning();
+
+        // Act & Assert
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> jobLauncher.launchJob(START, END, options()));
+        assertTrue(e.getMessage().contains("still running in another process"));
+        assertEquals(0, processed.get());
+        assertEquals(BatchStatus.STARTED, jobExplorer.getJobExecution(live.getId()).getStatus());
+    }
+
+    @Test
+    void testRerunAfterCompletion_StartsANewInstanceEachTime() throws Exception {
+        // Arrange
+        cleanExport(options());
+
+        // Act
+        cleanExport(options());
+        cleanExport(options());
+
+        // Assert
+        JobExecution last = jobExplorer.getLastJobExecution(jobExplorer.getLastJobInstance("chargebackExportJob"));
+        assertEquals(BatchStatus.COMPLETED, last.getStatus());
+        assertEquals(1, jobExplorer.getJobExecutions(last.getJobInstance()).size());
+        long runId = last.getJobParameters().getLong(ChargebackJobLauncher.RUN_ID);
+        assertTrue(runId > 2, "Each completed export moves on to a new run.id");
+    }
+
+    @Test
+    void testPartitionedRerun_OnlyRedoesUnfinishedSlices() throws Exception {
+        // Arrange
+        ExportOptions options = options();
+        options.setWorkers(2);
+        List<String> expected = cleanExport(options);
+        failingExport(options);
+
+        // Act
+        ExportResult result = jobLauncher.export(START, END, options);
+
+        // Assert
+        assertTrue(processed.get() < ROWS, "Committed chunks and finished slices shouldn't be processed again");
+        assertEquals(expected, readOutput(result.outputFile()));
+        assertSummaryCoversEveryRow(result.summary());
+    }
+
+    @Test
+    void testCompressedRerun_StartsOver() throws Exception {
+        // Arrange - a gzip stream can't be cut back to a commit, so there is nothing to resume
+        ExportOptions options = options();
+        options.setCompression(Compression.GZIP);
+        List<String> expected = cleanExport(options);
+        failingExport(options);
+
+        // Act
+        String outputFile = jobLauncher.launchJob(START, END, options);
+
+        // Assert
+        assertEquals(ROWS, processed.get());
+        assertEquals(expected, readOutput(outputFile));
+    }
+
+    // Rows written before the failure are counted once, from the summary saved with their commit
+    private static void assertSummaryCoversEveryRow(ExportSummary summary) {
+        assertEquals(ROWS, summary.getRows());
+        assertEquals(Map.of("USD", (long) ROWS), summary.getCurrencyRows());
+        // 10.00 + 11.00 + ... + 1009.00
+        assertEquals(new BigDecimal("509500.00"), summary.getCurrencyTotals().get("USD"));
+        assertEquals(START, summary.getMinCreatedTime());
+        assertEquals(START.plusHours(2L * ((ROWS - 1) / 3)), summary.getMaxCreatedTime());
+    }
+
+    private static List<String> readOutput(String outputFile) throws IOException {
+        if (!outputFile.endsWith(".gz")) {
+            return Files.readAllLines(Paths.get(outputFile));
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(Paths.get(outputFile))), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
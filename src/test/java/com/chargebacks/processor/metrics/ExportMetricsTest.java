@@ -0,0 +1,136 @@
+package com.chargebacks.processor.metrics;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportMetricsTest {
+
+    @Test
+    void testHistogram_BucketsAreCumulativeAndInclusive() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram(0.001, 0.01);
+
+        // Act
+        histogram.record(500_000);
+        histogram.record(1_000_000);
+        histogram.record(5_000_000);
+        histogram.record(2_000_000_000);
+
+        // Assert
+        assertEquals(2, histogram.getCumulativeCount(0), "1 ms itself falls in the 1 ms bucket");
+        assertEquals(3, histogram.getCumulativeCount(1));
+        assertEquals(4, histogram.getCumulativeCount(2));
+        assertEquals(4, histogram.getCount());
+        assertEquals(2_006_500_000L, histogram.getSumNanos());
+    }
+
+    @Test
+    void testHistogram_RejectsUnorderedBucketsAndMismatchedMerge() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(0.01, 0.001));
+        assertThrows(IllegalArgumentException.class,
+                () -> new LatencyHistogram(0.001).merge(new LatencyHistogram(0.01)));
+    }
+
+    @Test
+    void testWritePrometheus_RendersGaugesAndHistograms() throws Exception {
+        // Arrange
+        ExportMetrics metrics = new ExportMetrics();
+        metrics.recordPhase(ExportMetrics.Phase.READ, 5_000);
+        metrics.recordPhase(ExportMetrics.Phase.READ, 50_000);
+        metrics.addCounts(2, 1, 1, 1);
+        metrics.finish(2_000_000_000L, 1234, true, 1_700_000_000L);
+
+        // Act
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        String text = out.toString();
+
+        // Assert
+        assertTrue(text.contains("# TYPE chargeback_export_rows_written gauge\nchargeback_export_rows_written 1\n"));
+        assertTrue(text.contains("\nchargeback_export_success 1\n"));
+        assertTrue(text.contains("\nchargeback_export_output_bytes 1234\n"));
+        assertTrue(text.contains("\nchargeback_export_rows_per_second 0.5\n"));
+        assertTrue(text.contains("# TYPE chargeback_export_phase_duration_seconds histogram\n"));
+        assertTrue(text.contains("chargeback_export_phase_duration_seconds_bucket{phase=\"read\",le=\"0.000001\"} 0\n"));
+        assertTrue(text.contains("chargeback_export_phase_duration_seconds_bucket{phase=\"read\",le=\"0.00001\"} 1\n"));
+        assertTrue(text.contains("chargeback_export_phase_duration_seconds_bucket{phase=\"read\",le=\"0.0001\"} 2\n"));
+        assertTrue(text.contains("chargeback_export_phase_duration_seconds_bucket{phase=\"read\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("chargeback_export_phase_duration_seconds_count{phase=\"read\"} 2\n"));
+        assertTrue(text.contains("chargeback_export_phase_duration_seconds_count{phase=\"commit\"} 0\n"));
+        for (String line : text.split("\n")) {
+            assertTrue(line.startsWith("# ") || line.matches("chargeback_export_[a-z_]+(\\{[^}]*})? \\S+"), line);
+        }
+    }
+
+    @Test
+    void testStepListener_TimesEachPhaseAndRecorderWritesJobTotals(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        Path metricsFile = tempDir.resolve("export.prom");
+        ExportMetricsRecorder recorder = new ExportMetricsRecorder();
+        setField(recorder, "metricsFile", metricsFile.toString());
+        JobExecution jobExecution = new JobExecution(7L);
+        jobExecution.setStatus(BatchStatus.COMPLETED);
+        recorder.beforeJob(jobExecution);
+        ExportMetricsStepListener listener = new ExportMetricsStepListener(recorder);
+        StepExecution stepExecution = new StepExecution("step", jobExecution);
+        stepExecution.setReadCount(2);
+        stepExecution.setWriteCount(2);
+        stepExecution.setCommitCount(1);
+        Chargeback item = new Chargeback();
+
+        // Act - one chunk of two rows, the way the chunk loop calls the listeners
+        listener.beforeStep(stepExecution);
+        listener.beforeChunk(null);
+        for (int i = 0; i < 2; i++) {
+            listener.beforeRead();
+            listener.afterRead(item);
+        }
+        listener.beforeRead();
+        for (int i = 0; i < 2; i++) {
+            listener.beforeProcess(item);
+            listener.afterProcess(item, item);
+        }
+        listener.beforeWrite(Chunk.of(item, item));
+        listener.afterWrite(Chunk.of(item, item));
+        listener.afterChunk(null);
+        listener.afterStep(stepExecution);
+
+        // Assert
+        ExportMetrics stepMetrics = (ExportMetrics) getField(listener, "metrics");
+        assertEquals(1, stepMetrics.getPhase(ExportMetrics.Phase.QUERY).getCount());
+        assertEquals(2, stepMetrics.getPhase(ExportMetrics.Phase.READ).getCount(), "The final empty read isn't timed");
+        assertEquals(2, stepMetrics.getPhase(ExportMetrics.Phase.PROCESS).getCount());
+        assertEquals(1, stepMetrics.getPhase(ExportMetrics.Phase.WRITE).getCount());
+        assertEquals(1, stepMetrics.getPhase(ExportMetrics.Phase.COMMIT).getCount());
+
+        recorder.afterJob(jobExecution);
+        String text = Files.readString(metricsFile);
+        assertTrue(text.contains("\nchargeback_export_success 1\n"));
+        assertTrue(text.contains("\nchargeback_export_rows_read 2\n"));
+        assertTrue(text.contains("\nchargeback_export_commits 1\n"));
+        assertTrue(text.contains("chargeback_export_phase_duration_seconds_count{phase=\"read\"} 2\n"));
+    }
+
+    private static Object getField(Object target, String name) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,69 @@
+package com.chargebacks.processor.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Builds chargebacks for unit tests. Every field starts with a fixed value, so a test only sets
+// the fields it is about; an amount is either a decimal or, with minorUnits(), minor units.
+public final class ChargebackFixture {
+
+    private LocalDate disputedDt = LocalDate.of(2024, 1, 1);
+    private BigDecimal disputedAmt;
+    private Long disputedAmtMinor;
+    private String disputedCurr = "USD";
+    private String merchandiseRef = "REF";
+    private String reasonForDispute = "Duplicate charge";
+    private LocalDateTime createdTime = LocalDateTime.of(2024, 1, 2, 0, 0, 0);
+
+    private ChargebackFixture() {
+    }
+
+    public static ChargebackFixture chargeback() {
+        return new ChargebackFixture();
+    }
+
+    public ChargebackFixture date(LocalDate disputedDt) {
+        this.disputedDt = disputedDt;
+        return this;
+    }
+
+    public ChargebackFixture amount(String disputedAmt) {
+        this.disputedAmt = disputedAmt != null ? new BigDecimal(disputedAmt) : null;
+        return this;
+    }
+
+    public ChargebackFixture minorUnits(long disputedAmtMinor) {
+        this.disputedAmtMinor = disputedAmtMinor;
+        return this;
+    }
+
+    public ChargebackFixture currency(String disputedCurr) {
+        this.disputedCurr = disputedCurr;
+        return this;
+    }
+
+    public ChargebackFixture ref(String merchandiseRef) {
+        this.merchandiseRef = merchandiseRef;
+        return this;
+    }
+
+    public ChargebackFixture reason(String reasonForDispute) {
+        this.reasonForDispute = reasonForDispute;
+        return this;
+    }
+
+    public ChargebackFixture createdTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+        return this;
+    }
+
+    public Chargeback build() {
+        Chargeback chargeback = new Chargeback(disputedDt, disputedAmt, disputedCurr, merchandiseRef,
+                reasonForDispute, createdTime);
+        if (disputedAmtMinor != null) {
+            chargeback.setDisputedAmtMinor(disputedAmtMinor);
+        }
+        return chargeback;
+    }
+}
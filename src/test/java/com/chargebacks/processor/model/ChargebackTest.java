@@ -67,5 +67,28 @@ class ChargebackTest {
         assertEquals(reasonForDispute, chargeback.getReasonForDispute());
         assertEquals(createdTime, chargeback.getCreatedTime());
     }
-}
 
+    @Test
+    void testMinorAmount_MaterializesBigDecimalWithAmountScale() {
+        Chargeback chargeback = new Chargeback();
+
+        chargeback.setDisputedAmtMinor(-1050);
+
+        assertTrue(chargeback.hasMinorAmount());
+        assertEquals(-1050, chargeback.getDisputedAmtMinor());
+        assertEquals(new BigDecimal("-10.50"), chargeback.getDisputedAmt());
+        assertEquals("-10.50", chargeback.getDisputedAmt().toString());
+    }
+
+    @Test
+    void testSetDisputedAmt_ReplacesMinorAmount() {
+        Chargeback chargeback = new Chargeback();
+        chargeback.setDisputedAmtMinor(1050);
+
+        chargeback.setDisputedAmt(new BigDecimal("1.5"));
+
+        assertFalse(chargeback.hasMinorAmount());
+        assertEquals(new BigDecimal("1.5"), chargeback.getDisputedAmt());
+        assertThrows(IllegalStateException.class, chargeback::getDisputedAmtMinor);
+    }
+}
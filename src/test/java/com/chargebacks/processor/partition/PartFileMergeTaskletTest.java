@@ -0,0 +1,49 @@
+package com.chargebacks.processor.partition;
+
+import com.chargebacks.processor.writer.ChargebackItemWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartFileMergeTaskletTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMerge_ConcatenatesPartsInSliceOrderBehindHeader() throws Exception {
+        // Arrange
+        String outputFile = tempDir.resolve("chargebacks.csv").toString();
+        String nl = System.lineSeparator();
+        Files.writeString(Paths.get(TimeRangePartitioner.partFileName(outputFile, 0)), "a" + nl + "b" + nl);
+        Files.writeString(Paths.get(TimeRangePartitioner.partFileName(outputFile, 1)), "");
+        Files.writeString(Paths.get(TimeRangePartitioner.partFileName(outputFile, 2)), "c" + nl);
+
+        // Act
+        new PartFileMergeTasklet(outputFile, 3).merge();
+
+        // Assert
+        List<String> lines = Files.readAllLines(Paths.get(outputFile));
+        assertEquals(List.of(ChargebackItemWriter.HEADER, "a", "b", "c"), lines);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(Files.exists(Paths.get(TimeRangePartitioner.partFileName(outputFile, i))),
+                    "Part files should be removed after merge");
+        }
+    }
+
+    @Test
+    void testMerge_FailsOnMissingPart() throws Exception {
+        // Arrange
+        String outputFile = tempDir.resolve("chargebacks.csv").toString();
+        Files.writeString(Paths.get(TimeRangePartitioner.partFileName(outputFile, 0)), "a");
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> new PartFileMergeTasklet(outputFile, 2).merge());
+    }
+}
@@ -0,0 +1,100 @@
+package com.chargebacks.processor.partition;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeRangePartitionerTest {
+
+    @Test
+    void testPartition_SplitsEvenlyAcrossWorkers() {
+        // Arrange
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 1, 5, 0, 0, 0);
+        TimeRangePartitioner partitioner = new TimeRangePartitioner(start, end, 4, 0);
+
+        // Act
+        Map<String, ExecutionContext> partitions = partitioner.partition(1);
+
+        // Assert
+        assertEquals(4, partitions.size());
+        assertEquals(4, partitioner.sliceCount());
+        List<ExecutionContext> slices = new ArrayList<>(partitions.values());
+        assertEquals("2024-01-01T00:00", slices.get(0).getString(TimeRangePartitioner.SLICE_START));
+        assertEquals("2024-01-02T00:00", slices.get(0).getString(TimeRangePartitioner.SLICE_END));
+        assertEquals("2024-01-04T00:00", slices.get(3).getString(TimeRangePartitioner.SLICE_START));
+        assertEquals("2024-01-05T00:00", slices.get(3).getString(TimeRangePartitioner.SLICE_END));
+        assertFalse((Boolean) slices.get(0).get(TimeRangePartitioner.LAST_SLICE));
+        assertTrue((Boolean) slices.get(3).get(TimeRangePartitioner.LAST_SLICE));
+    }
+
+    @Test
+    void testPartition_SlicesAreContiguous() {
+        // Arrange
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+        TimeRangePartitioner partitioner = new TimeRangePartitioner(start, end, 7, 0);
+
+        // Act
+        List<ExecutionContext> slices = new ArrayList<>(partitioner.partition(1).values());
+
+        // Assert
+        assertEquals(start.toString(), slices.get(0).getString(TimeRangePartitioner.SLICE_START));
+        for (int i = 1; i < slices.size(); i++) {
+            assertEquals(slices.get(i - 1).getString(TimeRangePartitioner.SLICE_END),
+                    slices.get(i).getString(TimeRangePartitioner.SLICE_START));
+            assertEquals(i, slices.get(i).getInt(TimeRangePartitioner.SLICE_INDEX));
+        }
+        assertEquals(end.toString(), slices.get(slices.size() - 1).getString(TimeRangePartitioner.SLICE_END));
+    }
+
+    @Test
+    void testPartition_WithSliceMinutes() {
+        // Arrange - 25 hours in 6 hour slices gives 4 full slices and a short last one
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 1, 2, 1, 0, 0);
+        TimeRangePartitioner partitioner = new TimeRangePartitioner(start, end, 2, 360);
+
+        // Act
+        List<ExecutionContext> slices = new ArrayList<>(partitioner.partition(2).values());
+
+        // Assert
+        assertEquals(5, slices.size());
+        assertEquals("2024-01-01T06:00", slices.get(0).getString(TimeRangePartitioner.SLICE_END));
+        assertEquals("2024-01-02T00:00", slices.get(4).getString(TimeRangePartitioner.SLICE_START));
+        assertEquals("2024-01-02T01:00", slices.get(4).getString(TimeRangePartitioner.SLICE_END));
+    }
+
+    @Test
+    void testPartition_EmptyRangeProducesSingleSlice() {
+        // Arrange
+        LocalDateTime instant = LocalDateTime.of(2024, 1, 1, 12, 0, 0);
+        TimeRangePartitioner partitioner = new TimeRangePartitioner(instant, instant, 8, 0);
+
+        // Act
+        Map<String, ExecutionContext> partitions = partitioner.partition(8);
+
+        // Assert
+        assertEquals(1, partitions.size());
+        assertTrue((Boolean) partitions.values().iterator().next().get(TimeRangePartitioner.LAST_SLICE));
+    }
+
+    @Test
+    void testConstructor_RejectsInvertedRange() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 2, 0, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+        assertThrows(IllegalArgumentException.class, () -> new TimeRangePartitioner(start, end, 2, 0));
+    }
+
+    @Test
+    void testPartFileName() {
+        assertEquals("/out/chargebacks.csv.part00003", TimeRangePartitioner.partFileName("/out/chargebacks.csv", 3));
+    }
+}
@@ -0,0 +1,223 @@
+package com.chargebacks.processor.pipeline;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.writer.ChargebackItemWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedExportTaskletTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testExecute_WritesRowsInReadOrder() throws Exception {
+        // Arrange - tiny batches over several encoders so batches finish out of order
+        CountingReader reader = new CountingReader(1_000, -1);
+        Path file = tempDir.resolve("out.csv");
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(reader, item -> item, newWriter(file), 4, 7, 3);
+
+        // Act
+        StepContribution contribution = stepExecution.createStepContribution();
+        tasklet.execute(contribution, new ChunkContext(new StepContext(stepExecution)));
+
+        // Assert
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(ChargebackItemWriter.HEADER, lines.get(0));
+        assertEquals(1_001, lines.size());
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(lines.get(i + 1).contains(",REF-" + i + ","), lines.get(i + 1));
+        }
+        assertEquals(1_000, contribution.getReadCount());
+        assertEquals(1_000, contribution.getWriteCount());
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    void testExecute_FilteredItemsAreCountedNotWritten() throws Exception {
+        CountingReader reader = new CountingReader(10, -1);
+        Path file = tempDir.resolve("out.csv");
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(reader,
+                item -> item.getMerchandiseRef().endsWith("3") ? null : item, newWriter(file), 2, 4, 2);
+
+        StepContribution contribution = stepExecution.createStepContribution();
+        tasklet.execute(contribution, new ChunkContext(new StepContext(stepExecution)));
+
+        assertEquals(10, Files.readAllLines(file).size(), "Header plus nine rows");
+        assertEquals(1, contribution.getFilterCount());
+        assertEquals(9, contribution.getWriteCount());
+    }
+
+    @Test
+    void testExecute_ReadErrorIsRethrownAfterEarlierRowsAreWritten() throws Exception {
+        // Arrange
+        CountingReader reader = new CountingReader(100, 50);
+        Path file = tempDir.resolve("out.csv");
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(reader, item -> item, newWriter(file), 2, 10, 2);
+
+        // Act & Assert
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> tasklet.execute(
+                stepExecution.createStepContribution(), new ChunkContext(new StepContext(stepExecution))));
+        assertEquals("read failed at 50", error.getMessage());
+        assertEquals(51, Files.readAllLines(file).size(), "The five full batches before the failure");
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    void testExecute_ReaderErrorFailsTheStepInsteadOfHanging() throws Exception {
+        // Arrange - an Error rather than an Exception, as from a reader that ran out of memory
+        CountingReader reader = new CountingReader(100, -1) {
+            @Override
+            public Chargeback read() {
+                Chargeback item = super.read();
+                if (item != null && item.getMerchandiseRef().equals("REF-30")) {
+                    throw new StackOverflowError("reader overflowed");
+                }
+                return item;
+            }
+        };
+        Path file = tempDir.resolve("out.csv");
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(reader, item -> item, newWriter(file), 2, 10, 2);
+
+        // Act & Assert
+        StackOverflowError error = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(
+                StackOverflowError.class, () -> tasklet.execute(stepExecution.createStepContribution(),
+                        new ChunkContext(new StepContext(stepExecution)))));
+        assertEquals("reader overflowed", error.getMessage());
+        assertEquals(31, Files.readAllLines(file).size(), "The three full batches before the error");
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    void testExecute_ProcessorErrorStopsTheReader() throws Exception {
+        // Arrange
+        CountingReader reader = new CountingReader(1_000_000, -1);
+        Path file = tempDir.resolve("out.csv");
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(reader, item -> {
+            if (item.getMerchandiseRef().equals("REF-25")) {
+                throw new IllegalArgumentException("bad row");
+            }
+            return item;
+        }, newWriter(file), 2, 10, 2);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> tasklet.execute(
+                stepExecution.createStepContribution(), new ChunkContext(new StepContext(stepExecution))));
+        assertTrue(reader.reads.get() < 1_000, "Reader should stop once the pipeline fails, read " + reader.reads);
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    void testExecute_SlowWriterHoldsBackTheReader() throws Exception {
+        // Arrange
+        int batchSize = 10;
+        int queueCapacity = 2;
+        CountingReader reader = new CountingReader(500, -1);
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        ChargebackItemWriter slowWriter = new ChargebackItemWriter() {
+            @Override
+            public void writeEncoded(String lines, int itemCount) throws IOException {
+                maxAhead.accumulateAndGet(reader.reads.get() - written.get(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeEncoded(lines, itemCount);
+                written.addAndGet(itemCount);
+            }
+        };
+        configure(slowWriter, tempDir.resolve("out.csv"));
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        PipelinedExportTasklet tasklet = new PipelinedExportTasklet(reader, item -> item, slowWriter, 2,
+                batchSize, queueCapacity);
+
+        // Act
+        tasklet.execute(stepExecution.createStepContribution(), new ChunkContext(new StepContext(stepExecution)));
+
+        // Assert - queued batches, the one being written and the one being read
+        assertEquals(500, written.get());
+        assertTrue(maxAhead.get() <= (queueCapacity + 2) * batchSize, "Reader ran " + maxAhead + " rows ahead");
+    }
+
+    @Test
+    void testConstructor_RejectsZeroThreads() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PipelinedExportTasklet(new CountingReader(0, -1), item -> item, new ChargebackItemWriter(), 0));
+    }
+
+    private static ChargebackItemWriter newWriter(Path file) throws Exception {
+        ChargebackItemWriter writer = new ChargebackItemWriter();
+        configure(writer, file);
+        return writer;
+    }
+
+    private static void configure(ChargebackItemWriter writer, Path file) throws Exception {
+        writer.setOutputFile(file.toString());
+        writer.configureWriter();
+        writer.setTransactional(false);
+        writer.afterPropertiesSet();
+    }
+
+    private static class CountingReader implements ItemStreamReader<Chargeback> {
+
+        private final int rows;
+        private final int failAt;
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile boolean closed;
+
+        CountingReader(int rows, int failAt) {
+            this.rows = rows;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public Chargeback read() {
+            int i = reads.get();
+            if (i == failAt) {
+                throw new IllegalStateException("read failed at " + i);
+            }
+            if (i >= rows) {
+                return null;
+            }
+            reads.incrementAndGet();
+            return new Chargeback(LocalDate.of(2024, 1, 1), new BigDecimal("10.00"), "USD", "REF-" + i,
+                    "Duplicate charge", LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i));
+        }
+
+        @Override
+        public void open(ExecutionContext executionContext) {
+            closed = false;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
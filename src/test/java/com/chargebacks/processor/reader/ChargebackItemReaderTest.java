@@ -0,0 +1,410 @@
+package com.chargebacks.processor.reader;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChargebackItemReaderTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+
+    @Test
+    void testFetchStrategy_BufferedLeavesDriverDefault() throws Exception {
+        // Arrange
+        FakeMySqlDataSource dataSource = new FakeMySqlDataSource(3, "jdbc:mysql://db/chargebacks");
+        ChargebackItemReader reader = newReader(dataSource, FetchStrategy.BUFFERED, 500);
+
+        // Act
+        int rows = readAll(reader);
+
+        // Assert
+        assertEquals(3, rows);
+        assertNull(dataSource.lastFetchSize, "No fetch size should be applied to the statement");
+    }
+
+    @Test
+    void testFetchStrategy_StreamingUsesMinValueFetchSizeOnMySql() throws Exception {
+        // Arrange
+        FakeMySqlDataSource dataSource = new FakeMySqlDataSource(3, "jdbc:mysql://db/chargebacks");
+        ChargebackItemReader reader = newReader(dataSource, FetchStrategy.STREAMING, 500);
+
+        // Act
+        int rows = readAll(reader);
+
+        // Assert
+        assertEquals(3, rows);
+        assertEquals(Integer.MIN_VALUE, dataSource.lastFetchSize);
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, dataSource.lastResultSetType);
+        assertEquals(ResultSet.CONCUR_READ_ONLY, dataSource.lastResultSetConcurrency);
+    }
+
+    @Test
+    void testFetchStrategy_CursorFetchUsesConfiguredFetchSize() throws Exception {
+        // Arrange
+        FakeMySqlDataSource dataSource = new FakeMySqlDataSource(3, "jdbc:mysql://db/chargebacks?useCursorFetch=true");
+        ChargebackItemReader reader = newReader(dataSource, FetchStrategy.CURSOR_FETCH, 250);
+
+        // Act
+        int rows = readAll(reader);
+
+        // Assert
+        assertEquals(3, rows);
+        assertEquals(250, dataSource.lastFetchSize);
+    }
+
+    @Test
+    void testFetchStrategy_CursorFetchRequiresUseCursorFetch() {
+        // Arrange
+        FakeMySqlDataSource dataSource = new FakeMySqlDataSource(3, "jdbc:mysql://db/chargebacks");
+        ChargebackItemReader reader = newReader(dataSource, FetchStrategy.CURSOR_FETCH, 250);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> reader.open(new ExecutionContext()));
+    }
+
+    @Test
+    void testSetFetchStrategy_RejectsZeroFetchSize() {
+        ChargebackItemReader reader = new ChargebackItemReader(new FakeMySqlDataSource(0, "jdbc:mysql://db"));
+
+        assertThrows(IllegalArgumentException.class, () -> reader.setFetchStrategy(FetchStrategy.STREAMING, 0));
+    }
+
+    @Test
+    void testRead_ResumesFromSavedPosition() throws Exception {
+        // Arrange - the save lands between two rows sharing a created_time
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+            String[] refs = {"REF-1", "REF-2", "REF-2B", "REF-3"};
+            int[] minutes = {1, 2, 2, 3};
+            for (int i = 0; i < refs.length; i++) {
+                jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                                "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                        LocalDate.of(2024, 1, 1), new BigDecimal("10.00"), "USD", refs[i],
+                        "Duplicate charge", START.plusMinutes(minutes[i]));
+            }
+            ChargebackItemReader reader = newReader(database, FetchStrategy.BUFFERED, 1000);
+            ExecutionContext executionContext = new ExecutionContext();
+            reader.open(executionContext);
+            assertEquals("REF-1", reader.read().getMerchandiseRef());
+            assertEquals("REF-2", reader.read().getMerchandiseRef());
+            reader.update(executionContext);
+            reader.close();
+
+            // Act - a fresh reader queries from the saved created_time and skips the one tie already read
+            reader = newReader(database, FetchStrategy.BUFFERED, 1000);
+            reader.open(executionContext);
+            List<String> remaining = new ArrayList<>();
+            Chargeback chargeback;
+            while ((chargeback = reader.read()) != null) {
+                remaining.add(chargeback.getMerchandiseRef());
+            }
+            reader.close();
+
+            // Assert
+            assertEquals(List.of("REF-2B", "REF-3"), remaining);
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    @Test
+    void testRead_AppliesFilterAndColumnsInTheQuery() throws Exception {
+        // Arrange
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+            Object[][] rows = {
+                    {"REF-1", "10.00", "USD", "Fraud"},
+                    {"REF-2", "10.00", "EUR", "Fraud"},
+                    {"REF-3", "99.99", "GBP", "Fraudulent transaction"},
+                    {"REF-4", "100.01", "USD", "Fraud"},
+                    {"REF-5", "10.00", "USD", "Duplicate charge"},
+                    {"REF-6", "4.99", "USD", "Fraud"}};
+            for (int i = 0; i < rows.length; i++) {
+                jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                                "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                        LocalDate.of(2024, 1, 1), new BigDecimal((String) rows[i][1]), rows[i][2], rows[i][0],
+                        rows[i][3], START.plusMinutes(i));
+            }
+            ChargebackItemReader reader = newReader(database, FetchStrategy.BUFFERED, 1000);
+            reader.setColumns(List.of(ChargebackColumn.MERCHANDISE_REF, ChargebackColumn.DISPUTED_AMT));
+            reader.setFilter(new ChargebackFilter(List.of("USD", "GBP"), new BigDecimal("5.00"),
+                    new BigDecimal("100.00"), "Fraud%"));
+
+            // Act
+            reader.open(new ExecutionContext());
+            List<Chargeback> read = new ArrayList<>();
+            Chargeback chargeback;
+            while ((chargeback = reader.read()) != null) {
+                read.add(chargeback);
+            }
+            reader.close();
+
+            // Assert - created_time is always read; the other unselected columns stay null
+            assertEquals(List.of("REF-1", "REF-3"), read.stream().map(Chargeback::getMerchandiseRef).toList());
+            assertEquals(new BigDecimal("99.99"), read.get(1).getDisputedAmt());
+            assertEquals(START.plusMinutes(2), read.get(1).getCreatedTime());
+            assertNull(read.get(1).getDisputedCurr());
+            assertNull(read.get(1).getReasonForDispute());
+            assertNull(read.get(1).getDisputedDt());
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    @Test
+    void testStreaming_HeapStaysFlatAsRowCountGrows() throws Exception {
+        // Arrange - the fake driver buffers the whole result set unless it is asked to stream,
+        // the same way Connector/J does
+        long smallRun = retainedHeapAfterReading(FetchStrategy.STREAMING, 50_000);
+        long largeRun = retainedHeapAfterReading(FetchStrategy.STREAMING, 500_000);
+        long buffered = retainedHeapAfterReading(FetchStrategy.BUFFERED, 500_000);
+
+        // Assert
+        assertTrue(largeRun - smallRun < 16 * 1024 * 1024,
+                "Streaming 10x more rows should not grow the heap (small=" + smallRun + ", large=" + largeRun + ")");
+        assertTrue(buffered - largeRun > 32 * 1024 * 1024,
+                "Buffering should hold the result set in heap (streaming=" + largeRun + ", buffered=" + buffered + ")");
+    }
+
+    private long retainedHeapAfterReading(FetchStrategy fetchStrategy, int rowCount) throws Exception {
+        FakeMySqlDataSource dataSource = new FakeMySqlDataSource(rowCount, "jdbc:mysql://db/chargebacks");
+        ChargebackItemReader reader = newReader(dataSource, fetchStrategy, 1000);
+        long baseline = usedHeapAfterGc();
+
+        reader.open(new ExecutionContext());
+        int rows = 0;
+        while (reader.read() != null) {
+            rows++;
+        }
+        // Measured while the result set is still open, which is when a buffering driver holds on to it
+        long retained = usedHeapAfterGc() - baseline;
+        reader.close();
+
+        assertEquals(rowCount, rows);
+        return retained;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static ChargebackItemReader newReader(DataSource dataSource, FetchStrategy fetchStrategy, int fetchSize) {
+        ChargebackItemReader reader = new ChargebackItemReader(dataSource);
+        reader.setTimestampRange(START, END);
+        reader.setFetchStrategy(fetchStrategy, fetchSize);
+        return reader;
+    }
+
+    private static int readAll(ChargebackItemReader reader) throws Exception {
+        reader.open(new ExecutionContext());
+        int rows = 0;
+        Chargeback chargeback;
+        while ((chargeback = reader.read()) != null) {
+            assertNotNull(chargeback.getCreatedTime());
+            rows++;
+        }
+        reader.close();
+        return rows;
+    }
+
+    // Minimal JDBC driver standing in for Connector/J: a result set is materialized in memory
+    // on executeQuery() unless the statement's fetch size is Integer.MIN_VALUE
+    private static class FakeMySqlDataSource implements DataSource {
+
+        private static final List<String> COLUMNS = List.of("disputed_dt", "disputed_amt", "disputed_curr",
+                "merchandise_ref", "reason_for_dispute", "created_time");
+
+        private final int rowCount;
+        private final String url;
+        private Integer lastFetchSize;
+        private Integer lastResultSetType;
+        private Integer lastResultSetConcurrency;
+
+        FakeMySqlDataSource(int rowCount, String url) {
+            this.rowCount = rowCount;
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() {
+            return proxy(Connection.class, (method, args) -> switch (method) {
+                case "getMetaData" -> proxy(DatabaseMetaData.class, (m, a) -> switch (m) {
+                    case "getDatabaseProductName" -> "MySQL";
+                    case "getURL" -> url;
+                    default -> null;
+                });
+                case "prepareStatement" -> {
+                    lastResultSetType = (Integer) args[1];
+                    lastResultSetConcurrency = (Integer) args[2];
+                    lastFetchSize = null;
+                    yield statement();
+                }
+                case "getAutoCommit" -> true;
+                default -> null;
+            });
+        }
+
+        private PreparedStatement statement() {
+            return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+                case "setFetchSize" -> {
+                    lastFetchSize = (Integer) args[0];
+                    yield null;
+                }
+                case "executeQuery" -> resultSet(lastFetchSize != null && lastFetchSize == Integer.MIN_VALUE
+                        ? new RowGenerator(rowCount)
+                        : materialize(new RowGenerator(rowCount)));
+                default -> null;
+            });
+        }
+
+        private static Iterator<Object[]> materialize(Iterator<Object[]> rows) {
+            List<Object[]> buffered = new ArrayList<>();
+            rows.forEachRemaining(buffered::add);
+            return buffered.iterator();
+        }
+
+        private static ResultSet resultSet(Iterator<Object[]> rows) {
+            Object[][] current = new Object[1][];
+            int[] rowNumber = {0};
+            return proxy(ResultSet.class, (method, args) -> switch (method) {
+                case "next" -> {
+                    if (!rows.hasNext()) {
+                        current[0] = null;
+                        yield false;
+                    }
+                    current[0] = rows.next();
+                    rowNumber[0]++;
+                    yield true;
+                }
+                case "getRow" -> rowNumber[0];
+                case "findColumn" -> COLUMNS.indexOf(args[0]) + 1;
+                case "getObject", "getString" -> current[0][(Integer) args[0] - 1];
+                default -> null;
+            });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+
+        @Override
+        public java.io.PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(java.io.PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() {
+            return java.util.logging.Logger.getGlobal();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) {
+            return null;
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+
+    private static class RowGenerator implements Iterator<Object[]> {
+
+        private final int rowCount;
+        private int next;
+
+        RowGenerator(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < rowCount;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int i = next++;
+            return new Object[]{
+                LocalDate.of(2024, 1, 1),
+                BigDecimal.valueOf(10_000 + i, 2).toPlainString(),
+                "USD",
+                "REF-" + i,
+                "Duplicate charge " + i,
+                START.plusSeconds(i)
+            };
+        }
+    }
+
+    private interface Invocation {
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Invocation invocation) {
+        return (T) Proxy.newProxyInstance(ChargebackItemReaderTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = invocation.invoke(method.getName(), args);
+                    if (result == null && method.getReturnType() == boolean.class) {
+                        return false;
+                    }
+                    if (result == null && method.getReturnType() == int.class) {
+                        return 0;
+                    }
+                    return result;
+                });
+    }
+}
@@ -0,0 +1,190 @@
+package com.chargebacks.processor.reader;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChargebackKeysetItemReaderTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 1, 23, 59, 59);
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private ChargebackKeysetItemReader reader;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        reader = new ChargebackKeysetItemReader(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    private void insertChargeback(String merchandiseRef, LocalDateTime createdTime) {
+        jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                        "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                LocalDate.of(2024, 1, 1), new BigDecimal("10.00"), "USD", merchandiseRef,
+                "Duplicate charge", createdTime);
+    }
+
+    private List<String> readAll(ExecutionContext executionContext) throws Exception {
+        List<String> refs = new ArrayList<>();
+        reader.open(executionContext);
+        Chargeback chargeback;
+        while ((chargeback = reader.read()) != null) {
+            refs.add(chargeback.getMerchandiseRef());
+        }
+        reader.close();
+        return refs;
+    }
+
+    @Test
+    void testRead_ReturnsRowsInRangeOrderedByCreatedTime() throws Exception {
+        // Arrange
+        insertChargeback("REF-BEFORE", START.minusSeconds(1));
+        insertChargeback("REF-3", START.plusHours(3));
+        insertChargeback("REF-1", START);
+        insertChargeback("REF-2", START.plusHours(2));
+        insertChargeback("REF-END", END);
+        insertChargeback("REF-AFTER", END.plusSeconds(1));
+        reader.setTimestampRange(START, END);
+        reader.setPageSize(2);
+
+        // Act
+        List<String> refs = readAll(new ExecutionContext());
+
+        // Assert
+        assertEquals(List.of("REF-1", "REF-2", "REF-3", "REF-END"), refs);
+    }
+
+    @Test
+    void testRead_TimestampTiesAcrossPageBoundaries() throws Exception {
+        // Arrange - five rows share a timestamp, more than a whole page
+        insertChargeback("REF-0", START.plusMinutes(1));
+        for (int i = 1; i <= 5; i++) {
+            insertChargeback("REF-TIE-" + i, START.plusMinutes(2));
+        }
+        insertChargeback("REF-6", START.plusMinutes(3));
+        reader.setTimestampRange(START, END);
+        reader.setPageSize(2);
+
+        // Act
+        List<String> refs = readAll(new ExecutionContext());
+
+        // Assert
+        assertEquals(7, refs.size(), "Every tied row should be returned exactly once");
+        assertEquals("REF-0", refs.get(0));
+        assertEquals("REF-6", refs.get(6));
+        assertEquals(5, refs.stream().filter(ref -> ref.startsWith("REF-TIE-")).distinct().count());
+    }
+
+    @Test
+    void testRead_ExactDuplicateRowsAreAllReturned() throws Exception {
+        // Arrange - identical rows can only be told apart by how many were already read
+        for (int i = 0; i < 3; i++) {
+            insertChargeback("REF-DUP", START.plusMinutes(5));
+        }
+        reader.setTimestampRange(START, END);
+        reader.setPageSize(1);
+
+        // Act
+        List<String> refs = readAll(new ExecutionContext());
+
+        // Assert
+        assertEquals(List.of("REF-DUP", "REF-DUP", "REF-DUP"), refs);
+    }
+
+    @Test
+    void testRead_ResumesFromSavedPosition() throws Exception {
+        // Arrange
+        insertChargeback("REF-1", START.plusMinutes(1));
+        insertChargeback("REF-2", START.plusMinutes(2));
+        insertChargeback("REF-2B", START.plusMinutes(2));
+        insertChargeback("REF-3", START.plusMinutes(3));
+        reader.setTimestampRange(START, END);
+        reader.setPageSize(10);
+
+        ExecutionContext executionContext = new ExecutionContext();
+        reader.open(executionContext);
+        assertEquals("REF-1", reader.read().getMerchandiseRef());
+        assertEquals("REF-2", reader.read().getMerchandiseRef());
+        reader.update(executionContext);
+        reader.close();
+
+        // Act - a fresh reader picks up from the saved created_time and tie count
+        reader = new ChargebackKeysetItemReader(database);
+        reader.setTimestampRange(START, END);
+        List<String> remaining = readAll(executionContext);
+
+        // Assert
+        assertEquals(List.of("REF-2B", "REF-3"), remaining);
+    }
+
+    @Test
+    void testRead_StartsAfterStartPosition() throws Exception {
+        // Arrange - two rows at the position's created_time were already returned by an earlier read
+        insertChargeback("REF-1", START.plusHours(1));
+        insertChargeback("REF-2", START.plusHours(2));
+        insertChargeback("REF-3", START.plusHours(2));
+        insertChargeback("REF-4", START.plusHours(2));
+        insertChargeback("REF-5", START.plusHours(3));
+        reader.setTimestampRange(START.plusHours(2), END);
+        reader.setStartPosition(START.plusHours(2), 2);
+        reader.setPageSize(1);
+
+        // Act
+        List<String> refs = readAll(new ExecutionContext());
+
+        // Assert
+        assertEquals(List.of("REF-4", "REF-5"), refs);
+        assertEquals(START.plusHours(3), reader.getLastCreatedTime());
+        assertEquals(1, reader.getLastTieCount());
+    }
+
+    @Test
+    void testRead_HalfOpenRangeExcludesEnd() throws Exception {
+        // Arrange
+        insertChargeback("REF-1", START);
+        insertChargeback("REF-END", END);
+        reader.setTimestampRange(START, END, false);
+
+        // Act
+        List<String> refs = readAll(new ExecutionContext());
+
+        // Assert
+        assertEquals(List.of("REF-1"), refs);
+    }
+
+    @Test
+    void testOpen_WithoutTimestampsThrows() {
+        assertThrows(IllegalStateException.class, () -> reader.open(new ExecutionContext()));
+    }
+
+    @Test
+    void testSetPageSize_RejectsZero() {
+        assertThrows(IllegalArgumentException.class, () -> reader.setPageSize(0));
+    }
+}
@@ -0,0 +1,110 @@
+package com.chargebacks.processor.reader;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChargebackRowMapperTest {
+
+    // Columns deliberately out of the order the mapper reads them in
+    private static final List<String> COLUMNS = List.of("created_time", "reason_for_dispute", "merchandise_ref",
+            "disputed_curr", "disputed_amt", "disputed_dt");
+
+    private final AtomicInteger findColumnCalls = new AtomicInteger();
+
+    @Test
+    void testParseMinorUnits() {
+        assertEquals(10050, ChargebackRowMapper.parseMinorUnits("100.50"));
+        assertEquals(-1230, ChargebackRowMapper.parseMinorUnits("-12.30"));
+        assertEquals(5, ChargebackRowMapper.parseMinorUnits("+0.05"));
+        assertEquals(0, ChargebackRowMapper.parseMinorUnits("0.00"));
+        assertEquals(999999999999999999L, ChargebackRowMapper.parseMinorUnits("9999999999999999.99"));
+    }
+
+    @Test
+    void testParseMinorUnits_RejectsOtherShapes() {
+        for (String text : List.of("", "-", "7", "1.5", "1.500", "1E+3", "1.0E2", "12.3.4", "abc",
+                "99999999999999999.99", " 1.00")) {
+            assertEquals(ChargebackRowMapper.NOT_MINOR_UNITS, ChargebackRowMapper.parseMinorUnits(text), text);
+        }
+    }
+
+    @Test
+    void testMapRow_ReadsByResolvedIndexAndCarriesMinorUnits() throws Exception {
+        // Arrange
+        ChargebackRowMapper mapper = new ChargebackRowMapper();
+        Object[] row = row("100.50", "USD", "Product not received");
+        ResultSet rs = resultSet(row);
+
+        // Act
+        Chargeback first = mapper.mapRow(rs, 0);
+        Chargeback second = mapper.mapRow(rs, 1);
+
+        // Assert
+        assertEquals(LocalDate.of(2024, 1, 15), first.getDisputedDt());
+        assertTrue(first.hasMinorAmount());
+        assertEquals(10050, first.getDisputedAmtMinor());
+        assertEquals(new BigDecimal("100.50"), first.getDisputedAmt());
+        assertEquals("USD", first.getDisputedCurr());
+        assertEquals("REF-001", first.getMerchandiseRef());
+        assertEquals("Product not received", first.getReasonForDispute());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 0, 0), first.getCreatedTime());
+        assertNotNull(second);
+        assertEquals(6, findColumnCalls.get(), "Columns should be resolved once per result set");
+    }
+
+    @Test
+    void testMapRow_SharesLowCardinalityStrings() throws Exception {
+        // Arrange
+        ChargebackRowMapper mapper = new ChargebackRowMapper();
+
+        // Act - equal values, distinct instances, as a driver hands them out
+        Chargeback first = mapper.mapRow(resultSet(row("1.00", new String("EUR"), new String("Duplicate charge"))), 0);
+        Chargeback second = mapper.mapRow(resultSet(row("2.00", new String("EUR"), new String("Duplicate charge"))), 1);
+
+        // Assert
+        assertSame(first.getDisputedCurr(), second.getDisputedCurr());
+        assertSame(first.getReasonForDispute(), second.getReasonForDispute());
+    }
+
+    @Test
+    void testMapRow_KeepsBigDecimalForOtherScalesAndNulls() throws Exception {
+        ChargebackRowMapper mapper = new ChargebackRowMapper();
+
+        Chargeback scaled = mapper.mapRow(resultSet(row("1.5", "USD", "Other")), 0);
+        Chargeback missing = mapper.mapRow(resultSet(row(null, null, null)), 1);
+
+        assertFalse(scaled.hasMinorAmount());
+        assertEquals("1.5", scaled.getDisputedAmt().toString());
+        assertFalse(missing.hasMinorAmount());
+        assertNull(missing.getDisputedAmt());
+        assertNull(missing.getDisputedCurr());
+        assertNull(missing.getReasonForDispute());
+    }
+
+    private static Object[] row(String amount, String currency, String reason) {
+        return new Object[]{LocalDateTime.of(2024, 1, 15, 10, 0, 0), reason, "REF-001", currency, amount,
+            LocalDate.of(2024, 1, 15)};
+    }
+
+    private ResultSet resultSet(Object[] row) {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findColumn" -> {
+                        findColumnCalls.incrementAndGet();
+                        yield COLUMNS.indexOf(args[0]) + 1;
+                    }
+                    case "getObject", "getString" -> row[(Integer) args[0] - 1];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
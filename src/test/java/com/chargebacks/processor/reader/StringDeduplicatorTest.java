@@ -0,0 +1,37 @@
+package com.chargebacks.processor.reader;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDeduplicatorTest {
+
+    @Test
+    void testDedupe_ReturnsFirstInstanceForEqualValues() {
+        StringDeduplicator deduplicator = new StringDeduplicator(8);
+        String first = new String("USD");
+
+        assertSame(first, deduplicator.dedupe(first));
+        assertSame(first, deduplicator.dedupe(new String("USD")));
+        assertNull(deduplicator.dedupe(null));
+        assertEquals(1, deduplicator.size());
+    }
+
+    @Test
+    void testDedupe_StopsAdmittingOnceFull() {
+        StringDeduplicator deduplicator = new StringDeduplicator(2);
+        deduplicator.dedupe("USD");
+        deduplicator.dedupe("EUR");
+        String overflow = new String("GBP");
+
+        assertSame(overflow, deduplicator.dedupe(overflow));
+        assertNotSame(overflow, deduplicator.dedupe(new String("GBP")));
+        assertEquals("GBP", deduplicator.dedupe("GBP"));
+        assertEquals(2, deduplicator.size());
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new StringDeduplicator(0));
+    }
+}
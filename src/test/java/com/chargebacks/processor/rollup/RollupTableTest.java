@@ -0,0 +1,101 @@
+package com.chargebacks.processor.rollup;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackFixture;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.chargebacks.processor.model.ChargebackFixture.chargeback;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupTableTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    private static List<String> lines(RollupTable table) throws IOException {
+        StringWriter out = new StringWriter();
+        table.writeCsv(out);
+        return out.toString().lines().toList();
+    }
+
+    @Test
+    void testAdd_TotalsAreExactAcrossMinorUnitsAndDecimals() throws IOException {
+        // Arrange
+        RollupTable table = new RollupTable();
+
+        // Act - minor units that overflow a long, then a decimal; a decimal too large for minor units,
+        // then minor units; and a group without any amount
+        table.add(chargeback().minorUnits(Long.MAX_VALUE).currency("USD").reason("Fraud").build());
+        table.add(chargeback().minorUnits(Long.MAX_VALUE).currency("USD").reason("Fraud").build());
+        table.add(chargeback().date(DAY).amount("0.10").currency("USD").reason("Fraud").build());
+        table.add(chargeback().date(DAY).amount("99999999999999999.99").currency("EUR").reason("Fraud").build());
+        table.add(chargeback().minorUnits(-150).currency("EUR").reason("Fraud").build());
+        table.add(chargeback().date(DAY).currency("GBP").reason("Fraud").build());
+
+        // Assert
+        assertEquals(List.of(RollupTable.HEADER,
+                "2024-01-01,EUR,Fraud,2,99999999999999998.49,-1.50,99999999999999999.99",
+                "2024-01-01,GBP,Fraud,1,,,",
+                "2024-01-01,USD,Fraud,3,184467440737095516.24,0.10,92233720368547758.07"), lines(table));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    void testMerge_MatchesOneTableOfAllRows() throws IOException {
+        // Arrange - enough groups to grow both tables several times
+        RollupTable whole = new RollupTable();
+        RollupTable first = new RollupTable();
+        RollupTable second = new RollupTable();
+        for (int i = 0; i < 2_000; i++) {
+            ChargebackFixture row = i % 7 == 0
+                    ? chargeback().amount(i % 11 == 0 ? null : i + ".05").currency("EUR").reason("Reason " + (i % 9))
+                    : chargeback().minorUnits(i * 100L).currency(i % 2 == 0 ? "USD" : "GBP").reason("Fraud");
+            Chargeback item = row.date(DAY.plusDays(i % 40)).build();
+            whole.add(item);
+            (i % 3 == 0 ? first : second).add(item);
+        }
+
+        // Act
+        first.merge(second);
+        first.merge(new RollupTable());
+
+        // Assert
+        assertEquals(lines(whole), lines(first));
+        assertEquals(whole.size(), first.size());
+        assertTrue(first.size() > 64);
+    }
+
+    @Test
+    void testWriteCsv_OrdersGroupsAndQuotesText() throws IOException {
+        // Arrange
+        RollupTable table = new RollupTable();
+
+        // Act - a missing currency and reason fall in with empty ones
+        table.add(chargeback().date(DAY.plusDays(1)).amount("1.00").currency("USD")
+                .reason("Goods \"not\" received, late").build());
+        table.add(chargeback().date(DAY).amount("2.00").currency("USD").reason("Fraud").build());
+        table.add(chargeback().date(DAY).amount("3.00").currency("EUR").reason("Fraud").build());
+        table.add(chargeback().date(null).amount("4.00").currency(null).reason(null).build());
+        table.add(chargeback().date(null).amount("5.00").currency("").reason("").build());
+
+        // Assert
+        assertEquals(List.of(RollupTable.HEADER,
+                ",,,2,9.00,4.00,5.00",
+                "2024-01-01,EUR,Fraud,1,3.00,3.00,3.00",
+                "2024-01-01,USD,Fraud,1,2.00,2.00,2.00",
+                "2024-01-02,USD,\"Goods \"\"not\"\" received, late\",1,1.00,1.00,1.00"), lines(table));
+    }
+
+    @Test
+    void testRollupFileName_SitsNextToTheExport() {
+        // Act & Assert
+        assertEquals("chargebacks_a_to_b_rollup.csv", RollupRecorder.rollupFileName("chargebacks_a_to_b.csv"));
+        assertEquals("chargebacks_a_to_b_rollup.csv", RollupRecorder.rollupFileName("chargebacks_a_to_b.csv.gz"));
+        assertEquals("chargebacks_a_to_b_rollup.csv", RollupRecorder.rollupFileName("chargebacks_a_to_b.parquet"));
+        assertEquals("out/chargebacks_a_to_b_rollup.csv", RollupRecorder.rollupFileName("out/chargebacks_a_to_b"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.chargebacks.processor.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportServerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 7, 1, 0, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 7, 1, 23, 59, 59);
+
+    @Autowired
+    private ExportServer exportServer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private InetSocketAddress address;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        jdbcTemplate.update("DELETE FROM Chargebacks WHERE created_time >= ? AND created_time <= ?",
+                START.minusDays(1), END.plusDays(1));
+        insertChargeback("REF-BEFORE", START.minusSeconds(1), "USD");
+        insertChargeback("REF-1", START, "USD");
+        insertChargeback("REF-2", START.plusHours(1), "EUR");
+        insertChargeback("REF-3", END, "USD");
+        insertChargeback("REF-AFTER", END.plusSeconds(1), "USD");
+        address = exportServer.start(ExportServer.DEFAULT_BIND_ADDRESS, 0, 1, 100);
+        baseUrl = "http://127.0.0.1:" + address.getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        exportServer.stop();
+    }
+
+    private void insertChargeback(String merchandiseRef, LocalDateTime createdTime, String currency) {
+        jdbcTemplate.update("INSERT INTO Chargebacks (disputed_dt, disputed_amt, disputed_curr, " +
+                        "merchandise_ref, reason_for_dispute, created_time) VALUES (?, ?, ?, ?, ?, ?)",
+                LocalDate.of(2024, 6, 30), new BigDecimal("12.50"), currency, merchandiseRef, "Fraud", createdTime);
+    }
+
+    private HttpResponse<byte[]> get(String pathAndQuery, String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery));
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static List<String> lines(byte[] body) {
+        return new String(body, StandardCharsets.UTF_8).lines().toList();
+    }
+
+    @Test
+    void testExport_StreamsTheRangeAsCsv() throws Exception {
+        // Act
+        HttpResponse<byte[]> response = get("/export?start=2024-07-01T00:00:00&end=2024-07-01T23:59:59");
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals("text/csv; charset=utf-8", response.headers().firstValue("Content-Type").orElseThrow());
+        assertTrue(response.headers().firstValue("Content-Length").isEmpty(), "The body is sent in chunks");
+        assertEquals(List.of("disputed_dt,disputed_amt,disputed_curr,merchandise_ref,reason_for_dispute,created_time",
+                "2024-06-30,12.50,USD,REF-1,Fraud,2024-07-01T00:00:00",
+                "2024-06-30,12.50,EUR,REF-2,Fraud,2024-07-01T01:00:00",
+                "2024-06-30,12.50,USD,REF-3,Fraud,2024-07-01T23:59:59"), lines(response.body()));
+    }
+
+    @Test
+    void testExport_AppliesColumnsAndFiltersAndGzip() throws Exception {
+        // Act
+        HttpResponse<byte[]> response = get("/export?start=2024-07-01T00:00:00&end=2024-07-01T23:59:59"
+                + "&columns=merchandise_ref,created_time&currency=USD&reason=Fr%25", "Accept-Encoding", "gzip");
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElseThrow());
+        byte[] body;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            body = in.readAllBytes();
+        }
+        assertEquals(List.of("merchandise_ref,created_time", "REF-1,2024-07-01T00:00:00", "REF-3,2024-07-01T23:59:59"),
+                lines(body));
+    }
+
+    @Test
+    void testStart_ListensOnlyOnLoopbackByDefault() {
+        // Assert - the server doesn't authenticate, so it isn't reachable from other hosts unless asked to be
+        assertTrue(address.getAddress().isLoopbackAddress());
+        assertThrows(IllegalStateException.class,
+                () -> exportServer.start(ExportServer.DEFAULT_BIND_ADDRESS, 0, 1, 100), "Already running");
+        exportServer.stop();
+        assertThrows(IllegalArgumentException.class, () -> exportServer.start("no-such-host.invalid", 0, 1, 100));
+    }
+
+    @Test
+    void testExport_RejectsBadRequestsAndRequestsOverTheLimit() throws Exception {
+        // Act & Assert
+        assertEquals(400, get("/export?start=2024-07-01T00:00:00").statusCode(), "Missing end");
+        assertEquals(400, get("/export?start=2024-07-01&end=2024-07-01T23:59:59").statusCode(), "Date only");
+        assertEquals(400, get("/export?start=2024-07-01T00:00:00&end=2024-07-01T23:59:59&columns=amount")
+                .statusCode(), "Unknown column");
+        assertEquals(400, get("/export?start=2024-07-01T00:00:00&end=2024-07-01T23:59:59&format=PARQUET")
+                .statusCode(), "Unknown parameter");
+
+        // The only permit is taken by an export in progress
+        Field permitsField = ExportServer.class.getDeclaredField("exportPermits");
+        permitsField.setAccessible(true);
+        Semaphore permits = (Semaphore) permitsField.get(exportServer);
+        permits.acquire();
+        try {
+            HttpResponse<byte[]> busy = get("/export?start=2024-07-01T00:00:00&end=2024-07-01T23:59:59");
+            assertEquals(503, busy.statusCode());
+            assertTrue(busy.headers().firstValue("Retry-After").isPresent());
+            assertEquals(200, get("/health").statusCode(), "Health checks are answered while busy");
+        } finally {
+            permits.release();
+        }
+        assertEquals(200, get("/export?start=2024-07-01T00:00:00&end=2024-07-01T23:59:59").statusCode());
+    }
+}
@@ -0,0 +1,145 @@
+package com.chargebacks.processor.summary;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackFixture;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static com.chargebacks.processor.model.ChargebackFixture.chargeback;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportSummaryTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 12, 0, 0);
+
+    @Test
+    void testAdd_TotalsAreExactAcrossMinorUnitsAndDecimals() {
+        // Arrange
+        ExportSummary summary = new ExportSummary();
+
+        // Act - minor units that overflow a long, a decimal too large for minor units, and no amount
+        ChargebackFixture maxMinorUnits = chargeback().minorUnits(Long.MAX_VALUE).currency("USD")
+                .reason("Duplicate charge").createdTime(TIME);
+        summary.add(maxMinorUnits.build());
+        summary.add(maxMinorUnits.build());
+        summary.add(chargeback().amount("0.10").currency("USD").reason("Duplicate charge")
+                .createdTime(TIME.minusHours(1)).build());
+        summary.add(chargeback().amount("99999999999999999.99").currency("EUR").reason("Fraud")
+                .createdTime(TIME.plusHours(1)).build());
+        summary.add(chargeback().currency(null).reason(null).createdTime(null).build());
+
+        // Assert
+        assertEquals(5, summary.getRows());
+        assertEquals(Map.of("", 1L, "EUR", 1L, "USD", 3L), summary.getCurrencyRows());
+        assertEquals(new BigDecimal("184467440737095516.24"), summary.getCurrencyTotals().get("USD"));
+        assertEquals(new BigDecimal("99999999999999999.99"), summary.getCurrencyTotals().get("EUR"));
+        assertEquals(0, BigDecimal.ZERO.compareTo(summary.getCurrencyTotals().get("")));
+        assertEquals(TIME.minusHours(1), summary.getMinCreatedTime());
+        assertEquals(TIME.plusHours(1), summary.getMaxCreatedTime());
+        assertEquals(List.of(Map.entry("Duplicate charge", 3L), Map.entry("", 1L), Map.entry("Fraud", 1L)),
+                summary.getTopReasons(10));
+        assertEquals(List.of(Map.entry("Duplicate charge", 3L)), summary.getTopReasons(1));
+    }
+
+    @Test
+    void testMerge_MatchesOneSummaryOfAllRows() {
+        // Arrange
+        ExportSummary whole = new ExportSummary();
+        ExportSummary first = new ExportSummary();
+        ExportSummary second = new ExportSummary();
+        for (int i = 0; i < 20; i++) {
+            Chargeback item = chargeback().amount(i + ".25").currency(i % 3 == 0 ? "EUR" : "USD")
+                    .reason("Reason " + (i % 4)).createdTime(TIME.plusMinutes(i)).build();
+            whole.add(item);
+            (i < 7 ? first : second).add(item);
+        }
+
+        // Act
+        first.merge(second);
+        first.merge(new ExportSummary());
+
+        // Assert
+        assertEquals(whole.getRows(), first.getRows());
+        assertEquals(whole.getCurrencyRows(), first.getCurrencyRows());
+        assertEquals(whole.getCurrencyTotals(), first.getCurrencyTotals());
+        assertEquals(whole.getMinCreatedTime(), first.getMinCreatedTime());
+        assertEquals(whole.getMaxCreatedTime(), first.getMaxCreatedTime());
+        assertEquals(whole.getTopReasons(10), first.getTopReasons(10));
+    }
+
+    @Test
+    void testListener_RestoresTheSummarySavedWithTheLastCommit() {
+        // Arrange
+        ExecutionContext executionContext = new ExecutionContext();
+        ExportSummaryListener listener = new ExportSummaryListener();
+        listener.open(executionContext);
+        listener.afterWrite(new Chunk<>(List.of(
+                chargeback().amount("1.50").currency("USD").reason("Fraud").createdTime(TIME).build(),
+                chargeback().amount("2.25").currency("GBP").reason("Fraud").createdTime(TIME.plusSeconds(1)).build())));
+        listener.update(executionContext);
+        // Written but never committed, as when the step fails in the next chunk
+        listener.afterWrite(new Chunk<>(List.of(
+                chargeback().amount("100.00").currency("USD").reason("Fraud").createdTime(TIME.plusDays(1)).build())));
+
+        // Act
+        ExportSummaryListener restarted = new ExportSummaryListener();
+        restarted.open(executionContext);
+        restarted.afterWrite(new Chunk<>(List.of(chargeback().amount("3.00").currency("USD").reason("Late presentment")
+                .createdTime(TIME.plusHours(1)).build())));
+        ExportSummary summary = restarted.getSummary();
+
+        // Assert
+        assertEquals(3, summary.getRows());
+        assertEquals(Map.of("GBP", new BigDecimal("2.25"), "USD", new BigDecimal("4.50")), summary.getCurrencyTotals());
+        assertEquals(TIME, summary.getMinCreatedTime());
+        assertEquals(TIME.plusHours(1), summary.getMaxCreatedTime());
+        assertEquals(List.of(Map.entry("Fraud", 2L), Map.entry("Late presentment", 1L)), summary.getTopReasons(5));
+        assertFalse(ExportSummary.isSavedIn(new ExecutionContext()));
+        assertEquals(0, ExportSummary.loadFrom(new ExecutionContext()).getRows());
+    }
+
+    @Test
+    void testListener_ExportThatCantResumeSavesTheSummaryOnlyWhenTheStepEnds() {
+        // Arrange
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        ExportSummaryListener listener = new ExportSummaryListener(false);
+        listener.open(executionContext);
+        listener.afterWrite(new Chunk<>(List.of(
+                chargeback().amount("1.50").currency("USD").reason("Fraud").createdTime(TIME).build())));
+
+        // Act
+        listener.update(executionContext);
+        boolean savedAtCommit = ExportSummary.isSavedIn(executionContext);
+        listener.afterStep(stepExecution);
+
+        // Assert
+        assertFalse(savedAtCommit);
+        assertEquals(1, ExportSummary.loadFrom(executionContext).getRows());
+    }
+
+    @Test
+    void testAdd_CountsReasonsPastTheLimitAsOther() {
+        // Arrange
+        ExportSummary summary = new ExportSummary();
+
+        // Act
+        for (int i = 0; i < ExportSummary.MAX_REASONS + 5; i++) {
+            summary.add(chargeback().amount("1.00").currency("USD").reason("Reason " + i).createdTime(TIME).build());
+        }
+        summary.add(chargeback().amount("1.00").currency("USD").reason("Reason 0").createdTime(TIME).build());
+
+        // Assert
+        assertEquals(5, summary.getOtherReasonRows());
+        assertEquals(Map.entry("Reason 0", 2L), summary.getTopReasons(1).get(0));
+        assertEquals(ExportSummary.MAX_REASONS + 6, summary.getRows());
+    }
+}
@@ -0,0 +1,52 @@
+package com.chargebacks.processor.writer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicFilesTest {
+
+    @Test
+    void testReplaceText_CreatesDirectoriesAndReplacesTheFile(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        Path target = tempDir.resolve("nested/out.txt");
+
+        // Act
+        AtomicFiles.replaceText(target, writer -> writer.write("first"));
+        AtomicFiles.replaceText(target, writer -> writer.write("second"));
+
+        // Assert
+        assertEquals("second", Files.readString(target));
+        assertEquals(1, fileCount(target.getParent()), "No temporary file is left behind");
+    }
+
+    @Test
+    void testReplace_FailureKeepsTheOldFile(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        Path target = tempDir.resolve("out.txt");
+        Files.writeString(target, "old");
+
+        // Act
+        IOException failure = assertThrows(IOException.class, () -> AtomicFiles.replaceText(target, writer -> {
+            writer.write("half of the new");
+            throw new IOException("disk full");
+        }));
+
+        // Assert
+        assertEquals("disk full", failure.getMessage());
+        assertEquals("old", Files.readString(target));
+        assertEquals(1, fileCount(tempDir), "The temporary file is removed");
+    }
+
+    private static long fileCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -195,5 +195,42 @@ class ChargebackItemWriterTest {
             assertTrue(fields.length >= 6, "Should have at least 6 fields even with null values");
         }
     }
-}
 
+    @Test
+    void testGzipCompression_WritesReadableGzipWithHeader() throws Exception {
+        // Arrange
+        try {
+            java.lang.reflect.Field field = ChargebackItemWriter.class.getDeclaredField("outputDirectory");
+            field.setAccessible(true);
+            field.set(writer, tempDir.toString());
+        } catch (Exception e) {
+            fail("Failed to set outputDirectory: " + e.getMessage());
+        }
+
+        writer.setCompression(Compression.GZIP, 2);
+        writer.setOutputFileName(LocalDateTime.of(2024, 1, 1, 0, 0, 0), LocalDateTime.of(2024, 1, 31, 23, 59, 59));
+        writer.configureWriter();
+        writer.afterPropertiesSet();
+
+        Chargeback chargeback = new Chargeback(LocalDate.of(2024, 1, 15), new BigDecimal("100.50"), "USD",
+                "REF-001", "Product not received", LocalDateTime.of(2024, 1, 15, 10, 0, 0));
+
+        // Act
+        writer.open(new org.springframework.batch.item.ExecutionContext());
+        writer.write(new org.springframework.batch.item.Chunk<>(chargeback, chargeback));
+        writer.update(new org.springframework.batch.item.ExecutionContext());
+        writer.close();
+
+        // Assert
+        assertTrue(writer.getOutputFileName().endsWith(".csv.gz"));
+        List<String> lines;
+        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(
+                new java.util.zip.GZIPInputStream(Files.newInputStream(Path.of(writer.getOutputFileName()))),
+                java.nio.charset.StandardCharsets.UTF_8))) {
+            lines = reader.lines().toList();
+        }
+        assertEquals(List.of(ChargebackItemWriter.HEADER,
+                "2024-01-15,100.50,USD,REF-001,Product not received,2024-01-15T10:00:00",
+                "2024-01-15,100.50,USD,REF-001,Product not received,2024-01-15T10:00:00"), lines);
+    }
+}
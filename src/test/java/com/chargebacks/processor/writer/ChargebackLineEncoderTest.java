@@ -0,0 +1,116 @@
+package com.chargebacks.processor.writer;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.model.ChargebackColumn;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChargebackLineEncoderTest {
+
+    private final ChargebackLineEncoder encoder = new ChargebackLineEncoder();
+
+    // The DelimitedLineAggregator + FieldExtractor the encoder replaces
+    private static String legacyLine(Chargeback chargeback) {
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+        DelimitedLineAggregator<Chargeback> aggregator = new DelimitedLineAggregator<>();
+        aggregator.setDelimiter(",");
+        aggregator.setFieldExtractor(item -> new Object[]{
+            item.getDisputedDt() != null ? item.getDisputedDt().format(dateFormatter) : "",
+            item.getDisputedAmt() != null ? item.getDisputedAmt().toString() : "",
+            item.getDisputedCurr() != null ? item.getDisputedCurr() : "",
+            item.getMerchandiseRef() != null ? item.getMerchandiseRef() : "",
+            item.getReasonForDispute() != null ? item.getReasonForDispute() : "",
+            item.getCreatedTime() != null ? item.getCreatedTime().format(dateTimeFormatter) : ""
+        });
+        return aggregator.aggregate(chargeback);
+    }
+
+    @Test
+    void testEncode_MatchesLegacyOutputForSafeValues() {
+        List<String> amounts = List.of("100.50", "0.05", "-12.30", "0.00", "7", "1234567890123456.78",
+                "12345678901234567.89", "0.0000001", "1E+3", "99999999999999999999.99");
+        List<LocalDate> dates = List.of(LocalDate.of(2024, 1, 5), LocalDate.of(999, 12, 31), LocalDate.of(10000, 1, 1));
+        List<LocalDateTime> times = List.of(LocalDateTime.of(2024, 1, 15, 9, 5, 7),
+                LocalDateTime.of(2024, 12, 31, 23, 59, 59, 999_000_000), LocalDateTime.of(12024, 1, 1, 0, 0));
+
+        for (String amount : amounts) {
+            for (int i = 0; i < dates.size(); i++) {
+                Chargeback chargeback = new Chargeback(dates.get(i), new BigDecimal(amount), "USD", "REF-001",
+                        "Product not received", times.get(i));
+                assertEquals(legacyLine(chargeback), encoder.aggregate(chargeback), "amount " + amount);
+            }
+        }
+    }
+
+    @Test
+    void testEncode_MinorAmountMatchesBigDecimalOutput() {
+        for (long minor : new long[]{0, 5, -5, 1050, -1230, 123456789012345678L}) {
+            Chargeback decimal = new Chargeback(LocalDate.of(2024, 1, 5), BigDecimal.valueOf(minor, 2), "USD",
+                    "REF-001", "Product not received", LocalDateTime.of(2024, 1, 15, 9, 5, 7));
+            Chargeback minorUnits = new Chargeback(LocalDate.of(2024, 1, 5), null, "USD",
+                    "REF-001", "Product not received", LocalDateTime.of(2024, 1, 15, 9, 5, 7));
+            minorUnits.setDisputedAmtMinor(minor);
+
+            assertEquals(legacyLine(decimal), encoder.aggregate(minorUnits), "minor " + minor);
+        }
+    }
+
+    @Test
+    void testEncode_NullFieldsMatchLegacyOutput() {
+        Chargeback chargeback = new Chargeback();
+
+        assertEquals(",,,,,", encoder.aggregate(chargeback));
+        assertEquals(legacyLine(chargeback), encoder.aggregate(chargeback));
+    }
+
+    @Test
+    void testEncode_QuotesReasonWithDelimiterQuoteOrLineBreak() {
+        Chargeback chargeback = new Chargeback(LocalDate.of(2024, 1, 15), new BigDecimal("10.00"), "EUR",
+                "REF-002", "Charged twice, \"again\"\nsee note", LocalDateTime.of(2024, 1, 15, 10, 0, 0));
+
+        assertEquals("2024-01-15,10.00,EUR,REF-002,\"Charged twice, \"\"again\"\"\nsee note\",2024-01-15T10:00:00",
+                encoder.aggregate(chargeback));
+    }
+
+    @Test
+    void testEncode_QuotesMerchandiseRefWithDelimiter() {
+        Chargeback chargeback = new Chargeback(null, null, null, "REF,1", null, null);
+
+        assertEquals(",,,\"REF,1\",,", encoder.aggregate(chargeback));
+    }
+
+    @Test
+    void testEncode_WritesOnlyTheChosenColumnsInTheirOrder() {
+        // Arrange
+        Chargeback chargeback = new Chargeback(LocalDate.of(2024, 1, 15), null, "USD", "REF,1", "Fraud",
+                LocalDateTime.of(2024, 1, 15, 10, 30, 0));
+        chargeback.setDisputedAmtMinor(12_345);
+        ChargebackLineEncoder projecting = new ChargebackLineEncoder(
+                List.of(ChargebackColumn.CREATED_TIME, ChargebackColumn.MERCHANDISE_REF, ChargebackColumn.DISPUTED_AMT));
+
+        // Act & Assert
+        assertEquals("2024-01-15T10:30:00,\"REF,1\",123.45", projecting.aggregate(chargeback));
+        assertEquals(encoder.aggregate(chargeback), new ChargebackLineEncoder(ChargebackColumn.ALL).aggregate(chargeback));
+        assertThrows(IllegalArgumentException.class, () -> new ChargebackLineEncoder(List.of()));
+    }
+
+    @Test
+    void testEncode_AppendsToSuppliedBuffer() {
+        StringBuilder out = new StringBuilder("prefix|");
+        Chargeback chargeback = new Chargeback(LocalDate.of(2024, 1, 15), new BigDecimal("1.5"), "GBP",
+                "REF-003", "Duplicate charge", LocalDateTime.of(2024, 1, 15, 10, 0, 0));
+
+        encoder.encode(chargeback, out);
+
+        assertEquals("prefix|2024-01-15,1.5,GBP,REF-003,Duplicate charge,2024-01-15T10:00:00", out.toString());
+    }
+}
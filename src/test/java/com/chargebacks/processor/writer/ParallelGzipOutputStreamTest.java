@@ -0,0 +1,83 @@
+package com.chargebacks.processor.writer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelGzipOutputStreamTest {
+
+    @Test
+    void testRoundTrip_ManyBlocksAcrossThreads() throws Exception {
+        // Arrange - compressible text with some noise, spanning many small blocks
+        byte[] data = sampleData(1_000_000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        // Act - mix bulk and single-byte writes across block boundaries
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, 4, 4096, 6)) {
+            gzip.write(data, 0, 12_345);
+            gzip.write(data[12_345]);
+            gzip.write(data, 12_346, data.length - 12_346);
+        }
+
+        // Assert
+        assertArrayEquals(data, gunzip(compressed.toByteArray()));
+        assertTrue(compressed.size() < data.length / 2, "Output should be compressed");
+    }
+
+    @Test
+    void testFlush_EndsMemberAndKeepsStreamReadable() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, 2)) {
+            gzip.write("header\n".getBytes());
+            gzip.flush();
+            assertArrayEquals("header\n".getBytes(), gunzip(compressed.toByteArray()));
+            gzip.write("row\n".getBytes());
+        }
+
+        assertArrayEquals("header\nrow\n".getBytes(), gunzip(compressed.toByteArray()));
+    }
+
+    @Test
+    void testClose_EmptyStreamIsValidGzip() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        new ParallelGzipOutputStream(compressed, 1).close();
+
+        assertEquals(0, gunzip(compressed.toByteArray()).length);
+    }
+
+    @Test
+    void testWrite_AfterCloseFails() throws Exception {
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(new ByteArrayOutputStream(), 1);
+        gzip.close();
+
+        assertThrows(IOException.class, () -> gzip.write(1));
+    }
+
+    private static byte[] sampleData(int length) {
+        Random random = new Random(42);
+        byte[] data = new byte[length];
+        String[] words = {"2024-01-15", "100.50", "USD", "REF-", "Product not received", "\n", ","};
+        int position = 0;
+        while (position < length) {
+            byte[] word = (words[random.nextInt(words.length)] + random.nextInt(100)).getBytes();
+            int count = Math.min(word.length, length - position);
+            System.arraycopy(word, 0, data, position, count);
+            position += count;
+        }
+        return data;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+}
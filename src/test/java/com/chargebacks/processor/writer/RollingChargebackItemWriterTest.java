@@ -0,0 +1,147 @@
+package com.chargebacks.processor.writer;
+
+import com.chargebacks.processor.model.Chargeback;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingChargebackItemWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Chunk<Chargeback> chunk(int from, int count) {
+        Chunk<Chargeback> chunk = new Chunk<>();
+        for (int i = from; i < from + count; i++) {
+            chunk.add(new Chargeback(LocalDate.of(2024, 1, 1), new BigDecimal("10.00"), "USD", "REF-" + i,
+                    "Duplicate charge", LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i)));
+        }
+        return chunk;
+    }
+
+    // A step that ended with status, as the writer sees it when the step closes it
+    private static StepExecution step(BatchStatus status) {
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        stepExecution.setStatus(status);
+        return stepExecution;
+    }
+
+    @Test
+    void testWrite_RollsAtExactRowCountAcrossChunks() throws Exception {
+        // Arrange
+        String outputFile = tempDir.resolve("chargebacks_a_to_b.csv").toString();
+        RollingChargebackItemWriter writer = new RollingChargebackItemWriter(outputFile, 4, 0, Compression.NONE, 1);
+        writer.setStepExecution(step(BatchStatus.COMPLETED));
+
+        // Act - chunks of 3 against parts of 4 rows
+        writer.open(new ExecutionContext());
+        writer.write(chunk(0, 3));
+        writer.write(chunk(3, 3));
+        writer.write(chunk(6, 3));
+        writer.close();
+
+        // Assert
+        List<String> part1 = Files.readAllLines(Paths.get(writer.partFileName(1)));
+        List<String> part3 = Files.readAllLines(Paths.get(writer.partFileName(3)));
+        assertEquals(tempDir.resolve("chargebacks_a_to_b_part00001.csv").toString(), writer.partFileName(1));
+        assertEquals(ChargebackItemWriter.HEADER, part1.get(0));
+        assertEquals(5, part1.size(), "Header plus four rows");
+        assertTrue(part1.get(4).contains("REF-3"));
+        assertEquals(5, Files.readAllLines(Paths.get(writer.partFileName(2))).size());
+        assertEquals(2, part3.size());
+        assertTrue(part3.get(1).contains("REF-8"));
+        assertFalse(Files.exists(Paths.get(writer.partFileName(4))));
+
+        String manifest = Files.readString(tempDir.resolve("chargebacks_a_to_b.manifest.json"));
+        assertTrue(manifest.contains("{\"file\": \"chargebacks_a_to_b_part00001.csv\", \"rows\": 4, \"bytes\": "
+                + Files.size(Paths.get(writer.partFileName(1))) + "}"), manifest);
+        assertTrue(manifest.contains("\"chargebacks_a_to_b_part00003.csv\", \"rows\": 1,"), manifest);
+        assertTrue(manifest.contains("\"totalRows\": 9"), manifest);
+    }
+
+    @Test
+    void testWrite_RollsOnUncompressedSizeAtChunkBoundaries() throws Exception {
+        // Arrange - each row is 64 bytes, so a part is full once its second chunk is written
+        String outputFile = tempDir.resolve("chargebacks_a_to_b.csv.gz").toString();
+        RollingChargebackItemWriter writer = new RollingChargebackItemWriter(outputFile, 0, 200, Compression.GZIP, 1);
+        writer.setStepExecution(step(BatchStatus.COMPLETED));
+
+        // Act
+        writer.open(new ExecutionContext());
+        for (int i = 0; i < 5; i++) {
+            writer.write(chunk(i * 2, 2));
+        }
+        writer.close();
+
+        // Assert
+        List<String> rows = new ArrayList<>();
+        for (int part = 1; part <= 3; part++) {
+            List<String> lines = gunzipLines(writer.partFileName(part));
+            assertEquals(ChargebackItemWriter.HEADER, lines.get(0));
+            rows.addAll(lines.subList(1, lines.size()));
+        }
+        assertEquals(10, rows.size());
+        assertEquals(5, gunzipLines(writer.partFileName(1)).size(), "Header plus two chunks of two rows");
+        assertTrue(Files.readString(tempDir.resolve("chargebacks_a_to_b.manifest.json")).contains("\"totalRows\": 10"));
+    }
+
+    @Test
+    void testClose_EmptyExportWritesOnePartAndManifest() throws Exception {
+        String outputFile = tempDir.resolve("chargebacks_a_to_b.csv").toString();
+        RollingChargebackItemWriter writer = new RollingChargebackItemWriter(outputFile, 10, 0, Compression.NONE, 1);
+        writer.setStepExecution(step(BatchStatus.COMPLETED));
+
+        writer.open(new ExecutionContext());
+        writer.close();
+
+        assertEquals(List.of(ChargebackItemWriter.HEADER), Files.readAllLines(Paths.get(writer.partFileName(1))));
+        assertTrue(Files.readString(tempDir.resolve("chargebacks_a_to_b.manifest.json")).contains("\"totalRows\": 0"));
+    }
+
+    @Test
+    void testClose_FailedStepLeavesNoManifest() throws Exception {
+        // Arrange - a manifest from an earlier, completed export of the same range
+        String outputFile = tempDir.resolve("chargebacks_a_to_b.csv").toString();
+        Path manifest = tempDir.resolve("chargebacks_a_to_b.manifest.json");
+        Files.writeString(manifest, "{\"parts\": [], \"totalRows\": 0}");
+        RollingChargebackItemWriter writer = new RollingChargebackItemWriter(outputFile, 2, 0, Compression.NONE, 1);
+        StepExecution stepExecution = step(BatchStatus.STARTED);
+        writer.setStepExecution(stepExecution);
+
+        // Act - the step fails after writing a chunk
+        writer.open(new ExecutionContext());
+        writer.write(chunk(0, 3));
+        stepExecution.setStatus(BatchStatus.FAILED);
+        writer.close();
+
+        // Assert
+        assertTrue(Files.exists(Paths.get(writer.partFileName(2))));
+        assertFalse(Files.exists(manifest));
+    }
+
+    private static List<String> gunzipLines(String fileName) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(Paths.get(fileName))), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+}
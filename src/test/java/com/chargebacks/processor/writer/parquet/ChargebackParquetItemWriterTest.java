@@ -0,0 +1,293 @@
+package com.chargebacks.processor.writer.parquet;
+
+import com.chargebacks.processor.model.Chargeback;
+import com.chargebacks.processor.writer.Compression;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChargebackParquetItemWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWrite_FooterDescribesTypedColumnsAndRowGroups() throws Exception {
+        // Arrange
+        Path file = tempDir.resolve("chargebacks.parquet");
+        ChargebackParquetItemWriter writer = new ChargebackParquetItemWriter(file.toString());
+        writer.setRowGroupRows(4);
+
+        Chunk<Chargeback> chunk = new Chunk<>();
+        for (int i = 0; i < 9; i++) {
+            Chargeback chargeback = new Chargeback(LocalDate.of(2024, 1, 1 + i), null, i % 2 == 0 ? "USD" : "EUR",
+                    "REF-" + i, "Duplicate charge", LocalDateTime.of(2024, 1, 1, 0, 0, i));
+            chargeback.setDisputedAmtMinor(1_000 * (i - 4));
+            chunk.add(chargeback);
+        }
+        chunk.add(new Chargeback());
+
+        // Act
+        writer.open(new ExecutionContext());
+        writer.write(chunk);
+        writer.close();
+
+        // Assert
+        Map<Integer, Object> footer = readFooter(file);
+        assertEquals(10L, footer.get(3), "num_rows");
+
+        List<Object> schema = list(footer, 2);
+        assertEquals(List.of("chargeback", "disputed_dt", "disputed_amt", "disputed_curr", "merchandise_ref",
+                "reason_for_dispute", "created_time"), schema.stream().map(e -> string(struct(e), 4)).toList());
+        Map<Integer, Object> amountElement = struct(schema.get(2));
+        assertEquals(7L, amountElement.get(1), "FIXED_LEN_BYTE_ARRAY");
+        assertEquals(9L, amountElement.get(2));
+        assertEquals(19L, amountElement.get(8), "precision");
+
+        List<Object> rowGroups = list(footer, 4);
+        assertEquals(3, rowGroups.size(), "Row groups of 4, 4 and 2 rows");
+        assertEquals(List.of(4L, 4L, 2L), rowGroups.stream().map(g -> struct(g).get(3)).toList());
+
+        // First row group: dates 2024-01-01..04, amounts -40.00..-10.00, currency dictionary encoded
+        List<Object> firstChunks = list(struct(rowGroups.get(0)), 1);
+        Map<Integer, Object> dateStats = statistics(firstChunks.get(0));
+        assertEquals(LocalDate.of(2024, 1, 1).toEpochDay(), littleEndianInt(bytes(dateStats, 6)));
+        assertEquals(LocalDate.of(2024, 1, 4).toEpochDay(), littleEndianInt(bytes(dateStats, 5)));
+        Map<Integer, Object> amountStats = statistics(firstChunks.get(1));
+        assertEquals(new BigDecimal("-40.00"), new BigDecimal(new BigInteger(bytes(amountStats, 6)), 2));
+        assertEquals(new BigDecimal("-10.00"), new BigDecimal(new BigInteger(bytes(amountStats, 5)), 2));
+        assertEquals(List.of(2L, 3L), list(metadata(firstChunks.get(2)), 2), "PLAIN_DICTIONARY, RLE");
+
+        // Last row group holds the row of nulls
+        List<Object> lastChunks = list(struct(rowGroups.get(2)), 1);
+        assertEquals(1L, statistics(lastChunks.get(4)).get(3), "null_count");
+    }
+
+    @Test
+    void testWrite_ReadsBackThroughTheParquetReader() throws Exception {
+        for (Compression compression : List.of(Compression.NONE, Compression.GZIP)) {
+            // Arrange - row groups of 4 rows, each with its own dictionary pages, and a row of nulls
+            Path file = tempDir.resolve("round-trip-" + compression + ".parquet");
+            ChargebackParquetItemWriter writer = new ChargebackParquetItemWriter(file.toString());
+            writer.setRowGroupRows(4);
+            writer.setCompression(compression);
+            Chunk<Chargeback> chunk = new Chunk<>();
+            for (int i = 0; i < 9; i++) {
+                chunk.add(new Chargeback(LocalDate.of(2024, 1, 1 + i), new BigDecimal(i - 4).movePointLeft(1),
+                        i % 2 == 0 ? "USD" : "EUR", "REF-" + i, i % 3 == 0 ? null : "Fraud",
+                        LocalDateTime.of(2024, 1, 1, 12, 30, i, 123_456_000)));
+            }
+            chunk.add(new Chargeback());
+
+            // Act
+            writer.open(new ExecutionContext());
+            writer.write(chunk);
+            writer.close();
+
+            // Assert
+            org.apache.hadoop.fs.Path hadoopPath = new org.apache.hadoop.fs.Path(file.toUri());
+            try (ParquetFileReader fileReader = ParquetFileReader.open(
+                    HadoopInputFile.fromPath(hadoopPath, new Configuration()))) {
+                MessageType schema = fileReader.getFooter().getFileMetaData().getSchema();
+                assertEquals(LogicalTypeAnnotation.dateType(), schema.getType("disputed_dt").getLogicalTypeAnnotation());
+                assertEquals(LogicalTypeAnnotation.decimalType(2, 19),
+                        schema.getType("disputed_amt").getLogicalTypeAnnotation());
+                assertEquals(LogicalTypeAnnotation.stringType(),
+                        schema.getType("disputed_curr").getLogicalTypeAnnotation());
+                assertEquals(LogicalTypeAnnotation.timestampType(false, LogicalTypeAnnotation.TimeUnit.MICROS),
+                        schema.getType("created_time").getLogicalTypeAnnotation());
+                assertEquals(3, fileReader.getRowGroups().size());
+            }
+
+            List<Group> rows = new ArrayList<>();
+            try (ParquetReader<Group> reader = ParquetReader.builder(new GroupReadSupport(), hadoopPath).build()) {
+                for (Group row = reader.read(); row != null; row = reader.read()) {
+                    rows.add(row);
+                }
+            }
+            assertEquals(10, rows.size());
+            for (int i = 0; i < 9; i++) {
+                Group row = rows.get(i);
+                assertEquals(LocalDate.of(2024, 1, 1 + i).toEpochDay(), row.getInteger("disputed_dt", 0));
+                assertEquals(new BigDecimal(i - 4).movePointLeft(1).setScale(2),
+                        new BigDecimal(new BigInteger(row.getBinary("disputed_amt", 0).getBytes()), 2));
+                assertEquals(i % 2 == 0 ? "USD" : "EUR", row.getString("disputed_curr", 0));
+                assertEquals("REF-" + i, row.getString("merchandise_ref", 0));
+                if (i % 3 == 0) {
+                    assertEquals(0, row.getFieldRepetitionCount("reason_for_dispute"), "null reason");
+                } else {
+                    assertEquals("Fraud", row.getString("reason_for_dispute", 0));
+                }
+                LocalDateTime createdTime = LocalDateTime.of(2024, 1, 1, 12, 30, i, 123_456_000);
+                assertEquals(createdTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + 123_456,
+                        row.getLong("created_time", 0));
+            }
+            Group nulls = rows.get(9);
+            for (String column : List.of("disputed_dt", "disputed_amt", "disputed_curr", "merchandise_ref",
+                    "reason_for_dispute", "created_time")) {
+                assertEquals(0, nulls.getFieldRepetitionCount(column), column);
+            }
+        }
+    }
+
+    @Test
+    void testWrite_GzipCodecAndEmptyFile() throws Exception {
+        Path file = tempDir.resolve("empty.parquet");
+        ChargebackParquetItemWriter writer = new ChargebackParquetItemWriter(file.toString());
+        writer.setCompression(Compression.GZIP);
+
+        writer.open(new ExecutionContext());
+        writer.close();
+
+        Map<Integer, Object> footer = readFooter(file);
+        assertEquals(0L, footer.get(3));
+        assertTrue(list(footer, 4).isEmpty());
+    }
+
+    @Test
+    void testWrite_RejectsAmountsOutsideDecimal19Scale2() throws Exception {
+        ChargebackParquetItemWriter writer = new ChargebackParquetItemWriter(tempDir.resolve("bad.parquet").toString());
+        writer.open(new ExecutionContext());
+
+        Chunk<Chargeback> chunk = new Chunk<>(new Chargeback(null, new BigDecimal("1.005"), null, null, null, null));
+
+        assertThrows(IllegalArgumentException.class, () -> writer.write(chunk));
+        writer.close();
+    }
+
+    private static Map<Integer, Object> readFooter(Path file) throws Exception {
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals("PAR1", new String(bytes, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals("PAR1", new String(bytes, bytes.length - 4, 4, StandardCharsets.US_ASCII));
+        int footerLength = ByteBuffer.wrap(bytes, bytes.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        ThriftCompactReader reader = new ThriftCompactReader(
+                Arrays.copyOfRange(bytes, bytes.length - 8 - footerLength, bytes.length - 8));
+        return reader.readStruct();
+    }
+
+    private static Map<Integer, Object> metadata(Object columnChunk) {
+        return struct(struct(columnChunk).get(3));
+    }
+
+    private static Map<Integer, Object> statistics(Object columnChunk) {
+        return struct(metadata(columnChunk).get(12));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Object> struct(Object value) {
+        return (Map<Integer, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Map<Integer, Object> struct, int field) {
+        return (List<Object>) struct.get(field);
+    }
+
+    private static byte[] bytes(Map<Integer, Object> struct, int field) {
+        return (byte[]) struct.get(field);
+    }
+
+    private static String string(Map<Integer, Object> struct, int field) {
+        return new String(bytes(struct, field), StandardCharsets.UTF_8);
+    }
+
+    private static long littleEndianInt(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    // Generic Thrift compact decoder: structs become maps of field id to value, integers are longs
+    private static class ThriftCompactReader {
+
+        private final byte[] bytes;
+        private int position;
+
+        ThriftCompactReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        Map<Integer, Object> readStruct() {
+            Map<Integer, Object> fields = new HashMap<>();
+            int lastFieldId = 0;
+            while (true) {
+                int header = bytes[position++] & 0xFF;
+                if (header == 0) {
+                    return fields;
+                }
+                int type = header & 0x0F;
+                int delta = header >>> 4;
+                int fieldId = delta != 0 ? lastFieldId + delta : (int) zigzag(readVarint());
+                fields.put(fieldId, readValue(type));
+                lastFieldId = fieldId;
+            }
+        }
+
+        private Object readValue(int type) {
+            return switch (type) {
+                case 1 -> true;
+                case 2 -> false;
+                case 5, 6 -> zigzag(readVarint());
+                case 8 -> {
+                    int length = (int) readVarint();
+                    byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+                    position += length;
+                    yield value;
+                }
+                case 9 -> {
+                    int header = bytes[position++] & 0xFF;
+                    int size = header >>> 4 == 15 ? (int) readVarint() : header >>> 4;
+                    List<Object> elements = new ArrayList<>();
+                    for (int i = 0; i < size; i++) {
+                        elements.add(readValue(header & 0x0F));
+                    }
+                    yield elements;
+                }
+                case 12 -> readStruct();
+                default -> throw new IllegalStateException("Unexpected Thrift type " + type);
+            };
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                int b = bytes[position++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.chargebacks.processor.writer.parquet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParquetBytesTest {
+
+    @Test
+    void testWriteHybrid_AllEqualValuesBecomeOneRleRun() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ParquetBytes.writeHybrid(out, new int[]{1, 1, 1, 1, 1}, 5, 1);
+
+        // Header is run length << 1, then the value in one byte
+        assertArrayEquals(new byte[]{10, 1}, out.toByteArray());
+    }
+
+    @Test
+    void testWriteHybrid_MixedValuesAreBitPackedLeastSignificantBitFirst() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Example from the Parquet encodings spec: 0..7 packed at bit width 3
+        ParquetBytes.writeHybrid(out, new int[]{0, 1, 2, 3, 4, 5, 6, 7}, 8, 3);
+
+        assertArrayEquals(new byte[]{3, (byte) 0b10001000, (byte) 0b11000110, (byte) 0b11111010}, out.toByteArray());
+    }
+
+    @Test
+    void testWriteHybrid_PadsTheLastGroup() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ParquetBytes.writeHybrid(out, new int[]{1, 0, 1}, 3, 1);
+
+        assertArrayEquals(new byte[]{3, 0b101}, out.toByteArray());
+    }
+
+    @Test
+    void testBitWidth() {
+        assertEquals(1, ParquetBytes.bitWidth(0));
+        assertEquals(1, ParquetBytes.bitWidth(1));
+        assertEquals(2, ParquetBytes.bitWidth(2));
+        assertEquals(9, ParquetBytes.bitWidth(300));
+    }
+
+    @Test
+    void testWriteUnsignedVarint() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ParquetBytes.writeUnsignedVarint(out, 300);
+
+        assertArrayEquals(new byte[]{(byte) 0xAC, 0x02}, out.toByteArray());
+    }
+}
@@ -7,3 +7,4 @@ CREATE TABLE IF NOT EXISTS Chargebacks (
     created_time TIMESTAMP
 );
 
+CREATE INDEX IF NOT EXISTS idx_created_time ON Chargebacks (created_time);